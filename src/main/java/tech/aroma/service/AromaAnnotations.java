@@ -76,4 +76,28 @@ public interface AromaAnnotations
     {
 
     }
+
+    /**
+     * Defines how much of each message is returned by the operations that list messages,
+     * such as GetInbox. It is bound to a {@code MessageProjection}.
+     */
+    @BindingAnnotation
+    @Target({PARAMETER, FIELD, METHOD})
+    @Retention(RUNTIME)
+    public @interface MessageListProjection
+    {
+
+    }
+
+    /**
+     * Defines the directory on local disk under which the service keeps its caches, journals,
+     * and checkpoints. It is bound to a {@code File}, and each component uses its own sub-directory.
+     */
+    @BindingAnnotation
+    @Target({PARAMETER, FIELD, METHOD})
+    @Retention(RUNTIME)
+    public @interface DataDirectory
+    {
+
+    }
 }
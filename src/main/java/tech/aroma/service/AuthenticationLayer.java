@@ -50,16 +50,25 @@ final class AuthenticationLayer implements AromaService.Iface
 
     private final AromaService.Iface delegate;
     private final AuthenticationService.Iface authenticationService;
+    private final TokenVerifications verifications;
 
     @Inject
     AuthenticationLayer(@DecoratedBy(AuthenticationLayer.class) AromaService.Iface delegate,
                         AuthenticationService.Iface authenticationService)
     {
-        checkThat(delegate, authenticationService)
+        this(delegate, authenticationService, TokenVerifications.everyCall());
+    }
+
+    AuthenticationLayer(AromaService.Iface delegate,
+                        AuthenticationService.Iface authenticationService,
+                        TokenVerifications verifications)
+    {
+        checkThat(delegate, authenticationService, verifications)
                 .are(notNull());
 
         this.delegate = delegate;
         this.authenticationService = authenticationService;
+        this.verifications = verifications;
     }
 
     @Override
@@ -482,7 +491,7 @@ final class AuthenticationLayer implements AromaService.Iface
     //==========================================================
     // INTERNAL OPERATIONS
     //==========================================================
-    private void checkAndEnrichToken(UserToken token) throws InvalidTokenException, TException
+    void checkAndEnrichToken(UserToken token) throws InvalidTokenException, TException
     {
         checkTokenIsValid(token);
 
@@ -500,7 +509,7 @@ final class AuthenticationLayer implements AromaService.Iface
         GetTokenInfoResponse tokenInfo;
         try
         {
-            tokenInfo = authenticationService.getTokenInfo(request);
+            tokenInfo = verifications.verify(request, () -> authenticationService.getTokenInfo(request));
         }
         catch (TException ex)
         {
@@ -533,7 +542,7 @@ final class AuthenticationLayer implements AromaService.Iface
 
         try
         {
-            authenticationService.verifyToken(request);
+            verifications.verify(request, () -> authenticationService.verifyToken(request));
         }
         catch (TException ex)
         {
@@ -565,7 +574,7 @@ final class AuthenticationLayer implements AromaService.Iface
 
         try
         {
-            authenticationService.verifyToken(request);
+            verifications.verify(request, () -> authenticationService.verifyToken(request));
         }
         catch (TException ex)
         {
@@ -0,0 +1,1031 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import decorice.DecoratedBy;
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TException;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.*;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.service.operations.deletion.ApplicationDeleter;
+import tech.aroma.service.operations.deletion.DeletionProgress;
+import tech.aroma.service.operations.MessageProjection;
+import tech.aroma.service.operations.lookup.BulkLookup;
+import tech.aroma.service.operations.media.MediaValidators;
+import tech.aroma.service.server.ZeroCopyBinaryProtocol;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.authentication.UserToken;
+import tech.aroma.thrift.authentication.service.AuthenticationService;
+import tech.aroma.thrift.exceptions.*;
+import tech.aroma.thrift.service.AromaService;
+import tech.aroma.thrift.service.GetApplicationMessagesRequest;
+import tech.aroma.thrift.service.GetApplicationMessagesResponse;
+import tech.aroma.thrift.service.GetInboxRequest;
+import tech.aroma.thrift.service.GetInboxResponse;
+import tech.aroma.thrift.service.GetMediaRequest;
+import tech.aroma.thrift.service.GetMediaResponse;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.stream.Collectors.toList;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.BooleanAssertions.trueStatement;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.nonEmptyString;
+
+/**
+ * Serves many calls to the {@linkplain AromaService Aroma Service} in a single round trip, along with calls the
+ * Aroma Service IDL has no room for.
+ * <p>
+ * It is a Thrift service of its own, as if it were declared as:
+ * <pre>
+ * service AromaBatchService
+ * {
+ *     list&lt;binary&gt; batch(1: list&lt;binary&gt; calls) throws (1: InvalidArgumentException ex1)
+ *
+ *     map&lt;string, Application&gt; getManyApplications(1: UserToken token,
+ *                                                   2: list&lt;string&gt; applicationIds,
+ *                                                   3: bool includeFollowingInfo)
+ *         throws (1: OperationFailedException ex1, 2: InvalidArgumentException ex2, 3: InvalidTokenException ex3)
+ *
+ *     map&lt;string, User&gt; getManyUsers(1: UserToken token, 2: list&lt;string&gt; userIds)
+ *         throws (1: OperationFailedException ex1, 2: InvalidArgumentException ex2, 3: InvalidTokenException ex3)
+ *
+ *     ConditionalMedia getMediaIfModified(1: GetMediaRequest request, 2: string knownValidator)
+ *         throws (1: OperationFailedException ex1, 2: InvalidArgumentException ex2, 3: InvalidTokenException ex3,
+ *                 4: DoesNotExistException ex4)
+ *
+ *     DeletionProgress getDeletionProgress(1: UserToken token, 2: string applicationId)
+ *         throws (1: OperationFailedException ex1, 2: InvalidArgumentException ex2, 3: InvalidTokenException ex3,
+ *                 4: DoesNotExistException ex4)
+ *
+ *     GetInboxResponse getInboxSummaries(1: GetInboxRequest request, 2: i32 previewLength)
+ *         throws (1: OperationFailedException ex1, 2: InvalidArgumentException ex2, 3: InvalidTokenException ex3)
+ *
+ *     GetApplicationMessagesResponse getApplicationMessageSummaries(1: GetApplicationMessagesRequest request,
+ *                                                                   2: i32 previewLength)
+ *         throws (1: OperationFailedException ex1, 2: InvalidArgumentException ex2, 3: InvalidTokenException ex3,
+ *                 4: UnauthorizedException ex4)
+ * }
+ *
+ * struct ConditionalMedia
+ * {
+ *     1: bool notModified;
+ *     2: optional GetMediaResponse response;
+ *     3: optional string validator;
+ * }
+ *
+ * struct DeletionProgress
+ * {
+ *     1: string applicationId;
+ *     2: string stage;
+ *     3: bool done;
+ *     4: i32 followersRemoved;
+ *     5: i32 followers;
+ *     6: i32 usersNotified;
+ *     7: i32 usersToNotify;
+ * }
+ * </pre>
+ * Each call in a {@code batch} is an {@link AromaService} call exactly as its generated client would send it with a
+ * {@link TBinaryProtocol}, and each reply is the message the Aroma Service returned for it, in the same order.
+ * A reply is read with the matching {@code recv_} method of the generated client, so results and errors, including
+ * each call's own exceptions, arrive just as if the call had been made on its own.
+ * <p>
+ * Calls in a batch run concurrently. Each distinct token in a batch is checked with the Authentication Service
+ * once, and the outcome is shared by every call that carries it.
+ * <p>
+ * {@code getManyApplications} and {@code getManyUsers} look up many Applications or Users in one call, using the
+ * {@link BulkLookup}. Those that do not exist are left out of the map returned.
+ * <p>
+ * {@code getMediaIfModified} is {@code getMedia} for a caller that already holds a copy. If {@code knownValidator}
+ * is the {@linkplain MediaValidators validator} of the current version, {@code notModified} is set and no image is
+ * sent. Otherwise the Media is fetched as usual. Either way, {@code validator} is the validator of the current
+ * version, when it is known.
+ * <p>
+ * {@code getDeletionProgress} tells an Owner of a deleted Application how far the {@linkplain ApplicationDeleter
+ * deletion} of what belonged to it has come. {@code stage} is the name of its {@link DeletionProgress.Stage}. A
+ * deletion is forgotten an hour after it finishes, and one that is not known, or of an Application the caller did
+ * not own, is reported with a {@code DoesNotExistException}.
+ * <p>
+ * {@code getInboxSummaries} and {@code getApplicationMessageSummaries} are {@code getInbox} and
+ * {@code getApplicationMessages} for a caller that wants {@linkplain MessageProjection#summaries(int) summaries},
+ * whatever the service returns by default. Each body is cut to a preview of at most {@code previewLength}
+ * characters; a service that already returns summaries never sends a longer preview than its own.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+public final class BatchProcessor implements TProcessor
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(BatchProcessor.class);
+
+    public static final String BATCH = "batch";
+    public static final String GET_MANY_APPLICATIONS = "getManyApplications";
+    public static final String GET_MANY_USERS = "getManyUsers";
+    public static final String GET_MEDIA_IF_MODIFIED = "getMediaIfModified";
+    public static final String GET_DELETION_PROGRESS = "getDeletionProgress";
+    public static final String GET_INBOX_SUMMARIES = "getInboxSummaries";
+    public static final String GET_APPLICATION_MESSAGE_SUMMARIES = "getApplicationMessageSummaries";
+
+    static final int DEFAULT_MAX_CALLS = 25;
+
+    private static final short CALLS_FIELD_ID = 1;
+    private static final short SUCCESS_FIELD_ID = 0;
+    private static final short INVALID_ARGUMENT_FIELD_ID = 1;
+
+    private static final short TOKEN_FIELD_ID = 1;
+    private static final short IDS_FIELD_ID = 2;
+    private static final short INCLUDE_FOLLOWING_INFO_FIELD_ID = 3;
+
+    private static final short MEDIA_REQUEST_FIELD_ID = 1;
+    private static final short KNOWN_VALIDATOR_FIELD_ID = 2;
+
+    private static final short APPLICATION_ID_FIELD_ID = 2;
+
+    private static final short LIST_REQUEST_FIELD_ID = 1;
+    private static final short PREVIEW_LENGTH_FIELD_ID = 2;
+
+    private final AromaService.Iface service;
+    private final AuthenticationService.Iface authenticationService;
+    private final AuthenticationLayer authentication;
+    private final BulkLookup bulkLookup;
+    private final MediaValidators mediaValidators;
+    private final ApplicationDeleter appDeleter;
+    private final ExecutorService executor;
+    private final TProtocolFactory protocols;
+    private final int maxCalls;
+
+    private final Timer batchTime;
+    private final Histogram callsPerBatch;
+
+    @Inject
+    BatchProcessor(@DecoratedBy(AuthenticationLayer.class) AromaService.Iface service,
+                   AuthenticationService.Iface authenticationService,
+                   BulkLookup bulkLookup,
+                   MediaValidators mediaValidators,
+                   ApplicationDeleter appDeleter,
+                   ExecutorService executor,
+                   MetricRegistry metrics)
+    {
+        this(service,
+             authenticationService,
+             bulkLookup,
+             mediaValidators,
+             appDeleter,
+             executor,
+             metrics,
+             new ZeroCopyBinaryProtocol.Factory(),
+             DEFAULT_MAX_CALLS);
+    }
+
+    BatchProcessor(AromaService.Iface service,
+                   AuthenticationService.Iface authenticationService,
+                   BulkLookup bulkLookup,
+                   MediaValidators mediaValidators,
+                   ApplicationDeleter appDeleter,
+                   ExecutorService executor,
+                   MetricRegistry metrics,
+                   TProtocolFactory protocols,
+                   int maxCalls)
+    {
+        checkThat(service, authenticationService, bulkLookup, mediaValidators, appDeleter, executor, metrics, protocols)
+                .are(notNull());
+
+        checkThat(maxCalls)
+                .usingMessage("maxCalls must be > 0")
+                .is(greaterThan(0));
+
+        this.service = service;
+        this.authenticationService = authenticationService;
+        this.authentication = new AuthenticationLayer(service, authenticationService, TokenVerifications.everyCall());
+        this.bulkLookup = bulkLookup;
+        this.mediaValidators = mediaValidators;
+        this.appDeleter = appDeleter;
+        this.executor = executor;
+        this.protocols = protocols;
+        this.maxCalls = maxCalls;
+
+        this.batchTime = metrics.timer(name(BatchProcessor.class, "batch-time"));
+        this.callsPerBatch = metrics.histogram(name(BatchProcessor.class, "calls-per-batch"));
+    }
+
+    @Override
+    public boolean process(TProtocol in, TProtocol out) throws TException
+    {
+        TMessage message = in.readMessageBegin();
+
+        switch (message.name)
+        {
+            case BATCH:
+                processBatch(in, out, message);
+                break;
+            case GET_MANY_APPLICATIONS:
+                processLookup(in, out, message, this::getManyApplications);
+                break;
+            case GET_MANY_USERS:
+                processLookup(in, out, message, this::getManyUsers);
+                break;
+            case GET_MEDIA_IF_MODIFIED:
+                processGetMediaIfModified(in, out, message);
+                break;
+            case GET_DELETION_PROGRESS:
+                processGetDeletionProgress(in, out, message);
+                break;
+            case GET_INBOX_SUMMARIES:
+                processSummaries(in, out, message, new GetInboxRequest(), this::getInboxSummaries);
+                break;
+            case GET_APPLICATION_MESSAGE_SUMMARIES:
+                processSummaries(in, out, message, new GetApplicationMessagesRequest(), this::getApplicationMessageSummaries);
+                break;
+            default:
+                TProtocolUtil.skip(in, TType.STRUCT);
+                in.readMessageEnd();
+
+                TApplicationException ex = new TApplicationException(TApplicationException.UNKNOWN_METHOD,
+                                                                      "Invalid method name: '" + message.name + "'");
+                writeException(out, message, ex);
+        }
+
+        return true;
+    }
+
+    private void processBatch(TProtocol in, TProtocol out, TMessage message) throws TException
+    {
+        List<byte[]> calls = readCalls(in, maxCalls);
+        in.readMessageEnd();
+
+        if (calls == null)
+        {
+            InvalidArgumentException ex = new InvalidArgumentException("A batch may have at most " + maxCalls + " calls");
+            writeResult(out, message, null, ex);
+            return;
+        }
+
+        callsPerBatch.update(calls.size());
+
+        try (Timer.Context ignored = batchTime.time())
+        {
+            writeResult(out, message, run(calls), null);
+        }
+    }
+
+    private <T extends TBase<?, ?>> void processLookup(TProtocol in, TProtocol out, TMessage message, Lookup<T> lookup)
+            throws TException
+    {
+        LookupArgs args = LookupArgs.readFrom(in, BulkLookup.MAX_IDS);
+        in.readMessageEnd();
+
+        if (args.tooManyIds)
+        {
+            InvalidArgumentException ex = new InvalidArgumentException("At most " + BulkLookup.MAX_IDS + " IDs may be looked up at once");
+            writeLookupResult(out, message, null, ex);
+            return;
+        }
+
+        Map<String, T> results = null;
+        TException error = null;
+
+        try
+        {
+            authentication.checkAndEnrichToken(args.token);
+            results = lookup.lookUp(args);
+        }
+        catch (OperationFailedException | InvalidArgumentException | InvalidTokenException ex)
+        {
+            error = ex;
+        }
+        catch (TException ex)
+        {
+            LOG.error("Failed to perform {}", message.name, ex);
+            error = new OperationFailedException(ex.getMessage());
+        }
+
+        writeLookupResult(out, message, results, error);
+    }
+
+    private void processGetMediaIfModified(TProtocol in, TProtocol out, TMessage message) throws TException
+    {
+        GetMediaRequest request = null;
+        String knownValidator = null;
+
+        in.readStructBegin();
+
+        for (TField field = in.readFieldBegin(); field.type != TType.STOP; field = in.readFieldBegin())
+        {
+            if (field.id == MEDIA_REQUEST_FIELD_ID && field.type == TType.STRUCT)
+            {
+                request = new GetMediaRequest();
+                request.read(in);
+            }
+            else if (field.id == KNOWN_VALIDATOR_FIELD_ID && field.type == TType.STRING)
+            {
+                knownValidator = in.readString();
+            }
+            else
+            {
+                TProtocolUtil.skip(in, field.type);
+            }
+
+            in.readFieldEnd();
+        }
+
+        in.readStructEnd();
+        in.readMessageEnd();
+
+        ConditionalMedia media = null;
+        TException error = null;
+
+        try
+        {
+            media = getMediaIfModified(request, knownValidator);
+        }
+        catch (OperationFailedException | InvalidArgumentException | InvalidTokenException | DoesNotExistException ex)
+        {
+            error = ex;
+        }
+        catch (TException ex)
+        {
+            LOG.error("Failed to perform {}", message.name, ex);
+            error = new OperationFailedException(ex.getMessage());
+        }
+
+        out.writeMessageBegin(new TMessage(message.name, TMessageType.REPLY, message.seqid));
+        out.writeStructBegin(new TStruct(message.name + "_result"));
+
+        if (media != null)
+        {
+            out.writeFieldBegin(new TField("success", TType.STRUCT, SUCCESS_FIELD_ID));
+            media.write(out);
+            out.writeFieldEnd();
+        }
+
+        writeError(out, error);
+
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeMessageEnd();
+        out.getTransport().flush();
+    }
+
+    private void processGetDeletionProgress(TProtocol in, TProtocol out, TMessage message) throws TException
+    {
+        UserToken token = null;
+        String applicationId = null;
+
+        in.readStructBegin();
+
+        for (TField field = in.readFieldBegin(); field.type != TType.STOP; field = in.readFieldBegin())
+        {
+            if (field.id == TOKEN_FIELD_ID && field.type == TType.STRUCT)
+            {
+                token = new UserToken();
+                token.read(in);
+            }
+            else if (field.id == APPLICATION_ID_FIELD_ID && field.type == TType.STRING)
+            {
+                applicationId = in.readString();
+            }
+            else
+            {
+                TProtocolUtil.skip(in, field.type);
+            }
+
+            in.readFieldEnd();
+        }
+
+        in.readStructEnd();
+        in.readMessageEnd();
+
+        DeletionProgress progress = null;
+        TException error = null;
+
+        try
+        {
+            progress = getDeletionProgress(token, applicationId);
+        }
+        catch (OperationFailedException | InvalidArgumentException | InvalidTokenException | DoesNotExistException ex)
+        {
+            error = ex;
+        }
+        catch (TException ex)
+        {
+            LOG.error("Failed to perform {}", message.name, ex);
+            error = new OperationFailedException(ex.getMessage());
+        }
+
+        out.writeMessageBegin(new TMessage(message.name, TMessageType.REPLY, message.seqid));
+        out.writeStructBegin(new TStruct(message.name + "_result"));
+
+        if (progress != null)
+        {
+            out.writeFieldBegin(new TField("success", TType.STRUCT, SUCCESS_FIELD_ID));
+            writeProgress(out, progress);
+            out.writeFieldEnd();
+        }
+
+        writeError(out, error);
+
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeMessageEnd();
+        out.getTransport().flush();
+    }
+
+    private DeletionProgress getDeletionProgress(UserToken token, String applicationId) throws TException
+    {
+        checkThat(applicationId)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("applicationId is missing")
+                .is(nonEmptyString());
+
+        authentication.checkAndEnrichToken(token);
+
+        DeletionProgress progress = appDeleter.progressOf(applicationId);
+
+        //Reported just like an unknown deletion, so the caller learns nothing about Applications it did not own
+        checkThat(progress != null && progress.isOwnedBy(token.userId))
+                .throwing(DoesNotExistException.class)
+                .usingMessage("No deletion of Application " + applicationId + " is known")
+                .is(trueStatement());
+
+        return progress;
+    }
+
+    /**
+     * @param request Filled in from the arguments, then passed to the listing.
+     */
+    private <Q extends TBase<?, ?>> void processSummaries(TProtocol in,
+                                                          TProtocol out,
+                                                          TMessage message,
+                                                          Q request,
+                                                          Listing<Q> listing) throws TException
+    {
+        Integer previewLength = null;
+
+        in.readStructBegin();
+
+        for (TField field = in.readFieldBegin(); field.type != TType.STOP; field = in.readFieldBegin())
+        {
+            if (field.id == LIST_REQUEST_FIELD_ID && field.type == TType.STRUCT)
+            {
+                request.read(in);
+            }
+            else if (field.id == PREVIEW_LENGTH_FIELD_ID && field.type == TType.I32)
+            {
+                previewLength = in.readI32();
+            }
+            else
+            {
+                TProtocolUtil.skip(in, field.type);
+            }
+
+            in.readFieldEnd();
+        }
+
+        in.readStructEnd();
+        in.readMessageEnd();
+
+        TBase<?, ?> response = null;
+        TException error = null;
+
+        try
+        {
+            checkThat(previewLength != null && previewLength >= 0)
+                    .throwing(InvalidArgumentException.class)
+                    .usingMessage("previewLength must be >= 0")
+                    .is(trueStatement());
+
+            response = listing.list(request, MessageProjection.summaries(previewLength));
+        }
+        catch (OperationFailedException | InvalidArgumentException | InvalidTokenException | UnauthorizedException ex)
+        {
+            error = ex;
+        }
+        catch (TException ex)
+        {
+            LOG.error("Failed to perform {}", message.name, ex);
+            error = new OperationFailedException(ex.getMessage());
+        }
+
+        out.writeMessageBegin(new TMessage(message.name, TMessageType.REPLY, message.seqid));
+        out.writeStructBegin(new TStruct(message.name + "_result"));
+
+        if (response != null)
+        {
+            out.writeFieldBegin(new TField("success", TType.STRUCT, SUCCESS_FIELD_ID));
+            response.write(out);
+            out.writeFieldEnd();
+        }
+
+        writeError(out, error);
+
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeMessageEnd();
+        out.getTransport().flush();
+    }
+
+    private GetInboxResponse getInboxSummaries(GetInboxRequest request, MessageProjection projection) throws TException
+    {
+        GetInboxResponse response = authentication.getInbox(request);
+
+        if (response == null || !response.isSetMessages())
+        {
+            return response;
+        }
+
+        return new GetInboxResponse(projection.applyTo(response.messages));
+    }
+
+    private GetApplicationMessagesResponse getApplicationMessageSummaries(GetApplicationMessagesRequest request,
+                                                                          MessageProjection projection) throws TException
+    {
+        GetApplicationMessagesResponse response = authentication.getApplicationMessages(request);
+
+        if (response == null || !response.isSetMessages())
+        {
+            return response;
+        }
+
+        return new GetApplicationMessagesResponse(projection.applyTo(response.messages));
+    }
+
+    private ConditionalMedia getMediaIfModified(GetMediaRequest request, String knownValidator) throws TException
+    {
+        checkThat(request)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("request is missing")
+                .is(notNull());
+
+        checkThat(request.mediaId)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("request missing mediaId")
+                .is(nonEmptyString());
+
+        //Both the token check and getMedia need the token verified; once is enough
+        AuthenticationLayer authenticated = new AuthenticationLayer(service,
+                                                                    authenticationService,
+                                                                    TokenVerifications.oncePerBatch());
+        authenticated.checkAndEnrichToken(request.token);
+
+        Dimension size = request.isSetDesiredThumbnailSize() ? request.desiredThumbnailSize : null;
+        String currentValidator = mediaValidators.getValidator(request.mediaId, size);
+
+        if (knownValidator != null && knownValidator.equals(currentValidator))
+        {
+            LOG.debug("Media [{}] of size {} is not modified", request.mediaId, size);
+            return new ConditionalMedia(true, null, currentValidator);
+        }
+
+        GetMediaResponse response = authenticated.getMedia(request);
+
+        return new ConditionalMedia(false, response, mediaValidators.getValidator(request.mediaId, size));
+    }
+
+    private Map<String, Application> getManyApplications(LookupArgs args) throws TException
+    {
+        return bulkLookup.getApplications(args.token.userId, args.ids, args.includeFollowingInfo);
+    }
+
+    private Map<String, User> getManyUsers(LookupArgs args) throws TException
+    {
+        return bulkLookup.getUsers(args.ids);
+    }
+
+    private List<byte[]> run(List<byte[]> calls)
+    {
+        AromaService.Iface authenticated = new AuthenticationLayer(service,
+                                                                   authenticationService,
+                                                                   TokenVerifications.oncePerBatch());
+
+        TProcessor processor = new AromaService.Processor<>(authenticated);
+        String address = ClientAddress.current();
+
+        List<CompletableFuture<byte[]>> replies = new ArrayList<>(calls.size());
+
+        //The last call runs on this thread, which would otherwise sit waiting
+        for (int i = 0; i < calls.size() - 1; ++i)
+        {
+            byte[] call = calls.get(i);
+            replies.add(CompletableFuture.supplyAsync(() -> runCall(processor, call, address), executor));
+        }
+
+        if (!calls.isEmpty())
+        {
+            byte[] lastCall = calls.get(calls.size() - 1);
+            replies.add(CompletableFuture.completedFuture(runCall(processor, lastCall, address)));
+        }
+
+        return replies.stream()
+                      .map(CompletableFuture::join)
+                      .collect(toList());
+    }
+
+    private byte[] runCall(TProcessor processor, byte[] call, String address)
+    {
+        TMemoryBuffer reply = new TMemoryBuffer(256);
+        String previousAddress = ClientAddress.current();
+
+        ClientAddress.set(address);
+
+        try
+        {
+            processor.process(new TBinaryProtocol(new TMemoryInputTransport(call)), protocols.getProtocol(reply));
+        }
+        catch (TException | RuntimeException ex)
+        {
+            //The call could not even be read, so there is no name or sequence ID to reply with
+            LOG.warn("Failed to process call in batch", ex);
+
+            reply = new TMemoryBuffer(64);
+            TApplicationException error = new TApplicationException(TApplicationException.PROTOCOL_ERROR, ex.getMessage());
+
+            try
+            {
+                writeException(new TBinaryProtocol(reply), new TMessage("", TMessageType.EXCEPTION, 0), error);
+            }
+            catch (TException impossible)
+            {
+                LOG.error("Failed to write error to memory", impossible);
+            }
+        }
+        finally
+        {
+            ClientAddress.set(previousAddress);
+        }
+
+        return Arrays.copyOf(reply.getArray(), reply.length());
+    }
+
+    /**
+     * @return The calls in the batch, or {@code null} if there are more than {@code maxCalls} of them. Calls in a
+     *         batch that is too large are skipped over without being copied.
+     */
+    private static List<byte[]> readCalls(TProtocol in, int maxCalls) throws TException
+    {
+        List<byte[]> calls = new ArrayList<>();
+        boolean tooMany = false;
+
+        in.readStructBegin();
+
+        while (true)
+        {
+            TField field = in.readFieldBegin();
+
+            if (field.type == TType.STOP)
+            {
+                break;
+            }
+
+            if (field.id == CALLS_FIELD_ID && field.type == TType.LIST)
+            {
+                TList list = in.readListBegin();
+                tooMany = list.size > maxCalls;
+
+                for (int i = 0; i < list.size; ++i)
+                {
+                    if (tooMany)
+                    {
+                        TProtocolUtil.skip(in, list.elemType);
+                    }
+                    else
+                    {
+                        calls.add(copyOf(in.readBinary()));
+                    }
+                }
+
+                in.readListEnd();
+            }
+            else
+            {
+                TProtocolUtil.skip(in, field.type);
+            }
+
+            in.readFieldEnd();
+        }
+
+        in.readStructEnd();
+
+        return tooMany ? null : calls;
+    }
+
+    /**
+     * The buffer returned by the protocol may be a view of the transport's own, which is reused.
+     */
+    private static byte[] copyOf(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static void writeResult(TProtocol out, TMessage call, List<byte[]> replies, InvalidArgumentException error)
+            throws TException
+    {
+        out.writeMessageBegin(new TMessage(call.name, TMessageType.REPLY, call.seqid));
+        out.writeStructBegin(new TStruct("batch_result"));
+
+        if (replies != null)
+        {
+            out.writeFieldBegin(new TField("success", TType.LIST, SUCCESS_FIELD_ID));
+            out.writeListBegin(new TList(TType.STRING, replies.size()));
+
+            for (byte[] reply : replies)
+            {
+                out.writeBinary(ByteBuffer.wrap(reply));
+            }
+
+            out.writeListEnd();
+            out.writeFieldEnd();
+        }
+
+        if (error != null)
+        {
+            out.writeFieldBegin(new TField("ex1", TType.STRUCT, INVALID_ARGUMENT_FIELD_ID));
+            error.write(out);
+            out.writeFieldEnd();
+        }
+
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeMessageEnd();
+        out.getTransport().flush();
+    }
+
+    private static void writeLookupResult(TProtocol out,
+                                          TMessage call,
+                                          Map<String, ? extends TBase<?, ?>> results,
+                                          TException error) throws TException
+    {
+        out.writeMessageBegin(new TMessage(call.name, TMessageType.REPLY, call.seqid));
+        out.writeStructBegin(new TStruct(call.name + "_result"));
+
+        if (results != null)
+        {
+            out.writeFieldBegin(new TField("success", TType.MAP, SUCCESS_FIELD_ID));
+            out.writeMapBegin(new TMap(TType.STRING, TType.STRUCT, results.size()));
+
+            for (Map.Entry<String, ? extends TBase<?, ?>> result : results.entrySet())
+            {
+                out.writeString(result.getKey());
+                result.getValue().write(out);
+            }
+
+            out.writeMapEnd();
+            out.writeFieldEnd();
+        }
+
+        writeError(out, error);
+
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeMessageEnd();
+        out.getTransport().flush();
+    }
+
+    private static void writeProgress(TProtocol out, DeletionProgress progress) throws TException
+    {
+        out.writeStructBegin(new TStruct("DeletionProgress"));
+
+        out.writeFieldBegin(new TField("applicationId", TType.STRING, (short) 1));
+        out.writeString(progress.getApplicationId());
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("stage", TType.STRING, (short) 2));
+        out.writeString(progress.getStage().name());
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("done", TType.BOOL, (short) 3));
+        out.writeBool(progress.isDone());
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("followersRemoved", TType.I32, (short) 4));
+        out.writeI32(progress.getFollowersRemoved());
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("followers", TType.I32, (short) 5));
+        out.writeI32(progress.getFollowers());
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("usersNotified", TType.I32, (short) 6));
+        out.writeI32(progress.getUsersNotified());
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("usersToNotify", TType.I32, (short) 7));
+        out.writeI32(progress.getUsersToNotify());
+        out.writeFieldEnd();
+
+        out.writeFieldStop();
+        out.writeStructEnd();
+    }
+
+    /**
+     * Writes one of the exceptions declared by the calls other than {@code batch}, which all declare them in the same
+     * order. The fourth is a {@code DoesNotExistException}, or an {@code UnauthorizedException} for
+     * {@code getApplicationMessageSummaries}.
+     */
+    private static void writeError(TProtocol out, TException error) throws TException
+    {
+        if (error == null)
+        {
+            return;
+        }
+
+        short fieldId = errorFieldOf(error);
+
+        out.writeFieldBegin(new TField("ex" + fieldId, TType.STRUCT, fieldId));
+        ((TBase<?, ?>) error).write(out);
+        out.writeFieldEnd();
+    }
+
+    private static short errorFieldOf(TException error)
+    {
+        if (error instanceof InvalidArgumentException)
+        {
+            return 2;
+        }
+
+        if (error instanceof InvalidTokenException)
+        {
+            return 3;
+        }
+
+        if (error instanceof DoesNotExistException || error instanceof UnauthorizedException)
+        {
+            return 4;
+        }
+
+        return 1;
+    }
+
+    private static void writeException(TProtocol out, TMessage call, TApplicationException error) throws TException
+    {
+        out.writeMessageBegin(new TMessage(call.name, TMessageType.EXCEPTION, call.seqid));
+        error.write(out);
+        out.writeMessageEnd();
+        out.getTransport().flush();
+    }
+
+    /**
+     * The result of {@code getMediaIfModified}.
+     */
+    private static final class ConditionalMedia
+    {
+
+        private final boolean notModified;
+        private final GetMediaResponse response;
+        private final String validator;
+
+        ConditionalMedia(boolean notModified, GetMediaResponse response, String validator)
+        {
+            this.notModified = notModified;
+            this.response = response;
+            this.validator = validator;
+        }
+
+        void write(TProtocol out) throws TException
+        {
+            out.writeStructBegin(new TStruct("ConditionalMedia"));
+
+            out.writeFieldBegin(new TField("notModified", TType.BOOL, (short) 1));
+            out.writeBool(notModified);
+            out.writeFieldEnd();
+
+            if (response != null)
+            {
+                out.writeFieldBegin(new TField("response", TType.STRUCT, (short) 2));
+                response.write(out);
+                out.writeFieldEnd();
+            }
+
+            if (validator != null)
+            {
+                out.writeFieldBegin(new TField("validator", TType.STRING, (short) 3));
+                out.writeString(validator);
+                out.writeFieldEnd();
+            }
+
+            out.writeFieldStop();
+            out.writeStructEnd();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Listing<Q>
+    {
+        TBase<?, ?> list(Q request, MessageProjection projection) throws TException;
+    }
+
+    @FunctionalInterface
+    private interface Lookup<T>
+    {
+        Map<String, T> lookUp(LookupArgs args) throws TException;
+    }
+
+    /**
+     * The arguments shared by {@code getManyApplications} and {@code getManyUsers}.
+     */
+    private static final class LookupArgs
+    {
+
+        private UserToken token;
+        private List<String> ids = Collections.emptyList();
+        private boolean includeFollowingInfo;
+        private boolean tooManyIds;
+
+        /**
+         * IDs past {@code maxIds} are skipped over without being read; {@link #tooManyIds} is set instead.
+         */
+        static LookupArgs readFrom(TProtocol in, int maxIds) throws TException
+        {
+            LookupArgs args = new LookupArgs();
+
+            in.readStructBegin();
+
+            while (true)
+            {
+                TField field = in.readFieldBegin();
+
+                if (field.type == TType.STOP)
+                {
+                    break;
+                }
+
+                if (field.id == TOKEN_FIELD_ID && field.type == TType.STRUCT)
+                {
+                    args.token = new UserToken();
+                    args.token.read(in);
+                }
+                else if (field.id == IDS_FIELD_ID && field.type == TType.LIST)
+                {
+                    TList list = in.readListBegin();
+                    args.tooManyIds = list.size > maxIds;
+                    args.ids = args.tooManyIds ? Collections.emptyList() : new ArrayList<>(list.size);
+
+                    for (int i = 0; i < list.size; ++i)
+                    {
+                        if (args.tooManyIds)
+                        {
+                            TProtocolUtil.skip(in, list.elemType);
+                        }
+                        else
+                        {
+                            args.ids.add(in.readString());
+                        }
+                    }
+
+                    in.readListEnd();
+                }
+                else if (field.id == INCLUDE_FOLLOWING_INFO_FIELD_ID && field.type == TType.BOOL)
+                {
+                    args.includeFollowingInfo = in.readBool();
+                }
+                else
+                {
+                    TProtocolUtil.skip(in, field.type);
+                }
+
+                in.readFieldEnd();
+            }
+
+            in.readStructEnd();
+
+            return args;
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service;
+
+
+import tech.sirwellington.alchemy.annotations.access.Internal;
+import tech.sirwellington.alchemy.annotations.access.NonInstantiable;
+import tech.sirwellington.alchemy.annotations.arguments.Optional;
+
+/**
+ * Holds the network address of the client whose request the current thread is serving.
+ * <p>
+ * Thrift does not pass the connection to the service, so the server records it here
+ * around each call. It is {@code null} whenever the service is called in-process.
+ *
+ * @author SirWellington
+ */
+@Internal
+@NonInstantiable
+public final class ClientAddress
+{
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ClientAddress() throws IllegalAccessException
+    {
+        throw new IllegalAccessException("cannot instantiate");
+    }
+
+    /**
+     * @return The address of the current client, or {@code null} if it is unknown.
+     */
+    public static String current()
+    {
+        return CURRENT.get();
+    }
+
+    public static void set(@Optional String address)
+    {
+        if (address == null)
+        {
+            CURRENT.remove();
+        }
+        else
+        {
+            CURRENT.set(address);
+        }
+    }
+
+    public static void clear()
+    {
+        CURRENT.remove();
+    }
+
+}
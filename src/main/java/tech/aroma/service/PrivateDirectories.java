@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Set;
+
+import tech.sirwellington.alchemy.annotations.access.Internal;
+import tech.sirwellington.alchemy.annotations.access.NonInstantiable;
+
+import static java.nio.file.attribute.PosixFilePermissions.fromString;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+/**
+ * Creates the directories the service keeps its local state in, such as caches, journals, and checkpoints.
+ * <p>
+ * That state can hold private data, so each directory is made readable and writable by its owner alone,
+ * including one that already existed with looser permissions.
+ *
+ * @author SirWellington
+ */
+@Internal
+@NonInstantiable
+public final class PrivateDirectories
+{
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = fromString("rwx------");
+
+    private PrivateDirectories() throws IllegalAccessException
+    {
+        throw new IllegalAccessException("cannot instantiate");
+    }
+
+    /**
+     * Creates a directory, and any missing parents, that only its owner can access.
+     *
+     * @return The directory.
+     * @throws IOException If the directory cannot be created or its permissions cannot be restricted.
+     */
+    public static File create(File directory) throws IOException
+    {
+        checkThat(directory).is(notNull());
+
+        Path path = directory.toPath();
+        Files.createDirectories(path);
+
+        if (!Files.isDirectory(path))
+        {
+            throw new IOException("Not a directory: " + directory);
+        }
+
+        try
+        {
+            Files.setPosixFilePermissions(path, OWNER_ONLY);
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            restrictWithoutPosix(directory);
+        }
+
+        return directory;
+    }
+
+    private static void restrictWithoutPosix(File directory) throws IOException
+    {
+        boolean restricted = directory.setReadable(false, false) && directory.setReadable(true, true)
+                             && directory.setWritable(false, false) && directory.setWritable(true, true)
+                             && directory.setExecutable(false, false) && directory.setExecutable(true, true);
+
+        if (!restricted)
+        {
+            throw new IOException("Could not restrict access to: " + directory);
+        }
+    }
+
+}
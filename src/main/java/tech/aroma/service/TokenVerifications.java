@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service;
+
+import java.util.concurrent.*;
+
+import org.apache.thrift.TException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+/**
+ * Decides how often the same token is checked with the Authentication Service.
+ * <p>
+ * Normally every call checks its token. Within a batch, each distinct check is made once and its outcome, success
+ * or failure, is shared by every call in the batch that needs it.
+ *
+ * @author SirWellington
+ */
+@Internal
+abstract class TokenVerifications
+{
+
+    @FunctionalInterface
+    interface Check<T>
+    {
+        T call() throws TException;
+    }
+
+    /**
+     * @param request The request sent to the Authentication Service, which identifies the check.
+     * @param check   Makes the check.
+     * @return The result of the check.
+     * @throws TException If the check fails.
+     */
+    abstract <T> T verify(Object request, Check<T> check) throws TException;
+
+    static TokenVerifications everyCall()
+    {
+        return EveryCall.INSTANCE;
+    }
+
+    /**
+     * @return Verifications that remember their outcomes. Meant to last only as long as a single batch.
+     */
+    static TokenVerifications oncePerBatch()
+    {
+        return new OncePerBatch();
+    }
+
+    private static final class EveryCall extends TokenVerifications
+    {
+
+        private static final EveryCall INSTANCE = new EveryCall();
+
+        @Override
+        <T> T verify(Object request, Check<T> check) throws TException
+        {
+            return check.call();
+        }
+    }
+
+    private static final class OncePerBatch extends TokenVerifications
+    {
+
+        private final ConcurrentMap<Object, CompletableFuture<Object>> outcomes = new ConcurrentHashMap<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <T> T verify(Object request, Check<T> check) throws TException
+        {
+            CompletableFuture<Object> outcome = new CompletableFuture<>();
+            CompletableFuture<Object> existing = outcomes.putIfAbsent(request, outcome);
+
+            if (existing == null)
+            {
+                try
+                {
+                    T result = check.call();
+                    outcome.complete(result);
+                    return result;
+                }
+                catch (Throwable ex)
+                {
+                    //Completed either way, so that no other call in the batch is left waiting on it
+                    outcome.completeExceptionally(ex);
+                    throw ex;
+                }
+            }
+
+            try
+            {
+                return (T) existing.join();
+            }
+            catch (CompletionException ex)
+            {
+                Throwable cause = ex.getCause();
+
+                if (cause instanceof TException)
+                {
+                    throw (TException) cause;
+                }
+
+                if (cause instanceof Error)
+                {
+                    throw (Error) cause;
+                }
+
+                throw (RuntimeException) cause;
+            }
+        }
+    }
+
+}
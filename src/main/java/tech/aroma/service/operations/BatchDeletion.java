@@ -0,0 +1,236 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations;
+
+import java.util.*;
+import java.util.concurrent.*;
+import javax.inject.Inject;
+
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.google.common.collect.Lists.partition;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+
+/**
+ * Deletes a large number of IDs in chunks, with a bounded number of chunks in flight at once.
+ * <p>
+ * Each chunk is handed to a {@link ChunkDeleter}, so a repository that can delete many keys in a single call
+ * would pay one round trip per chunk instead of one per ID. None of the repositories can yet, so callers
+ * adapt a single-key delete with {@link #eachOf(SingleDeleter)}, which still makes one call per ID; for them,
+ * chunks only cap how many calls are in flight at once. Failures are never swallowed; every ID ends up
+ * either {@linkplain Result#getDeleted() deleted} or {@linkplain Result#getFailed() failed}.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class BatchDeletion
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(BatchDeletion.class);
+
+    static final int DEFAULT_CHUNK_SIZE = 50;
+    static final int DEFAULT_PARALLELISM = 4;
+
+    private final Executor executor;
+    private final int chunkSize;
+    private final int parallelism;
+
+    @Inject
+    BatchDeletion(ExecutorService executor)
+    {
+        this(executor, DEFAULT_CHUNK_SIZE, DEFAULT_PARALLELISM);
+    }
+
+    BatchDeletion(Executor executor, int chunkSize, int parallelism)
+    {
+        checkThat(executor).is(notNull());
+
+        checkThat(chunkSize, parallelism)
+                .usingMessage("chunk size and parallelism must be > 0")
+                .are(greaterThan(0));
+
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Deletes all of the IDs, blocking until every chunk has been attempted.
+     * <p>
+     * The calling thread works through chunks alongside the executor, so a single chunk never
+     * leaves the caller's thread.
+     */
+    Result deleteAll(Collection<String> ids, ChunkDeleter deleter)
+    {
+        checkThat(ids, deleter).are(notNull());
+
+        List<String> uniqueIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Queue<List<String>> chunks = new ConcurrentLinkedQueue<>(partition(uniqueIds, chunkSize));
+        Result result = new Result();
+
+        Runnable worker = () ->
+        {
+            List<String> chunk;
+
+            while ((chunk = chunks.poll()) != null)
+            {
+                deleteChunk(chunk, deleter, result);
+            }
+        };
+
+        int helpers = Math.min(parallelism, chunks.size()) - 1;
+        List<CompletableFuture<Void>> running = new ArrayList<>();
+
+        for (int i = 0; i < helpers; ++i)
+        {
+            try
+            {
+                running.add(CompletableFuture.runAsync(worker, executor));
+            }
+            catch (RejectedExecutionException ex)
+            {
+                LOG.debug("Executor is saturated. Continuing batch deletion with {} workers", i + 1);
+                break;
+            }
+        }
+
+        worker.run();
+        running.forEach(CompletableFuture::join);
+
+        return result;
+    }
+
+    private void deleteChunk(List<String> chunk, ChunkDeleter deleter, Result result)
+    {
+        Collection<String> failed;
+
+        try
+        {
+            failed = deleter.deleteAll(chunk);
+        }
+        catch (Exception ex)
+        {
+            LOG.warn("Failed to delete chunk of {} IDs", chunk.size(), ex);
+            failed = chunk;
+        }
+
+        for (String id : chunk)
+        {
+            if (failed != null && failed.contains(id))
+            {
+                result.failed.add(id);
+            }
+            else
+            {
+                result.deleted.add(id);
+            }
+        }
+    }
+
+    /**
+     * Adapts a single-key delete into a {@link ChunkDeleter}, for repositories that have no multi-key delete.
+     * Each ID that fails is reported as failed, without affecting the rest of the chunk.
+     */
+    static ChunkDeleter eachOf(SingleDeleter deleter)
+    {
+        checkThat(deleter).is(notNull());
+
+        return ids ->
+        {
+            List<String> failed = new ArrayList<>();
+
+            for (String id : ids)
+            {
+                try
+                {
+                    deleter.delete(id);
+                }
+                catch (TException ex)
+                {
+                    LOG.warn("Failed to delete [{}]", id, ex);
+                    failed.add(id);
+                }
+            }
+
+            return failed;
+        };
+    }
+
+    @FunctionalInterface
+    interface ChunkDeleter
+    {
+
+        /**
+         * Deletes a chunk of IDs.
+         *
+         * @return The IDs in the chunk that could not be deleted. If this throws, the entire chunk is
+         *         considered failed.
+         */
+        Collection<String> deleteAll(List<String> ids) throws TException;
+    }
+
+    @FunctionalInterface
+    interface SingleDeleter
+    {
+
+        void delete(String id) throws TException;
+    }
+
+    static final class Result
+    {
+
+        private final Set<String> deleted = ConcurrentHashMap.newKeySet();
+        private final Set<String> failed = ConcurrentHashMap.newKeySet();
+
+        Set<String> getDeleted()
+        {
+            return Collections.unmodifiableSet(deleted);
+        }
+
+        Set<String> getFailed()
+        {
+            return Collections.unmodifiableSet(failed);
+        }
+
+        int getDeletedCount()
+        {
+            return deleted.size();
+        }
+
+        int getFailedCount()
+        {
+            return failed.size();
+        }
+
+        boolean hasFailures()
+        {
+            return !failed.isEmpty();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Result{" + "deleted=" + deleted.size() + ", failed=" + failed.size() + '}';
+        }
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations;
+
+
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.nonEmptyString;
+
+/**
+ * A fixed pool of threads in front of a short queue, for expensive work that must never pile up.
+ * <p>
+ * Callers decide for themselves whether a task may be admitted, such as against a budget or a per-caller
+ * limit, and hand over a {@code release} that gives back what admission took. The pool runs that release
+ * exactly once: when the task finishes, or when the task is abandoned before it starts because the queue
+ * was full, the caller timed out, or the caller was interrupted. Nothing waits for room; a task that does not
+ * fit is rejected immediately with an {@link OperationFailedException}, so callers can fall back or retry.
+ *
+ * @author SirWellington
+ */
+@Internal
+public final class BoundedPool
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(BoundedPool.class);
+
+    private final String name;
+    private final String busyMessage;
+    private final long timeoutMillis;
+    private final ExecutorService executor;
+
+    private final Timer queueTime;
+    private final Timer runTime;
+    private final Counter rejections;
+
+    /**
+     * @param name          What the pool does, such as "Image processing". Used in logs and to name its threads.
+     * @param threads       The number of tasks that run at once.
+     * @param maxQueued     The number of tasks that may wait for a thread.
+     * @param timeoutMillis How long {@link #execute(String, Callable, Runnable) } waits for a task.
+     * @param busyMessage   The message given to callers when a task is rejected or times out.
+     * @param queueTime     Times how long tasks wait for a thread.
+     * @param runTime       Times how long tasks run.
+     * @param rejections    Counts the tasks turned away. Callers may count their own rejections here as well.
+     */
+    public BoundedPool(String name,
+                       int threads,
+                       int maxQueued,
+                       long timeoutMillis,
+                       String busyMessage,
+                       Timer queueTime,
+                       Timer runTime,
+                       Counter rejections)
+    {
+        checkThat(name, busyMessage)
+                .are(nonEmptyString());
+
+        checkThat(threads, maxQueued)
+                .usingMessage("pool limits must be > 0")
+                .are(greaterThan(0));
+
+        checkThat(timeoutMillis)
+                .usingMessage("timeout must be > 0")
+                .is(greaterThan(0L));
+
+        checkThat(queueTime, runTime, rejections)
+                .are(notNull());
+
+        this.name = name;
+        this.busyMessage = busyMessage;
+        this.timeoutMillis = timeoutMillis;
+        this.queueTime = queueTime;
+        this.runTime = runTime;
+        this.rejections = rejections;
+
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat(name.toLowerCase(Locale.ROOT).replace(' ', '-') + "-%d")
+                .setDaemon(true)
+                .build();
+
+        this.executor = new ThreadPoolExecutor(threads,
+                                               threads,
+                                               0L,
+                                               MILLISECONDS,
+                                               new ArrayBlockingQueue<>(maxQueued),
+                                               threadFactory,
+                                               new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Runs an admitted task on the pool, blocking until it completes.
+     *
+     * @param description Describes the task in logs, such as the input it works on.
+     * @param task        The work to perform.
+     * @param release     Gives back whatever admitting the task took.
+     * @return The result of the task.
+     * @throws OperationFailedException If the queue is full, or the task times out.
+     * @throws TException               If the task itself fails.
+     */
+    public <T> T execute(String description, Callable<T> task, Runnable release) throws TException
+    {
+        AdmittedTask<T> admitted = new AdmittedTask<>(task, release);
+        Future<T> future = submit(description, admitted);
+
+        try
+        {
+            return future.get(timeoutMillis, MILLISECONDS);
+        }
+        catch (TimeoutException ex)
+        {
+            future.cancel(true);
+            admitted.abandon();
+            LOG.warn("{} of {} timed out after {}ms", name, description, timeoutMillis);
+            throw new OperationFailedException(busyMessage);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            admitted.abandon();
+            throw new OperationFailedException("Interrupted during " + name.toLowerCase(Locale.ROOT));
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof TException)
+            {
+                throw (TException) cause;
+            }
+
+            LOG.error("{} of {} failed", name, description, cause);
+            throw new OperationFailedException(name + " failed: " + cause.getMessage());
+        }
+    }
+
+    /**
+     * Queues an admitted task on the pool without waiting for it. A failure of the task is logged,
+     * since there is no caller left to receive it.
+     *
+     * @param description Describes the task in logs, such as the input it works on.
+     * @param task        The work to perform.
+     * @param release     Gives back whatever admitting the task took.
+     * @throws OperationFailedException If the queue is full.
+     */
+    public void executeLater(String description, Callable<?> task, Runnable release) throws OperationFailedException
+    {
+        Callable<Object> logged = () ->
+        {
+            try
+            {
+                return task.call();
+            }
+            catch (Exception ex)
+            {
+                LOG.error("{} of {} failed", name, description, ex);
+                return null;
+            }
+        };
+
+        submit(description, new AdmittedTask<>(logged, release));
+    }
+
+    private <T> Future<T> submit(String description, AdmittedTask<T> admitted) throws OperationFailedException
+    {
+        try
+        {
+            return executor.submit(admitted);
+        }
+        catch (RejectedExecutionException ex)
+        {
+            admitted.abandon();
+            rejections.inc();
+            LOG.debug("{} queue is full. Rejecting {}", name, description);
+            throw new OperationFailedException(busyMessage);
+        }
+    }
+
+    /**
+     * Holds its admission until the task either runs or is abandoned before it starts.
+     */
+    private class AdmittedTask<T> implements Callable<T>
+    {
+
+        private final Callable<T> task;
+        private final Runnable release;
+        private final long timeOfAdmission = System.nanoTime();
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+        AdmittedTask(Callable<T> task, Runnable release)
+        {
+            this.task = task;
+            this.release = release;
+        }
+
+        @Override
+        public T call() throws Exception
+        {
+            if (!claimed.compareAndSet(false, true))
+            {
+                //Abandoned by the caller before it could start
+                return null;
+            }
+
+            queueTime.update(System.nanoTime() - timeOfAdmission, NANOSECONDS);
+
+            try (Timer.Context ignored = runTime.time())
+            {
+                return task.call();
+            }
+            finally
+            {
+                release.run();
+            }
+        }
+
+        void abandon()
+        {
+            if (claimed.compareAndSet(false, true))
+            {
+                release.run();
+            }
+        }
+    }
+
+}
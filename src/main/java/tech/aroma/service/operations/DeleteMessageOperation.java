@@ -24,10 +24,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sir.wellington.alchemy.collections.sets.Sets;
 import tech.aroma.data.*;
+import tech.aroma.service.operations.activity.ActivityFeeds;
 import tech.aroma.thrift.Application;
 import tech.aroma.thrift.User;
 import tech.aroma.thrift.events.*;
 import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
 import tech.aroma.thrift.exceptions.UnauthorizedException;
 import tech.aroma.thrift.service.DeleteMessageRequest;
 import tech.aroma.thrift.service.DeleteMessageResponse;
@@ -39,6 +41,8 @@ import static java.time.Instant.now;
 import static java.util.stream.Collectors.toList;
 import static tech.aroma.data.assertions.RequestAssertions.validApplicationId;
 import static tech.aroma.data.assertions.RequestAssertions.validMessageId;
+import static tech.aroma.service.operations.BatchDeletion.eachOf;
+import static tech.aroma.service.operations.activity.EventReferences.referenceTo;
 import static tech.sirwellington.alchemy.arguments.Arguments.*;
 import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
 import static tech.sirwellington.alchemy.arguments.assertions.CollectionAssertions.elementInCollection;
@@ -54,27 +58,30 @@ final class DeleteMessageOperation implements ThriftOperation<DeleteMessageReque
 
     private final static Logger LOG = LoggerFactory.getLogger(DeleteMessageOperation.class);
 
-    private final ActivityRepository activityRepo;
+    private final ActivityFeeds activityFeeds;
     private final ApplicationRepository appRepo;
     private final FollowerRepository followerRepo;
     private final MessageRepository messageRepo;
     private final UserRepository userRepo;
+    private final BatchDeletion batchDeletion;
 
     @Inject
-    DeleteMessageOperation(ActivityRepository activityRepo,
+    DeleteMessageOperation(ActivityFeeds activityFeeds,
                            ApplicationRepository appRepo,
                            FollowerRepository followerRepo,
                            MessageRepository messageRepo,
-                           UserRepository userRepo)
+                           UserRepository userRepo,
+                           BatchDeletion batchDeletion)
     {
-        checkThat(activityRepo, appRepo, followerRepo, messageRepo, userRepo)
+        checkThat(activityFeeds, appRepo, followerRepo, messageRepo, userRepo, batchDeletion)
                 .are(notNull());
 
-        this.activityRepo = activityRepo;
+        this.activityFeeds = activityFeeds;
         this.appRepo = appRepo;
         this.followerRepo = followerRepo;
         this.messageRepo = messageRepo;
         this.userRepo = userRepo;
+        this.batchDeletion = batchDeletion;
     }
 
     @Override
@@ -144,7 +151,7 @@ final class DeleteMessageOperation implements ThriftOperation<DeleteMessageReque
         };
     }
 
-    private int deleteWithOptions(DeleteMessageRequest request)
+    private int deleteWithOptions(DeleteMessageRequest request) throws TException
     {
         String appId = request.applicationId;
 
@@ -160,11 +167,22 @@ final class DeleteMessageOperation implements ThriftOperation<DeleteMessageReque
             messagesToDelete.addAll(request.messageIds);
         }
 
-        messagesToDelete.parallelStream()
-                        .forEach(msg -> this.deleteMessage(appId, msg));
-        LOG.debug("Deleted {} messages for App [{]]", messagesToDelete.size(), appId);
+        BatchDeletion.Result result = batchDeletion.deleteAll(messagesToDelete,
+                                                              eachOf(msgId -> messageRepo.deleteMessage(appId, msgId)));
 
-        return messagesToDelete.size();
+        if (result.hasFailures())
+        {
+            LOG.error("Could not delete {} of {} messages for App [{}]", result.getFailedCount(), messagesToDelete.size(), appId);
+
+            if (result.getDeletedCount() == 0)
+            {
+                throw new OperationFailedException("Could not delete any of " + messagesToDelete.size() + " messages");
+            }
+        }
+
+        LOG.debug("Deleted {} messages for App [{}]", result.getDeletedCount(), appId);
+
+        return result.getDeletedCount();
     }
 
     private int deleteAllMessages(String appId) throws TException
@@ -176,28 +194,16 @@ final class DeleteMessageOperation implements ThriftOperation<DeleteMessageReque
         return count.intValue();
     }
 
-    private void deleteMessage(String appId, String messageId)
-    {
-        try
-        {
-            messageRepo.deleteMessage(appId, messageId);
-        }
-        catch (TException ex)
-        {
-            //Ignoring this is not good long-term behavior
-            LOG.error("Could not delete message with ID [{}] for App [{}]", messageId, appId, ex);
-        }
-    }
-
     private void saveActivityThatAppMessagesDeletedBy(String userId, Application app, int count) throws TException
     {
         User userDeleting = userRepo.getUser(userId);
 
         Event event = createEventRememberingAppMessagesDeleted(userDeleting, app, count);
 
-        getUsersToNotifyFor(app)
-                .parallelStream()
-                .forEach(user -> this.tryToSaveEvent(event, user));
+        List<User> owners = getOwnersOf(app);
+        List<User> followers = followerRepo.getApplicationFollowers(app.applicationId);
+
+        activityFeeds.publish(event, app.applicationId, owners, followers != null ? followers : Collections.emptyList());
     }
 
     private Event createEventRememberingAppMessagesDeleted(User actor, Application app, int totalMessagesDeleted)
@@ -209,9 +215,9 @@ final class DeleteMessageOperation implements ThriftOperation<DeleteMessageReque
         EventType eventType = createEventTypeFor(messagesDeleted);
 
         Event event = new Event()
-                .setActor(actor)
+                .setActor(referenceTo(actor))
                 .setUserIdOfActor(actor.userId)
-                .setApplication(app)
+                .setApplication(referenceTo(app))
                 .setApplicationId(app.applicationId)
                 .setTimestamp(now().toEpochMilli())
                 .setEventId(one(uuids))
@@ -228,18 +234,12 @@ final class DeleteMessageOperation implements ThriftOperation<DeleteMessageReque
         return eventType;
     }
 
-    private Set<User> getUsersToNotifyFor(Application app) throws TException
+    private List<User> getOwnersOf(Application app)
     {
-        String appId = app.applicationId;
-
-        List<User> owners = app.owners.stream()
-                                      .map(this::toUser)
-                                      .filter(Objects::nonNull)
-                                      .collect(toList());
-
-        List<User> followers = followerRepo.getApplicationFollowers(appId);
-
-        return Sets.unionOf(owners, followers);
+        return app.owners.stream()
+                         .map(this::toUser)
+                         .filter(Objects::nonNull)
+                         .collect(toList());
     }
 
     private User toUser(String userId)
@@ -255,16 +255,4 @@ final class DeleteMessageOperation implements ThriftOperation<DeleteMessageReque
         }
     }
 
-    private void tryToSaveEvent(Event event, User forUser)
-    {
-        try
-        {
-            activityRepo.saveEvent(event, forUser);
-        }
-        catch (Exception ex)
-        {
-            LOG.error("Failed to save Event {} for User {}", event, forUser, ex);
-        }
-    }
-
 }
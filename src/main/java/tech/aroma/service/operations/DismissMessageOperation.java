@@ -26,13 +26,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sir.wellington.alchemy.collections.sets.Sets;
 import tech.aroma.data.InboxRepository;
+import tech.aroma.service.operations.inbox.InboxCache;
 import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
 import tech.aroma.thrift.service.DismissMessageRequest;
 import tech.aroma.thrift.service.DismissMessageResponse;
 import tech.sirwellington.alchemy.arguments.AlchemyAssertion;
 import tech.sirwellington.alchemy.thrift.operations.ThriftOperation;
 
 import static tech.aroma.data.assertions.RequestAssertions.validMessageId;
+import static tech.aroma.service.operations.BatchDeletion.eachOf;
 import static tech.sirwellington.alchemy.arguments.Arguments.*;
 import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
 import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.*;
@@ -45,13 +48,17 @@ final class DismissMessageOperation implements ThriftOperation<DismissMessageReq
 
     private final static Logger LOG = LoggerFactory.getLogger(DismissMessageOperation.class);
     private final InboxRepository inboxRepo;
+    private final InboxCache inboxCache;
+    private final BatchDeletion batchDeletion;
 
     @Inject
-    DismissMessageOperation(InboxRepository inboxRepo)
+    DismissMessageOperation(InboxRepository inboxRepo, InboxCache inboxCache, BatchDeletion batchDeletion)
     {
-        checkThat(inboxRepo).is(notNull());
+        checkThat(inboxRepo, inboxCache, batchDeletion).are(notNull());
 
         this.inboxRepo = inboxRepo;
+        this.inboxCache = inboxCache;
+        this.batchDeletion = batchDeletion;
     }
 
     @Override
@@ -72,8 +79,7 @@ final class DismissMessageOperation implements ThriftOperation<DismissMessageReq
         {
             Set<String> messageIds = getAllMessageIdsFrom(request);
 
-            deleteMessages(userId, messageIds);
-            return new DismissMessageResponse().setMessagesDismissed(messageIds.size());
+            count = deleteMessages(userId, messageIds);
         }
 
         return new DismissMessageResponse().setMessagesDismissed((int) count);
@@ -114,6 +120,7 @@ final class DismissMessageOperation implements ThriftOperation<DismissMessageReq
     {
         long count = inboxRepo.countInboxForUser(userId);
         inboxRepo.deleteAllMessagesForUser(userId);
+        inboxCache.cleared(userId);
 
         LOG.debug("Deleted {} messages from Inbox of User [{}]", count, userId);
         return count;
@@ -130,21 +137,23 @@ final class DismissMessageOperation implements ThriftOperation<DismissMessageReq
                      .collect(Collectors.toSet());
     }
 
-    private void deleteMessages(String userId, Set<String> messageIds)
+    private int deleteMessages(String userId, Set<String> messageIds) throws TException
     {
-        messageIds.parallelStream()
-                  .forEach(msgId -> this.deleteMessage(userId, msgId));
-    }
+        BatchDeletion.Result result = batchDeletion.deleteAll(messageIds,
+                                                              eachOf(msgId -> inboxRepo.deleteMessageForUser(userId, msgId)));
 
-    private void deleteMessage(String userId, String msgId)
-    {
-        try
-        {
-            inboxRepo.deleteMessageForUser(userId, msgId);
-        }
-        catch (Exception ex)
+        inboxCache.dismissed(userId, result.getDeleted());
+
+        if (result.hasFailures())
         {
-            LOG.warn("Failed to delete message {} for user {}", msgId, userId, ex);
+            LOG.warn("Could not dismiss {} of {} messages for User [{}]", result.getFailedCount(), messageIds.size(), userId);
+
+            if (result.getDeletedCount() == 0)
+            {
+                throw new OperationFailedException("Could not dismiss any of " + messageIds.size() + " messages");
+            }
         }
+
+        return result.getDeletedCount();
     }
 }
@@ -34,6 +34,7 @@ import tech.sirwellington.alchemy.arguments.AlchemyAssertion;
 import tech.sirwellington.alchemy.thrift.operations.ThriftOperation;
 
 import static java.time.Instant.now;
+import static tech.aroma.service.operations.activity.EventReferences.referenceTo;
 import static tech.sirwellington.alchemy.arguments.Arguments.*;
 import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
 import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.*;
@@ -125,9 +126,9 @@ final class FollowApplicationOperation implements ThriftOperation<FollowApplicat
         EventType eventType = createEventTypeFor(follower, app);
 
         return new Event()
-                .setApplication(app)
+                .setApplication(referenceTo(app))
                 .setApplicationId(app.applicationId)
-                .setActor(follower)
+                .setActor(referenceTo(follower))
                 .setUserIdOfActor(follower.userId)
                 .setTimestamp(now().toEpochMilli())
                 .setEventId(one(uuids))
@@ -22,8 +22,9 @@ import javax.inject.Inject;
 import org.apache.thrift.TException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import tech.aroma.data.ActivityRepository;
 import tech.aroma.data.UserRepository;
+import tech.aroma.service.operations.activity.ActivityFeeds;
+import tech.aroma.service.operations.activity.EventHydrator;
 import tech.aroma.thrift.User;
 import tech.aroma.thrift.events.Event;
 import tech.aroma.thrift.exceptions.InvalidArgumentException;
@@ -44,17 +45,19 @@ final class GetActivityOperation implements ThriftOperation<GetActivityRequest,
 
     private final static Logger LOG = LoggerFactory.getLogger(GetActivityOperation.class);
 
-    private final ActivityRepository activityRepo;
+    private final ActivityFeeds activityFeeds;
     private final UserRepository userRepo;
+    private final EventHydrator eventHydrator;
 
     @Inject
-    GetActivityOperation(ActivityRepository activityRepo, UserRepository userRepo)
+    GetActivityOperation(ActivityFeeds activityFeeds, UserRepository userRepo, EventHydrator eventHydrator)
     {
-        checkThat(activityRepo, userRepo)
+        checkThat(activityFeeds, userRepo, eventHydrator)
                 .are(notNull());
 
-        this.activityRepo = activityRepo;
+        this.activityFeeds = activityFeeds;
         this.userRepo = userRepo;
+        this.eventHydrator = eventHydrator;
     }
 
     @Override
@@ -67,11 +70,11 @@ final class GetActivityOperation implements ThriftOperation<GetActivityRequest,
         String userId = request.token.userId;
         User user = new User().setUserId(userId);
 
-        List<Event> events = activityRepo.getAllEventsFor(user);
+        List<Event> events = activityFeeds.getActivityFor(user);
 
         LOG.debug("Found {} events for User {}", events.size(), user);
 
-        return new GetActivityResponse(events);
+        return new GetActivityResponse(eventHydrator.hydrate(events));
     }
 
     private AlchemyAssertion<GetActivityRequest> good()
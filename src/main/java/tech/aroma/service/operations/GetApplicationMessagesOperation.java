@@ -24,6 +24,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sir.wellington.alchemy.collections.sets.Sets;
 import tech.aroma.data.*;
+import tech.aroma.service.AromaAnnotations.MessageListProjection;
+import tech.aroma.service.operations.retention.RetentionSweeper;
 import tech.aroma.thrift.Application;
 import tech.aroma.thrift.Message;
 import tech.aroma.thrift.exceptions.InvalidArgumentException;
@@ -49,16 +51,24 @@ final class GetApplicationMessagesOperation implements ThriftOperation<GetApplic
     private final ApplicationRepository appRepo;
     private final FollowerRepository followerRepo;
     private final MessageRepository messageRepo;
+    private final RetentionSweeper retentionSweeper;
+    private final MessageProjection projection;
 
     @Inject
-    GetApplicationMessagesOperation(ApplicationRepository appRepo, FollowerRepository followerRepo, MessageRepository messageRepo)
+    GetApplicationMessagesOperation(ApplicationRepository appRepo,
+                                    FollowerRepository followerRepo,
+                                    MessageRepository messageRepo,
+                                    RetentionSweeper retentionSweeper,
+                                    @MessageListProjection MessageProjection projection)
     {
-        checkThat(appRepo, followerRepo, messageRepo)
+        checkThat(appRepo, followerRepo, messageRepo, retentionSweeper, projection)
                 .are(notNull());
 
         this.appRepo = appRepo;
         this.followerRepo = followerRepo;
         this.messageRepo = messageRepo;
+        this.retentionSweeper = retentionSweeper;
+        this.projection = projection;
     }
 
 
@@ -89,8 +99,9 @@ final class GetApplicationMessagesOperation implements ThriftOperation<GetApplic
                                             .collect(toList());
 
         LOG.debug("Found {} messages for Application [{}] ", messages.size(), appId);
+        retentionSweeper.scheduleApplication(appId);
 
-        return new GetApplicationMessagesResponse(messages);
+        return new GetApplicationMessagesResponse(projection.applyTo(messages));
     }
 
     private AlchemyAssertion<GetApplicationMessagesRequest> good()
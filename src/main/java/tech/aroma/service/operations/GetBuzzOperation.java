@@ -18,15 +18,14 @@
 package tech.aroma.service.operations;
 
 
-import java.util.List;
 import javax.inject.Inject;
 
 import org.apache.thrift.TException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import tech.aroma.data.*;
-import tech.aroma.thrift.Application;
-import tech.aroma.thrift.User;
+import tech.aroma.data.OrganizationRepository;
+import tech.aroma.service.operations.buzz.BuzzCache;
+import tech.aroma.service.operations.buzz.BuzzSnapshot;
 import tech.aroma.thrift.service.GetBuzzRequest;
 import tech.aroma.thrift.service.GetBuzzResponse;
 import tech.sirwellington.alchemy.thrift.operations.ThriftOperation;
@@ -42,19 +41,17 @@ final class GetBuzzOperation implements ThriftOperation<GetBuzzRequest, GetBuzzR
 {
     private final static Logger LOG = LoggerFactory.getLogger(GetBuzzOperation.class);
 
-    private final ApplicationRepository appRepo;
+    private final BuzzCache buzzCache;
     private final OrganizationRepository orgRepo;
-    private final UserRepository userRepo;
 
     @Inject
-    GetBuzzOperation(ApplicationRepository appRepo, OrganizationRepository orgRepo, UserRepository userRepo)
+    GetBuzzOperation(BuzzCache buzzCache, OrganizationRepository orgRepo)
     {
-        checkThat(appRepo, orgRepo, userRepo)
+        checkThat(buzzCache, orgRepo)
                 .are(notNull());
 
-        this.appRepo = appRepo;
+        this.buzzCache = buzzCache;
         this.orgRepo = orgRepo;
-        this.userRepo = userRepo;
     }
 
     @Override
@@ -62,8 +59,7 @@ final class GetBuzzOperation implements ThriftOperation<GetBuzzRequest, GetBuzzR
     {
         checkNotNull(request);
 
-        List<Application> recentApps = appRepo.getRecentlyCreated();
-        List<User> recentUsers = userRepo.getRecentlyCreatedUsers();
+        BuzzSnapshot buzz = buzzCache.current();
 
         //Get recently created apps
         //Get the requester's orgs
@@ -71,8 +67,8 @@ final class GetBuzzOperation implements ThriftOperation<GetBuzzRequest, GetBuzzR
         //Get recent apps in those orgs
         //Return all that
         GetBuzzResponse response = new GetBuzzResponse()
-                .setFreshApplications(recentApps)
-                .setFreshUsers(recentUsers);
+                .setFreshApplications(buzz.getRecentApplications())
+                .setFreshUsers(buzz.getRecentUsers());
 
         LOG.debug("Returning Buzz: {}", response);
 
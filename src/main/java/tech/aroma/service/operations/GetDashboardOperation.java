@@ -17,14 +17,14 @@
 package tech.aroma.service.operations;
 
 import java.time.Instant;
-import java.util.Comparator;
 import java.util.List;
 import javax.inject.Inject;
 
 import org.apache.thrift.TException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import tech.aroma.data.InboxRepository;
+import tech.aroma.service.operations.inbox.InboxCache;
+import tech.aroma.service.operations.retention.RetentionSweeper;
 import tech.aroma.thrift.Message;
 import tech.aroma.thrift.Urgency;
 import tech.aroma.thrift.service.GetDashboardRequest;
@@ -32,7 +32,6 @@ import tech.aroma.thrift.service.GetDashboardResponse;
 import tech.sirwellington.alchemy.generator.*;
 import tech.sirwellington.alchemy.thrift.operations.ThriftOperation;
 
-import static java.util.stream.Collectors.toList;
 import static tech.aroma.service.AromaAssertions.checkNotNull;
 import static tech.sirwellington.alchemy.arguments.Arguments.*;
 import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
@@ -47,15 +46,17 @@ final class GetDashboardOperation implements ThriftOperation<GetDashboardRequest
 {
 
     private final static Logger LOG = LoggerFactory.getLogger(GetDashboardOperation.class);
-    private final InboxRepository inboxRepo;
+    private final InboxCache inboxCache;
+    private final RetentionSweeper retentionSweeper;
 
     @Inject
-    GetDashboardOperation(InboxRepository inboxRepo)
+    GetDashboardOperation(InboxCache inboxCache, RetentionSweeper retentionSweeper)
     {
-        checkThat(inboxRepo)
-                .is(notNull());
+        checkThat(inboxCache, retentionSweeper)
+                .are(notNull());
 
-        this.inboxRepo = inboxRepo;
+        this.inboxCache = inboxCache;
+        this.retentionSweeper = retentionSweeper;
     }
 
     @Override
@@ -67,12 +68,9 @@ final class GetDashboardOperation implements ThriftOperation<GetDashboardRequest
 
         String userId = request.token.userId;
 
-        List<Message> recentMessages = inboxRepo.getMessagesForUser(userId)
-                                                .stream()
-                                                .sorted(Comparator.comparingLong(Message::getTimeMessageReceived)
-                                                                  .reversed())
-                                                .limit(3)
-                                                .collect(toList());
+        List<Message> recentMessages = inboxCache.getRecentMessages(userId, 3);
+
+        retentionSweeper.scheduleInbox(userId);
 
         GetDashboardResponse response = responses.get();
         response.setRecentMessages(recentMessages);
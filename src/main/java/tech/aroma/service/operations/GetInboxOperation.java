@@ -16,15 +16,16 @@
  */
 package tech.aroma.service.operations;
 
-import java.util.Comparator;
 import java.util.List;
 import javax.inject.Inject;
 
 import org.apache.thrift.TException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import tech.aroma.data.InboxRepository;
 import tech.aroma.data.UserRepository;
+import tech.aroma.service.AromaAnnotations.MessageListProjection;
+import tech.aroma.service.operations.inbox.InboxCache;
+import tech.aroma.service.operations.retention.RetentionSweeper;
 import tech.aroma.thrift.Message;
 import tech.aroma.thrift.exceptions.InvalidArgumentException;
 import tech.aroma.thrift.service.GetInboxRequest;
@@ -32,7 +33,6 @@ import tech.aroma.thrift.service.GetInboxResponse;
 import tech.sirwellington.alchemy.arguments.AlchemyAssertion;
 import tech.sirwellington.alchemy.thrift.operations.ThriftOperation;
 
-import static java.util.stream.Collectors.toList;
 import static tech.aroma.data.assertions.RequestAssertions.validUserId;
 import static tech.sirwellington.alchemy.arguments.Arguments.*;
 import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
@@ -46,18 +46,24 @@ final class GetInboxOperation implements ThriftOperation<GetInboxRequest, GetInb
 
     private final static Logger LOG = LoggerFactory.getLogger(GetInboxOperation.class);
 
-    private final InboxRepository inboxRepo;
+    private final InboxCache inboxCache;
     private final UserRepository userRepo;
+    private final RetentionSweeper retentionSweeper;
+    private final MessageProjection projection;
 
     @Inject
-    GetInboxOperation(InboxRepository inboxRepo,
-                      UserRepository userRepo)
+    GetInboxOperation(InboxCache inboxCache,
+                      UserRepository userRepo,
+                      RetentionSweeper retentionSweeper,
+                      @MessageListProjection MessageProjection projection)
     {
-        checkThat(inboxRepo, userRepo)
+        checkThat(inboxCache, userRepo, retentionSweeper, projection)
                 .are(notNull());
 
-        this.inboxRepo = inboxRepo;
+        this.inboxCache = inboxCache;
         this.userRepo = userRepo;
+        this.retentionSweeper = retentionSweeper;
+        this.projection = projection;
     }
 
     @Override
@@ -71,17 +77,14 @@ final class GetInboxOperation implements ThriftOperation<GetInboxRequest, GetInb
                 .is(good());
 
         String userId = request.token.userId;
-        int limit = request.limit == 0 ? 2000 : request.limit;
+        int limit = request.limit == 0 ? InboxCache.DEFAULT_LIMIT : request.limit;
 
-        List<Message> messages = inboxRepo.getMessagesForUser(userId)
-                                          .parallelStream()
-                                          .sorted(Comparator.comparingLong(Message::getTimeMessageReceived).reversed())
-                                          .limit(limit)
-                                          .collect(toList());
+        List<Message> messages = inboxCache.getRecentMessages(userId, limit);
 
         LOG.debug("Found {} messages for user [{}] ", messages.size(), userId);
+        retentionSweeper.scheduleInbox(userId);
 
-        return new GetInboxResponse(messages);
+        return new GetInboxResponse(projection.applyTo(messages));
     }
 
     private AlchemyAssertion<GetInboxRequest> good()
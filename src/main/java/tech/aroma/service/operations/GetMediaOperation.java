@@ -24,6 +24,8 @@ import org.apache.thrift.TException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tech.aroma.data.MediaRepository;
+import tech.aroma.service.operations.media.MediaCache;
+import tech.aroma.service.operations.media.MediaValidators;
 import tech.aroma.service.operations.thumbnails.ThumbnailCreator;
 import tech.aroma.thrift.Dimension;
 import tech.aroma.thrift.Image;
@@ -48,15 +50,22 @@ final class GetMediaOperation implements ThriftOperation<GetMediaRequest, GetMed
 
     private final MediaRepository mediaRepo;
     private final ThumbnailCreator thumbnailCreator;
+    private final MediaValidators validators;
+    private final MediaCache mediaCache;
 
     @Inject
-    GetMediaOperation(MediaRepository mediaRepo, ThumbnailCreator thumbnailCreator)
+    GetMediaOperation(MediaRepository mediaRepo,
+                      ThumbnailCreator thumbnailCreator,
+                      MediaValidators validators,
+                      MediaCache mediaCache)
     {
-        checkThat(mediaRepo, thumbnailCreator)
+        checkThat(mediaRepo, thumbnailCreator, validators, mediaCache)
                 .are(notNull());
 
         this.mediaRepo = mediaRepo;
         this.thumbnailCreator = thumbnailCreator;
+        this.validators = validators;
+        this.mediaCache = mediaCache;
     }
 
     @Override
@@ -67,32 +76,43 @@ final class GetMediaOperation implements ThriftOperation<GetMediaRequest, GetMed
                 .is(good());
 
         String mediaId = request.mediaId;
+        Dimension desiredSize = request.isSetDesiredThumbnailSize() ? request.desiredThumbnailSize : null;
 
-        if (request.isSetDesiredThumbnailSize() &&
-                mediaRepo.containsThumbnail(mediaId, request.desiredThumbnailSize))
+        //A view of off-heap memory, which toString() and deepCopy() cannot read; it goes into the response only
+        Image cached = mediaCache.get(mediaId, desiredSize);
+
+        if (cached != null)
+        {
+            return new GetMediaResponse(cached);
+        }
+
+        if (desiredSize != null && mediaRepo.containsThumbnail(mediaId, desiredSize))
         {
-            Image thumbnail = getThumbnail(mediaId, request.desiredThumbnailSize);
+            Image thumbnail = getThumbnail(mediaId, desiredSize);
 
             if (thumbnail != null)
             {
+                remember(mediaId, desiredSize, thumbnail);
                 return new GetMediaResponse(thumbnail);
             }
         }
 
         Image image = mediaRepo.getMedia(mediaId);
 
-        if (!request.isSetDesiredThumbnailSize())
+        if (desiredSize == null)
         {
+            remember(mediaId, null, image);
             return new GetMediaResponse(image);
         }
 
-        Dimension thumbnailDimension = request.desiredThumbnailSize;
+        Dimension thumbnailDimension = desiredSize;
 
         Image thumbnail = tryToCreateThumbnailForImageOfSize(image, thumbnailDimension);
 
         if (thumbnail != null)
         {
             tryToSaveThumbnail(mediaId, thumbnail, thumbnailDimension);
+            remember(mediaId, thumbnailDimension, thumbnail);
             return new GetMediaResponse(thumbnail);
         }
         else
@@ -103,6 +123,12 @@ final class GetMediaOperation implements ThriftOperation<GetMediaRequest, GetMed
 
     }
 
+    private void remember(String mediaId, Dimension size, Image image)
+    {
+        validators.record(mediaId, size, image);
+        mediaCache.put(mediaId, size, image);
+    }
+
     private AlchemyAssertion<GetMediaRequest> good()
     {
         return request ->
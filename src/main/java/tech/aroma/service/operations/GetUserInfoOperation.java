@@ -24,6 +24,7 @@ import org.apache.thrift.TException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tech.aroma.data.UserRepository;
+import tech.aroma.service.operations.users.UserDirectory;
 import tech.aroma.thrift.User;
 import tech.aroma.thrift.exceptions.InvalidArgumentException;
 import tech.aroma.thrift.service.GetUserInfoRequest;
@@ -46,13 +47,15 @@ final class GetUserInfoOperation implements ThriftOperation<GetUserInfoRequest,
     private final static Logger LOG = LoggerFactory.getLogger(GetUserInfoOperation.class);
 
     private final UserRepository userRepo;
+    private final UserDirectory userDirectory;
 
     @Inject
-    GetUserInfoOperation(UserRepository userRepo)
+    GetUserInfoOperation(UserRepository userRepo, UserDirectory userDirectory)
     {
-        checkThat(userRepo).is(notNull());
+        checkThat(userRepo, userDirectory).are(notNull());
 
         this.userRepo = userRepo;
+        this.userDirectory = userDirectory;
     }
 
     @Override
@@ -66,7 +69,7 @@ final class GetUserInfoOperation implements ThriftOperation<GetUserInfoRequest,
         if (shouldFindByEmail(request))
         {
             String email = request.email;
-            user = userRepo.getUserByEmail(email);
+            user = userDirectory.getUserByEmail(email);
         }
         else
         {
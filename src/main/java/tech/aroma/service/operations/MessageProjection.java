@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations;
+
+import java.util.List;
+
+import tech.aroma.thrift.Message;
+
+import static java.util.stream.Collectors.toList;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThanOrEqualTo;
+
+/**
+ * Decides how much of each {@link Message} is returned by operations that list messages, such as
+ * {@code GetInbox} and {@code GetApplicationMessages}.
+ * <p>
+ * A summary keeps what a list of messages shows: the title, urgency, Application, and times, with the body
+ * cut down to a preview. A body that was cut ends with the {@link #TRUNCATED_MARKER}, so that clients can
+ * tell a preview from the full body, which can always be fetched with {@code GetFullMessage}.
+ * <p>
+ * Messages are returned {@linkplain #FULL in full} unless summaries are turned on, either for the whole service,
+ * or for a single call through the {@linkplain tech.aroma.service.BatchProcessor Batch Service}.
+ *
+ * @author SirWellington
+ */
+public final class MessageProjection
+{
+
+    public static final int DEFAULT_PREVIEW_LENGTH = 256;
+
+    /**
+     * Ends every preview that is shorter than the body it was cut from. It is not counted in the preview length.
+     */
+    public static final String TRUNCATED_MARKER = "\u2026";
+
+    /**
+     * Returns messages as they are stored.
+     */
+    public static final MessageProjection FULL = new MessageProjection(-1);
+
+    private final int previewLength;
+
+    private MessageProjection(int previewLength)
+    {
+        this.previewLength = previewLength;
+    }
+
+    /**
+     * @param previewLength The number of characters of the body to keep. {@code 0} omits the body entirely.
+     */
+    public static MessageProjection summaries(int previewLength)
+    {
+        checkThat(previewLength)
+                .usingMessage("preview length must be >= 0")
+                .is(greaterThanOrEqualTo(0));
+
+        return new MessageProjection(previewLength);
+    }
+
+    public boolean isFull()
+    {
+        return previewLength < 0;
+    }
+
+    public List<Message> applyTo(List<Message> messages)
+    {
+        if (isFull())
+        {
+            return messages;
+        }
+
+        return messages.stream()
+                .map(this::summaryOf)
+                .collect(toList());
+    }
+
+    Message summaryOf(Message message)
+    {
+        Message summary = new Message()
+                .setMessageId(message.messageId)
+                .setTitle(message.title)
+                .setUrgency(message.urgency)
+                .setApplicationId(message.applicationId)
+                .setApplicationName(message.applicationName)
+                .setTimeOfCreation(message.timeOfCreation)
+                .setTimeMessageReceived(message.timeMessageReceived);
+
+        if (message.body != null && previewLength > 0)
+        {
+            summary.setBody(previewOf(message.body));
+        }
+
+        return summary;
+    }
+
+    private String previewOf(String body)
+    {
+        if (body.length() <= previewLength)
+        {
+            return body;
+        }
+
+        //Counted in code points, so that a character is never cut in half
+        int codePoints = body.codePointCount(0, body.length());
+
+        if (codePoints <= previewLength)
+        {
+            return body;
+        }
+
+        return body.substring(0, body.offsetByCodePoints(0, previewLength)) + TRUNCATED_MARKER;
+    }
+
+    @Override
+    public String toString()
+    {
+        return isFull() ? "MessageProjection{FULL}" : "MessageProjection{previewLength=" + previewLength + '}';
+    }
+
+}
@@ -17,11 +17,21 @@
 
 package tech.aroma.service.operations;
 
+import java.io.File;
+import java.time.Duration;
 import java.util.function.Function;
+import javax.inject.Singleton;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import tech.aroma.service.AromaAnnotations.DataDirectory;
+import tech.aroma.service.AromaAnnotations.MessageListProjection;
+import tech.aroma.service.operations.retention.RetentionPolicies;
+import tech.aroma.service.operations.retention.RetentionPolicy;
+import tech.aroma.service.operations.thumbnails.ImageLimits;
+import tech.aroma.thrift.Dimension;
 import tech.aroma.thrift.authentication.*;
 import tech.aroma.thrift.functions.TokenFunctions;
 import tech.aroma.thrift.service.*;
@@ -31,6 +41,9 @@ import tech.sirwellington.alchemy.thrift.operations.ThriftOperation;
 /**
  * This Module defines the bindings for the implementations of the
  * Aroma Service Operations.
+ * <p>
+ * Limits that vary by deployment are read from {@code aroma.*} System Properties,
+ * falling back to their defaults when a property is not set.
  *
  * @author SirWellington
  */
@@ -207,6 +220,89 @@ public final class ModuleAromaServiceOperations extends AbstractModule
 
     }
 
+    @Provides
+    @Singleton
+    MetricRegistry provideMetricRegistry()
+    {
+        return new MetricRegistry();
+    }
+
+    @Provides
+    @DataDirectory
+    File provideDataDirectory()
+    {
+        File defaultDirectory = new File(System.getProperty("user.home"), ".aroma");
+        File directory = new File(System.getProperty("aroma.data.directory", defaultDirectory.getPath()));
+
+        LOG.debug("Keeping local data in {}", directory);
+
+        return directory;
+    }
+
+    @Provides
+    @MessageListProjection
+    MessageProjection provideMessageListProjection()
+    {
+        if (!Boolean.getBoolean("aroma.messages.summaries"))
+        {
+            return MessageProjection.FULL;
+        }
+
+        int previewLength = Integer.getInteger("aroma.messages.previewLength", MessageProjection.DEFAULT_PREVIEW_LENGTH);
+        LOG.debug("Listing messages as summaries, with previews of {} characters", previewLength);
+
+        return MessageProjection.summaries(previewLength);
+    }
+
+    @Provides
+    ImageLimits provideImageLimits()
+    {
+        ImageLimits defaults = ImageLimits.defaults();
+
+        Dimension maxSize = new Dimension()
+                .setWidth(Integer.getInteger("aroma.images.maxWidth", defaults.getMaxSize().width))
+                .setHeight(Integer.getInteger("aroma.images.maxHeight", defaults.getMaxSize().height));
+
+        double quality = Double.parseDouble(System.getProperty("aroma.images.quality",
+                                                               String.valueOf(defaults.getQuality())));
+
+        ImageLimits limits = new ImageLimits(maxSize,
+                                             quality,
+                                             Integer.getInteger("aroma.images.maxUntouchedBytes",
+                                                                defaults.getMaxUntouchedBytes()),
+                                             Integer.getInteger("aroma.images.maxSourceSide",
+                                                                defaults.getMaxSourceSide()));
+
+        LOG.debug("Using image limits: {}", limits);
+
+        return limits;
+    }
+
+    @Provides
+    RetentionPolicies provideRetentionPolicies()
+    {
+        RetentionPolicy defaultApplicationPolicy = RetentionPolicies.DEFAULT_APPLICATION_POLICY;
+        RetentionPolicy defaultInboxPolicy = RetentionPolicies.DEFAULT_INBOX_POLICY;
+
+        RetentionPolicy applicationPolicy = RetentionPolicy.of(
+                Duration.ofDays(Integer.getInteger("aroma.retention.applications.maxAgeDays",
+                                                   (int) defaultApplicationPolicy.getMaxAge().toDays())),
+                Integer.getInteger("aroma.retention.applications.maxCount", defaultApplicationPolicy.getMaxCount()));
+
+        RetentionPolicy inboxPolicy = RetentionPolicy.of(
+                Duration.ofDays(Integer.getInteger("aroma.retention.inboxes.maxAgeDays",
+                                                   (int) defaultInboxPolicy.getMaxAge().toDays())),
+                Integer.getInteger("aroma.retention.inboxes.maxCount", defaultInboxPolicy.getMaxCount()));
+
+        RetentionPolicies policies = new RetentionPolicies(Boolean.getBoolean("aroma.retention.enabled"),
+                                                           applicationPolicy,
+                                                           inboxPolicy);
+
+        LOG.debug("Using retention policies: {}", policies);
+
+        return policies;
+    }
+
     @Provides
     Function<AuthenticationToken, UserToken> provideAuthToUserTokenMapper()
     {
@@ -17,6 +17,7 @@
 package tech.aroma.service.operations;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.Function;
 import javax.inject.Inject;
 
@@ -25,12 +26,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sir.wellington.alchemy.collections.sets.Sets;
 import tech.aroma.data.*;
+import tech.aroma.service.operations.email.EmailDispatcher;
+import tech.aroma.service.operations.media.MediaStore;
 import tech.aroma.thrift.*;
 import tech.aroma.thrift.authentication.*;
 import tech.aroma.thrift.authentication.service.*;
 import tech.aroma.thrift.email.EmailMessage;
 import tech.aroma.thrift.email.EmailNewApplication;
-import tech.aroma.thrift.email.service.EmailService;
 import tech.aroma.thrift.email.service.SendEmailRequest;
 import tech.aroma.thrift.exceptions.*;
 import tech.aroma.thrift.service.*;
@@ -39,12 +41,25 @@ import tech.sirwellington.alchemy.arguments.AlchemyAssertion;
 import tech.sirwellington.alchemy.thrift.operations.ThriftOperation;
 
 import static java.time.Instant.now;
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
 import static tech.aroma.data.assertions.AuthenticationAssertions.completeToken;
+import static tech.aroma.service.operations.Steps.*;
 import static tech.sirwellington.alchemy.arguments.Arguments.*;
 import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
 import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.*;
 
 /**
+ * Provisions an Application as a pipeline.
+ * <p>
+ * Once the caller's token is known, looking up the Owners, storing the icon, and creating the Application's token
+ * all run concurrently. If any of them fails, the icon and the token that were already created are undone.
+ * Following the Application on behalf of its Owners, and emailing its creator, only begin once the Application
+ * has been saved. The Owners are saved as Followers concurrently, and the response waits until every one of those
+ * saves has finished, so an Owner can see the new Application as soon as it is returned; a save that fails is
+ * logged, and does not fail the provisioning. The email is handed to the {@link EmailDispatcher}, which sends it
+ * in the background.
+ *
  * @author SirWellington
  */
 @Internal
@@ -55,37 +70,41 @@ final class ProvisionApplicationOperation implements ThriftOperation<ProvisionAp
 
     private final ApplicationRepository appRepo;
     private final FollowerRepository followerRepo;
-    private final MediaRepository mediaRepo;
+    private final MediaStore mediaStore;
     private final UserRepository userRepo;
     private final AuthenticationService.Iface authenticationService;
-    private final EmailService.Iface emailService;
+    private final EmailDispatcher emailDispatcher;
     private final Function<AuthenticationToken, ApplicationToken> appTokenMapper;
+    private final ExecutorService executor;
 
     @Inject
     ProvisionApplicationOperation(ApplicationRepository appRepo,
                                   FollowerRepository followerRepo,
-                                  MediaRepository mediaRepo,
+                                  MediaStore mediaStore,
                                   UserRepository userRepo,
                                   AuthenticationService.Iface authenticationService,
-                                  EmailService.Iface emailService,
-                                  Function<AuthenticationToken, ApplicationToken> appTokenMapper)
+                                  EmailDispatcher emailDispatcher,
+                                  Function<AuthenticationToken, ApplicationToken> appTokenMapper,
+                                  ExecutorService executor)
     {
         checkThat(appRepo,
                   followerRepo,
-                  mediaRepo,
+                  mediaStore,
                   userRepo,
                   authenticationService,
-                  emailService,
-                  appTokenMapper)
+                  emailDispatcher,
+                  appTokenMapper,
+                  executor)
                 .are(notNull());
 
         this.appRepo = appRepo;
         this.followerRepo = followerRepo;
-        this.mediaRepo = mediaRepo;
+        this.mediaStore = mediaStore;
         this.userRepo = userRepo;
         this.authenticationService = authenticationService;
-        this.emailService = emailService;
+        this.emailDispatcher = emailDispatcher;
         this.appTokenMapper = appTokenMapper;
+        this.executor = executor;
     }
 
     @Override
@@ -98,29 +117,60 @@ final class ProvisionApplicationOperation implements ThriftOperation<ProvisionAp
                 .is(good());
 
         AuthenticationToken authTokenForUser = getUserTokenFrom(request.token);
-        User user = userRepo.getUser(authTokenForUser.ownerId);
-
-        LOG.debug("Owner ID {} Maps to user {}", authTokenForUser.ownerId, user);
+        String creatorId = authTokenForUser.ownerId;
 
-        Application app = createAppFrom(request, user);
+        Application app = createAppFrom(request, creatorId);
 
-        AuthenticationToken authTokenForApp = createAppTokenFor(app);
-        ApplicationToken appToken = appTokenMapper.apply(authTokenForApp);
+        CompletableFuture<User> creator = supply(() -> userRepo.getUser(creatorId), executor);
+        CompletableFuture<List<User>> owners = supply(() -> getOwnersOf(app, creatorId), executor);
+        CompletableFuture<AuthenticationToken> authTokenForApp = supply(() -> createAppTokenFor(app), executor);
+        CompletableFuture<String> icon = hasIcon(request)
+                                         ? supply(() -> saveIcon(request.icon), executor)
+                                         : CompletableFuture.completedFuture(null);
 
-        if (hasIcon(request))
+        try
         {
-            String mediaIdForIcon = app.applicationId;
+            CompletableFuture.allOf(creator, owners, authTokenForApp, icon).join();
+        }
+        catch (CompletionException ex)
+        {
+            TException failure = firstFailureOf("provision Application", creator, authTokenForApp, icon, owners);
+            LOG.warn("Provisioning of App {} failed. Undoing the steps that completed.", app.name, failure);
 
-            saveIcon(mediaIdForIcon, request.icon);
-            app.setApplicationIconMediaId(mediaIdForIcon);
+            undo(app, authTokenForApp, icon);
+            throw failure;
+        }
+
+        User user = creator.join();
+        LOG.debug("Owner ID {} Maps to user {}", creatorId, user);
+
+        ApplicationToken appToken = appTokenMapper.apply(authTokenForApp.join());
+
+        if (icon.join() != null)
+        {
+            app.setApplicationIconMediaId(icon.join());
         }
 
         //Save time of token expiration
         app.setTimeOfTokenExpiration(appToken.timeOfExpiration);
 
-        appRepo.saveApplication(app);
+        try
+        {
+            appRepo.saveApplication(app);
+        }
+        catch (TException ex)
+        {
+            LOG.warn("Failed to save App {}. Undoing the steps that completed.", app.name, ex);
+
+            undo(app, authTokenForApp, icon);
+            throw ex;
+        }
+
+        List<User> ownersOfApp = owners.join();
+        ownersOfApp.add(user);
 
-        saveOwnersAsFollowers(app);
+        //Owners follow the App before responding, so it is already theirs when they next look
+        saveOwnersAsFollowers(ownersOfApp, app);
         sendOutEmail(user, app, appToken, authTokenForUser);
 
         return new ProvisionApplicationResponse()
@@ -129,6 +179,34 @@ final class ProvisionApplicationOperation implements ThriftOperation<ProvisionAp
 
     }
 
+    private void undo(Application app, CompletableFuture<AuthenticationToken> authTokenForApp, CompletableFuture<String> icon)
+    {
+        if (succeeded(authTokenForApp))
+        {
+            InvalidateTokenRequest request = new InvalidateTokenRequest().setToken(authTokenForApp.join());
+            tryTo("invalidate token of App " + app.applicationId, () -> authenticationService.invalidateToken(request));
+        }
+
+        String iconId = succeeded(icon) ? icon.join() : null;
+
+        if (iconId != null)
+        {
+            tryTo("release icon of App " + app.applicationId, () -> mediaStore.release(iconId));
+        }
+    }
+
+    private void tryTo(String description, Step step)
+    {
+        try
+        {
+            step.run();
+        }
+        catch (Exception ex)
+        {
+            LOG.error("Failed to {} after a failed provisioning", description, ex);
+        }
+    }
+
     private AuthenticationToken getUserTokenFrom(UserToken token) throws InvalidTokenException, OperationFailedException
     {
         GetTokenInfoRequest request = new GetTokenInfoRequest()
@@ -159,11 +237,11 @@ final class ProvisionApplicationOperation implements ThriftOperation<ProvisionAp
         return response.token;
     }
 
-    private Application createAppFrom(ProvisionApplicationRequest request, User user)
+    private Application createAppFrom(ProvisionApplicationRequest request, String creatorId)
     {
         Set<String> owners = Sets.copyOf(request.owners);
         //Creating user is automatically an Owner
-        owners.add(user.userId);
+        owners.add(creatorId);
         String appId = UUID.randomUUID().toString();
 
         return new Application()
@@ -236,9 +314,9 @@ final class ProvisionApplicationOperation implements ThriftOperation<ProvisionAp
         };
     }
 
-    private void saveIcon(String mediaId, Image icon) throws TException
+    private String saveIcon(Image icon) throws TException
     {
-        mediaRepo.saveMedia(mediaId, icon);
+        return mediaStore.store(icon);
     }
 
     private boolean hasIcon(ProvisionApplicationRequest request)
@@ -256,37 +334,66 @@ final class ProvisionApplicationOperation implements ThriftOperation<ProvisionAp
         return false;
     }
 
-    private void saveOwnersAsFollowers(Application app)
+    /**
+     * Looks up every Owner of the App except its creator. Owners who cannot be found are left out.
+     */
+    private List<User> getOwnersOf(Application app, String creatorId)
     {
-        Sets.nullToEmpty(app.owners)
+        return Sets.nullToEmpty(app.owners)
             .parallelStream()
+            .filter(ownerId -> !Objects.equals(ownerId, creatorId))
             .map(this::getUserInfo)
             .filter(Objects::nonNull)
-            .forEach(owner -> this.tryToSaveOwner(owner, app));
+            .collect(toCollection(ArrayList::new));
     }
 
-    private User getUserInfo(String userId)
+    /**
+     * Saves each Owner as a Follower concurrently, waiting for all of them. The App is already durable,
+     * so an Owner who could not be saved is logged rather than failing the provisioning; they can still
+     * follow the App themselves.
+     */
+    private void saveOwnersAsFollowers(Collection<User> owners, Application app)
     {
+        List<CompletableFuture<Void>> saves = owners.stream()
+                .map(owner -> async(() -> followerRepo.saveFollowing(owner, app), executor)
+                        .whenComplete((ignored, ex) -> logIfFailed(ex, owner, app)))
+                .collect(toList());
+
         try
         {
-            return userRepo.getUser(userId);
+            CompletableFuture.allOf(saves.toArray(new CompletableFuture<?>[saves.size()])).join();
         }
-        catch (TException ex)
+        catch (CompletionException ex)
         {
-            LOG.warn("Could not get user info for Owner with ID [{}]", userId, ex);
-            return null;
+            //Each failure has already been logged
         }
     }
 
-    private void tryToSaveOwner(User owner, Application app)
+    private void logIfFailed(Throwable failure, User owner, Application app)
+    {
+        if (failure != null)
+        {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                              ? failure.getCause()
+                              : failure;
+
+            LOG.warn("Could not save Following Information between Owner [{}] and App [{}]",
+                     owner.userId,
+                     app.applicationId,
+                     cause);
+        }
+    }
+
+    private User getUserInfo(String userId)
     {
         try
         {
-            followerRepo.saveFollowing(owner, app);
+            return userRepo.getUser(userId);
         }
         catch (TException ex)
         {
-            LOG.warn("Could not save Following Information between Owner [{}] and App [{}]", owner, app, ex);
+            LOG.warn("Could not get user info for Owner with ID [{}]", userId, ex);
+            return null;
         }
     }
 
@@ -307,12 +414,12 @@ final class ProvisionApplicationOperation implements ThriftOperation<ProvisionAp
 
         try
         {
-            emailService.sendEmail(request);
-            LOG.debug("Sent out Email for new App creation to {}", user.email);
+            emailDispatcher.dispatch(request);
+            LOG.debug("Dispatched Email for new App creation to {}", user.email);
         }
         catch (Exception ex)
         {
-            LOG.error("Failed to send out Email to {}", user.email, ex);
+            LOG.error("Failed to dispatch Email to {}", user.email, ex);
         }
     }
 }
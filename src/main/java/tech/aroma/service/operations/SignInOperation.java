@@ -23,9 +23,10 @@ import org.apache.thrift.TException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tech.aroma.data.CredentialRepository;
-import tech.aroma.data.UserRepository;
 import tech.aroma.service.operations.encryption.AromaPasswordEncryptor;
 import tech.aroma.service.operations.encryption.OverTheWireDecryptor;
+import tech.aroma.service.operations.encryption.PasswordHashingExecutor;
+import tech.aroma.service.operations.users.UserDirectory;
 import tech.aroma.thrift.*;
 import tech.aroma.thrift.authentication.*;
 import tech.aroma.thrift.authentication.service.*;
@@ -59,7 +60,8 @@ final class SignInOperation implements ThriftOperation<SignInRequest, SignInResp
     private final CredentialRepository credentialsRepo;
     private final OverTheWireDecryptor decryptor;
     private final AromaPasswordEncryptor encryptor;
-    private final UserRepository userRepo;
+    private final PasswordHashingExecutor hashingExecutor;
+    private final UserDirectory userDirectory;
 
     @Inject
     SignInOperation(AuthenticationService.Iface authenticationService,
@@ -67,9 +69,10 @@ final class SignInOperation implements ThriftOperation<SignInRequest, SignInResp
                     CredentialRepository credentialsRepo,
                     OverTheWireDecryptor decryptor,
                     AromaPasswordEncryptor encryptor,
-                    UserRepository userRepo)
+                    PasswordHashingExecutor hashingExecutor,
+                    UserDirectory userDirectory)
     {
-        checkThat(authenticationService, tokenMapper, credentialsRepo, decryptor, encryptor, userRepo)
+        checkThat(authenticationService, tokenMapper, credentialsRepo, decryptor, encryptor, hashingExecutor, userDirectory)
                 .are(notNull());
 
         this.authenticationService = authenticationService;
@@ -77,7 +80,8 @@ final class SignInOperation implements ThriftOperation<SignInRequest, SignInResp
         this.credentialsRepo = credentialsRepo;
         this.decryptor = decryptor;
         this.encryptor = encryptor;
-        this.userRepo = userRepo;
+        this.hashingExecutor = hashingExecutor;
+        this.userDirectory = userDirectory;
     }
 
     @Override
@@ -89,19 +93,21 @@ final class SignInOperation implements ThriftOperation<SignInRequest, SignInResp
                 .throwing(ex -> new InvalidArgumentException(ex.getMessage()))
                 .is(good());
 
-        User user = userRepo.getUserByEmail(request.emailAddress);
+        User user = userDirectory.getUserByEmail(request.emailAddress);
         checkThatUserHasCredentials(user);
 
 
         String password = decryptPasswordFrom(request);
         String digestedPassword = credentialsRepo.getEncryptedPassword(user.userId);
 
-        checkPasswordsMatch(password, digestedPassword);
+        checkPasswordsMatch(request.emailAddress, password, digestedPassword);
 
         AuthenticationToken authToken = getTokenFor(user);
 
         UserToken userToken = tokenMapper.apply(authToken);
 
+        tryToUpgradeDigest(user, request.emailAddress, password, digestedPassword);
+
         return new SignInResponse()
                 .setUserToken(userToken);
     }
@@ -177,14 +183,46 @@ final class SignInOperation implements ThriftOperation<SignInRequest, SignInResp
         return decryptedPassword;
     }
 
-    private void checkPasswordsMatch(String password, String digestedPassword) throws TException
+    private void checkPasswordsMatch(String email, String password, String digestedPassword) throws TException
     {
-        checkThat(encryptor.match(password, digestedPassword))
+        boolean match = hashingExecutor.execute(email, () -> encryptor.match(password, digestedPassword));
+
+        checkThat(match)
                 .throwing(InvalidCredentialsException.class)
                 .usingMessage("Email and Password do not match")
                 .is(trueStatement());
     }
 
+    /**
+     * Replaces a digest made with an outdated scheme, now that the plain password is known.
+     * <p>
+     * The new digest is made in the background, so the sign in does not wait on a second digest.
+     * A failure here does not fail the sign in, since the existing digest still works and the
+     * upgrade is tried again at the next one.
+     */
+    private void tryToUpgradeDigest(User user, String email, String password, String digestedPassword)
+    {
+        try
+        {
+            if (!encryptor.needsRehash(digestedPassword))
+            {
+                return;
+            }
+
+            hashingExecutor.executeLater(email, () ->
+            {
+                String newDigest = encryptor.encryptPassword(password);
+                credentialsRepo.saveEncryptedPassword(user.userId, newDigest);
+                LOG.debug("Upgraded outdated password digest for User {}", user.userId);
+                return newDigest;
+            });
+        }
+        catch (Exception ex)
+        {
+            LOG.warn("Failed to upgrade password digest for User {}", user.userId, ex);
+        }
+    }
+
     private void checkThatUserHasCredentials(User user) throws UserDoesNotExistException
     {
         checkThat(user)
@@ -18,6 +18,7 @@ package tech.aroma.service.operations;
 
 import java.util.StringTokenizer;
 import java.util.UUID;
+import java.util.concurrent.*;
 import java.util.function.Function;
 import javax.inject.Inject;
 
@@ -28,6 +29,9 @@ import sir.wellington.alchemy.collections.sets.Sets;
 import tech.aroma.data.*;
 import tech.aroma.service.operations.encryption.AromaPasswordEncryptor;
 import tech.aroma.service.operations.encryption.OverTheWireDecryptor;
+import tech.aroma.service.operations.encryption.PasswordHashingExecutor;
+import tech.aroma.service.operations.media.MediaStore;
+import tech.aroma.service.operations.users.UserDirectory;
 import tech.aroma.thrift.Image;
 import tech.aroma.thrift.User;
 import tech.aroma.thrift.authentication.*;
@@ -40,6 +44,7 @@ import tech.sirwellington.alchemy.arguments.FailedAssertionException;
 import tech.sirwellington.alchemy.thrift.operations.ThriftOperation;
 
 import static tech.aroma.data.assertions.AuthenticationAssertions.completeToken;
+import static tech.aroma.service.operations.Steps.*;
 import static tech.sirwellington.alchemy.arguments.Arguments.*;
 import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
 import static tech.sirwellington.alchemy.arguments.assertions.BooleanAssertions.trueStatement;
@@ -57,33 +62,42 @@ final class SignUpOperation implements ThriftOperation<SignUpRequest, SignUpResp
     private final AuthenticationService.Iface authenticationService;
 
     private final CredentialRepository credentialsRepo;
-    private final MediaRepository mediaRepo;
+    private final MediaStore mediaStore;
     private final UserRepository userRepo;
 
     private final Function<AuthenticationToken, UserToken> tokenMapper;
 
     private final OverTheWireDecryptor decryptor;
     private final AromaPasswordEncryptor passwordEncryptor;
+    private final PasswordHashingExecutor hashingExecutor;
+    private final UserDirectory userDirectory;
+    private final ExecutorService executor;
 
     @Inject
     SignUpOperation(AuthenticationService.Iface authenticationService,
                     CredentialRepository credentialsRepo,
-                    MediaRepository mediaRepo,
+                    MediaStore mediaStore,
                     UserRepository userRepo,
                     Function<AuthenticationToken, UserToken> tokenMapper,
                     OverTheWireDecryptor decryptor,
-                    AromaPasswordEncryptor passwordEncryptor)
+                    AromaPasswordEncryptor passwordEncryptor,
+                    PasswordHashingExecutor hashingExecutor,
+                    UserDirectory userDirectory,
+                    ExecutorService executor)
     {
-        checkThat(authenticationService, credentialsRepo, mediaRepo, userRepo, tokenMapper, decryptor, passwordEncryptor)
+        checkThat(authenticationService, credentialsRepo, mediaStore, userRepo, tokenMapper, decryptor, passwordEncryptor, hashingExecutor, userDirectory, executor)
                 .are(notNull());
 
         this.authenticationService = authenticationService;
         this.credentialsRepo = credentialsRepo;
-        this.mediaRepo = mediaRepo;
+        this.mediaStore = mediaStore;
         this.userRepo = userRepo;
         this.tokenMapper = tokenMapper;
         this.decryptor = decryptor;
         this.passwordEncryptor = passwordEncryptor;
+        this.hashingExecutor = hashingExecutor;
+        this.userDirectory = userDirectory;
+        this.executor = executor;
     }
 
     @Override
@@ -103,31 +117,92 @@ final class SignUpOperation implements ThriftOperation<SignUpRequest, SignUpResp
         //User IDs are always UUIDs
         String userId = UUID.randomUUID().toString();
 
-        tryToSaveCredentialsFor(userId, request);
-
-
         User user = createUserFrom(request);
         user.userId = userId;
 
-        if (request.isSetProfileImage())
+        CreateTokenRequest authRequest = makeAuthenticationRequestToCreateToken(user);
+
+        //Only saving the User waits on another step, since it records the profile image
+        CompletableFuture<Void> credentials = async(() -> tryToSaveCredentialsFor(userId, request), executor);
+        CompletableFuture<String> profileImage = supply(() -> tryToSaveProfileImage(request), executor);
+        CompletableFuture<Void> savedUser = profileImage.thenAcceptAsync(link -> unchecked(() -> saveUser(user, link)), executor);
+        CompletableFuture<AuthenticationToken> token = supply(() -> tryToGetTokenFromAuthenticationService(authRequest), executor);
+
+        try
         {
-            tryToSaveProfileImage(request, user);
+            CompletableFuture.allOf(credentials, savedUser, token).join();
         }
+        catch (CompletionException ex)
+        {
+            TException failure = firstFailureOf("sign up", credentials, savedUser, token);
+            LOG.warn("Sign up of {} failed. Undoing the steps that completed.", request.email, failure);
 
-        //Store in Repository
-        userRepo.saveUser(user);
+            undo(user, credentials, profileImage, savedUser, token);
+            throw failure;
+        }
 
-        //Create and Acquire token from authentication service
-        CreateTokenRequest authRequest = makeAuthenticationRequestToCreateToken(user);
-        AuthenticationToken token = tryToGetTokenFromAuthenticationService(authRequest);
+        userDirectory.remember(user);
 
-        UserToken userToken = convertToUserToken(token);
+        UserToken userToken = convertToUserToken(token.join());
 
         return new SignUpResponse()
                 .setUserId(userId)
                 .setUserToken(userToken);
     }
 
+    private void saveUser(User user, String profileImageLink) throws TException
+    {
+        user.profileImageLink = profileImageLink;
+
+        //Store in Repository
+        userRepo.saveUser(user);
+    }
+
+    private void undo(User user,
+                      CompletableFuture<Void> credentials,
+                      CompletableFuture<String> profileImage,
+                      CompletableFuture<Void> savedUser,
+                      CompletableFuture<AuthenticationToken> token)
+    {
+        String userId = user.userId;
+
+        if (succeeded(credentials))
+        {
+            tryTo("delete credentials of " + userId, () -> credentialsRepo.deleteEncryptedPassword(userId));
+        }
+
+        if (succeeded(savedUser))
+        {
+            tryTo("delete User " + userId, () -> userRepo.deleteUser(userId));
+            userDirectory.forget(user.email);
+        }
+
+        String profileImageLink = succeeded(profileImage) ? profileImage.join() : null;
+
+        if (profileImageLink != null)
+        {
+            tryTo("release profile image of " + userId, () -> mediaStore.release(profileImageLink));
+        }
+
+        if (succeeded(token))
+        {
+            InvalidateTokenRequest request = new InvalidateTokenRequest().setToken(token.join());
+            tryTo("invalidate token of " + userId, () -> authenticationService.invalidateToken(request));
+        }
+    }
+
+    private void tryTo(String description, Step step)
+    {
+        try
+        {
+            step.run();
+        }
+        catch (Exception ex)
+        {
+            LOG.error("Failed to {} after a failed sign up", description, ex);
+        }
+    }
+
     private AlchemyAssertion<SignUpRequest> good()
     {
         return request ->
@@ -229,7 +304,7 @@ final class SignUpOperation implements ThriftOperation<SignUpRequest, SignUpResp
 
             try
             {
-                User user = userRepo.getUserByEmail(email);
+                User user = userDirectory.getUserByEmail(email);
                 throw new FailedAssertionException();
             }
             catch (UserDoesNotExistException ex)
@@ -318,25 +393,30 @@ final class SignUpOperation implements ThriftOperation<SignUpRequest, SignUpResp
         String password = decryptor.decrypt(encryptedPassword);
         LOG.debug("Password successfully decrypted over the wire");
 
-        String digestedPassword = passwordEncryptor.encryptPassword(password);
+        String digestedPassword = hashingExecutor.execute(request.email, () -> passwordEncryptor.encryptPassword(password));
         LOG.debug("Password successfully encrypted and digested");
 
         credentialsRepo.saveEncryptedPassword(userId, digestedPassword);
         LOG.debug("Password successfully stored");
     }
 
-    private void tryToSaveProfileImage(SignUpRequest request, User user)
+    private String tryToSaveProfileImage(SignUpRequest request)
     {
+        if (!request.isSetProfileImage())
+        {
+            return null;
+        }
+
         Image profileImage = request.profileImage;
 
         try
         {
-            mediaRepo.saveMedia(user.userId, profileImage);
-            user.profileImageLink = user.userId;
+            return mediaStore.store(profileImage);
         }
         catch (Exception ex)
         {
-            LOG.error("Failed to save User Profile Image: {}", user, ex);
+            LOG.error("Failed to save User Profile Image for: {}", request.email, ex);
+            return null;
         }
     }
 }
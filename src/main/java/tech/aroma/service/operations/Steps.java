@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.apache.thrift.TException;
+import tech.aroma.service.ClientAddress;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+import tech.sirwellington.alchemy.annotations.access.NonInstantiable;
+
+/**
+ * Runs the independent steps of an Operation concurrently, carrying any {@link TException} they throw
+ * through the {@link CompletableFuture} so it can be rethrown once the steps are joined.
+ * <p>
+ * Each step runs with the {@linkplain ClientAddress client address} of the thread that started it,
+ * so limits kept per client still apply to work done off the request thread.
+ *
+ * @author SirWellington
+ */
+@Internal
+@NonInstantiable
+final class Steps
+{
+
+    private Steps() throws IllegalAccessException
+    {
+        throw new IllegalAccessException("cannot instantiate");
+    }
+
+    static CompletableFuture<Void> async(Step step, Executor executor)
+    {
+        String address = ClientAddress.current();
+
+        return CompletableFuture.runAsync(() -> asClient(address, () ->
+        {
+            unchecked(step);
+            return null;
+        }), executor);
+    }
+
+    static <T> CompletableFuture<T> supply(ResultStep<T> step, Executor executor)
+    {
+        String address = ClientAddress.current();
+
+        return CompletableFuture.supplyAsync(() -> asClient(address, () ->
+        {
+            try
+            {
+                return step.run();
+            }
+            catch (TException ex)
+            {
+                throw new CompletionException(ex);
+            }
+        }), executor);
+    }
+
+    private static <T> T asClient(String address, Supplier<T> step)
+    {
+        String previousAddress = ClientAddress.current();
+        ClientAddress.set(address);
+
+        try
+        {
+            return step.get();
+        }
+        finally
+        {
+            ClientAddress.set(previousAddress);
+        }
+    }
+
+    static void unchecked(Step step)
+    {
+        try
+        {
+            step.run();
+        }
+        catch (TException ex)
+        {
+            throw new CompletionException(ex);
+        }
+    }
+
+    static boolean succeeded(CompletableFuture<?> step)
+    {
+        return step.isDone() && !step.isCompletedExceptionally();
+    }
+
+    /**
+     * @param action What the steps were trying to accomplish, used in the message when a step did not fail with a
+     *               {@link TException}.
+     * @return The failure of the first of the {@code steps} that failed, in the order given.
+     */
+    static TException firstFailureOf(String action, CompletableFuture<?>... steps)
+    {
+        for (CompletableFuture<?> step : steps)
+        {
+            if (!step.isCompletedExceptionally())
+            {
+                continue;
+            }
+
+            try
+            {
+                step.join();
+            }
+            catch (CompletionException ex)
+            {
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+
+                if (cause instanceof TException)
+                {
+                    return (TException) cause;
+                }
+
+                return new OperationFailedException("Could not " + action + ": " + cause.getMessage());
+            }
+        }
+
+        return new OperationFailedException("Could not " + action);
+    }
+
+    @FunctionalInterface
+    interface Step
+    {
+        void run() throws TException;
+    }
+
+    @FunctionalInterface
+    interface ResultStep<T>
+    {
+        T run() throws TException;
+    }
+
+}
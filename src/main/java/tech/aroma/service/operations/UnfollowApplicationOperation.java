@@ -35,6 +35,7 @@ import tech.sirwellington.alchemy.thrift.operations.ThriftOperation;
 import static java.time.Instant.now;
 import static tech.aroma.data.assertions.RequestAssertions.validApplicationId;
 import static tech.aroma.data.assertions.RequestAssertions.validUserId;
+import static tech.aroma.service.operations.activity.EventReferences.referenceTo;
 import static tech.sirwellington.alchemy.arguments.Arguments.*;
 import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
 import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
@@ -124,9 +125,9 @@ final class UnfollowApplicationOperation implements ThriftOperation<UnfollowAppl
 
         return new Event()
                 .setEventId(one(uuids))
-                .setActor(user)
+                .setActor(referenceTo(user))
                 .setUserIdOfActor(user.userId)
-                .setApplication(app)
+                .setApplication(referenceTo(app))
                 .setApplicationId(app.applicationId)
                 .setTimestamp(now().toEpochMilli())
                 .setEventType(eventType);
@@ -18,14 +18,15 @@ package tech.aroma.service.operations;
 
 import java.time.Instant;
 import java.util.List;
-import java.util.UUID;
 import javax.inject.Inject;
 
+import com.google.common.base.Strings;
 import org.apache.thrift.TException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sir.wellington.alchemy.collections.sets.Sets;
 import tech.aroma.data.*;
+import tech.aroma.service.operations.media.MediaStore;
 import tech.aroma.thrift.*;
 import tech.aroma.thrift.events.*;
 import tech.aroma.thrift.exceptions.InvalidArgumentException;
@@ -40,6 +41,7 @@ import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
 import static tech.aroma.data.assertions.RequestAssertions.validApplication;
 import static tech.aroma.data.assertions.RequestAssertions.validUserId;
+import static tech.aroma.service.operations.activity.EventReferences.referenceTo;
 import static tech.sirwellington.alchemy.arguments.Arguments.*;
 import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
 import static tech.sirwellington.alchemy.arguments.assertions.CollectionAssertions.nonEmptySet;
@@ -56,21 +58,21 @@ final class UpdateApplicationOperation implements ThriftOperation<UpdateApplicat
 
     private final ActivityRepository activityRepo;
     private final ApplicationRepository appRepo;
-    private final MediaRepository mediaRepo;
+    private final MediaStore mediaStore;
     private final UserRepository userRepo;
 
     @Inject
     UpdateApplicationOperation(ActivityRepository activityRepo,
                                ApplicationRepository appRepo,
-                               MediaRepository mediaRepo,
+                               MediaStore mediaStore,
                                UserRepository userRepo)
     {
-        checkThat(activityRepo, appRepo, mediaRepo, userRepo)
+        checkThat(activityRepo, appRepo, mediaStore, userRepo)
                 .are(notNull());
 
         this.activityRepo = activityRepo;
         this.appRepo = appRepo;
-        this.mediaRepo = mediaRepo;
+        this.mediaStore = mediaStore;
         this.userRepo = userRepo;
     }
 
@@ -204,32 +206,31 @@ final class UpdateApplicationOperation implements ThriftOperation<UpdateApplicat
 
     private String saveNewAppIcon(UpdateApplicationRequest request) throws TException
     {
-        String newId = UUID.randomUUID().toString();
         Image newIcon = request.updatedApplication.icon;
 
         try
         {
-            mediaRepo.saveMedia(newId, newIcon);
+            return mediaStore.store(newIcon);
         }
         catch (TException ex)
         {
             LOG.warn("Failed to save App's new Icon: {}", request.updatedApplication, ex);
             throw ex;
         }
-
-        return newId;
     }
 
     private void deleteOldIcon(Application app)
     {
         String existingIconId = app.applicationIconMediaId;
 
+        if (Strings.isNullOrEmpty(existingIconId))
+        {
+            return;
+        }
+
         try
         {
-            if (mediaRepo.containsMedia(existingIconId))
-            {
-                mediaRepo.deleteMedia(existingIconId);
-            }
+            mediaStore.release(existingIconId);
         }
         catch (TException ex)
         {
@@ -268,8 +269,8 @@ final class UpdateApplicationOperation implements ThriftOperation<UpdateApplicat
         eventType.setApplicationUpdated(new ApplicationUpdated().setMessage(app.name + " Updated"));
 
         Event event = new Event()
-                .setActor(actor)
-                .setApplication(app)
+                .setActor(referenceTo(actor))
+                .setApplication(referenceTo(app))
                 .setApplicationId(app.applicationId)
                 .setEventId(one(uuids))
                 .setTimestamp(Instant.now().toEpochMilli())
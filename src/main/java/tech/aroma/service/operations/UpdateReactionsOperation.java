@@ -43,6 +43,7 @@ import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
 import static tech.aroma.data.assertions.RequestAssertions.validApplicationId;
 import static tech.aroma.data.assertions.RequestAssertions.validUserId;
+import static tech.aroma.service.operations.activity.EventReferences.referenceTo;
 import static tech.aroma.thrift.service.AromaServiceConstants.MAXIMUM_REACTIONS;
 import static tech.sirwellington.alchemy.arguments.Arguments.*;
 import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
@@ -180,9 +181,9 @@ final class UpdateReactionsOperation implements ThriftOperation<UpdateReactionsR
 
         return new Event()
                 .setEventId(one(uuids))
-                .setActor(userPerformingUpdate)
+                .setActor(referenceTo(userPerformingUpdate))
                 .setUserIdOfActor(userPerformingUpdate.userId)
-                .setApplication(app)
+                .setApplication(referenceTo(app))
                 .setApplicationId(app.applicationId)
                 .setEventType(eventType)
                 .setTimestamp(Instant.now().toEpochMilli());
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.activity;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.ImplementedBy;
+import org.apache.thrift.TException;
+import tech.aroma.data.ActivityRepository;
+import tech.aroma.data.FollowerRepository;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.events.Event;
+import tech.sirwellington.alchemy.annotations.arguments.NonEmpty;
+import tech.sirwellington.alchemy.annotations.arguments.Required;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+/**
+ * Delivers Events about Applications to the Users who care about them, and reads back each User's Activity.
+ * <p>
+ * Owners always receive their own copy of an Event. Followers of an Application with only a few of them do too.
+ * An Application with many followers instead has its Events saved once, to a feed of its own, which is merged into
+ * the Activity of each follower when it is read. This keeps the cost of an Event from growing with the number of
+ * followers.
+ *
+ * @author SirWellington
+ */
+@ImplementedBy(ActivityFeedsImpl.class)
+public interface ActivityFeeds
+{
+
+    /**
+     * Saves an Event for the owners and followers of an Application. Failures to save are logged, not thrown,
+     * so that they do not fail the operation that caused the Event.
+     *
+     * @param event         The Event to deliver.
+     * @param applicationId The Application the Event is about.
+     * @param owners        The owners of the Application.
+     * @param followers     The followers of the Application.
+     */
+    void publish(@Required Event event,
+                 @NonEmpty String applicationId,
+                 @Required Collection<User> owners,
+                 @Required Collection<User> followers);
+
+    /**
+     * @return The Events saved for the User, together with those of the Applications they follow, newest first.
+     * @throws TException If the User's own Events could not be read.
+     */
+    List<Event> getActivityFor(@Required User user) throws TException;
+
+    /**
+     * Removes the feed of an Application, once it has been deleted.
+     */
+    void dropFeedOf(@NonEmpty String applicationId);
+
+    public static ActivityFeeds newInstance(@Required ActivityRepository activityRepo,
+                                            @Required FollowerRepository followerRepo,
+                                            @Required MetricRegistry metrics)
+    {
+        checkThat(activityRepo, followerRepo, metrics)
+                .are(notNull());
+
+        return new ActivityFeedsImpl(activityRepo, followerRepo, metrics);
+    }
+}
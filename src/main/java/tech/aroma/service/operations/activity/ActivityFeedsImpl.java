@@ -0,0 +1,412 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.activity;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.data.ActivityRepository;
+import tech.aroma.data.FollowerRepository;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.events.Event;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.nonEmptyString;
+
+/**
+ * Saves the feed of an Application in the {@link ActivityRepository}, under the Application's ID in place of a
+ * User's, and keeps recently read feeds in memory.
+ * <p>
+ * The first time an Application's feed is written to, the Application is also marked in an index of feeds, saved
+ * the same way under {@link #FEED_INDEX_ID}. Reading a User's Activity only reads the feeds of the followed
+ * Applications in that index, which is cached as long as a feed is. If the index cannot be read, every followed
+ * Application's feed is read instead. Marks are not removed when a feed is dropped; reading an empty feed is
+ * all a stale mark costs.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+final class ActivityFeedsImpl implements ActivityFeeds
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(ActivityFeedsImpl.class);
+
+    static final int DEFAULT_FANOUT_THRESHOLD = 1_000;
+    static final long DEFAULT_MAX_FEEDS = 10_000;
+    static final long DEFAULT_FEED_EXPIRATION_SECONDS = 30;
+
+    /**
+     * The ID the index of Applications that have a feed is saved under, in place of a User's.
+     */
+    static final String FEED_INDEX_ID = "aroma-application-feeds";
+
+    private static final Comparator<Event> NEWEST_FIRST = Comparator.comparingLong((Event event) -> event.timestamp).reversed();
+
+    private final ActivityRepository activityRepo;
+    private final FollowerRepository followerRepo;
+    private final int fanoutThreshold;
+
+    private final LoadingCache<String, List<Event>> feeds;
+    private final LoadingCache<String, Set<String>> feedIndex;
+
+    /**
+     * The Applications this instance has marked in the index, so that each is only marked once.
+     */
+    private final Set<String> markedFeeds = ConcurrentHashMap.newKeySet();
+
+    private final Counter eventsSavedForUsers;
+    private final Counter eventsSavedToFeeds;
+    private final Counter feedReadsSkipped;
+
+    @Inject
+    ActivityFeedsImpl(ActivityRepository activityRepo, FollowerRepository followerRepo, MetricRegistry metrics)
+    {
+        this(activityRepo, followerRepo, metrics, DEFAULT_FANOUT_THRESHOLD, DEFAULT_FEED_EXPIRATION_SECONDS);
+    }
+
+    ActivityFeedsImpl(ActivityRepository activityRepo,
+                      FollowerRepository followerRepo,
+                      MetricRegistry metrics,
+                      int fanoutThreshold,
+                      long feedExpirationSeconds)
+    {
+        checkThat(activityRepo, followerRepo, metrics)
+                .are(notNull());
+
+        checkThat(fanoutThreshold)
+                .usingMessage("fanoutThreshold must be > 0")
+                .is(greaterThan(0));
+
+        checkThat(feedExpirationSeconds)
+                .usingMessage("feedExpirationSeconds must be > 0")
+                .is(greaterThan(0L));
+
+        this.activityRepo = activityRepo;
+        this.followerRepo = followerRepo;
+        this.fanoutThreshold = fanoutThreshold;
+
+        CacheLoader<String, List<Event>> loader = new CacheLoader<String, List<Event>>()
+        {
+            @Override
+            public List<Event> load(String applicationId) throws Exception
+            {
+                return readFeedOf(applicationId);
+            }
+        };
+
+        this.feeds = CacheBuilder.newBuilder()
+                                 .maximumSize(DEFAULT_MAX_FEEDS)
+                                 .expireAfterWrite(feedExpirationSeconds, SECONDS)
+                                 .build(loader);
+
+        CacheLoader<String, Set<String>> indexLoader = new CacheLoader<String, Set<String>>()
+        {
+            @Override
+            public Set<String> load(String indexId) throws Exception
+            {
+                return readFeedIndex();
+            }
+        };
+
+        this.feedIndex = CacheBuilder.newBuilder()
+                                     .expireAfterWrite(feedExpirationSeconds, SECONDS)
+                                     .build(indexLoader);
+
+        this.eventsSavedForUsers = metrics.counter(name(ActivityFeeds.class, "events-saved-for-users"));
+        this.eventsSavedToFeeds = metrics.counter(name(ActivityFeeds.class, "events-saved-to-feeds"));
+        this.feedReadsSkipped = metrics.counter(name(ActivityFeeds.class, "feed-reads-skipped"));
+    }
+
+    @Override
+    public void publish(Event event, String applicationId, Collection<User> owners, Collection<User> followers)
+    {
+        checkThat(event, owners, followers)
+                .are(notNull());
+
+        checkThat(applicationId)
+                .usingMessage("missing application ID")
+                .is(nonEmptyString());
+
+        Map<String, User> recipients = new LinkedHashMap<>();
+        owners.forEach(owner -> recipients.put(owner.userId, owner));
+
+        if (followers.size() > fanoutThreshold)
+        {
+            saveToFeedOf(applicationId, event);
+        }
+        else
+        {
+            followers.forEach(follower -> recipients.putIfAbsent(follower.userId, follower));
+        }
+
+        recipients.values()
+                  .parallelStream()
+                  .forEach(user -> tryToSave(event, user));
+    }
+
+    @Override
+    public List<Event> getActivityFor(User user) throws TException
+    {
+        checkThat(user).is(notNull());
+
+        List<Event> ownEvents = new ArrayList<>(activityRepo.getAllEventsFor(user));
+        ownEvents.sort(NEWEST_FIRST);
+
+        List<List<Event>> allFeeds = new ArrayList<>();
+        allFeeds.add(ownEvents);
+
+        Predicate<String> hasFeed = tryToGetApplicationsWithFeeds();
+
+        for (Application app : tryToGetApplicationsFollowedBy(user))
+        {
+            if (app == null || app.applicationId == null)
+            {
+                continue;
+            }
+
+            if (hasFeed.test(app.applicationId))
+            {
+                allFeeds.add(tryToGetFeedOf(app.applicationId));
+            }
+            else
+            {
+                feedReadsSkipped.inc();
+            }
+        }
+
+        return mergeNewestFirst(allFeeds);
+    }
+
+    @Override
+    public void dropFeedOf(String applicationId)
+    {
+        checkThat(applicationId)
+                .usingMessage("missing application ID")
+                .is(nonEmptyString());
+
+        try
+        {
+            activityRepo.deleteAllEventsFor(feedOwnerFor(applicationId));
+        }
+        catch (TException ex)
+        {
+            LOG.warn("Failed to drop the feed of Application [{}]", applicationId, ex);
+        }
+
+        markedFeeds.remove(applicationId);
+        feeds.invalidate(applicationId);
+    }
+
+    /**
+     * Merges feeds that are each sorted newest first into one, leaving out any Event that appears more than once,
+     * such as one saved both for an owner and to the feed of an Application they follow.
+     */
+    static List<Event> mergeNewestFirst(List<List<Event>> feeds)
+    {
+        PriorityQueue<PeekingIterator<Event>> heads = new PriorityQueue<>(Math.max(1, feeds.size()),
+                                                                          (first, second) -> NEWEST_FIRST.compare(first.peek(), second.peek()));
+
+        int total = 0;
+
+        for (List<Event> feed : feeds)
+        {
+            if (!feed.isEmpty())
+            {
+                heads.add(Iterators.peekingIterator(feed.iterator()));
+                total += feed.size();
+            }
+        }
+
+        List<Event> merged = new ArrayList<>(total);
+        Set<String> eventIds = new HashSet<>(total);
+
+        while (!heads.isEmpty())
+        {
+            PeekingIterator<Event> head = heads.poll();
+            Event event = head.next();
+
+            if (event.eventId == null || eventIds.add(event.eventId))
+            {
+                merged.add(event);
+            }
+
+            if (head.hasNext())
+            {
+                heads.add(head);
+            }
+        }
+
+        return merged;
+    }
+
+    private void saveToFeedOf(String applicationId, Event event)
+    {
+        if (markedFeeds.add(applicationId))
+        {
+            tryToMarkFeedOf(applicationId);
+        }
+
+        try
+        {
+            activityRepo.saveEvent(event, feedOwnerFor(applicationId));
+            eventsSavedToFeeds.inc();
+        }
+        catch (Exception ex)
+        {
+            LOG.error("Failed to save Event {} to the feed of Application [{}]", event, applicationId, ex);
+        }
+
+        feeds.invalidate(applicationId);
+    }
+
+    /**
+     * Marks the Application in the index before its feed is written to, so that no one reads the index without
+     * the Application while its feed has Events. If the mark cannot be saved, it is tried again with the next
+     * Event.
+     */
+    private void tryToMarkFeedOf(String applicationId)
+    {
+        Event mark = new Event()
+                .setEventId(applicationId)
+                .setApplicationId(applicationId)
+                .setTimestamp(System.currentTimeMillis());
+
+        try
+        {
+            activityRepo.saveEvent(mark, feedIndexOwner());
+        }
+        catch (Exception ex)
+        {
+            LOG.error("Failed to mark the feed of Application [{}] in the index", applicationId, ex);
+            markedFeeds.remove(applicationId);
+        }
+    }
+
+    private void tryToSave(Event event, User user)
+    {
+        try
+        {
+            activityRepo.saveEvent(event, user);
+            eventsSavedForUsers.inc();
+        }
+        catch (Exception ex)
+        {
+            LOG.error("Failed to save Event {} for User {}", event, user, ex);
+        }
+    }
+
+    private List<Application> tryToGetApplicationsFollowedBy(User user)
+    {
+        try
+        {
+            List<Application> apps = followerRepo.getApplicationsFollowedBy(user.userId);
+            return apps != null ? apps : Collections.emptyList();
+        }
+        catch (TException ex)
+        {
+            LOG.warn("Failed to get Applications followed by {}. Their feeds are left out.", user, ex);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * @return Whether an Application has a feed, which is assumed of every Application if the index cannot be
+     *         read.
+     */
+    private Predicate<String> tryToGetApplicationsWithFeeds()
+    {
+        try
+        {
+            Set<String> indexed = feedIndex.get(FEED_INDEX_ID);
+            return applicationId -> indexed.contains(applicationId) || markedFeeds.contains(applicationId);
+        }
+        catch (ExecutionException | UncheckedExecutionException ex)
+        {
+            LOG.warn("Failed to read the index of feeds. Reading the feed of every followed Application.", ex.getCause());
+            return applicationId -> true;
+        }
+    }
+
+    private List<Event> tryToGetFeedOf(String applicationId)
+    {
+        try
+        {
+            return feeds.get(applicationId);
+        }
+        catch (ExecutionException | UncheckedExecutionException ex)
+        {
+            LOG.warn("Failed to read the feed of Application [{}]. It is left out.", applicationId, ex.getCause());
+            return Collections.emptyList();
+        }
+    }
+
+    private List<Event> readFeedOf(String applicationId) throws TException
+    {
+        List<Event> feed = new ArrayList<>(activityRepo.getAllEventsFor(feedOwnerFor(applicationId)));
+        feed.sort(NEWEST_FIRST);
+
+        return Collections.unmodifiableList(feed);
+    }
+
+    private Set<String> readFeedIndex() throws TException
+    {
+        Set<String> applicationIds = new HashSet<>();
+
+        for (Event mark : activityRepo.getAllEventsFor(feedIndexOwner()))
+        {
+            if (mark != null && mark.applicationId != null)
+            {
+                applicationIds.add(mark.applicationId);
+            }
+        }
+
+        return Collections.unmodifiableSet(applicationIds);
+    }
+
+    private static User feedIndexOwner()
+    {
+        return new User().setUserId(FEED_INDEX_ID);
+    }
+
+    private static User feedOwnerFor(String applicationId)
+    {
+        return new User().setUserId(applicationId);
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.activity;
+
+import java.util.List;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.ImplementedBy;
+import tech.aroma.data.ApplicationRepository;
+import tech.aroma.data.UserRepository;
+import tech.aroma.thrift.events.Event;
+import tech.sirwellington.alchemy.annotations.arguments.Required;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+/**
+ * Fills in the Applications and Users that an {@link Event} refers to, in place of the
+ * {@linkplain EventReferences references} it was saved with.
+ *
+ * @author SirWellington
+ */
+@ImplementedBy(EventHydratorImpl.class)
+public interface EventHydrator
+{
+
+    /**
+     * Each Application and User referred to by {@code events} is loaded at most once. Any that can no longer be
+     * loaded, such as a deleted Application, is left as the reference that was saved.
+     *
+     * @param events The Events to hydrate. They are not modified.
+     * @return Copies of the Events, in the same order, with their Application and actor filled in.
+     */
+    List<Event> hydrate(@Required List<Event> events);
+
+    public static EventHydrator newInstance(@Required ApplicationRepository appRepo,
+                                            @Required UserRepository userRepo,
+                                            @Required MetricRegistry metrics)
+    {
+        checkThat(appRepo, userRepo, metrics)
+                .are(notNull());
+
+        return new EventHydratorImpl(appRepo, userRepo, metrics);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.activity;
+
+import java.util.*;
+import java.util.function.Function;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.data.ApplicationRepository;
+import tech.aroma.data.UserRepository;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.events.Event;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.toList;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+
+/**
+ * Loads the Applications and Users referred to by a page of Events together, and keeps them for a few
+ * minutes, since the same few Applications and Users appear in most of a User's Activity.
+ * <p>
+ * Icons and profile images are left out of what is kept; Events only need to display names.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+final class EventHydratorImpl implements EventHydrator
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(EventHydratorImpl.class);
+
+    static final long DEFAULT_MAX_ENTRIES = 10_000;
+    static final long DEFAULT_EXPIRATION_MINUTES = 5;
+
+    private final ApplicationRepository appRepo;
+    private final UserRepository userRepo;
+
+    private final Cache<String, Application> apps;
+    private final Cache<String, User> users;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    @Inject
+    EventHydratorImpl(ApplicationRepository appRepo, UserRepository userRepo, MetricRegistry metrics)
+    {
+        this(appRepo, userRepo, metrics, DEFAULT_MAX_ENTRIES);
+    }
+
+    EventHydratorImpl(ApplicationRepository appRepo, UserRepository userRepo, MetricRegistry metrics, long maxEntries)
+    {
+        checkThat(appRepo, userRepo, metrics)
+                .are(notNull());
+
+        checkThat(maxEntries)
+                .usingMessage("maxEntries must be > 0")
+                .is(greaterThan(0L));
+
+        this.appRepo = appRepo;
+        this.userRepo = userRepo;
+
+        this.apps = CacheBuilder.newBuilder()
+                                .maximumSize(maxEntries)
+                                .expireAfterWrite(DEFAULT_EXPIRATION_MINUTES, MINUTES)
+                                .build();
+
+        this.users = CacheBuilder.newBuilder()
+                                 .maximumSize(maxEntries)
+                                 .expireAfterWrite(DEFAULT_EXPIRATION_MINUTES, MINUTES)
+                                 .build();
+
+        this.hits = metrics.counter(name(EventHydrator.class, "hits"));
+        this.misses = metrics.counter(name(EventHydrator.class, "misses"));
+    }
+
+    @Override
+    public List<Event> hydrate(List<Event> events)
+    {
+        checkThat(events).is(notNull());
+
+        Map<String, Application> appsById = load(idsOf(events, EventHydratorImpl::applicationIdOf), apps, this::loadApplication);
+        Map<String, User> usersById = load(idsOf(events, EventHydratorImpl::actorIdOf), users, this::loadUser);
+
+        return events.stream()
+                     .filter(Objects::nonNull)
+                     .map(event -> hydrate(event, appsById, usersById))
+                     .collect(toList());
+    }
+
+    private Event hydrate(Event event, Map<String, Application> appsById, Map<String, User> usersById)
+    {
+        Event hydrated = event.deepCopy();
+
+        Application app = appsById.get(applicationIdOf(event));
+        if (app != null)
+        {
+            hydrated.setApplication(app);
+        }
+
+        User actor = usersById.get(actorIdOf(event));
+        if (actor != null)
+        {
+            hydrated.setActor(actor);
+        }
+
+        return hydrated;
+    }
+
+    private static Set<String> idsOf(List<Event> events, Function<Event, String> idOf)
+    {
+        Set<String> ids = new HashSet<>();
+
+        for (Event event : events)
+        {
+            String id = event != null ? idOf.apply(event) : null;
+
+            if (!Strings.isNullOrEmpty(id))
+            {
+                ids.add(id);
+            }
+        }
+
+        return ids;
+    }
+
+    private <T> Map<String, T> load(Set<String> ids, Cache<String, T> cache, Loader<T> loader)
+    {
+        Map<String, T> results = new HashMap<>(cache.getAllPresent(ids));
+        hits.inc(results.size());
+
+        for (String id : ids)
+        {
+            if (results.containsKey(id))
+            {
+                continue;
+            }
+
+            misses.inc();
+
+            try
+            {
+                T result = loader.load(id);
+                cache.put(id, result);
+                results.put(id, result);
+            }
+            catch (Exception ex)
+            {
+                LOG.debug("Could not load [{}] for Events. Leaving its reference as-is.", id, ex);
+            }
+        }
+
+        return results;
+    }
+
+    private Application loadApplication(String appId) throws TException
+    {
+        Application app = appRepo.getById(appId).deepCopy();
+        app.unsetIcon();
+        return app;
+    }
+
+    private User loadUser(String userId) throws TException
+    {
+        User user = userRepo.getUser(userId).deepCopy();
+        user.unsetProfileImage();
+        return user;
+    }
+
+    private static String applicationIdOf(Event event)
+    {
+        if (!Strings.isNullOrEmpty(event.applicationId))
+        {
+            return event.applicationId;
+        }
+
+        return event.application == null ? null : event.application.applicationId;
+    }
+
+    private static String actorIdOf(Event event)
+    {
+        if (!Strings.isNullOrEmpty(event.userIdOfActor))
+        {
+            return event.userIdOfActor;
+        }
+
+        return event.actor == null ? null : event.actor.userId;
+    }
+
+    @FunctionalInterface
+    private interface Loader<T>
+    {
+        T load(String id) throws TException;
+    }
+
+}
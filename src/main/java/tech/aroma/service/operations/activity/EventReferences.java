@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.activity;
+
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.sirwellington.alchemy.annotations.access.NonInstantiable;
+
+/**
+ * Creates the lightweight references to Applications and Users that are stored with each
+ * {@linkplain tech.aroma.thrift.events.Event Event}.
+ * <p>
+ * An Event is saved once for every User it notifies, so it carries only what is needed to identify and display
+ * what it refers to. The rest is filled in when the Event is read, by the {@link EventHydrator}.
+ *
+ * @author SirWellington
+ */
+@NonInstantiable
+public final class EventReferences
+{
+
+    private EventReferences() throws IllegalAccessException
+    {
+        throw new IllegalAccessException("cannot instantiate");
+    }
+
+    /**
+     * @return The ID and name of the Application, or {@code null} if {@code app} is null.
+     */
+    public static Application referenceTo(Application app)
+    {
+        if (app == null)
+        {
+            return null;
+        }
+
+        return new Application()
+                .setApplicationId(app.applicationId)
+                .setName(app.name);
+    }
+
+    /**
+     * @return The ID and display names of the User, or {@code null} if {@code user} is null.
+     */
+    public static User referenceTo(User user)
+    {
+        if (user == null)
+        {
+            return null;
+        }
+
+        return new User()
+                .setUserId(user.userId)
+                .setName(user.name)
+                .setFirstName(user.firstName)
+                .setLastName(user.lastName);
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.buzz;
+
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.ImplementedBy;
+import org.apache.thrift.TException;
+import tech.aroma.data.ApplicationRepository;
+import tech.aroma.data.UserRepository;
+import tech.sirwellington.alchemy.annotations.arguments.Required;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+/**
+ * Keeps a {@linkplain BuzzSnapshot snapshot} of the recently created Applications and Users, which is the same
+ * for everyone who asks.
+ * <p>
+ * The snapshot is refreshed ahead of time in the background, so reading it never waits on the repositories,
+ * except to take the very first one.
+ *
+ * @author SirWellington
+ */
+@ImplementedBy(BuzzCacheImpl.class)
+public interface BuzzCache
+{
+
+    /**
+     * @return The latest snapshot. If a refresh has failed since, this is the one from before it.
+     * @throws TException If no snapshot has been taken yet, and taking one fails.
+     */
+    BuzzSnapshot current() throws TException;
+
+    /**
+     * Takes a new snapshot right away.
+     *
+     * @return The new snapshot.
+     * @throws TException If the snapshot could not be taken. The previous one is kept.
+     */
+    BuzzSnapshot refresh() throws TException;
+
+    public static BuzzCache newInstance(@Required ApplicationRepository appRepo,
+                                        @Required UserRepository userRepo,
+                                        @Required MetricRegistry metrics)
+    {
+        checkThat(appRepo, userRepo, metrics)
+                .are(notNull());
+
+        return new BuzzCacheImpl(appRepo, userRepo, metrics);
+    }
+}
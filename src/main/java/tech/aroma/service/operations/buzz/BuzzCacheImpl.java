@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.buzz;
+
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.*;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.data.ApplicationRepository;
+import tech.aroma.data.UserRepository;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+
+/**
+ * Refreshes on a single background thread, starting as soon as it is created and then once every refresh
+ * interval.
+ * <p>
+ * Each refresh replaces the snapshot in a single swap, so readers never lock, and never see half of one.
+ * A refresh that fails leaves the previous snapshot in place; how old it has grown is reported by the
+ * {@code staleness-millis} gauge.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+final class BuzzCacheImpl implements BuzzCache
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(BuzzCacheImpl.class);
+
+    static final long DEFAULT_REFRESH_INTERVAL_MILLIS = SECONDS.toMillis(30);
+
+    private final ApplicationRepository appRepo;
+    private final UserRepository userRepo;
+    private final ScheduledExecutorService refreshes;
+
+    private final AtomicReference<BuzzSnapshot> latest = new AtomicReference<>();
+
+    private final Counter failures;
+    private final Timer refreshTime;
+
+    @Inject
+    BuzzCacheImpl(ApplicationRepository appRepo, UserRepository userRepo, MetricRegistry metrics)
+    {
+        this(appRepo, userRepo, metrics, newRefresher(), DEFAULT_REFRESH_INTERVAL_MILLIS);
+    }
+
+    BuzzCacheImpl(ApplicationRepository appRepo,
+                  UserRepository userRepo,
+                  MetricRegistry metrics,
+                  ScheduledExecutorService refreshes,
+                  long refreshIntervalMillis)
+    {
+        checkThat(appRepo, userRepo, metrics, refreshes)
+                .are(notNull());
+
+        checkThat(refreshIntervalMillis)
+                .usingMessage("refresh interval must be > 0")
+                .is(greaterThan(0L));
+
+        this.appRepo = appRepo;
+        this.userRepo = userRepo;
+
+        this.failures = metrics.counter(name(BuzzCache.class, "refresh-failures"));
+        this.refreshTime = metrics.timer(name(BuzzCache.class, "refresh-time"));
+        metrics.gauge(name(BuzzCache.class, "staleness-millis"), () -> (Gauge<Long>) this::stalenessMillis);
+
+        this.refreshes = refreshes;
+        this.refreshes.scheduleWithFixedDelay(this::runRefresh, 0, refreshIntervalMillis, MILLISECONDS);
+    }
+
+    private static ScheduledExecutorService newRefresher()
+    {
+        ThreadFactory threads = new ThreadFactoryBuilder()
+                .setNameFormat("buzz-refresher-%d")
+                .setDaemon(true)
+                .build();
+
+        return Executors.newSingleThreadScheduledExecutor(threads);
+    }
+
+    @Override
+    public BuzzSnapshot current() throws TException
+    {
+        BuzzSnapshot snapshot = latest.get();
+
+        return snapshot != null ? snapshot : takeFirstSnapshot();
+    }
+
+    @Override
+    public synchronized BuzzSnapshot refresh() throws TException
+    {
+        try (Timer.Context ignored = refreshTime.time())
+        {
+            List<Application> recentApps = appRepo.getRecentlyCreated();
+            List<User> recentUsers = userRepo.getRecentlyCreatedUsers();
+
+            BuzzSnapshot snapshot = new BuzzSnapshot(recentApps, recentUsers, System.currentTimeMillis());
+            latest.set(snapshot);
+
+            return snapshot;
+        }
+        catch (TException | RuntimeException ex)
+        {
+            failures.inc();
+            throw ex;
+        }
+    }
+
+    /**
+     * Requests that arrive before the first refresh wait on a single one, rather than each taking their own.
+     */
+    private synchronized BuzzSnapshot takeFirstSnapshot() throws TException
+    {
+        BuzzSnapshot snapshot = latest.get();
+
+        return snapshot != null ? snapshot : refresh();
+    }
+
+    private void runRefresh()
+    {
+        try
+        {
+            refresh();
+        }
+        catch (TException | RuntimeException ex)
+        {
+            //Thrown out of a scheduled task, a RuntimeException would cancel every refresh that follows
+            LOG.warn("Failed to refresh Buzz. Keeping the previous snapshot, {}ms old.", stalenessMillis(), ex);
+        }
+    }
+
+    private long stalenessMillis()
+    {
+        BuzzSnapshot snapshot = latest.get();
+
+        return snapshot == null ? 0 : System.currentTimeMillis() - snapshot.getTimeOfRefresh();
+    }
+
+    void shutdown()
+    {
+        refreshes.shutdownNow();
+    }
+
+}
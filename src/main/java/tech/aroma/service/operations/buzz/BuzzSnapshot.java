@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.buzz;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+/**
+ * The recently created Applications and Users, as they were at one moment.
+ * <p>
+ * A snapshot is shared by every caller, so neither it nor what it holds may be modified.
+ *
+ * @author SirWellington
+ */
+@Internal
+public final class BuzzSnapshot
+{
+
+    private final List<Application> recentApplications;
+    private final List<User> recentUsers;
+    private final long timeOfRefresh;
+
+    BuzzSnapshot(List<Application> recentApplications, List<User> recentUsers, long timeOfRefresh)
+    {
+        this.recentApplications = unmodifiableCopyOf(recentApplications);
+        this.recentUsers = unmodifiableCopyOf(recentUsers);
+        this.timeOfRefresh = timeOfRefresh;
+    }
+
+    public List<Application> getRecentApplications()
+    {
+        return recentApplications;
+    }
+
+    public List<User> getRecentUsers()
+    {
+        return recentUsers;
+    }
+
+    /**
+     * @return When the snapshot was taken, in epoch millis.
+     */
+    public long getTimeOfRefresh()
+    {
+        return timeOfRefresh;
+    }
+
+    private static <T> List<T> unmodifiableCopyOf(List<T> list)
+    {
+        if (list == null)
+        {
+            return Collections.emptyList();
+        }
+
+        return Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BuzzSnapshot{" + "recentApplications=" + recentApplications.size() + ", recentUsers=" + recentUsers.size() + ", timeOfRefresh=" + timeOfRefresh + '}';
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.deletion;
+
+import java.io.File;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.ImplementedBy;
+import org.apache.thrift.TException;
+import tech.aroma.data.*;
+import tech.aroma.service.operations.activity.ActivityFeeds;
+import tech.aroma.service.operations.inbox.InboxCache;
+import tech.aroma.service.operations.media.MediaStore;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.sirwellington.alchemy.annotations.arguments.NonEmpty;
+import tech.sirwellington.alchemy.annotations.arguments.Required;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+/**
+ * Deletes Applications, along with everything that belongs to them.
+ * <p>
+ * The Application itself is deleted right away. Its followers, messages, media, and activity feed are deleted
+ * afterwards, in the background. Each follower is notified as they are removed, and its owners once everything
+ * else is gone.
+ *
+ * @author SirWellington
+ */
+@ImplementedBy(ApplicationDeleterImpl.class)
+public interface ApplicationDeleter
+{
+
+    /**
+     * Deletes the Application and begins deleting what belongs to it. Returns once the Application itself
+     * has been deleted.
+     *
+     * @param app       The Application to delete.
+     * @param deletedBy The User deleting it, who is named in the notifications.
+     * @throws TException If the Application could not be deleted.
+     */
+    void delete(@Required Application app, @Required User deletedBy) throws TException;
+
+    /**
+     * @param applicationId The ID of an Application that is being, or was recently, deleted.
+     * @return How far its deletion has come, or {@code null} if no deletion of it is known.
+     */
+    DeletionProgress progressOf(@NonEmpty String applicationId);
+
+    public static ApplicationDeleter newInstance(@Required ActivityRepository activityRepo,
+                                                 @Required ApplicationRepository appRepo,
+                                                 @Required FollowerRepository followerRepo,
+                                                 @Required InboxCache inboxCache,
+                                                 @Required MediaStore mediaStore,
+                                                 @Required MessageRepository messageRepo,
+                                                 @Required MetricRegistry metrics,
+                                                 @Required File dataDirectory)
+    {
+        checkThat(activityRepo, appRepo, followerRepo, inboxCache, mediaStore, messageRepo, metrics, dataDirectory)
+                .are(notNull());
+
+        ActivityFeeds activityFeeds = ActivityFeeds.newInstance(activityRepo, followerRepo, metrics);
+
+        return new ApplicationDeleterImpl(activityRepo, activityFeeds, appRepo, followerRepo, inboxCache, mediaStore, messageRepo, metrics, dataDirectory);
+    }
+}
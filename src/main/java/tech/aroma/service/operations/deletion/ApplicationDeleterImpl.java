@@ -0,0 +1,522 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.deletion;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sir.wellington.alchemy.collections.lists.Lists;
+import tech.aroma.data.*;
+import tech.aroma.service.AromaAnnotations.DataDirectory;
+import tech.aroma.service.PrivateDirectories;
+import tech.aroma.service.operations.activity.ActivityFeeds;
+import tech.aroma.service.operations.deletion.DeletionProgress.Stage;
+import tech.aroma.service.operations.inbox.InboxCache;
+import tech.aroma.service.operations.media.MediaStore;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.events.*;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.time.Instant.now;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static tech.aroma.service.operations.activity.EventReferences.referenceTo;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.BooleanAssertions.trueStatement;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.StringGenerators.uuids;
+
+/**
+ * Runs each deletion as a job on a single background thread.
+ * <p>
+ * A checkpoint is saved before the Application is deleted, and again after each batch of work, so a job that
+ * is interrupted by a crash resumes from its last batch when the service starts again. Each batch of followers
+ * is notified, checkpointed, and then removed, so a resumed job repeats the removals of its last batch but does
+ * not notify those followers again. A resumed job lists the followers that are left from the repository again.
+ * Repository calls are throttled by a shared rate limit, so a large deletion does not crowd out requests.
+ * Checkpoints are kept in a private directory under the {@linkplain DataDirectory data directory}. If they
+ * cannot be stored, deletions still run, but do not survive a restart.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+final class ApplicationDeleterImpl implements ApplicationDeleter
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(ApplicationDeleterImpl.class);
+
+    static final String DIRECTORY_NAME = "app-deletions";
+    static final int DEFAULT_BATCH_SIZE = 100;
+    static final double DEFAULT_CALLS_PER_SECOND = 200;
+
+    private final ActivityRepository activityRepo;
+    private final ActivityFeeds activityFeeds;
+    private final ApplicationRepository appRepo;
+    private final FollowerRepository followerRepo;
+    private final InboxCache inboxCache;
+    private final MediaStore mediaStore;
+    private final MessageRepository messageRepo;
+
+    private final DeletionCheckpoints checkpoints;
+    private final int batchSize;
+    private final RateLimiter rateLimit;
+    private final ExecutorService jobs;
+
+    private final Map<String, DeletionProgress> running = new ConcurrentHashMap<>();
+    private final Cache<String, DeletionProgress> finished = CacheBuilder.newBuilder()
+            .expireAfterWrite(1, HOURS)
+            .build();
+
+    private final Counter started;
+    private final Counter resumed;
+    private final Counter completed;
+    private final Counter failed;
+
+    @Inject
+    ApplicationDeleterImpl(ActivityRepository activityRepo,
+                           ActivityFeeds activityFeeds,
+                           ApplicationRepository appRepo,
+                           FollowerRepository followerRepo,
+                           InboxCache inboxCache,
+                           MediaStore mediaStore,
+                           MessageRepository messageRepo,
+                           MetricRegistry metrics,
+                           @DataDirectory File dataDirectory)
+    {
+        this(activityRepo,
+             activityFeeds,
+             appRepo,
+             followerRepo,
+             inboxCache,
+             mediaStore,
+             messageRepo,
+             metrics,
+             openCheckpoints(new File(dataDirectory, DIRECTORY_NAME)),
+             DEFAULT_BATCH_SIZE,
+             DEFAULT_CALLS_PER_SECOND);
+    }
+
+    /**
+     * @param checkpoints Where to save checkpoints, or {@code null} to keep deletions in memory alone.
+     */
+    ApplicationDeleterImpl(ActivityRepository activityRepo,
+                           ActivityFeeds activityFeeds,
+                           ApplicationRepository appRepo,
+                           FollowerRepository followerRepo,
+                           InboxCache inboxCache,
+                           MediaStore mediaStore,
+                           MessageRepository messageRepo,
+                           MetricRegistry metrics,
+                           DeletionCheckpoints checkpoints,
+                           int batchSize,
+                           double callsPerSecond)
+    {
+        checkThat(activityRepo, activityFeeds, appRepo, followerRepo, inboxCache, mediaStore, messageRepo, metrics)
+                .are(notNull());
+
+        checkThat(batchSize)
+                .usingMessage("batchSize must be > 0")
+                .is(greaterThan(0));
+
+        checkThat(callsPerSecond > 0)
+                .usingMessage("callsPerSecond must be > 0")
+                .is(trueStatement());
+
+        this.activityRepo = activityRepo;
+        this.activityFeeds = activityFeeds;
+        this.appRepo = appRepo;
+        this.followerRepo = followerRepo;
+        this.inboxCache = inboxCache;
+        this.mediaStore = mediaStore;
+        this.messageRepo = messageRepo;
+        this.checkpoints = checkpoints;
+        this.batchSize = batchSize;
+        this.rateLimit = RateLimiter.create(callsPerSecond);
+
+        this.started = metrics.counter(name(ApplicationDeleter.class, "started"));
+        this.resumed = metrics.counter(name(ApplicationDeleter.class, "resumed"));
+        this.completed = metrics.counter(name(ApplicationDeleter.class, "completed"));
+        this.failed = metrics.counter(name(ApplicationDeleter.class, "failed"));
+
+        ThreadFactory threads = new ThreadFactoryBuilder()
+                .setNameFormat("app-deletion-%d")
+                .setDaemon(true)
+                .build();
+
+        this.jobs = Executors.newSingleThreadExecutor(threads);
+
+        resumeUnfinishedJobs();
+    }
+
+    private static DeletionCheckpoints openCheckpoints(File directory)
+    {
+        try
+        {
+            PrivateDirectories.create(directory);
+
+            return new DeletionCheckpoints(directory);
+        }
+        catch (IOException ex)
+        {
+            LOG.warn("Could not open deletion checkpoints at {}. Deletions will not survive a restart.", directory, ex);
+            return null;
+        }
+    }
+
+    @Override
+    public void delete(Application app, User deletedBy) throws TException
+    {
+        checkThat(app, deletedBy)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("app and user are required")
+                .are(notNull());
+
+        checkThat(app.applicationId)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("missing application ID")
+                .is(notNull());
+
+        DeletionCheckpoint job = new DeletionCheckpoint(app, createEventThatAppWasDeletedBy(deletedBy, app));
+
+        //Saved first, so that a crash after the App is gone still leaves a job to clean up after it
+        tryToSave(job);
+
+        try
+        {
+            appRepo.deleteApplication(app.applicationId);
+        }
+        catch (TException ex)
+        {
+            LOG.error("Failed to delete Application {}", app, ex);
+            tryToDiscard(job);
+            throw ex;
+        }
+
+        started.inc();
+        submit(job);
+    }
+
+    @Override
+    public DeletionProgress progressOf(String applicationId)
+    {
+        checkThat(applicationId).is(notNull());
+
+        DeletionProgress progress = running.get(applicationId);
+
+        return progress != null ? progress : finished.getIfPresent(applicationId);
+    }
+
+    /**
+     * Stops running jobs after their current batch. Unfinished jobs resume from their checkpoints.
+     */
+    void shutdown()
+    {
+        jobs.shutdownNow();
+    }
+
+    private void resumeUnfinishedJobs()
+    {
+        if (checkpoints == null)
+        {
+            return;
+        }
+
+        for (DeletionCheckpoint job : checkpoints.loadAll())
+        {
+            LOG.info("Resuming deletion of Application {} from {}", job.applicationId(), job.stage());
+            resumed.inc();
+            submit(job);
+        }
+    }
+
+    private void submit(DeletionCheckpoint job)
+    {
+        running.put(job.applicationId(), job.progress());
+        jobs.submit(() -> run(job));
+    }
+
+    private void run(DeletionCheckpoint job)
+    {
+        try
+        {
+            while (job.stage() != Stage.DONE)
+            {
+                if (Thread.currentThread().isInterrupted())
+                {
+                    LOG.info("Stopping deletion of Application {} at {}", job.applicationId(), job.stage());
+                    return;
+                }
+
+                advance(job);
+                tryToSave(job);
+                running.put(job.applicationId(), job.progress());
+            }
+
+            LOG.debug("Finished deleting Application {}", job.applicationId());
+            finished.put(job.applicationId(), job.progress());
+            running.remove(job.applicationId());
+            tryToDiscard(job);
+            completed.inc();
+        }
+        catch (RuntimeException ex)
+        {
+            //Left checkpointed, so it is tried again on the next start
+            LOG.error("Deletion of Application {} failed at {}", job.applicationId(), job.stage(), ex);
+            running.remove(job.applicationId());
+            failed.inc();
+        }
+    }
+
+    private void advance(DeletionCheckpoint job)
+    {
+        switch (job.stage())
+        {
+            case LISTING_FOLLOWERS:
+                job.followersAre(tryToGetFollowersOf(job.app()));
+                job.moveTo(Stage.REMOVING_FOLLOWERS);
+                break;
+            case REMOVING_FOLLOWERS:
+                removeNextFollowers(job);
+                break;
+            case DELETING_MESSAGES:
+                tryToDeleteAllMessagesFor(job.app());
+                inboxCache.applicationDeleted(job.applicationId());
+                tryToDropFeedOf(job.app());
+                job.moveTo(Stage.DELETING_MEDIA);
+                break;
+            case DELETING_MEDIA:
+                tryToDeleteMediaFor(job.app());
+                job.moveTo(Stage.NOTIFYING_USERS);
+                break;
+            case NOTIFYING_USERS:
+                notifyOwners(job);
+                job.moveTo(Stage.DONE);
+                break;
+            default:
+                job.moveTo(Stage.DONE);
+        }
+    }
+
+    private void removeNextFollowers(DeletionCheckpoint job)
+    {
+        if (!job.hasListedFollowers())
+        {
+            job.followersAre(tryToGetFollowersOf(job.app()));
+        }
+
+        List<User> batch = job.nextFollowers(batchSize);
+
+        if (batch.isEmpty())
+        {
+            job.moveTo(Stage.DELETING_MESSAGES);
+            return;
+        }
+
+        for (User follower : batch)
+        {
+            if (!job.wasNotified(follower))
+            {
+                rateLimit.acquire();
+                tryToSave(job.notice(), follower);
+            }
+        }
+
+        job.notified(batch);
+        tryToSave(job);
+
+        String appId = job.applicationId();
+
+        for (User follower : batch)
+        {
+            rateLimit.acquire();
+            deleteFollowing(follower.userId, appId);
+        }
+
+        job.removed(batch);
+    }
+
+    private void notifyOwners(DeletionCheckpoint job)
+    {
+        for (User owner : job.owners())
+        {
+            rateLimit.acquire();
+            tryToSave(job.notice(), owner);
+        }
+
+        job.ownersNotified();
+    }
+
+    private List<User> tryToGetFollowersOf(Application app)
+    {
+        rateLimit.acquire();
+
+        try
+        {
+            List<User> followers = followerRepo.getApplicationFollowers(app.applicationId);
+            return followers != null ? followers : Lists.emptyList();
+        }
+        catch (TException ex)
+        {
+            LOG.error("Failed to get followers of Application {}", app, ex);
+            return Lists.emptyList();
+        }
+    }
+
+    private void deleteFollowing(String userId, String applicationId)
+    {
+        try
+        {
+            followerRepo.deleteFollowing(userId, applicationId);
+        }
+        catch (TException ex)
+        {
+            LOG.warn("Failed to remove Following of App [{}] By User [{}]", applicationId, userId, ex);
+        }
+    }
+
+    private void tryToDeleteAllMessagesFor(Application app)
+    {
+        rateLimit.acquire();
+
+        try
+        {
+            messageRepo.deleteAllMessages(app.applicationId);
+        }
+        catch (TException ex)
+        {
+            LOG.warn("Failed to delete all Messages for {}", app, ex);
+        }
+    }
+
+    private void tryToDropFeedOf(Application app)
+    {
+        rateLimit.acquire();
+        activityFeeds.dropFeedOf(app.applicationId);
+    }
+
+    private void tryToDeleteMediaFor(Application app)
+    {
+        String iconLink = app.applicationIconMediaId;
+
+        if (!Strings.isNullOrEmpty(iconLink))
+        {
+            deleteIcon(app, iconLink);
+        }
+
+        deleteIcon(app, app.applicationId);
+    }
+
+    private void deleteIcon(Application app, String iconLink)
+    {
+        rateLimit.acquire();
+
+        try
+        {
+            mediaStore.release(iconLink);
+        }
+        catch (TException ex)
+        {
+            LOG.info("Could not delete icon [{}] for application {}", iconLink, app, ex);
+        }
+    }
+
+    private Event createEventThatAppWasDeletedBy(User actor, Application app)
+    {
+        ApplicationDeleted appDeleted = new ApplicationDeleted()
+                .setMessage(app.name + " has been deleted");
+
+        EventType eventType = new EventType();
+        eventType.setApplicationDeleted(appDeleted);
+
+        return new Event()
+                .setEventId(one(uuids))
+                .setApplication(referenceTo(app))
+                .setApplicationId(app.applicationId)
+                .setUserIdOfActor(actor.userId)
+                .setActor(referenceTo(actor))
+                .setTimestamp(now().toEpochMilli())
+                .setEventType(eventType);
+    }
+
+    private void tryToSave(Event event, User user)
+    {
+        try
+        {
+            activityRepo.saveEvent(event, user);
+        }
+        catch (Exception ex)
+        {
+            LOG.error("Failed to save Event {} for User {}", event, user, ex);
+        }
+    }
+
+    private void tryToSave(DeletionCheckpoint job)
+    {
+        if (checkpoints == null)
+        {
+            return;
+        }
+
+        try
+        {
+            checkpoints.save(job);
+        }
+        catch (IOException ex)
+        {
+            LOG.warn("Failed to save checkpoint {}. It will resume from an earlier one.", job, ex);
+        }
+    }
+
+    private void tryToDiscard(DeletionCheckpoint job)
+    {
+        if (checkpoints == null)
+        {
+            return;
+        }
+
+        try
+        {
+            checkpoints.remove(job.applicationId());
+        }
+        catch (IOException ex)
+        {
+            LOG.warn("Failed to discard checkpoint {}. It will be resumed, and finish at once.", job, ex);
+        }
+    }
+
+}
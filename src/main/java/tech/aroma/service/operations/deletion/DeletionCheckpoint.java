@@ -0,0 +1,315 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.deletion;
+
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.thrift.*;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import tech.aroma.service.operations.deletion.DeletionProgress.Stage;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.events.Event;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toCollection;
+
+/**
+ * The state of one Application's deletion, which is saved after each batch so that the deletion can resume
+ * where it left off.
+ * <p>
+ * Only what is needed to finish the deletion is saved: the parts of the Application that are cleaned up after
+ * it, the notice sent to its owners and followers, the stage, and a cursor. Followers are worked through in
+ * order of their IDs, and the cursor holds the ID of the last follower removed, and of the last follower
+ * notified. The followers themselves are not saved; a resumed deletion lists the ones that are left again.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class DeletionCheckpoint
+{
+
+    private static final int VERSION = 2;
+
+    private final Application app;
+    private final Event notice;
+
+    private Stage stage = Stage.LISTING_FOLLOWERS;
+    private String lastRemovedId = "";
+    private String lastNotifiedId = "";
+    private int followerCount = 0;
+    private int followersRemoved = 0;
+    private int usersNotified = 0;
+
+    /**
+     * Not saved; {@code null} until the followers are listed, and again after a restart.
+     */
+    private List<User> followersLeft;
+
+    /**
+     * @param app    The Application being deleted. Only its ID, name, icon, and owners are kept.
+     * @param notice The Event that tells owners and followers that the Application was deleted.
+     */
+    DeletionCheckpoint(Application app, Event notice)
+    {
+        this.app = trimmed(app);
+        this.notice = notice;
+    }
+
+    private static Application trimmed(Application app)
+    {
+        Application trimmed = new Application()
+                .setApplicationId(app.applicationId)
+                .setName(app.name)
+                .setApplicationIconMediaId(app.applicationIconMediaId);
+
+        if (app.isSetOwners())
+        {
+            trimmed.setOwners(new HashSet<>(app.owners));
+        }
+
+        return trimmed;
+    }
+
+    Application app()
+    {
+        return app;
+    }
+
+    String applicationId()
+    {
+        return app.applicationId;
+    }
+
+    Event notice()
+    {
+        return notice;
+    }
+
+    Stage stage()
+    {
+        return stage;
+    }
+
+    String lastRemovedId()
+    {
+        return lastRemovedId;
+    }
+
+    String lastNotifiedId()
+    {
+        return lastNotifiedId;
+    }
+
+    /**
+     * @return The owners of the Application.
+     */
+    List<User> owners()
+    {
+        return app.owners == null
+               ? new ArrayList<>()
+               : app.owners.stream().map(id -> new User().setUserId(id)).collect(toCollection(ArrayList::new));
+    }
+
+    /**
+     * @return Whether the followers left have been listed since the deletion started or resumed.
+     */
+    boolean hasListedFollowers()
+    {
+        return followersLeft != null;
+    }
+
+    /**
+     * Remembers the followers that have not been removed yet, in order of their IDs.
+     *
+     * @param followers The current followers of the Application, some of which may already have been removed.
+     */
+    void followersAre(List<User> followers)
+    {
+        followersLeft = followers.stream()
+                .filter(follower -> follower.userId != null)
+                .filter(follower -> follower.userId.compareTo(lastRemovedId) > 0)
+                .sorted(comparing(follower -> follower.userId))
+                .collect(toCollection(ArrayList::new));
+
+        followerCount = followersRemoved + followersLeft.size();
+    }
+
+    /**
+     * @return The next followers to remove, or an empty list once all of them have been.
+     */
+    List<User> nextFollowers(int count)
+    {
+        if (followersLeft == null)
+        {
+            return Collections.emptyList();
+        }
+
+        return new ArrayList<>(followersLeft.subList(0, Math.min(count, followersLeft.size())));
+    }
+
+    boolean wasNotified(User follower)
+    {
+        return follower.userId.compareTo(lastNotifiedId) <= 0;
+    }
+
+    /**
+     * Marks every follower in {@code batch} as notified.
+     */
+    void notified(List<User> batch)
+    {
+        for (User follower : batch)
+        {
+            if (!wasNotified(follower))
+            {
+                usersNotified += 1;
+                lastNotifiedId = follower.userId;
+            }
+        }
+    }
+
+    /**
+     * Marks every follower in {@code batch}, which must come from {@link #nextFollowers(int)}, as removed.
+     */
+    void removed(List<User> batch)
+    {
+        if (batch.isEmpty())
+        {
+            return;
+        }
+
+        followersLeft.subList(0, batch.size()).clear();
+        followersRemoved += batch.size();
+        lastRemovedId = batch.get(batch.size() - 1).userId;
+    }
+
+    void ownersNotified()
+    {
+        usersNotified += owners().size();
+    }
+
+    void moveTo(Stage stage)
+    {
+        this.stage = stage;
+    }
+
+    DeletionProgress progress()
+    {
+        int usersToNotify = stage.compareTo(Stage.LISTING_FOLLOWERS) > 0 ? owners().size() + followerCount : 0;
+
+        return new DeletionProgress(app.applicationId, app.owners, stage, followersRemoved, followerCount, usersNotified, usersToNotify);
+    }
+
+    byte[] toBytes() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes))
+        {
+            out.writeInt(VERSION);
+            writeStruct(out, app);
+            writeStruct(out, notice);
+            out.writeInt(stage.ordinal());
+            out.writeUTF(lastRemovedId);
+            out.writeUTF(lastNotifiedId);
+            out.writeInt(followerCount);
+            out.writeInt(followersRemoved);
+            out.writeInt(usersNotified);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    static DeletionCheckpoint fromBytes(byte[] bytes) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes)))
+        {
+            int version = in.readInt();
+
+            if (version != VERSION)
+            {
+                throw new IOException("Unknown checkpoint version: " + version);
+            }
+
+            DeletionCheckpoint checkpoint = new DeletionCheckpoint(readStruct(in, new Application()),
+                                                                   readStruct(in, new Event()));
+
+            int stage = in.readInt();
+
+            if (stage < 0 || stage >= Stage.values().length)
+            {
+                throw new IOException("Unknown stage: " + stage);
+            }
+
+            checkpoint.stage = Stage.values()[stage];
+            checkpoint.lastRemovedId = in.readUTF();
+            checkpoint.lastNotifiedId = in.readUTF();
+            checkpoint.followerCount = in.readInt();
+            checkpoint.followersRemoved = in.readInt();
+            checkpoint.usersNotified = in.readInt();
+
+            return checkpoint;
+        }
+    }
+
+    private static void writeStruct(DataOutputStream out, TBase<?, ?> struct) throws IOException
+    {
+        try
+        {
+            byte[] serialized = new TSerializer(new TBinaryProtocol.Factory()).serialize(struct);
+            out.writeInt(serialized.length);
+            out.write(serialized);
+        }
+        catch (TException ex)
+        {
+            throw new IOException("Could not serialize " + struct.getClass().getSimpleName(), ex);
+        }
+    }
+
+    private static <T extends TBase<?, ?>> T readStruct(DataInputStream in, T struct) throws IOException
+    {
+        int length = in.readInt();
+
+        if (length < 0 || length > in.available())
+        {
+            throw new IOException("Corrupted checkpoint");
+        }
+
+        byte[] serialized = new byte[length];
+        in.readFully(serialized);
+
+        try
+        {
+            new TDeserializer(new TBinaryProtocol.Factory()).deserialize(struct, serialized);
+            return struct;
+        }
+        catch (TException ex)
+        {
+            throw new IOException("Could not deserialize " + struct.getClass().getSimpleName(), ex);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DeletionCheckpoint{" + "applicationId=" + app.applicationId + ", stage=" + stage + ", lastRemovedId=" + lastRemovedId + ", lastNotifiedId=" + lastNotifiedId + '}';
+    }
+
+}
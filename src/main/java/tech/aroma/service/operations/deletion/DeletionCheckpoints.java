@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.deletion;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+/**
+ * Keeps one file on local disk for each Application deletion that has not finished.
+ * <p>
+ * A checkpoint is written to a temporary file first and then moved over the old one, so a crash leaves either
+ * the previous checkpoint or the new one, never a mix of both.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class DeletionCheckpoints
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(DeletionCheckpoints.class);
+
+    static final String SUFFIX = ".deletion";
+
+    private final File directory;
+
+    DeletionCheckpoints(File directory) throws IOException
+    {
+        checkThat(directory).is(notNull());
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Could not create directory: " + directory);
+        }
+
+        this.directory = directory;
+    }
+
+    void save(DeletionCheckpoint checkpoint) throws IOException
+    {
+        checkThat(checkpoint).is(notNull());
+
+        File file = fileFor(checkpoint.applicationId());
+        File temporary = new File(directory, file.getName() + ".tmp");
+
+        Files.write(temporary.toPath(), checkpoint.toBytes());
+        Files.move(temporary.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    void remove(String applicationId) throws IOException
+    {
+        Files.deleteIfExists(fileFor(applicationId).toPath());
+    }
+
+    /**
+     * @return Every checkpoint that is still on disk. Checkpoints that cannot be read are deleted.
+     */
+    List<DeletionCheckpoint> loadAll()
+    {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        List<DeletionCheckpoint> checkpoints = new ArrayList<>();
+
+        for (File file : files != null ? files : new File[0])
+        {
+            try
+            {
+                checkpoints.add(DeletionCheckpoint.fromBytes(Files.readAllBytes(file.toPath())));
+            }
+            catch (IOException ex)
+            {
+                LOG.error("Could not read deletion checkpoint {}. Discarding it.", file, ex);
+
+                if (!file.delete())
+                {
+                    LOG.warn("Could not delete unreadable checkpoint {}", file);
+                }
+            }
+        }
+
+        return checkpoints;
+    }
+
+    private File fileFor(String applicationId)
+    {
+        return new File(directory, applicationId + SUFFIX);
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.deletion;
+
+
+import java.util.*;
+
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+/**
+ * A snapshot of how far the deletion of an Application has come.
+ *
+ * @author SirWellington
+ */
+@Internal
+public final class DeletionProgress
+{
+
+    /**
+     * The stages of a deletion, in the order they run.
+     */
+    public enum Stage
+    {
+        LISTING_FOLLOWERS,
+        REMOVING_FOLLOWERS,
+        DELETING_MESSAGES,
+        DELETING_MEDIA,
+        NOTIFYING_USERS,
+        DONE
+    }
+
+    private final String applicationId;
+    private final Set<String> owners;
+    private final Stage stage;
+    private final int followersRemoved;
+    private final int followers;
+    private final int usersNotified;
+    private final int usersToNotify;
+
+    public DeletionProgress(String applicationId,
+                            Collection<String> owners,
+                            Stage stage,
+                            int followersRemoved,
+                            int followers,
+                            int usersNotified,
+                            int usersToNotify)
+    {
+        this.applicationId = applicationId;
+        this.owners = owners != null ? Collections.unmodifiableSet(new HashSet<>(owners)) : Collections.emptySet();
+        this.stage = stage;
+        this.followersRemoved = followersRemoved;
+        this.followers = followers;
+        this.usersNotified = usersNotified;
+        this.usersToNotify = usersToNotify;
+    }
+
+    public String getApplicationId()
+    {
+        return applicationId;
+    }
+
+    /**
+     * @return Whether the User owned the Application, and so may follow its deletion.
+     */
+    public boolean isOwnedBy(String userId)
+    {
+        return owners.contains(userId);
+    }
+
+    public Stage getStage()
+    {
+        return stage;
+    }
+
+    public boolean isDone()
+    {
+        return stage == Stage.DONE;
+    }
+
+    public int getFollowersRemoved()
+    {
+        return followersRemoved;
+    }
+
+    /**
+     * @return How many followers the Application had, or 0 until they have been listed.
+     */
+    public int getFollowers()
+    {
+        return followers;
+    }
+
+    public int getUsersNotified()
+    {
+        return usersNotified;
+    }
+
+    public int getUsersToNotify()
+    {
+        return usersToNotify;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DeletionProgress{" + "applicationId=" + applicationId + ", stage=" + stage + ", followersRemoved=" + followersRemoved + ", followers=" + followers + ", usersNotified=" + usersNotified + ", usersToNotify=" + usersToNotify + '}';
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.email;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.ImplementedBy;
+import java.io.File;
+import org.apache.thrift.TException;
+import tech.aroma.thrift.email.service.EmailService;
+import tech.aroma.thrift.email.service.SendEmailRequest;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.annotations.arguments.Required;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+/**
+ * Sends emails in the background, so that a slow Email Service does not hold up the request that asked for
+ * the email.
+ * <p>
+ * Emails are journaled to local disk before they are queued, sent in batches, and retried with a growing
+ * delay when the Email Service fails. The same email dispatched twice within a short window is only sent once.
+ * An email that carries tokens is never written to disk, so it is only kept in memory.
+ *
+ * @author SirWellington
+ */
+@ImplementedBy(EmailDispatcherImpl.class)
+public interface EmailDispatcher
+{
+
+    /**
+     * Queues an email to be sent. Returns without waiting for it to be sent.
+     *
+     * @param request The email to send.
+     * @throws OperationFailedException If the queue is full.
+     * @throws TException               If the request is bad.
+     */
+    void dispatch(@Required SendEmailRequest request) throws TException;
+
+    /**
+     * @param dataDirectory The directory to keep the journal of pending emails under.
+     */
+    public static EmailDispatcher newInstance(@Required EmailService.Iface emailService,
+                                              @Required MetricRegistry metrics,
+                                              @Required File dataDirectory)
+    {
+        checkThat(emailService, metrics, dataDirectory).are(notNull());
+
+        return new EmailDispatcherImpl(emailService, metrics, dataDirectory);
+    }
+}
@@ -0,0 +1,547 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.email;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.*;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.thrift.*;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.service.AromaAnnotations.DataDirectory;
+import tech.aroma.service.PrivateDirectories;
+import tech.aroma.thrift.authentication.ApplicationToken;
+import tech.aroma.thrift.email.EmailMessage;
+import tech.aroma.thrift.email.service.EmailService;
+import tech.aroma.thrift.email.service.SendEmailRequest;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+
+/**
+ * Journals each email, then queues it for a small pool of workers.
+ * <p>
+ * A worker takes as many queued emails as are waiting, up to a batch, sends each of them, and then marks the
+ * whole batch done in the journal at once. An email that fails is retried after a delay that doubles with each
+ * attempt, and is given up on after {@code maxAttempts}. Emails left in the journal by a previous run are queued
+ * again at startup. If the journal cannot be opened, emails are only kept in memory.
+ * <p>
+ * The journal lives in a private directory under the {@linkplain DataDirectory data directory}. Tokens are never
+ * written to it, and an email is never sent without the tokens it was dispatched with, so an email that
+ * {@linkplain #carriesTokens(SendEmailRequest) carries tokens} is only kept in memory, and is lost if the node
+ * stops before sending it. Any such email found in the journal, written there without its tokens by an earlier
+ * version, is dropped instead of being sent.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+final class EmailDispatcherImpl implements EmailDispatcher
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(EmailDispatcherImpl.class);
+
+    static final String DIRECTORY_NAME = "email-journal";
+
+    static final int DEFAULT_WORKERS = 2;
+    static final int DEFAULT_MAX_QUEUED = 10_000;
+    static final int DEFAULT_BATCH_SIZE = 50;
+    static final int DEFAULT_MAX_ATTEMPTS = 6;
+    static final long DEFAULT_BASE_BACKOFF_MILLIS = 1_000;
+    static final long MAX_BACKOFF_MILLIS = 5 * 60 * 1_000;
+    static final long DEFAULT_DEDUPLICATION_WINDOW_MILLIS = 10 * 60 * 1_000;
+
+    private static final long NOT_JOURNALED = -1;
+
+    private final EmailService.Iface emailService;
+    private final EmailJournal journal;
+
+    private final BlockingQueue<PendingEmail> queue;
+    private final Cache<String, Boolean> recentEmails;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService retries;
+
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+
+    private final Timer queueTime;
+    private final Timer sendTime;
+    private final Counter duplicates;
+    private final Counter rejections;
+    private final Counter retried;
+    private final Counter failures;
+    private final Counter keptInMemory;
+    private final Counter droppedOnRecovery;
+
+    @Inject
+    EmailDispatcherImpl(EmailService.Iface emailService, MetricRegistry metrics, @DataDirectory File dataDirectory)
+    {
+        this(emailService,
+             metrics,
+             openJournal(new File(dataDirectory, DIRECTORY_NAME)),
+             DEFAULT_WORKERS,
+             DEFAULT_MAX_QUEUED,
+             DEFAULT_BATCH_SIZE,
+             DEFAULT_MAX_ATTEMPTS,
+             DEFAULT_BASE_BACKOFF_MILLIS,
+             DEFAULT_DEDUPLICATION_WINDOW_MILLIS);
+    }
+
+    /**
+     * @param journal The journal to record emails in, or {@code null} to keep them in memory alone.
+     */
+    EmailDispatcherImpl(EmailService.Iface emailService,
+                        MetricRegistry metrics,
+                        EmailJournal journal,
+                        int workerCount,
+                        int maxQueued,
+                        int batchSize,
+                        int maxAttempts,
+                        long baseBackoffMillis,
+                        long deduplicationWindowMillis)
+    {
+        checkThat(emailService, metrics)
+                .are(notNull());
+
+        checkThat(workerCount, maxQueued, batchSize, maxAttempts)
+                .usingMessage("dispatch limits must be > 0")
+                .are(greaterThan(0));
+
+        checkThat(baseBackoffMillis, deduplicationWindowMillis)
+                .usingMessage("delays must be > 0")
+                .are(greaterThan(0L));
+
+        this.emailService = emailService;
+        this.journal = journal;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+
+        this.queue = new ArrayBlockingQueue<>(maxQueued);
+        this.recentEmails = CacheBuilder.newBuilder()
+                .expireAfterWrite(deduplicationWindowMillis, MILLISECONDS)
+                .build();
+
+        this.queueTime = metrics.timer(name(EmailDispatcher.class, "queue-time"));
+        this.sendTime = metrics.timer(name(EmailDispatcher.class, "send-time"));
+        this.duplicates = metrics.counter(name(EmailDispatcher.class, "duplicates"));
+        this.rejections = metrics.counter(name(EmailDispatcher.class, "rejections"));
+        this.retried = metrics.counter(name(EmailDispatcher.class, "retries"));
+        this.failures = metrics.counter(name(EmailDispatcher.class, "failures"));
+        this.keptInMemory = metrics.counter(name(EmailDispatcher.class, "kept-in-memory"));
+        this.droppedOnRecovery = metrics.counter(name(EmailDispatcher.class, "dropped-on-recovery"));
+        metrics.gauge(name(EmailDispatcher.class, "queue-depth"), () -> (Gauge<Integer>) queue::size);
+        metrics.gauge(name(EmailDispatcher.class, "oldest-queued-millis"), () -> (Gauge<Long>) this::ageOfOldest);
+
+        recover();
+
+        this.retries = Executors.newSingleThreadScheduledExecutor(threadsNamed("email-retry-%d"));
+        this.workers = Executors.newFixedThreadPool(workerCount, threadsNamed("email-dispatch-%d"));
+
+        for (int i = 0; i < workerCount; ++i)
+        {
+            workers.submit(this::work);
+        }
+    }
+
+    private static EmailJournal openJournal(File directory)
+    {
+        try
+        {
+            PrivateDirectories.create(directory);
+
+            return new EmailJournal(directory, EmailJournal.DEFAULT_COMPACTION_BYTES);
+        }
+        catch (IOException ex)
+        {
+            LOG.warn("Could not open the email journal at {}. Queueing emails in memory only.", directory, ex);
+            return null;
+        }
+    }
+
+    @Override
+    public void dispatch(SendEmailRequest request) throws TException
+    {
+        checkThat(request)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("request is null")
+                .is(notNull());
+
+        byte[] serialized = serialize(withoutTokens(request));
+        String key = Hashing.sha256().hashBytes(serialized).toString();
+
+        if (recentEmails.asMap().putIfAbsent(key, Boolean.TRUE) != null)
+        {
+            duplicates.inc();
+            LOG.debug("Email to {} was already dispatched recently. Dropping it.", request.emailAddress);
+            return;
+        }
+
+        PendingEmail email = new PendingEmail(journal(request, serialized), key, request);
+
+        if (!queue.offer(email))
+        {
+            recentEmails.invalidate(key);
+            finish(Collections.singletonList(email));
+            rejections.inc();
+            LOG.warn("Email queue is full. Rejecting email to {}", request.emailAddress);
+            throw new OperationFailedException("Email queue is full");
+        }
+    }
+
+    private long journal(SendEmailRequest request, byte[] serialized)
+    {
+        if (journal == null)
+        {
+            return NOT_JOURNALED;
+        }
+
+        if (carriesTokens(request))
+        {
+            keptInMemory.inc();
+            LOG.debug("Email to {} carries tokens. Keeping it in memory only.", request.emailAddress);
+            return NOT_JOURNALED;
+        }
+
+        try
+        {
+            return journal.append(serialized);
+        }
+        catch (IOException ex)
+        {
+            LOG.warn("Failed to journal email. Keeping it in memory only.", ex);
+            return NOT_JOURNALED;
+        }
+    }
+
+    private void recover()
+    {
+        if (journal == null)
+        {
+            return;
+        }
+
+        for (Map.Entry<Long, byte[]> entry : journal.recovered().entrySet())
+        {
+            long id = entry.getKey();
+            byte[] serialized = entry.getValue();
+            SendEmailRequest request = deserialize(serialized);
+
+            if (request == null)
+            {
+                finish(Collections.singletonList(new PendingEmail(id, "", null)));
+                continue;
+            }
+
+            if (lostItsTokens(request))
+            {
+                droppedOnRecovery.inc();
+                LOG.warn("Dropping email {} to {} from the journal. It was journaled without its tokens.", id, request.emailAddress);
+                finish(Collections.singletonList(new PendingEmail(id, "", null)));
+                continue;
+            }
+
+            String key = Hashing.sha256().hashBytes(serialized).toString();
+            recentEmails.put(key, Boolean.TRUE);
+
+            if (!queue.offer(new PendingEmail(id, key, request)))
+            {
+                //Left in the journal for the next restart
+                LOG.warn("Email queue is full. Could not recover email {}", id);
+                break;
+            }
+        }
+    }
+
+    private void work()
+    {
+        List<PendingEmail> batch = new ArrayList<>(batchSize);
+
+        while (!Thread.currentThread().isInterrupted())
+        {
+            try
+            {
+                batch.add(queue.take());
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            queue.drainTo(batch, batchSize - 1);
+            sendAll(batch);
+            batch.clear();
+        }
+    }
+
+    private void sendAll(List<PendingEmail> batch)
+    {
+        List<PendingEmail> finished = new ArrayList<>(batch.size());
+
+        for (PendingEmail email : batch)
+        {
+            queueTime.update(System.currentTimeMillis() - email.timeOfLastQueue, MILLISECONDS);
+
+            if (trySend(email) || !retryLater(email))
+            {
+                finished.add(email);
+            }
+        }
+
+        finish(finished);
+    }
+
+    private boolean trySend(PendingEmail email)
+    {
+        try (Timer.Context ignored = sendTime.time())
+        {
+            emailService.sendEmail(email.request);
+            LOG.debug("Sent Email to {}", email.request.emailAddress);
+            return true;
+        }
+        catch (Exception ex)
+        {
+            if (ex instanceof InterruptedException)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            LOG.warn("Failed to send Email to {} on attempt {}", email.request.emailAddress, email.attempts + 1, ex);
+            return false;
+        }
+    }
+
+    /**
+     * @return False if the email has run out of attempts, and was given up on.
+     */
+    private boolean retryLater(PendingEmail email)
+    {
+        ++email.attempts;
+
+        if (email.attempts >= maxAttempts)
+        {
+            failures.inc();
+            recentEmails.invalidate(email.key);
+            LOG.error("Giving up on Email to {} after {} attempts", email.request.emailAddress, email.attempts);
+            return false;
+        }
+
+        try
+        {
+            retries.schedule(() -> requeue(email), backoffFor(email.attempts), MILLISECONDS);
+            retried.inc();
+        }
+        catch (RejectedExecutionException ex)
+        {
+            //Shutting down; the email stays in the journal
+            LOG.debug("Could not schedule retry of Email to {}", email.request.emailAddress);
+        }
+
+        return true;
+    }
+
+    private void requeue(PendingEmail email)
+    {
+        email.timeOfLastQueue = System.currentTimeMillis();
+
+        if (!queue.offer(email))
+        {
+            retries.schedule(() -> requeue(email), baseBackoffMillis, MILLISECONDS);
+        }
+    }
+
+    long backoffFor(int attempts)
+    {
+        long backoff = baseBackoffMillis << Math.min(attempts - 1, 20);
+        return Math.min(backoff, MAX_BACKOFF_MILLIS);
+    }
+
+    private void finish(List<PendingEmail> emails)
+    {
+        if (journal == null || emails.isEmpty())
+        {
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>(emails.size());
+
+        for (PendingEmail email : emails)
+        {
+            if (email.journalId != NOT_JOURNALED)
+            {
+                ids.add(email.journalId);
+            }
+        }
+
+        try
+        {
+            journal.complete(ids);
+        }
+        catch (IOException ex)
+        {
+            LOG.warn("Failed to mark {} emails done in the journal. They may be sent again after a restart.", ids.size(), ex);
+        }
+    }
+
+    private long ageOfOldest()
+    {
+        PendingEmail oldest = queue.peek();
+        return oldest != null ? System.currentTimeMillis() - oldest.timeOfDispatch : 0L;
+    }
+
+    int queueDepth()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Stops the workers. Emails still queued remain in the journal.
+     */
+    void shutdown()
+    {
+        workers.shutdownNow();
+        retries.shutdownNow();
+    }
+
+    /**
+     * @return A copy of the email without any of the tokens that could be used to act as its User or Application.
+     *         It is only used to recognise the same email dispatched twice, and is never sent.
+     */
+    static SendEmailRequest withoutTokens(SendEmailRequest request)
+    {
+        SendEmailRequest copy = request.deepCopy();
+        copy.unsetToken();
+
+        ApplicationToken appToken = appTokenOf(copy);
+
+        if (appToken != null)
+        {
+            appToken.unsetTokenId();
+        }
+
+        return copy;
+    }
+
+    /**
+     * @return True if the email carries a token, which must not be written to disk.
+     */
+    static boolean carriesTokens(SendEmailRequest request)
+    {
+        ApplicationToken appToken = appTokenOf(request);
+
+        return request.isSetToken() || appToken != null && appToken.isSetTokenId();
+    }
+
+    /**
+     * @return True if the email is a copy whose Application token was removed before it was journaled. Sending it
+     *         would hand its recipient an Application token that does not work.
+     */
+    private static boolean lostItsTokens(SendEmailRequest request)
+    {
+        ApplicationToken appToken = appTokenOf(request);
+
+        return appToken != null && !appToken.isSetTokenId();
+    }
+
+    private static ApplicationToken appTokenOf(SendEmailRequest request)
+    {
+        EmailMessage message = request.emailMessage;
+
+        if (message != null && message.isSetNewApp() && message.getNewApp().isSetAppToken())
+        {
+            return message.getNewApp().getAppToken();
+        }
+
+        return null;
+    }
+
+    private static byte[] serialize(SendEmailRequest request) throws TException
+    {
+        try
+        {
+            return new TSerializer(new TBinaryProtocol.Factory()).serialize(request);
+        }
+        catch (TException ex)
+        {
+            LOG.error("Failed to serialize Email request {}", request, ex);
+            throw new InvalidArgumentException("Could not serialize email: " + ex.getMessage());
+        }
+    }
+
+    private static SendEmailRequest deserialize(byte[] serialized)
+    {
+        SendEmailRequest request = new SendEmailRequest();
+
+        try
+        {
+            new TDeserializer(new TBinaryProtocol.Factory()).deserialize(request, serialized);
+            return request;
+        }
+        catch (TException ex)
+        {
+            LOG.warn("Dropping unreadable email from the journal", ex);
+            return null;
+        }
+    }
+
+    private static ThreadFactory threadsNamed(String nameFormat)
+    {
+        return new ThreadFactoryBuilder()
+                .setNameFormat(nameFormat)
+                .setDaemon(true)
+                .build();
+    }
+
+    private static class PendingEmail
+    {
+
+        private final long journalId;
+        private final String key;
+        private final SendEmailRequest request;
+        private final long timeOfDispatch = System.currentTimeMillis();
+
+        private volatile long timeOfLastQueue = timeOfDispatch;
+        private volatile int attempts = 0;
+
+        PendingEmail(long journalId, String key, SendEmailRequest request)
+        {
+            this.journalId = journalId;
+            this.key = key;
+            this.request = request;
+        }
+    }
+
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.email;
+
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+
+/**
+ * An append-only journal, on local disk, of the emails that are waiting to be sent.
+ * <p>
+ * Each email is recorded when it is queued, and a second record marks it as done once it has been sent or given
+ * up on. Replaying the journal at startup recovers the emails that a stopped node never got to. Records are
+ * checksummed, so a record torn by a crash ends the replay instead of corrupting it.
+ * <p>
+ * The journal is truncated whenever nothing is pending, and rewritten with only the pending emails once it grows
+ * past {@code compactionBytes} and is mostly done records. Writes are not forced to disk, so the journal survives
+ * the process stopping, but not the machine.
+ * <p>
+ * No record may be larger than {@link #MAX_EMAIL_BYTES}, so that a corrupted length cannot make a replay
+ * allocate more than that.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class EmailJournal implements Closeable
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(EmailJournal.class);
+
+    static final String FILE_NAME = "emails.journal";
+    static final long DEFAULT_COMPACTION_BYTES = 16L * 1024 * 1024;
+    static final int MAX_EMAIL_BYTES = 1024 * 1024;
+
+    static final int MAGIC = 0x454D4C4A;
+    private static final int HEADER_BYTES = 12;
+    private static final byte QUEUED = 1;
+    private static final byte DONE = 2;
+
+    private final File file;
+    private final long compactionBytes;
+
+    private final Map<Long, byte[]> pending = new LinkedHashMap<>();
+    private final Map<Long, byte[]> recovered;
+    private long liveBytes;
+    private long nextId;
+
+    private FileChannel channel;
+
+    EmailJournal(File directory, long compactionBytes) throws IOException
+    {
+        checkThat(directory).is(notNull());
+
+        checkThat(compactionBytes)
+                .usingMessage("compactionBytes must be > 0")
+                .is(greaterThan(0L));
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Could not create directory: " + directory);
+        }
+
+        this.file = new File(directory, FILE_NAME);
+        this.compactionBytes = compactionBytes;
+
+        replay();
+        this.recovered = new LinkedHashMap<>(pending);
+
+        //Drops the done records, along with anything torn at the end
+        rewrite();
+
+        LOG.info("Recovered {} pending emails from {}", recovered.size(), file);
+    }
+
+    /**
+     * @return The emails that were still pending when the journal was opened, by ID, in the order they were queued.
+     */
+    synchronized Map<Long, byte[]> recovered()
+    {
+        return Collections.unmodifiableMap(recovered);
+    }
+
+    /**
+     * Records an email as queued.
+     *
+     * @return The ID to {@linkplain #complete(Collection) complete} the email with.
+     * @throws IOException If the email is larger than {@link #MAX_EMAIL_BYTES}, or could not be written.
+     */
+    synchronized long append(byte[] email) throws IOException
+    {
+        checkThat(email).is(notNull());
+
+        if (email.length > MAX_EMAIL_BYTES)
+        {
+            throw new IOException("Email of " + email.length + " bytes is too large to journal");
+        }
+
+        long id = nextId++;
+        write(QUEUED, id, email);
+
+        pending.put(id, email);
+        liveBytes += recordLengthOf(email.length);
+
+        return id;
+    }
+
+    /**
+     * Records each of the emails as done, so that they are not recovered again.
+     */
+    synchronized void complete(Collection<Long> ids) throws IOException
+    {
+        checkThat(ids).is(notNull());
+
+        for (Long id : ids)
+        {
+            byte[] email = pending.remove(id);
+
+            if (email == null)
+            {
+                continue;
+            }
+
+            liveBytes -= recordLengthOf(email.length);
+            write(DONE, id, null);
+        }
+
+        if (pending.isEmpty())
+        {
+            channel.truncate(0);
+        }
+        else if (channel.size() > compactionBytes && liveBytes * 2 < channel.size())
+        {
+            rewrite();
+        }
+    }
+
+    synchronized int pendingCount()
+    {
+        return pending.size();
+    }
+
+    synchronized long sizeInBytes() throws IOException
+    {
+        return channel.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (channel != null)
+        {
+            channel.close();
+        }
+    }
+
+    private void replay() throws IOException
+    {
+        if (!file.exists())
+        {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            while (true)
+            {
+                byte[] body = readRecord(in);
+
+                if (body == null)
+                {
+                    break;
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(body);
+                byte kind = record.get();
+                long id = record.getLong();
+
+                if (kind == QUEUED)
+                {
+                    byte[] email = new byte[record.remaining()];
+                    record.get(email);
+                    pending.put(id, email);
+                }
+                else
+                {
+                    pending.remove(id);
+                }
+
+                nextId = Math.max(nextId, id + 1);
+            }
+        }
+    }
+
+    /**
+     * @return The body of the next record, or {@code null} if there are no more complete records.
+     */
+    private byte[] readRecord(DataInputStream in) throws IOException
+    {
+        try
+        {
+            if (in.readInt() != MAGIC)
+            {
+                LOG.warn("Found an unexpected record in {}. Ignoring the rest of the journal", file);
+                return null;
+            }
+
+            int checksum = in.readInt();
+            int bodyLength = in.readInt();
+
+            if (bodyLength < 9)
+            {
+                return null;
+            }
+
+            if (bodyLength > 9 + MAX_EMAIL_BYTES)
+            {
+                LOG.warn("Found a record of {} bytes in {}. Ignoring the rest of the journal", bodyLength, file);
+                return null;
+            }
+
+            byte[] body = new byte[bodyLength];
+            in.readFully(body);
+
+            if (checksumOf(body) != checksum)
+            {
+                LOG.warn("Found a torn record in {}. Ignoring the rest of the journal", file);
+                return null;
+            }
+
+            return body;
+        }
+        catch (EOFException ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the journal with one that holds only the pending emails.
+     */
+    private void rewrite() throws IOException
+    {
+        close();
+
+        File rewritten = new File(file.getParentFile(), FILE_NAME + ".tmp");
+
+        try (FileChannel out = FileChannel.open(rewritten.toPath(), CREATE, WRITE, TRUNCATE_EXISTING))
+        {
+            for (Map.Entry<Long, byte[]> entry : pending.entrySet())
+            {
+                writeTo(out, QUEUED, entry.getKey(), entry.getValue());
+            }
+        }
+
+        Files.move(rewritten.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+
+        channel = FileChannel.open(file.toPath(), CREATE, WRITE, APPEND);
+        liveBytes = channel.size();
+    }
+
+    private void write(byte kind, long id, byte[] email) throws IOException
+    {
+        writeTo(channel, kind, id, email);
+    }
+
+    private static void writeTo(FileChannel out, byte kind, long id, byte[] email) throws IOException
+    {
+        int emailLength = email != null ? email.length : 0;
+        int bodyLength = 1 + 8 + emailLength;
+
+        ByteBuffer body = ByteBuffer.allocate(bodyLength);
+        body.put(kind);
+        body.putLong(id);
+
+        if (email != null)
+        {
+            body.put(email);
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + bodyLength);
+        record.putInt(MAGIC);
+        record.putInt(checksumOf(body.array()));
+        record.putInt(bodyLength);
+        record.put(body.array());
+        record.flip();
+
+        while (record.hasRemaining())
+        {
+            out.write(record);
+        }
+    }
+
+    private static long recordLengthOf(int emailLength)
+    {
+        return HEADER_BYTES + 1 + 8 + emailLength;
+    }
+
+    private static int checksumOf(byte[] body)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return (int) crc.getValue();
+    }
+
+}
@@ -19,7 +19,6 @@ package tech.aroma.service.operations.encryption;
 
 import com.google.inject.ImplementedBy;
 import org.apache.thrift.TException;
-import org.jasypt.util.password.PasswordEncryptor;
 import tech.sirwellington.alchemy.annotations.access.Internal;
 import tech.sirwellington.alchemy.annotations.arguments.NonEmpty;
 import tech.sirwellington.alchemy.annotations.arguments.Required;
@@ -54,10 +53,20 @@ public interface AromaPasswordEncryptor
      */
     boolean match(@NonEmpty String plainPassword, @NonEmpty String existingDigestedPassword) throws TException;
 
-    public static AromaPasswordEncryptor newInstance(@Required PasswordEncryptor jasyptEncryptor)
+    /**
+     * Determines if a digest was created with a weaker scheme than the one currently in use. Such a digest
+     * still matches, but should be replaced the next time the plain password is known.
+     *
+     * @param existingDigestedPassword The encrypted digest of the known accurate password.
+     * @return True if the password should be digested again.
+     * @throws TException If the digest cannot be read.
+     */
+    boolean needsRehash(@NonEmpty String existingDigestedPassword) throws TException;
+
+    public static AromaPasswordEncryptor newInstance(@Required PasswordDigestScheme currentScheme)
     {
-        checkThat(jasyptEncryptor).is(notNull());
+        checkThat(currentScheme).is(notNull());
 
-        return new AromaPasswordEncryptorImpl(jasyptEncryptor);
+        return new AromaPasswordEncryptorImpl(currentScheme);
     }
 }
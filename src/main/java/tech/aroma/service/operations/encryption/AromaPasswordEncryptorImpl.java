@@ -16,7 +16,11 @@
 
 package tech.aroma.service.operations.encryption;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 import org.apache.thrift.TException;
 import org.jasypt.util.password.PasswordEncryptor;
@@ -31,19 +35,32 @@ import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull
 import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.*;
 
 @Internal
+@Singleton
 final class AromaPasswordEncryptorImpl implements AromaPasswordEncryptor
 {
 
     private final static Logger LOG = LoggerFactory.getLogger(AromaPasswordEncryptorImpl.class);
 
-    private PasswordEncryptor encryptor;
+    private final PasswordDigestScheme currentScheme;
+    private final Function<PasswordDigestScheme, PasswordEncryptor> encryptorFactory;
+
+    /**
+     * One encryptor per scheme still in use, since each holds its own pool of digesters.
+     */
+    private final ConcurrentMap<PasswordDigestScheme, PasswordEncryptor> encryptors = new ConcurrentHashMap<>();
 
     @Inject
-    AromaPasswordEncryptorImpl(PasswordEncryptor encryptor)
+    AromaPasswordEncryptorImpl(PasswordDigestScheme currentScheme)
+    {
+        this(currentScheme, PasswordDigestScheme::newEncryptor);
+    }
+
+    AromaPasswordEncryptorImpl(PasswordDigestScheme currentScheme, Function<PasswordDigestScheme, PasswordEncryptor> encryptorFactory)
     {
-        checkThat(encryptor).is(notNull());
+        checkThat(currentScheme, encryptorFactory).are(notNull());
 
-        this.encryptor = encryptor;
+        this.currentScheme = currentScheme;
+        this.encryptorFactory = encryptorFactory;
     }
 
     @Override
@@ -55,7 +72,8 @@ final class AromaPasswordEncryptorImpl implements AromaPasswordEncryptor
 
         try
         {
-            return encryptor.encryptPassword(password);
+            String digest = encryptorFor(currentScheme).encryptPassword(password);
+            return currentScheme.tag(digest);
         }
         catch (Exception ex)
         {
@@ -72,9 +90,12 @@ final class AromaPasswordEncryptorImpl implements AromaPasswordEncryptor
                 .usingMessage("credentials cannot be empty")
                 .are(nonEmptyString());
 
+        PasswordDigestScheme scheme = PasswordDigestScheme.of(existingDigestedPassword);
+        String digest = PasswordDigestScheme.digestIn(existingDigestedPassword);
+
         try
         {
-            return encryptor.checkPassword(plainPassword, existingDigestedPassword);
+            return encryptorFor(scheme).checkPassword(plainPassword, digest);
         }
         catch (Exception ex)
         {
@@ -83,4 +104,20 @@ final class AromaPasswordEncryptorImpl implements AromaPasswordEncryptor
         }
     }
 
+    @Override
+    public boolean needsRehash(String existingDigestedPassword) throws TException
+    {
+        checkThat(existingDigestedPassword)
+                .throwing(InvalidCredentialsException.class)
+                .usingMessage("digest cannot be empty")
+                .is(nonEmptyString());
+
+        return currentScheme.supersedes(PasswordDigestScheme.of(existingDigestedPassword));
+    }
+
+    private PasswordEncryptor encryptorFor(PasswordDigestScheme scheme)
+    {
+        return encryptors.computeIfAbsent(scheme, encryptorFactory);
+    }
+
 }
@@ -16,16 +16,13 @@
 
 package tech.aroma.service.operations.encryption;
 
+import javax.inject.Singleton;
+
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
-import org.jasypt.digest.config.DigesterConfig;
-import org.jasypt.digest.config.SimpleStringDigesterConfig;
 import org.jasypt.encryption.pbe.PBEStringEncryptor;
-import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
 import org.jasypt.salt.RandomSaltGenerator;
 import org.jasypt.salt.SaltGenerator;
-import org.jasypt.util.password.ConfigurablePasswordEncryptor;
-import org.jasypt.util.password.PasswordEncryptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tech.aroma.thrift.authentication.AuthenticationConstants;
@@ -39,6 +36,19 @@ public class ModuleEncryptionMaterialsDev extends AbstractModule
     private final static Logger LOG = LoggerFactory.getLogger(ModuleEncryptionMaterialsDev.class);
     private final static String FIXED_SALT = "fu3opkvp2l1`2890)W480129LWH*@#&$@(*hvd;lkf;l2i9ivod snfkjlq3hfu090fu309jrlkdafm l;Afj;KDL:-39UFDN";
 
+    /**
+     * How long a single password digest should take, when suggesting a cost for this machine.
+     */
+    static final long TARGET_DIGEST_MILLIS = 250;
+
+    /**
+     * The iterations every node digests passwords with. It has to be the same across the fleet, since a User whose
+     * digest is weaker than it is rehashed on their next sign in.
+     */
+    static final String DIGEST_ITERATIONS_PROPERTY = "aroma.passwords.digestIterations";
+
+    static final String OVER_THE_WIRE_ALGORITHM = "PBEWithMD5AndDES";
+
     @Override
     protected void configure()
     {
@@ -46,22 +56,28 @@ public class ModuleEncryptionMaterialsDev extends AbstractModule
 
     //=================================Password Functions===================================
     @Provides
-    DigesterConfig providePasswordConfig()
+    @Singleton
+    PasswordDigestScheme provideCurrentDigestScheme()
     {
-        SimpleStringDigesterConfig config = new SimpleStringDigesterConfig();
-        config.setAlgorithm("SHA-256");
-        config.setIterations(100_101);
-        config.setSaltSizeBytes(20);
-        config.setPoolSize(10);
-        return config;
-    }
+        Integer iterations = Integer.getInteger(DIGEST_ITERATIONS_PROPERTY);
 
-    @Provides
-    PasswordEncryptor providePasswordEncryptor(DigesterConfig config)
-    {
-        ConfigurablePasswordEncryptor encryptor = new ConfigurablePasswordEncryptor();
-        encryptor.setConfig(config);
-        return encryptor;
+        if (iterations == null)
+        {
+            PasswordDigestScheme suggested = PasswordDigestCalibrator.calibrate(PasswordDigestScheme.LEGACY,
+                                                                                TARGET_DIGEST_MILLIS);
+
+            LOG.info("{} is not set, so password digests stay at {}. This machine would take {}ms to digest with {} iterations.",
+                     DIGEST_ITERATIONS_PROPERTY, PasswordDigestScheme.LEGACY, TARGET_DIGEST_MILLIS, suggested.getIterations());
+
+            return PasswordDigestScheme.LEGACY;
+        }
+
+        //Never weaker than the digests already stored
+        int pinned = Math.max(iterations, PasswordDigestScheme.LEGACY.getIterations());
+        PasswordDigestScheme scheme = PasswordDigestScheme.LEGACY.withIterations(pinned);
+
+        LOG.info("Password digests pinned to {}", scheme);
+        return scheme;
     }
 
     @Provides
@@ -72,12 +88,12 @@ public class ModuleEncryptionMaterialsDev extends AbstractModule
     }
 
     @Provides
+    @Singleton
     PBEStringEncryptor provideOverTheWireDecryptor()
     {
-        StandardPBEStringEncryptor decryptor = new StandardPBEStringEncryptor();
-        decryptor.setPassword(AuthenticationConstants.OVER_THE_WIRE_PASSWORD_ENCRYPTION_KEY);
-        decryptor.setAlgorithm("PBEWithMD5AndDES");
-        return decryptor;
+        return new StripedPBEStringEncryptor(AuthenticationConstants.OVER_THE_WIRE_PASSWORD_ENCRYPTION_KEY,
+                                             OVER_THE_WIRE_ALGORITHM,
+                                             StripedPBEStringEncryptor.DEFAULT_STRIPES);
     }
 
 }
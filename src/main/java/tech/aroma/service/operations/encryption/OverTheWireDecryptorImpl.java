@@ -17,6 +17,7 @@
 package tech.aroma.service.operations.encryption;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 import org.apache.thrift.TException;
 import org.jasypt.encryption.pbe.PBEStringEncryptor;
@@ -34,6 +35,7 @@ import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.*
  * @author SirWellington
  */
 @Internal
+@Singleton
 final class OverTheWireDecryptorImpl implements OverTheWireDecryptor
 {
 
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.encryption;
+
+import org.jasypt.util.password.PasswordEncryptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+import tech.sirwellington.alchemy.annotations.access.NonInstantiable;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+
+/**
+ * Chooses how many iterations a password digest should use, so that one digest takes roughly a
+ * target amount of time on the current hardware.
+ * <p>
+ * The cost of a digest grows linearly with its iterations, so a handful of timed digests at a fixed
+ * probe cost is enough to estimate it. The result is never weaker than the baseline it starts from.
+ *
+ * @author SirWellington
+ */
+@Internal
+@NonInstantiable
+final class PasswordDigestCalibrator
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(PasswordDigestCalibrator.class);
+
+    static final int PROBE_ITERATIONS = 10_000;
+    static final int WARMUP_RUNS = 3;
+    static final int MEASURED_RUNS = 5;
+    static final int MAX_ITERATIONS = 5_000_000;
+
+    /**
+     * Rounding keeps small timing differences between restarts from changing the stored cost.
+     */
+    static final int ITERATION_STEP = 1_000;
+
+    private static final String PROBE_PASSWORD = "calibration-probe";
+
+    private PasswordDigestCalibrator() throws IllegalAccessException
+    {
+        throw new IllegalAccessException("cannot instantiate");
+    }
+
+    /**
+     * @param baseline     The algorithm and salt size to use, and the weakest cost that may be chosen.
+     * @param targetMillis How long a single digest should take.
+     * @return The baseline scheme, with its iterations adjusted to meet the target.
+     */
+    static PasswordDigestScheme calibrate(PasswordDigestScheme baseline, long targetMillis)
+    {
+        checkThat(baseline).is(notNull());
+        checkThat(targetMillis)
+                .usingMessage("target must be > 0")
+                .is(greaterThan(0L));
+
+        long nanosPerIteration = Math.max(1, measureBestNanos(baseline.withIterations(PROBE_ITERATIONS)) / PROBE_ITERATIONS);
+        long estimate = MILLISECONDS.toNanos(targetMillis) / nanosPerIteration;
+
+        int iterations = iterationsFor(estimate, baseline.getIterations());
+        LOG.debug("Measured {}ns per {} iteration. Choosing {} iterations for a {}ms target",
+                  nanosPerIteration, baseline.getAlgorithm(), iterations, targetMillis);
+
+        return baseline.withIterations(iterations);
+    }
+
+    static int iterationsFor(long estimate, int floor)
+    {
+        long rounded = (estimate / ITERATION_STEP) * ITERATION_STEP;
+        long bounded = Math.min(Math.max(rounded, floor), Math.max(floor, MAX_ITERATIONS));
+
+        return (int) bounded;
+    }
+
+    private static long measureBestNanos(PasswordDigestScheme probe)
+    {
+        PasswordEncryptor encryptor = probe.newEncryptor();
+
+        for (int i = 0; i < WARMUP_RUNS; ++i)
+        {
+            encryptor.encryptPassword(PROBE_PASSWORD);
+        }
+
+        long best = Long.MAX_VALUE;
+
+        for (int i = 0; i < MEASURED_RUNS; ++i)
+        {
+            long start = System.nanoTime();
+            encryptor.encryptPassword(PROBE_PASSWORD);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return best;
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.encryption;
+
+import java.util.Objects;
+
+import org.jasypt.digest.config.SimpleStringDigesterConfig;
+import org.jasypt.util.password.ConfigurablePasswordEncryptor;
+import org.jasypt.util.password.PasswordEncryptor;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+import tech.sirwellington.alchemy.annotations.arguments.NonEmpty;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.BooleanAssertions.falseStatement;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.nonEmptyString;
+
+
+/**
+ * The algorithm and cost a password digest was created with.
+ * <p>
+ * Digests are stored as {@code $v1$<algorithm>$<iterations>$<salt size>$<digest>}, so that the cost can be
+ * raised over time without losing the ability to check older digests. Digests without this prefix
+ * predate it, and were all created with the {@link #LEGACY} scheme.
+ *
+ * @author SirWellington
+ */
+@Internal
+public final class PasswordDigestScheme
+{
+
+    /**
+     * The scheme used for every digest stored before digests were versioned.
+     */
+    public static final PasswordDigestScheme LEGACY = new PasswordDigestScheme("SHA-256", 100_101, 20);
+
+    static final String PREFIX = "$v1$";
+    static final String SEPARATOR = "$";
+
+    private static final int POOL_SIZE = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private final String algorithm;
+    private final int iterations;
+    private final int saltSizeBytes;
+
+    public PasswordDigestScheme(@NonEmpty String algorithm, int iterations, int saltSizeBytes)
+    {
+        checkThat(algorithm)
+                .usingMessage("algorithm cannot be empty")
+                .is(nonEmptyString());
+
+        checkThat(algorithm.contains(SEPARATOR))
+                .usingMessage("algorithm cannot contain " + SEPARATOR)
+                .is(falseStatement());
+
+        checkThat(iterations, saltSizeBytes)
+                .usingMessage("iterations and salt size must be > 0")
+                .are(greaterThan(0));
+
+        this.algorithm = algorithm;
+        this.iterations = iterations;
+        this.saltSizeBytes = saltSizeBytes;
+    }
+
+    /**
+     * Reads the scheme a stored digest was created with.
+     *
+     * @throws OperationFailedException If the digest claims to be versioned, but is malformed.
+     */
+    static PasswordDigestScheme of(String storedDigest) throws OperationFailedException
+    {
+        if (!storedDigest.startsWith(PREFIX))
+        {
+            return LEGACY;
+        }
+
+        String[] parts = storedDigest.substring(PREFIX.length()).split("\\" + SEPARATOR, 4);
+
+        if (parts.length != 4)
+        {
+            throw new OperationFailedException("Malformed password digest");
+        }
+
+        try
+        {
+            return new PasswordDigestScheme(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw new OperationFailedException("Malformed password digest: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * @return The digest itself, without the scheme it was created with.
+     */
+    static String digestIn(String storedDigest)
+    {
+        if (!storedDigest.startsWith(PREFIX))
+        {
+            return storedDigest;
+        }
+
+        return storedDigest.substring(storedDigest.lastIndexOf(SEPARATOR) + 1);
+    }
+
+    /**
+     * @return The digest, prefixed with this scheme, as it should be stored.
+     */
+    String tag(String digest)
+    {
+        return PREFIX + algorithm + SEPARATOR + iterations + SEPARATOR + saltSizeBytes + SEPARATOR + digest;
+    }
+
+    /**
+     * A digest is only ever replaced by a stronger one: one with more iterations is never rehashed down to this
+     * scheme's, so that nodes which disagree on the cost cannot rehash the same Users back and forth.
+     *
+     * @return True if a digest created with {@code other} is weaker than one created with this scheme.
+     */
+    boolean supersedes(PasswordDigestScheme other)
+    {
+        if (!algorithm.equals(other.algorithm) || saltSizeBytes > other.saltSizeBytes)
+        {
+            return true;
+        }
+
+        return other.iterations < iterations;
+    }
+
+    PasswordDigestScheme withIterations(int iterations)
+    {
+        return new PasswordDigestScheme(algorithm, iterations, saltSizeBytes);
+    }
+
+    PasswordEncryptor newEncryptor()
+    {
+        SimpleStringDigesterConfig config = new SimpleStringDigesterConfig();
+        config.setAlgorithm(algorithm);
+        config.setIterations(iterations);
+        config.setSaltSizeBytes(saltSizeBytes);
+        config.setPoolSize(POOL_SIZE);
+
+        ConfigurablePasswordEncryptor encryptor = new ConfigurablePasswordEncryptor();
+        encryptor.setConfig(config);
+        return encryptor;
+    }
+
+    public String getAlgorithm()
+    {
+        return algorithm;
+    }
+
+    public int getIterations()
+    {
+        return iterations;
+    }
+
+    public int getSaltSizeBytes()
+    {
+        return saltSizeBytes;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(algorithm, iterations, saltSizeBytes);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+
+        if (obj == null || getClass() != obj.getClass())
+        {
+            return false;
+        }
+
+        final PasswordDigestScheme other = (PasswordDigestScheme) obj;
+
+        return this.iterations == other.iterations &&
+               this.saltSizeBytes == other.saltSizeBytes &&
+               Objects.equals(this.algorithm, other.algorithm);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PasswordDigestScheme{" + "algorithm=" + algorithm + ", iterations=" + iterations + ", saltSizeBytes=" + saltSizeBytes + '}';
+    }
+
+}
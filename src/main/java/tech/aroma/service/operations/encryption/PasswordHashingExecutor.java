@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.encryption;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.ImplementedBy;
+import org.apache.thrift.TException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+import tech.sirwellington.alchemy.annotations.arguments.NonEmpty;
+import tech.sirwellington.alchemy.annotations.arguments.Required;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+
+/**
+ * Runs password digests on a dedicated, bounded set of threads.
+ * <p>
+ * Digesting a password is deliberately slow, so a burst of sign-ins can otherwise occupy every
+ * server thread. Work beyond what the executor can accept is rejected immediately, rather than queued
+ * indefinitely, and no single account or client address may hold more than a small share of it.
+ *
+ * @author SirWellington
+ */
+@Internal
+@ImplementedBy(PasswordHashingExecutorImpl.class)
+public interface PasswordHashingExecutor
+{
+
+    /**
+     * Runs a password task, blocking until it completes.
+     *
+     * @param email The email address of the account the task is for. Used to keep one account from
+     *              monopolizing the executor.
+     * @param task  The digest work to perform.
+     * @return The result of the task.
+     * @throws OperationFailedException If the executor is saturated, or the caller already has too much
+     *                                  work pending. The caller may try again shortly.
+     * @throws TException               If the task itself fails.
+     */
+    <T> T execute(@NonEmpty String email, @Required PasswordTask<T> task) throws TException;
+
+    /**
+     * Queues a password task without waiting for it, for work whose result the caller does not need.
+     * It is admitted exactly like {@link #execute(String, PasswordTask) }, and a failure of the task is logged.
+     *
+     * @param email The email address of the account the task is for.
+     * @param task  The digest work to perform.
+     * @throws OperationFailedException If the executor is saturated, or the caller already has too much
+     *                                  work pending.
+     * @throws TException               If the arguments are invalid.
+     */
+    void executeLater(@NonEmpty String email, @Required PasswordTask<?> task) throws TException;
+
+    @FunctionalInterface
+    interface PasswordTask<T>
+    {
+        T call() throws TException;
+    }
+
+    public static PasswordHashingExecutor newInstance(@Required MetricRegistry metrics)
+    {
+        checkThat(metrics).is(notNull());
+
+        return new PasswordHashingExecutorImpl(metrics);
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.encryption;
+
+
+import java.util.*;
+import java.util.concurrent.*;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.*;
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.service.ClientAddress;
+import tech.aroma.service.operations.BoundedPool;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.nonEmptyString;
+
+/**
+ * A fixed pool of one thread per core, in front of a short queue.
+ * <p>
+ * Each task is admitted against the account it is for and, when known, the client address it came
+ * from. An account may only have {@link #DEFAULT_MAX_PER_ACCOUNT} digests pending at once; an address
+ * is allowed a few more, since many users can share one. Anything beyond that, or beyond the queue,
+ * is rejected before any hashing work is done.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+final class PasswordHashingExecutorImpl implements PasswordHashingExecutor
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(PasswordHashingExecutorImpl.class);
+
+    static final int DEFAULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    static final int DEFAULT_MAX_QUEUED = DEFAULT_THREADS * 4;
+    static final int DEFAULT_MAX_PER_ACCOUNT = 2;
+    static final int DEFAULT_MAX_PER_ADDRESS = 8;
+    static final long DEFAULT_TIMEOUT_MILLIS = 10_000;
+
+    static final String TRY_AGAIN = "Too many sign-in attempts are in progress. Please try again shortly.";
+
+    private final BoundedPool pool;
+    private final ConcurrentMap<String, Integer> pending = new ConcurrentHashMap<>();
+    private final int maxPerAccount;
+    private final int maxPerAddress;
+
+    private final Counter rejections;
+
+    @Inject
+    PasswordHashingExecutorImpl(MetricRegistry metrics)
+    {
+        this(metrics, DEFAULT_THREADS, DEFAULT_MAX_QUEUED, DEFAULT_MAX_PER_ACCOUNT, DEFAULT_MAX_PER_ADDRESS, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    PasswordHashingExecutorImpl(MetricRegistry metrics,
+                                int threads,
+                                int maxQueued,
+                                int maxPerAccount,
+                                int maxPerAddress,
+                                long timeoutMillis)
+    {
+        checkThat(metrics).is(notNull());
+
+        checkThat(maxPerAccount, maxPerAddress)
+                .usingMessage("executor limits must be > 0")
+                .are(greaterThan(0));
+
+        this.maxPerAccount = maxPerAccount;
+        this.maxPerAddress = maxPerAddress;
+        this.rejections = metrics.counter(name(PasswordHashingExecutor.class, "rejections"));
+
+        this.pool = new BoundedPool("Password hashing",
+                                    threads,
+                                    maxQueued,
+                                    timeoutMillis,
+                                    TRY_AGAIN,
+                                    metrics.timer(name(PasswordHashingExecutor.class, "queue-time")),
+                                    metrics.timer(name(PasswordHashingExecutor.class, "hash-time")),
+                                    rejections);
+    }
+
+    @Override
+    public <T> T execute(String email, PasswordTask<T> task) throws TException
+    {
+        Collection<String> keys = admit(email, task);
+
+        return pool.execute("password digest for " + email, task::call, () -> release(keys));
+    }
+
+    @Override
+    public void executeLater(String email, PasswordTask<?> task) throws TException
+    {
+        Collection<String> keys = admit(email, task);
+
+        pool.executeLater("password digest for " + email, task::call, () -> release(keys));
+    }
+
+    /**
+     * @return The keys the task was admitted under, to be released once it is done.
+     */
+    private Collection<String> admit(String email, PasswordTask<?> task) throws TException
+    {
+        checkThat(email)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("email is missing")
+                .is(nonEmptyString());
+
+        checkThat(task)
+                .throwing(InvalidArgumentException.class)
+                .is(notNull());
+
+        Map<String, Integer> limits = limitsFor(email, ClientAddress.current());
+
+        if (!admit(limits))
+        {
+            rejections.inc();
+            LOG.debug("Too many password digests pending for {}. Rejecting.", limits.keySet());
+            throw new OperationFailedException(TRY_AGAIN);
+        }
+
+        return limits.keySet();
+    }
+
+    private Map<String, Integer> limitsFor(String email, String address)
+    {
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        limits.put("email:" + email.toLowerCase(Locale.ROOT), maxPerAccount);
+
+        if (address != null)
+        {
+            limits.put("address:" + address, maxPerAddress);
+        }
+
+        return limits;
+    }
+
+    private boolean admit(Map<String, Integer> limits)
+    {
+        List<String> acquired = new ArrayList<>(limits.size());
+
+        for (Map.Entry<String, Integer> limit : limits.entrySet())
+        {
+            String key = limit.getKey();
+            int count = pending.merge(key, 1, Integer::sum);
+            acquired.add(key);
+
+            if (count > limit.getValue())
+            {
+                release(acquired);
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void release(Collection<String> keys)
+    {
+        for (String key : keys)
+        {
+            pending.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    int pendingFor(String key)
+    {
+        return pending.getOrDefault(key, 0);
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.encryption;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jasypt.encryption.pbe.PBEStringEncryptor;
+import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
+import org.jasypt.exceptions.AlreadyInitializedException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+import tech.sirwellington.alchemy.annotations.arguments.NonEmpty;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.nonEmptyString;
+
+/**
+ * Spreads calls across several identically configured encryptors.
+ * <p>
+ * A {@link StandardPBEStringEncryptor} serializes every call on its cipher, so a single shared instance
+ * lets only one sign in decrypt at a time. Here each caller picks the next stripe with a single atomic
+ * increment, and only waits when more callers than stripes are decrypting at once. Every stripe is
+ * initialized, and its cipher exercised once, when this is constructed, so that the first requests
+ * after startup do not pay for key derivation.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class StripedPBEStringEncryptor implements PBEStringEncryptor
+{
+
+    static final int DEFAULT_STRIPES = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final String WARMUP_MESSAGE = "warmup";
+
+    private final StandardPBEStringEncryptor[] stripes;
+    private final AtomicInteger next = new AtomicInteger();
+
+    StripedPBEStringEncryptor(@NonEmpty String password, @NonEmpty String algorithm, int stripes)
+    {
+        checkThat(password, algorithm)
+                .usingMessage("password and algorithm are required")
+                .are(nonEmptyString());
+
+        checkThat(stripes)
+                .usingMessage("stripes must be > 0")
+                .is(greaterThan(0));
+
+        this.stripes = new StandardPBEStringEncryptor[stripes];
+
+        for (int i = 0; i < stripes; ++i)
+        {
+            StandardPBEStringEncryptor stripe = new StandardPBEStringEncryptor();
+            stripe.setPassword(password);
+            stripe.setAlgorithm(algorithm);
+            stripe.initialize();
+            stripe.decrypt(stripe.encrypt(WARMUP_MESSAGE));
+
+            this.stripes[i] = stripe;
+        }
+    }
+
+    @Override
+    public String encrypt(String message)
+    {
+        return nextStripe().encrypt(message);
+    }
+
+    @Override
+    public String decrypt(String encryptedMessage)
+    {
+        return nextStripe().decrypt(encryptedMessage);
+    }
+
+    /**
+     * The password is fixed at construction.
+     *
+     * @throws AlreadyInitializedException Always.
+     */
+    @Override
+    public void setPassword(String password)
+    {
+        throw new AlreadyInitializedException();
+    }
+
+    int stripeCount()
+    {
+        return stripes.length;
+    }
+
+    private StandardPBEStringEncryptor nextStripe()
+    {
+        return stripes[Math.floorMod(next.getAndIncrement(), stripes.length)];
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.inbox;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.ImplementedBy;
+import org.apache.thrift.TException;
+import tech.aroma.data.InboxRepository;
+import tech.aroma.thrift.Message;
+import tech.sirwellington.alchemy.annotations.arguments.NonEmpty;
+import tech.sirwellington.alchemy.annotations.arguments.Required;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+/**
+ * Serves the newest messages of each Inbox from memory, and only goes to the {@link InboxRepository}
+ * for pages deeper than what it keeps.
+ *
+ * @author SirWellington
+ */
+@ImplementedBy(InboxCacheImpl.class)
+public interface InboxCache
+{
+
+    /**
+     * How many messages are read from an Inbox when the caller asks for no particular limit. Every cached Inbox
+     * keeps at least this many, so such a read is served from memory.
+     */
+    int DEFAULT_LIMIT = 2_000;
+
+    /**
+     * @param userId The owner of the Inbox.
+     * @param limit  The maximum number of messages to return.
+     * @return The newest messages in the Inbox, newest first.
+     * @throws TException If the Inbox could not be read.
+     */
+    List<Message> getRecentMessages(@NonEmpty String userId, int limit) throws TException;
+
+    /**
+     * Drops messages that have been removed from a User's Inbox.
+     */
+    void dismissed(@NonEmpty String userId, @Required Collection<String> messageIds);
+
+    /**
+     * Drops every message of an Inbox that has been emptied.
+     */
+    void cleared(@NonEmpty String userId);
+
+    /**
+     * Drops the messages of an Application that has been deleted from every Inbox.
+     */
+    void applicationDeleted(@NonEmpty String applicationId);
+
+    public static InboxCache newInstance(@Required InboxRepository inboxRepo,
+                                         @Required ExecutorService executor,
+                                         @Required MetricRegistry metrics)
+    {
+        checkThat(inboxRepo, executor, metrics)
+                .are(notNull());
+
+        return new InboxCacheImpl(inboxRepo, executor, metrics);
+    }
+}
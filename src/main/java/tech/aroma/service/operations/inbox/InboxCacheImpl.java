@@ -0,0 +1,283 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.inbox;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.UnaryOperator;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.*;
+import com.google.common.cache.*;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.data.InboxRepository;
+import tech.aroma.thrift.Message;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.toList;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.nonEmptyString;
+
+/**
+ * Keeps the {@linkplain RecentMessages newest messages} of recently read Inboxes.
+ * <p>
+ * An Inbox is loaded the first time it is read. Messages are delivered to the repository by another service,
+ * so each Inbox is reloaded in the background once its messages are older than the refresh interval. Until
+ * the reload completes, reads are served what was loaded before. Dismissals made through this service take
+ * effect right away.
+ * <p>
+ * A cached Inbox is never changed in place. A dismissal replaces it with a copy, and a reload or a deep read that
+ * started from the Inbox it replaced is not cached, since what it read may be from before the dismissal.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+final class InboxCacheImpl implements InboxCache
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(InboxCacheImpl.class);
+
+    static final int DEFAULT_MESSAGES_PER_INBOX = InboxCache.DEFAULT_LIMIT;
+
+    /**
+     * Keeps the cache to at most five million messages.
+     */
+    static final long DEFAULT_MAX_INBOXES = 2_500;
+    static final long DEFAULT_REFRESH_MILLIS = 15_000;
+    static final long DEFAULT_EXPIRATION_MINUTES = 30;
+
+    private final InboxRepository inboxRepo;
+    private final int messagesPerInbox;
+    private final LoadingCache<String, RecentMessages> inboxes;
+
+    private final Counter hits;
+    private final Counter loads;
+    private final Counter deepReads;
+    private final Counter staleReloads;
+
+    @Inject
+    InboxCacheImpl(InboxRepository inboxRepo, ExecutorService executor, MetricRegistry metrics)
+    {
+        this(inboxRepo, executor, metrics, DEFAULT_MESSAGES_PER_INBOX, DEFAULT_MAX_INBOXES, DEFAULT_REFRESH_MILLIS);
+    }
+
+    InboxCacheImpl(InboxRepository inboxRepo,
+                   Executor executor,
+                   MetricRegistry metrics,
+                   int messagesPerInbox,
+                   long maxInboxes,
+                   long refreshMillis)
+    {
+        checkThat(inboxRepo, executor, metrics)
+                .are(notNull());
+
+        checkThat(messagesPerInbox)
+                .usingMessage("messagesPerInbox must be > 0")
+                .is(greaterThan(0));
+
+        checkThat(maxInboxes, refreshMillis)
+                .usingMessage("cache limits must be > 0")
+                .are(greaterThan(0L));
+
+        this.inboxRepo = inboxRepo;
+        this.messagesPerInbox = messagesPerInbox;
+
+        CacheLoader<String, RecentMessages> loader = new CacheLoader<String, RecentMessages>()
+        {
+            @Override
+            public RecentMessages load(String userId) throws Exception
+            {
+                return loadInboxOf(userId);
+            }
+
+            @Override
+            public ListenableFuture<RecentMessages> reload(String userId, RecentMessages loaded) throws Exception
+            {
+                return Futures.immediateFuture(reloadInboxOf(userId, loaded));
+            }
+        };
+
+        this.inboxes = CacheBuilder.newBuilder()
+                .maximumSize(maxInboxes)
+                .expireAfterAccess(DEFAULT_EXPIRATION_MINUTES, MINUTES)
+                .refreshAfterWrite(refreshMillis, MILLISECONDS)
+                .build(CacheLoader.asyncReloading(loader, executor));
+
+        this.hits = metrics.counter(name(InboxCache.class, "hits"));
+        this.loads = metrics.counter(name(InboxCache.class, "loads"));
+        this.deepReads = metrics.counter(name(InboxCache.class, "deep-reads"));
+        this.staleReloads = metrics.counter(name(InboxCache.class, "stale-reloads"));
+        metrics.gauge(name(InboxCache.class, "inboxes"), () -> (Gauge<Long>) inboxes::size);
+    }
+
+    @Override
+    public List<Message> getRecentMessages(String userId, int limit) throws TException
+    {
+        checkThat(userId)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("missing user ID")
+                .is(nonEmptyString());
+
+        checkThat(limit)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("limit must be > 0")
+                .is(greaterThan(0));
+
+        RecentMessages recent = inboxes.getIfPresent(userId);
+
+        if (recent != null && (limit <= messagesPerInbox || recent.isComplete()))
+        {
+            hits.inc();
+            return recent.newest(limit);
+        }
+
+        if (limit <= messagesPerInbox)
+        {
+            return inboxOf(userId).newest(limit);
+        }
+
+        deepReads.inc();
+
+        List<Message> messages = inboxRepo.getMessagesForUser(userId);
+        RecentMessages read = RecentMessages.of(messages, messagesPerInbox);
+
+        boolean cached = recent == null
+                         ? inboxes.asMap().putIfAbsent(userId, read) == null
+                         : inboxes.asMap().replace(userId, recent, read);
+
+        if (!cached)
+        {
+            //Changed while reading, so what was read may be from before the change
+            staleReloads.inc();
+        }
+
+        return messages.stream()
+                .sorted(Comparator.comparingLong(Message::getTimeMessageReceived).reversed())
+                .limit(limit)
+                .collect(toList());
+    }
+
+    @Override
+    public void dismissed(String userId, Collection<String> messageIds)
+    {
+        checkThat(userId).is(nonEmptyString());
+        checkThat(messageIds).is(notNull());
+
+        Set<String> dismissed = new HashSet<>(messageIds);
+        replace(userId, recent -> recent.without(dismissed));
+    }
+
+    @Override
+    public void cleared(String userId)
+    {
+        checkThat(userId).is(nonEmptyString());
+
+        replace(userId, recent -> RecentMessages.empty(messagesPerInbox));
+    }
+
+    @Override
+    public void applicationDeleted(String applicationId)
+    {
+        checkThat(applicationId).is(nonEmptyString());
+
+        for (String userId : inboxes.asMap().keySet())
+        {
+            replace(userId, recent -> recent.withoutApplication(applicationId));
+        }
+    }
+
+    /**
+     * Replaces the cached Inbox of a User, if there is one, with a changed copy.
+     */
+    private void replace(String userId, UnaryOperator<RecentMessages> change)
+    {
+        RecentMessages recent;
+
+        do
+        {
+            recent = inboxes.getIfPresent(userId);
+
+            if (recent == null)
+            {
+                return;
+            }
+        }
+        while (!inboxes.asMap().replace(userId, recent, change.apply(recent)));
+    }
+
+    private RecentMessages inboxOf(String userId) throws TException
+    {
+        try
+        {
+            return inboxes.get(userId);
+        }
+        catch (ExecutionException | UncheckedExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof TException)
+            {
+                throw (TException) cause;
+            }
+
+            LOG.error("Failed to load Inbox of User [{}]", userId, cause);
+            throw new OperationFailedException("Could not load Inbox: " + cause.getMessage());
+        }
+    }
+
+    private RecentMessages loadInboxOf(String userId) throws TException
+    {
+        loads.inc();
+
+        List<Message> messages = inboxRepo.getMessagesForUser(userId);
+        LOG.debug("Loaded {} messages for Inbox of User [{}]", messages.size(), userId);
+
+        return RecentMessages.of(messages, messagesPerInbox);
+    }
+
+    private RecentMessages reloadInboxOf(String userId, RecentMessages loaded) throws TException
+    {
+        RecentMessages reloaded = loadInboxOf(userId);
+        RecentMessages current = inboxes.getIfPresent(userId);
+
+        if (current != null && current != loaded)
+        {
+            //Replaced while reloading, so what was read may be from before the change
+            staleReloads.inc();
+            return current;
+        }
+
+        return reloaded;
+    }
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.inbox;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TCompactProtocol;
+import tech.aroma.thrift.Message;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The newest messages of a single Inbox, up to a fixed capacity, kept in a compact layout.
+ * <p>
+ * Timestamps are kept as primitives, and Application IDs and names are interned, since an Inbox usually holds
+ * messages from only a handful of Applications. The rest of each message is kept in its compact Thrift encoding,
+ * and only materialised when it is read.
+ * <p>
+ * Once made, it never changes. Dropping messages makes a new copy, so a cached copy that has been replaced can
+ * be told apart from the one that replaced it.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class RecentMessages
+{
+
+    private static final Interner<String> INTERNED = Interners.newWeakInterner();
+
+    private static final Comparator<Message> NEWEST_FIRST = Comparator.comparingLong(Message::getTimeMessageReceived)
+                                                                      .reversed();
+
+    private final int capacity;
+    private final long[] timesReceived;
+    private final String[] messageIds;
+    private final String[] applicationIds;
+    private final String[] applicationNames;
+    private final byte[][] remainders;
+
+    private final int size;
+    private final boolean complete;
+
+    private RecentMessages(int capacity, int size, boolean complete)
+    {
+        this.capacity = capacity;
+        this.size = size;
+        this.complete = complete;
+
+        this.timesReceived = new long[size];
+        this.messageIds = new String[size];
+        this.applicationIds = new String[size];
+        this.applicationNames = new String[size];
+        this.remainders = new byte[size][];
+    }
+
+    /**
+     * Keeps the newest {@code capacity} of the messages in an Inbox.
+     *
+     * @param messages Every message in the Inbox.
+     */
+    static RecentMessages of(Collection<Message> messages, int capacity) throws TException
+    {
+        List<Message> newest = messages.stream()
+                .filter(Objects::nonNull)
+                .sorted(NEWEST_FIRST)
+                .limit(capacity)
+                .collect(toList());
+
+        RecentMessages recent = new RecentMessages(capacity, newest.size(), messages.size() <= capacity);
+        TSerializer serializer = new TSerializer(new TCompactProtocol.Factory());
+
+        for (int i = 0; i < newest.size(); ++i)
+        {
+            Message message = newest.get(i);
+
+            recent.timesReceived[i] = message.timeMessageReceived;
+            recent.messageIds[i] = message.messageId;
+            recent.applicationIds[i] = intern(message.applicationId);
+            recent.applicationNames[i] = intern(message.applicationName);
+
+            Message remainder = new Message(message);
+            remainder.unsetMessageId();
+            remainder.unsetTimeMessageReceived();
+            remainder.unsetApplicationId();
+            remainder.unsetApplicationName();
+
+            recent.remainders[i] = serializer.serialize(remainder);
+        }
+
+        return recent;
+    }
+
+    /**
+     * @return An Inbox with no messages, as when the Inbox is emptied.
+     */
+    static RecentMessages empty(int capacity)
+    {
+        return new RecentMessages(capacity, 0, true);
+    }
+
+    /**
+     * @return Up to {@code limit} of the newest messages, newest first.
+     */
+    List<Message> newest(int limit) throws TException
+    {
+        int count = Math.min(limit, size);
+        List<Message> result = new ArrayList<>(count);
+        TDeserializer deserializer = new TDeserializer(new TCompactProtocol.Factory());
+
+        for (int i = 0; i < count; ++i)
+        {
+            result.add(materialise(i, deserializer));
+        }
+
+        return result;
+    }
+
+    /**
+     * @return A copy without the messages with the given IDs.
+     */
+    RecentMessages without(Collection<String> messageIds)
+    {
+        return keeping(i -> !messageIds.contains(this.messageIds[i]));
+    }
+
+    /**
+     * @return A copy without the messages sent by the Application.
+     */
+    RecentMessages withoutApplication(String applicationId)
+    {
+        return keeping(i -> !Objects.equals(applicationId, applicationIds[i]));
+    }
+
+    private RecentMessages keeping(IntPredicate keep)
+    {
+        int[] kept = IntStream.range(0, size).filter(keep).toArray();
+        RecentMessages copy = new RecentMessages(capacity, kept.length, complete);
+
+        for (int i = 0; i < kept.length; ++i)
+        {
+            copy.timesReceived[i] = timesReceived[kept[i]];
+            copy.messageIds[i] = messageIds[kept[i]];
+            copy.applicationIds[i] = applicationIds[kept[i]];
+            copy.applicationNames[i] = applicationNames[kept[i]];
+            copy.remainders[i] = remainders[kept[i]];
+        }
+
+        return copy;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    int capacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @return True if these are all of the messages in the Inbox, and not just the newest of them.
+     */
+    boolean isComplete()
+    {
+        return complete;
+    }
+
+    private Message materialise(int index, TDeserializer deserializer) throws TException
+    {
+        Message message = new Message();
+
+        try
+        {
+            deserializer.deserialize(message, remainders[index]);
+        }
+        catch (TException ex)
+        {
+            throw new OperationFailedException("Could not read message " + messageIds[index] + ": " + ex.getMessage());
+        }
+
+        if (messageIds[index] != null)
+        {
+            message.setMessageId(messageIds[index]);
+        }
+
+        message.setTimeMessageReceived(timesReceived[index]);
+
+        if (applicationIds[index] != null)
+        {
+            message.setApplicationId(applicationIds[index]);
+        }
+
+        if (applicationNames[index] != null)
+        {
+            message.setApplicationName(applicationNames[index]);
+        }
+
+        return message;
+    }
+
+    private static String intern(String value)
+    {
+        return value == null ? null : INTERNED.intern(value);
+    }
+
+}
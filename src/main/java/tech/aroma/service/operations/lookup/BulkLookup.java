@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.lookup;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.ImplementedBy;
+import org.apache.thrift.TException;
+import tech.aroma.data.ApplicationRepository;
+import tech.aroma.data.FollowerRepository;
+import tech.aroma.data.UserRepository;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.sirwellington.alchemy.annotations.arguments.Required;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+/**
+ * Looks up many Applications or Users at once, in place of one
+ * {@code getApplicationInfo} or {@code getUserInfo} call for each.
+ *
+ * @author SirWellington
+ */
+@ImplementedBy(BulkLookupImpl.class)
+public interface BulkLookup
+{
+
+    /**
+     * The most IDs that may be looked up in one call.
+     */
+    int MAX_IDS = 100;
+
+    /**
+     * @param userId               The User asking, whose follows are loaded once when
+     *                             {@code includeFollowingInfo} is set.
+     * @param applicationIds       The Applications to look up. Duplicates are looked up once.
+     * @param includeFollowingInfo Whether to mark each Application with whether {@code userId} follows it.
+     * @return The Applications found, by ID. Applications that do not exist are left out.
+     * @throws InvalidArgumentException If an ID is invalid, or there are too many of them.
+     * @throws TException               If the lookup fails.
+     */
+    Map<String, Application> getApplications(String userId,
+                                              @Required Collection<String> applicationIds,
+                                              boolean includeFollowingInfo) throws TException;
+
+    /**
+     * @param userIds The Users to look up. Duplicates are looked up once.
+     * @return The Users found, by ID. Users that do not exist are left out.
+     * @throws InvalidArgumentException If an ID is invalid, or there are too many of them.
+     * @throws TException               If the lookup fails.
+     */
+    Map<String, User> getUsers(@Required Collection<String> userIds) throws TException;
+
+    public static BulkLookup newInstance(@Required ApplicationRepository appRepo,
+                                         @Required UserRepository userRepo,
+                                         @Required FollowerRepository followerRepo,
+                                         @Required ExecutorService executor,
+                                         @Required MetricRegistry metrics)
+    {
+        checkThat(appRepo, userRepo, followerRepo, executor, metrics)
+                .are(notNull());
+
+        return new BulkLookupImpl(appRepo, userRepo, followerRepo, executor, metrics);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.lookup;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.inject.Inject;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Strings;
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.data.ApplicationRepository;
+import tech.aroma.data.FollowerRepository;
+import tech.aroma.data.UserRepository;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.exceptions.*;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+import tech.sirwellington.alchemy.arguments.AlchemyAssertion;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.stream.Collectors.toSet;
+import static tech.aroma.data.assertions.RequestAssertions.validApplicationId;
+import static tech.aroma.data.assertions.RequestAssertions.validUserId;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.lessThanOrEqualTo;
+
+/**
+ * Reads each distinct ID concurrently, and loads the asking User's follows once for the whole lookup,
+ * instead of checking whether they follow each Application in turn.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class BulkLookupImpl implements BulkLookup
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(BulkLookupImpl.class);
+
+    static final int DEFAULT_MAX_IDS = MAX_IDS;
+
+    private final ApplicationRepository appRepo;
+    private final UserRepository userRepo;
+    private final FollowerRepository followerRepo;
+    private final ExecutorService executor;
+    private final int maxIds;
+
+    private final Histogram idsPerLookup;
+
+    @Inject
+    BulkLookupImpl(ApplicationRepository appRepo,
+                   UserRepository userRepo,
+                   FollowerRepository followerRepo,
+                   ExecutorService executor,
+                   MetricRegistry metrics)
+    {
+        this(appRepo, userRepo, followerRepo, executor, metrics, DEFAULT_MAX_IDS);
+    }
+
+    BulkLookupImpl(ApplicationRepository appRepo,
+                   UserRepository userRepo,
+                   FollowerRepository followerRepo,
+                   ExecutorService executor,
+                   MetricRegistry metrics,
+                   int maxIds)
+    {
+        checkThat(appRepo, userRepo, followerRepo, executor, metrics)
+                .are(notNull());
+
+        checkThat(maxIds)
+                .usingMessage("maxIds must be > 0")
+                .is(greaterThan(0));
+
+        this.appRepo = appRepo;
+        this.userRepo = userRepo;
+        this.followerRepo = followerRepo;
+        this.executor = executor;
+        this.maxIds = maxIds;
+
+        this.idsPerLookup = metrics.histogram(name(BulkLookup.class, "ids-per-lookup"));
+    }
+
+    @Override
+    public Map<String, Application> getApplications(String userId,
+                                                     Collection<String> applicationIds,
+                                                     boolean includeFollowingInfo) throws TException
+    {
+        Set<String> ids = distinct(applicationIds, validApplicationId());
+
+        Map<String, Application> apps = loadAll(ids, appRepo::getById, ApplicationDoesNotExistException.class);
+
+        if (includeFollowingInfo && !apps.isEmpty())
+        {
+            Set<String> followedAppIds = tryToGetAppsFollowedBy(userId);
+
+            for (Application app : apps.values())
+            {
+                app.setIsFollowing(followedAppIds.contains(app.applicationId));
+            }
+        }
+
+        return apps;
+    }
+
+    @Override
+    public Map<String, User> getUsers(Collection<String> userIds) throws TException
+    {
+        Set<String> ids = distinct(userIds, validUserId());
+
+        return loadAll(ids, userRepo::getUser, UserDoesNotExistException.class);
+    }
+
+    private Set<String> distinct(Collection<String> ids, AlchemyAssertion<String> validId) throws InvalidArgumentException
+    {
+        checkThat(ids)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("missing IDs")
+                .is(notNull());
+
+        Set<String> distinctIds = new LinkedHashSet<>(ids);
+
+        checkThat(distinctIds.size())
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("At most " + maxIds + " IDs may be looked up at once")
+                .is(lessThanOrEqualTo(maxIds));
+
+        for (String id : distinctIds)
+        {
+            checkThat(id)
+                    .throwing(InvalidArgumentException.class)
+                    .is(validId);
+        }
+
+        idsPerLookup.update(distinctIds.size());
+
+        return distinctIds;
+    }
+
+    private <T> Map<String, T> loadAll(Set<String> ids, Loader<T> loader, Class<? extends TException> doesNotExist) throws TException
+    {
+        Map<String, Future<T>> pending = new LinkedHashMap<>();
+
+        for (String id : ids)
+        {
+            pending.put(id, executor.submit(() -> loader.load(id)));
+        }
+
+        Map<String, T> results = new LinkedHashMap<>();
+
+        try
+        {
+            for (Map.Entry<String, Future<T>> entry : pending.entrySet())
+            {
+                T result = awaitResult(entry.getKey(), entry.getValue(), doesNotExist);
+
+                if (result != null)
+                {
+                    results.put(entry.getKey(), result);
+                }
+            }
+        }
+        finally
+        {
+            pending.values().forEach(future -> future.cancel(true));
+        }
+
+        return results;
+    }
+
+    private <T> T awaitResult(String id, Future<T> future, Class<? extends TException> doesNotExist) throws TException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new OperationFailedException("Interrupted while looking up " + id);
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+
+            if (doesNotExist.isInstance(cause))
+            {
+                LOG.debug("[{}] does not exist. Leaving it out of the lookup.", id);
+                return null;
+            }
+
+            if (cause instanceof TException)
+            {
+                throw (TException) cause;
+            }
+
+            LOG.error("Failed to look up [{}]", id, cause);
+            throw new OperationFailedException("Could not look up " + id + ": " + cause.getMessage());
+        }
+    }
+
+    private Set<String> tryToGetAppsFollowedBy(String userId)
+    {
+        if (Strings.isNullOrEmpty(userId))
+        {
+            return Collections.emptySet();
+        }
+
+        try
+        {
+            return followerRepo.getApplicationsFollowedBy(userId)
+                               .stream()
+                               .map(app -> app.applicationId)
+                               .collect(toSet());
+        }
+        catch (TException ex)
+        {
+            LOG.error("Failed to determine which Applications User [{}] follows", userId, ex);
+            return Collections.emptySet();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Loader<T>
+    {
+        T load(String id) throws TException;
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.media;
+
+
+import java.nio.ByteBuffer;
+
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.Image;
+import tech.aroma.thrift.ImageType;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+/**
+ * An image held by one of the tiers of the {@link TieredMediaCache}, along with the details needed to
+ * hand it back out as an {@link Image}.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class CachedMedia
+{
+
+    private final ByteBuffer data;
+    private final Dimension dimension;
+    private final ImageType imageType;
+
+    CachedMedia(ByteBuffer data, Dimension dimension, ImageType imageType)
+    {
+        this.data = data;
+        this.dimension = dimension;
+        this.imageType = imageType;
+    }
+
+    static CachedMedia of(Image image)
+    {
+        Dimension dimension = image.isSetDimension() ? new Dimension(image.dimension) : null;
+        return new CachedMedia(ByteBuffer.wrap(image.getData()), dimension, image.imageType);
+    }
+
+    /**
+     * @return A view of the bytes, positioned at the first one.
+     */
+    ByteBuffer data()
+    {
+        return data.duplicate();
+    }
+
+    int size()
+    {
+        return data.remaining();
+    }
+
+    Dimension dimension()
+    {
+        return dimension;
+    }
+
+    ImageType imageType()
+    {
+        return imageType;
+    }
+
+    /**
+     * Creates an image that shares this media's bytes, through a read-only view.
+     * <p>
+     * The bytes may live off-heap or in a mapped file, which {@link Image#getData() }, {@link Image#toString() }
+     * and {@link Image#deepCopy() } cannot read. The image is only fit to be written to a client.
+     */
+    Image toImage()
+    {
+        Image image = new Image();
+
+        //Assigned directly, since the generated setter copies into a heap array
+        image.data = data.asReadOnlyBuffer();
+        image.imageType = imageType;
+
+        if (dimension != null)
+        {
+            image.setDimension(new Dimension(dimension));
+        }
+
+        return image;
+    }
+
+}
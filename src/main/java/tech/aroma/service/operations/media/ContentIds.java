@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.media;
+
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+import tech.sirwellington.alchemy.annotations.access.NonInstantiable;
+
+/**
+ * Derives Media IDs from the content of an image.
+ * <p>
+ * A Content ID is the 128-bit murmur3 hash of the image bytes, laid out as a version 8 UUID.
+ * It remains a valid Media ID, and can be told apart from the random (version 4) IDs
+ * that media was stored under before.
+ *
+ * @author SirWellington
+ */
+@Internal
+@NonInstantiable
+final class ContentIds
+{
+
+    static final int VERSION = 8;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private ContentIds() throws IllegalAccessException
+    {
+        throw new IllegalAccessException("cannot instantiate");
+    }
+
+    static String contentIdFor(byte[] data)
+    {
+        byte[] hash = HASH.hashBytes(data).asBytes();
+
+        //Set the version and IETF variant bits
+        hash[6] = (byte) ((hash[6] & 0x0F) | (VERSION << 4));
+        hash[8] = (byte) ((hash[8] & 0x3F) | 0x80);
+
+        ByteBuffer buffer = ByteBuffer.wrap(hash);
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+
+    static boolean isContentId(String mediaId)
+    {
+        try
+        {
+            return UUID.fromString(mediaId).version() == VERSION;
+        }
+        catch (IllegalArgumentException ex)
+        {
+            return false;
+        }
+    }
+
+}
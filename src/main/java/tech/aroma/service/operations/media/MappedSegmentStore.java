@@ -0,0 +1,543 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.media;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.ImageType;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThanOrEqualTo;
+
+/**
+ * The second tier of the {@link TieredMediaCache}: an append-only log of memory-mapped segment files
+ * on local disk.
+ * <p>
+ * Every write, including a removal, is appended to the newest segment as a checksummed record. The index
+ * of where each key lives is kept in memory and rebuilt at startup by replaying the segments in order,
+ * so a restarted node comes back with the cache it had. Reads return views of the mapped files, which the
+ * operating system serves from its page cache.
+ * <p>
+ * Disk use is bounded by dropping the oldest segment, along with whatever it still holds. Before that
+ * happens, an oldest segment that is mostly dead is compacted: its live records are copied to the newest
+ * segment and its file is deleted. Only the oldest segment is ever compacted, since no older record can
+ * exist for one of its removals to hide.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class MappedSegmentStore
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(MappedSegmentStore.class);
+
+    static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    static final long DEFAULT_MAX_BYTES = 2L * 1024 * 1024 * 1024;
+
+    /**
+     * The oldest segment is compacted once less than this fraction of it is live.
+     */
+    static final double COMPACTION_THRESHOLD = 0.5;
+
+    static final String SUFFIX = ".segment";
+
+    private static final int MAGIC = 0x41524D41;
+    private static final int HEADER_BYTES = 12;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int NONE = -1;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Map<String, Location> index = new HashMap<>();
+    private int nextSegmentId;
+
+    MappedSegmentStore(File directory, int segmentSize, long maxBytes) throws IOException
+    {
+        checkThat(directory).is(notNull());
+
+        checkThat(segmentSize)
+                .usingMessage("segmentSize must be > 0")
+                .is(greaterThan(0));
+
+        checkThat(maxBytes / segmentSize)
+                .usingMessage("maxBytes must hold at least 2 segments")
+                .is(greaterThanOrEqualTo(2L));
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxBytes / segmentSize);
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Could not create directory: " + directory);
+        }
+
+        load();
+    }
+
+    synchronized CachedMedia get(String key)
+    {
+        Location location = index.get(key);
+
+        if (location == null)
+        {
+            return null;
+        }
+
+        return new CachedMedia(location.data(), location.dimension, location.imageType);
+    }
+
+    synchronized boolean contains(String key)
+    {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Appends the media to the newest segment.
+     *
+     * @return False if the media is larger than a segment, or could not be written.
+     */
+    synchronized boolean put(String key, CachedMedia media)
+    {
+        checkThat(key, media)
+                .are(notNull());
+
+        try
+        {
+            return append(PUT, key, media);
+        }
+        catch (IOException ex)
+        {
+            LOG.warn("Failed to write [{}] to the disk cache", key, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Removes every key that starts with {@code keyPrefix}.
+     */
+    synchronized void removeAll(String keyPrefix)
+    {
+        List<String> keys = new ArrayList<>();
+
+        for (String key : index.keySet())
+        {
+            if (key.startsWith(keyPrefix))
+            {
+                keys.add(key);
+            }
+        }
+
+        for (String key : keys)
+        {
+            try
+            {
+                append(REMOVE, key, null);
+            }
+            catch (IOException ex)
+            {
+                //Without its removal record, the entry would come back after a restart
+                LOG.warn("Failed to record the removal of [{}] from the disk cache", key, ex);
+                index.remove(key);
+            }
+        }
+    }
+
+    synchronized int size()
+    {
+        return index.size();
+    }
+
+    synchronized int segmentCount()
+    {
+        return segments.size();
+    }
+
+    /**
+     * Writes all segments back to disk.
+     */
+    synchronized void flush()
+    {
+        segments.forEach(segment -> segment.buffer.force());
+    }
+
+    private void load() throws IOException
+    {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        SortedMap<Integer, File> ordered = new TreeMap<>();
+
+        for (File file : files != null ? files : new File[0])
+        {
+            String name = file.getName();
+
+            try
+            {
+                ordered.put(Integer.parseInt(name.substring(0, name.length() - SUFFIX.length())), file);
+            }
+            catch (NumberFormatException ex)
+            {
+                LOG.warn("Ignoring unexpected file in the disk cache: {}", file);
+            }
+        }
+
+        for (Map.Entry<Integer, File> entry : ordered.entrySet())
+        {
+            Segment segment = Segment.open(entry.getValue(), entry.getKey(), segmentSize);
+            replay(segment);
+            segments.addLast(segment);
+            nextSegmentId = entry.getKey() + 1;
+        }
+
+        LOG.info("Loaded {} entries from {} segments in {}", index.size(), segments.size(), directory);
+    }
+
+    private void replay(Segment segment)
+    {
+        ByteBuffer buffer = segment.buffer;
+        int position = 0;
+
+        while (position + HEADER_BYTES <= buffer.capacity() && buffer.getInt(position) == MAGIC)
+        {
+            int checksum = buffer.getInt(position + 4);
+            int bodyLength = buffer.getInt(position + 8);
+            int bodyStart = position + HEADER_BYTES;
+
+            if (bodyLength <= 0 || bodyLength > buffer.capacity() - bodyStart)
+            {
+                break;
+            }
+
+            if (checksumOf(buffer, bodyStart, bodyLength) != checksum)
+            {
+                LOG.warn("Found a torn record in {} at {}. Ignoring the rest of the segment", segment.file, position);
+                break;
+            }
+
+            ByteBuffer body = slice(buffer, bodyStart, bodyLength);
+            byte kind = body.get();
+            String key = readKey(body);
+
+            if (kind == PUT)
+            {
+                int width = body.getInt();
+                int height = body.getInt();
+                int imageType = body.getInt();
+                int dataLength = body.getInt();
+
+                Location location = new Location(segment,
+                                                 position,
+                                                 HEADER_BYTES + bodyLength,
+                                                 bodyStart + body.position(),
+                                                 dataLength,
+                                                 width == NONE ? null : new Dimension(width, height),
+                                                 imageType == NONE ? null : ImageType.findByValue(imageType));
+                track(key, location);
+            }
+            else
+            {
+                untrack(key);
+            }
+
+            position = bodyStart + bodyLength;
+        }
+
+        segment.writePosition = position;
+    }
+
+    private boolean append(byte kind, String key, CachedMedia media) throws IOException
+    {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        int dataLength = media != null ? media.size() : 0;
+        int bodyLength = 1 + 2 + keyBytes.length + (kind == PUT ? 16 + dataLength : 0);
+        int recordLength = HEADER_BYTES + bodyLength;
+
+        if (recordLength > segmentSize)
+        {
+            return false;
+        }
+
+        Segment segment = segmentWithRoomFor(recordLength);
+        int start = segment.writePosition;
+
+        ByteBuffer record = segment.buffer.duplicate();
+        record.position(start + HEADER_BYTES);
+        record.put(kind);
+        record.putShort((short) keyBytes.length);
+        record.put(keyBytes);
+
+        if (kind == PUT)
+        {
+            Dimension dimension = media.dimension();
+            ImageType imageType = media.imageType();
+
+            record.putInt(dimension != null ? dimension.width : NONE);
+            record.putInt(dimension != null ? dimension.height : NONE);
+            record.putInt(imageType != null ? imageType.getValue() : NONE);
+            record.putInt(dataLength);
+
+            int dataOffset = record.position();
+            record.put(media.data());
+
+            track(key, new Location(segment,
+                                    start,
+                                    recordLength,
+                                    dataOffset,
+                                    dataLength,
+                                    dimension,
+                                    imageType));
+        }
+        else
+        {
+            untrack(key);
+        }
+
+        record.putInt(start + 4, checksumOf(record, start + HEADER_BYTES, bodyLength));
+        record.putInt(start + 8, bodyLength);
+        //Written last, so that a record torn by a crash is never mistaken for a complete one
+        record.putInt(start, MAGIC);
+
+        segment.writePosition = start + recordLength;
+        return true;
+    }
+
+    private Segment segmentWithRoomFor(int recordLength) throws IOException
+    {
+        Segment newest = segments.peekLast();
+
+        if (newest != null && newest.free() >= recordLength)
+        {
+            return newest;
+        }
+
+        newest = Segment.open(new File(directory, String.format("%08d%s", nextSegmentId, SUFFIX)),
+                              nextSegmentId,
+                              segmentSize);
+        ++nextSegmentId;
+        segments.addLast(newest);
+
+        compactOldest(newest, recordLength);
+
+        while (segments.size() > maxSegments)
+        {
+            dropOldest();
+        }
+
+        return newest;
+    }
+
+    private void compactOldest(Segment newest, int reserved)
+    {
+        Segment oldest = segments.peekFirst();
+
+        if (oldest == newest || oldest.liveBytes >= oldest.writePosition * COMPACTION_THRESHOLD)
+        {
+            return;
+        }
+
+        if (oldest.liveBytes > newest.free() - reserved)
+        {
+            return;
+        }
+
+        int moved = 0;
+
+        for (Map.Entry<String, Location> entry : index.entrySet())
+        {
+            Location location = entry.getValue();
+
+            if (location.segment != oldest)
+            {
+                continue;
+            }
+
+            //Records are copied verbatim; their checksums cover only the body, so they stay valid
+            int start = newest.writePosition;
+            ByteBuffer target = newest.buffer.duplicate();
+            target.position(start);
+            target.put(slice(oldest.buffer, location.recordStart, location.recordLength));
+
+            entry.setValue(location.movedTo(newest, start));
+            newest.liveBytes += location.recordLength;
+            newest.writePosition += location.recordLength;
+            ++moved;
+        }
+
+        segments.pollFirst();
+        delete(oldest);
+
+        LOG.debug("Compacted segment {}, moving {} live records", oldest.id, moved);
+    }
+
+    private void dropOldest()
+    {
+        Segment oldest = segments.pollFirst();
+        index.values().removeIf(location -> location.segment == oldest);
+        delete(oldest);
+
+        LOG.debug("Dropped segment {} to stay within the disk budget", oldest.id);
+    }
+
+    private static void delete(Segment segment)
+    {
+        //Views that are still being read keep the mapping alive after the file is gone
+        if (!segment.file.delete())
+        {
+            LOG.warn("Could not delete segment file {}", segment.file);
+        }
+    }
+
+    private void track(String key, Location location)
+    {
+        untrack(key);
+        index.put(key, location);
+        location.segment.liveBytes += location.recordLength;
+    }
+
+    private void untrack(String key)
+    {
+        Location previous = index.remove(key);
+
+        if (previous != null)
+        {
+            previous.segment.liveBytes -= previous.recordLength;
+        }
+    }
+
+    private static String readKey(ByteBuffer body)
+    {
+        byte[] keyBytes = new byte[body.getShort() & 0xFFFF];
+        body.get(keyBytes);
+        return new String(keyBytes, UTF_8);
+    }
+
+    private static int checksumOf(ByteBuffer buffer, int offset, int length)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(slice(buffer, offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length)
+    {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice();
+    }
+
+    private static final class Segment
+    {
+
+        private final int id;
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private long liveBytes;
+
+        private Segment(int id, File file, MappedByteBuffer buffer)
+        {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        static Segment open(File file, int id, int segmentSize) throws IOException
+        {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                 FileChannel channel = raf.getChannel())
+            {
+                long existing = raf.length();
+                int size = existing > 0 ? (int) Math.min(existing, Integer.MAX_VALUE) : segmentSize;
+
+                //The mapping stays valid once the channel is closed
+                return new Segment(id, file, channel.map(READ_WRITE, 0, size));
+            }
+        }
+
+        int free()
+        {
+            return buffer.capacity() - writePosition;
+        }
+    }
+
+    private static final class Location
+    {
+
+        private final Segment segment;
+        private final int recordStart;
+        private final int recordLength;
+        private final int dataOffset;
+        private final int dataLength;
+        private final Dimension dimension;
+        private final ImageType imageType;
+
+        private Location(Segment segment,
+                         int recordStart,
+                         int recordLength,
+                         int dataOffset,
+                         int dataLength,
+                         Dimension dimension,
+                         ImageType imageType)
+        {
+            this.segment = segment;
+            this.recordStart = recordStart;
+            this.recordLength = recordLength;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.dimension = dimension;
+            this.imageType = imageType;
+        }
+
+        private ByteBuffer data()
+        {
+            return slice(segment.buffer, dataOffset, dataLength).asReadOnlyBuffer();
+        }
+
+        private Location movedTo(Segment target, int newRecordStart)
+        {
+            return new Location(target,
+                                newRecordStart,
+                                recordLength,
+                                dataOffset - recordStart + newRecordStart,
+                                dataLength,
+                                dimension,
+                                imageType);
+        }
+    }
+
+}
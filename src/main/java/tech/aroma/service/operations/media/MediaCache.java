@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.media;
+
+import com.google.inject.ImplementedBy;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.Image;
+import tech.sirwellington.alchemy.annotations.arguments.Optional;
+import tech.sirwellington.alchemy.annotations.arguments.Required;
+
+
+/**
+ * Keeps recently served media and thumbnails outside of the heap, ready to be written to clients.
+ *
+ * @author SirWellington
+ */
+@ImplementedBy(TieredMediaCache.class)
+public interface MediaCache
+{
+
+    /**
+     * Returns a cached image, whose data is a read-only view of off-heap memory.
+     * <p>
+     * Such an image is meant to be placed in a response and sent as-is. Its bytes cannot be read through
+     * {@link Image#getData() }, and it must not be logged, copied, or passed on for processing.
+     *
+     * @param mediaId The ID of the Media.
+     * @param size    The size of the thumbnail, or {@code null} for the full image.
+     * @return The cached image, or {@code null} if it is not cached.
+     */
+    Image get(@Required String mediaId, @Optional Dimension size);
+
+    /**
+     * Copies an image into the cache, unless it is too large to be worth caching.
+     * <p>
+     * The image's data is read through {@link Image#getData() }, so it must be backed by the heap.
+     */
+    void put(@Required String mediaId, @Optional Dimension size, @Required Image image);
+
+    /**
+     * Removes a Media and all of its thumbnails.
+     */
+    void evict(@Required String mediaId);
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.media;
+
+import com.google.inject.ImplementedBy;
+import org.apache.thrift.TException;
+import tech.aroma.thrift.Image;
+import tech.sirwellington.alchemy.annotations.arguments.Required;
+
+
+/**
+ * Stores uploaded media by its content, so that identical images are stored, and thumbnailed, only once.
+ *
+ * @author SirWellington
+ */
+@ImplementedBy(MediaStoreImpl.class)
+public interface MediaStore
+{
+
+    /**
+     * Normalizes and stores an image, or adds a reference to an identical image that is already stored.
+     *
+     * @param image The image as uploaded.
+     * @return The Media ID the image can be referenced and fetched by.
+     * @throws TException
+     */
+    String store(@Required Image image) throws TException;
+
+    /**
+     * Releases one reference to a stored image. Once nothing references it, the image
+     * and all of its thumbnails are deleted.
+     *
+     * @param mediaId The Media ID returned by {@link #store(tech.aroma.thrift.Image) }, or an ID stored before Media was
+     *                content-addressed, which is deleted immediately.
+     * @throws TException
+     */
+    void release(@Required String mediaId) throws TException;
+}
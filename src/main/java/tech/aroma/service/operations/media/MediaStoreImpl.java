@@ -0,0 +1,298 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.media;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.Striped;
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.data.MediaRepository;
+import tech.aroma.service.AromaAnnotations.DataDirectory;
+import tech.aroma.service.PrivateDirectories;
+import tech.aroma.service.operations.thumbnails.ImageNormalizer;
+import tech.aroma.thrift.Image;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.nonEmptyString;
+
+/**
+ * Keeps a {@linkplain ReferenceCounts reference count} for every image stored under its
+ * {@linkplain ContentIds Content ID}, in a private directory under the {@linkplain DataDirectory data directory}.
+ * Storing an identical image increments the count, releasing one decrements it, and the image and its
+ * thumbnails are deleted once it reaches zero.
+ * <p>
+ * Content is only shared once it is counted. Content that is stored but has no count here, because it was stored
+ * by another node or before its count was kept, may have references this node cannot see. It is never deleted
+ * by this node, and a new reference to it is stored under a random Media ID of its own instead. So is every
+ * image, if the counts cannot be opened. Media stored under a random ID belongs to a single reference, and is
+ * deleted as soon as it is released.
+ * <p>
+ * A hash collision is detected by comparing bytes, and also falls back to a random Media ID.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+final class MediaStoreImpl implements MediaStore
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(MediaStoreImpl.class);
+
+    static final String DIRECTORY_NAME = "media-references";
+
+    private final MediaRepository mediaRepo;
+    private final ImageNormalizer imageNormalizer;
+    private final MediaValidators validators;
+    private final MediaCache mediaCache;
+    private final ReferenceCounts references;
+
+    private final Striped<Lock> locks = Striped.lock(64);
+
+    private final Counter deduplicated;
+    private final Counter deleted;
+    private final Counter uncounted;
+
+    @Inject
+    MediaStoreImpl(MediaRepository mediaRepo,
+                   ImageNormalizer imageNormalizer,
+                   MediaValidators validators,
+                   MediaCache mediaCache,
+                   MetricRegistry metrics,
+                   @DataDirectory File dataDirectory)
+    {
+        this(mediaRepo,
+             imageNormalizer,
+             validators,
+             mediaCache,
+             metrics,
+             openReferences(new File(dataDirectory, DIRECTORY_NAME)));
+    }
+
+    /**
+     * @param references The reference counts, or {@code null} to store every image under a random ID.
+     */
+    MediaStoreImpl(MediaRepository mediaRepo,
+                   ImageNormalizer imageNormalizer,
+                   MediaValidators validators,
+                   MediaCache mediaCache,
+                   MetricRegistry metrics,
+                   ReferenceCounts references)
+    {
+        checkThat(mediaRepo, imageNormalizer, validators, mediaCache, metrics)
+                .are(notNull());
+
+        this.mediaRepo = mediaRepo;
+        this.imageNormalizer = imageNormalizer;
+        this.validators = validators;
+        this.mediaCache = mediaCache;
+        this.references = references;
+
+        this.deduplicated = metrics.counter(name(MediaStore.class, "deduplicated"));
+        this.deleted = metrics.counter(name(MediaStore.class, "deleted"));
+        this.uncounted = metrics.counter(name(MediaStore.class, "uncounted"));
+    }
+
+    private static ReferenceCounts openReferences(File directory)
+    {
+        try
+        {
+            PrivateDirectories.create(directory);
+
+            return new ReferenceCounts(directory);
+        }
+        catch (IOException ex)
+        {
+            LOG.warn("Could not open the reference counts at {}. Media will not be shared.", directory, ex);
+            return null;
+        }
+    }
+
+    @Override
+    public String store(Image image) throws TException
+    {
+        checkThat(image)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("image is missing")
+                .is(notNull());
+
+        Image normalized = imageNormalizer.normalize(image);
+        byte[] data = normalized.getData();
+        String contentId = ContentIds.contentIdFor(data);
+
+        if (references == null)
+        {
+            return storeUnderRandomId(normalized);
+        }
+
+        Lock lock = locks.get(contentId);
+        lock.lock();
+
+        try
+        {
+            int count = references.get(contentId);
+
+            if (!mediaRepo.containsMedia(contentId))
+            {
+                mediaRepo.saveMedia(contentId, normalized);
+
+                //Any count left over belongs to content that is gone
+                countReference(contentId, count, 1);
+                return contentId;
+            }
+
+            if (count == 0)
+            {
+                uncounted.inc();
+                LOG.debug("References to [{}] are not counted here, so it is not shared.", contentId);
+                return storeUnderRandomId(normalized);
+            }
+
+            Image existing = mediaRepo.getMedia(contentId);
+
+            if (existing == null || !Arrays.equals(existing.getData(), data))
+            {
+                LOG.warn("Image collides with different content stored as [{}]. Storing it separately.", contentId);
+                return storeUnderRandomId(normalized);
+            }
+
+            if (!countReference(contentId, count, count + 1))
+            {
+                return storeUnderRandomId(normalized);
+            }
+
+            deduplicated.inc();
+
+            LOG.debug("Image is already stored as [{}], with {} references", contentId, count + 1);
+            return contentId;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private String storeUnderRandomId(Image image) throws TException
+    {
+        String mediaId = UUID.randomUUID().toString();
+
+        mediaRepo.saveMedia(mediaId, image);
+        return mediaId;
+    }
+
+    /**
+     * @return False if the count could not be changed; content that was just saved is then left uncounted,
+     *         and so is never deleted.
+     */
+    private boolean countReference(String contentId, int expected, int update)
+    {
+        try
+        {
+            if (references.compareAndSet(contentId, expected, update))
+            {
+                return true;
+            }
+
+            LOG.warn("The count of references to [{}] changed underneath us.", contentId);
+        }
+        catch (IOException ex)
+        {
+            LOG.warn("Failed to count a reference to [{}]", contentId, ex);
+        }
+
+        return false;
+    }
+
+    @Override
+    public void release(String mediaId) throws TException
+    {
+        checkThat(mediaId)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("mediaId is missing")
+                .is(nonEmptyString());
+
+        if (!ContentIds.isContentId(mediaId))
+        {
+            delete(mediaId);
+            return;
+        }
+
+        if (references == null)
+        {
+            LOG.debug("References to [{}] are not counted. Keeping it.", mediaId);
+            return;
+        }
+
+        Lock lock = locks.get(mediaId);
+        lock.lock();
+
+        try
+        {
+            int count = references.get(mediaId);
+
+            if (count == 0)
+            {
+                uncounted.inc();
+                LOG.debug("References to [{}] are not counted here. Keeping it.", mediaId);
+                return;
+            }
+
+            //Deleted before the count is dropped, so that a failed delete leaves the content counted
+            if (count == 1)
+            {
+                delete(mediaId);
+            }
+
+            countReference(mediaId, count, count - 1);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void delete(String mediaId) throws TException
+    {
+        if (mediaRepo.containsMedia(mediaId))
+        {
+            mediaRepo.deleteMedia(mediaId);
+        }
+
+        mediaRepo.deleteAllThumbnails(mediaId);
+        validators.forget(mediaId);
+        mediaCache.evict(mediaId);
+        deleted.inc();
+
+        LOG.debug("Deleted Media [{}] and its thumbnails", mediaId);
+    }
+
+}
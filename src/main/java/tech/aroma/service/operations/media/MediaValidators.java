@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.media;
+
+import com.google.inject.ImplementedBy;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.Image;
+import tech.sirwellington.alchemy.annotations.arguments.Optional;
+import tech.sirwellington.alchemy.annotations.arguments.Required;
+
+
+/**
+ * Remembers the content hash of recently served media and thumbnails, so that a caller
+ * which already holds the current version can be answered without reading the blob.
+ * <p>
+ * A validator is the hex-encoded, 128-bit murmur3 hash of the image bytes, so callers
+ * can compute it themselves from what they received.
+ * <p>
+ * {@code GetMediaRequest} has no field for a validator, so callers present theirs through
+ * {@code getMediaIfModified} on the {@linkplain tech.aroma.service.BatchProcessor Batch Service}. Without it,
+ * validators are only recorded.
+ *
+ * @author SirWellington
+ */
+@ImplementedBy(MediaValidatorsImpl.class)
+public interface MediaValidators
+{
+
+    /**
+     * @param mediaId The ID of the Media.
+     * @param size    The size of the thumbnail, or {@code null} for the full image.
+     * @return The validator of the current version, or {@code null} if it is not known without a read.
+     */
+    String getValidator(@Required String mediaId, @Optional Dimension size);
+
+    /**
+     * Records the validator of an image that was just read or created.
+     *
+     * @return The validator.
+     */
+    String record(@Required String mediaId, @Optional Dimension size, @Required Image image);
+
+    /**
+     * Forgets everything known about a Media and its thumbnails, for example after it is deleted.
+     */
+    void forget(@Required String mediaId);
+}
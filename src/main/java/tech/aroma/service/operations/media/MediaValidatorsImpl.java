@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.media;
+
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.Image;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+
+/**
+ * Keeps validators for a bounded number of Media IDs, each with its full image and any thumbnails.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+final class MediaValidatorsImpl implements MediaValidators
+{
+
+    static final int DEFAULT_MAX_MEDIA = 10_000;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+    private static final String FULL_IMAGE = "full";
+
+    private final Cache<String, Map<String, String>> validators;
+
+    @Inject
+    MediaValidatorsImpl()
+    {
+        this(DEFAULT_MAX_MEDIA);
+    }
+
+    MediaValidatorsImpl(int maxMedia)
+    {
+        checkThat(maxMedia)
+                .usingMessage("maxMedia must be > 0")
+                .is(greaterThan(0));
+
+        this.validators = CacheBuilder.newBuilder()
+                                      .maximumSize(maxMedia)
+                                      .build();
+    }
+
+    @Override
+    public String getValidator(String mediaId, Dimension size)
+    {
+        checkThat(mediaId).is(notNull());
+
+        Map<String, String> versions = validators.getIfPresent(mediaId);
+
+        return versions != null ? versions.get(keyFor(size)) : null;
+    }
+
+    @Override
+    public String record(String mediaId, Dimension size, Image image)
+    {
+        checkThat(mediaId, image)
+                .are(notNull());
+
+        String validator = validatorOf(image.getData());
+
+        validators.asMap()
+                  .computeIfAbsent(mediaId, id -> new ConcurrentHashMap<>())
+                  .put(keyFor(size), validator);
+
+        return validator;
+    }
+
+    @Override
+    public void forget(String mediaId)
+    {
+        checkThat(mediaId).is(notNull());
+
+        validators.invalidate(mediaId);
+    }
+
+    static String validatorOf(byte[] data)
+    {
+        return HASH.hashBytes(data).toString();
+    }
+
+    private static String keyFor(Dimension size)
+    {
+        return size == null ? FULL_IMAGE : size.width + "x" + size.height;
+    }
+
+}
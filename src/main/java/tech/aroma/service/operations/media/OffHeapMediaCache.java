@@ -0,0 +1,224 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.media;
+
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.service.operations.media.SlabAllocator.Slab;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+/**
+ * The first tier of the {@link TieredMediaCache}: images copied into off-heap slabs.
+ * <p>
+ * When the {@linkplain SlabAllocator slab budget} runs out, the oldest slab is retired. Entries in it
+ * that were read since they were written get a second chance and are copied into the newest slab;
+ * the rest are handed to the demotion target, which is expected to keep them in the next tier.
+ * <p>
+ * Demotions are handed over after the cache's lock is released, so that reads and writes do not wait on the
+ * next tier. An entry that is {@linkplain #removeAll(String) removed} meanwhile is no longer
+ * {@linkplain #isDemoting(String, CachedMedia) being demoted}, and the target should drop it.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class OffHeapMediaCache
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(OffHeapMediaCache.class);
+
+    private final SlabAllocator slabs;
+    private final BiConsumer<String, CachedMedia> demotion;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, CachedMedia> demoting = new HashMap<>();
+
+    OffHeapMediaCache(SlabAllocator slabs, BiConsumer<String, CachedMedia> demotion)
+    {
+        checkThat(slabs, demotion)
+                .are(notNull());
+
+        this.slabs = slabs;
+        this.demotion = demotion;
+    }
+
+    synchronized CachedMedia get(String key)
+    {
+        Entry entry = entries.get(key);
+
+        if (entry == null)
+        {
+            return null;
+        }
+
+        entry.referenced = true;
+        return entry.media;
+    }
+
+    /**
+     * Copies the media into a slab, retiring old slabs as needed.
+     *
+     * @return False if the media is too large to fit in a slab.
+     */
+    boolean put(String key, CachedMedia media)
+    {
+        checkThat(key, media)
+                .are(notNull());
+
+        if (media.size() > slabs.slabSize())
+        {
+            return false;
+        }
+
+        Map<String, CachedMedia> demoted = new LinkedHashMap<>();
+
+        synchronized (this)
+        {
+            entries.remove(key);
+
+            Slab slab;
+
+            while ((slab = slabs.slabWithRoomFor(media.size())) == null)
+            {
+                retireOldestSlab(demoted);
+            }
+
+            entries.put(key, copyInto(slab, media));
+            demoting.putAll(demoted);
+        }
+
+        for (Map.Entry<String, CachedMedia> entry : demoted.entrySet())
+        {
+            try
+            {
+                demotion.accept(entry.getKey(), entry.getValue());
+            }
+            finally
+            {
+                doneDemoting(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return True if the media was retired from this cache, is being handed to the demotion target, and has not
+     *         been removed since.
+     */
+    synchronized boolean isDemoting(String key, CachedMedia media)
+    {
+        return demoting.get(key) == media;
+    }
+
+    synchronized boolean contains(String key)
+    {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Drops every entry whose key starts with {@code keyPrefix}. Their space is reclaimed when their slab retires.
+     */
+    synchronized void removeAll(String keyPrefix)
+    {
+        entries.keySet().removeIf(key -> key.startsWith(keyPrefix));
+        demoting.keySet().removeIf(key -> key.startsWith(keyPrefix));
+    }
+
+    synchronized int size()
+    {
+        return entries.size();
+    }
+
+    private synchronized void doneDemoting(String key, CachedMedia media)
+    {
+        demoting.remove(key, media);
+    }
+
+    /**
+     * @param demoted Where to collect the entries to hand to the demotion target.
+     */
+    private void retireOldestSlab(Map<String, CachedMedia> demoted)
+    {
+        Slab oldest = slabs.oldest();
+        Map<String, Entry> residents = new LinkedHashMap<>();
+
+        for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext();)
+        {
+            Map.Entry<String, Entry> next = it.next();
+
+            if (next.getValue().slab == oldest)
+            {
+                residents.put(next.getKey(), next.getValue());
+                it.remove();
+            }
+        }
+
+        slabs.retireOldest();
+
+        int kept = 0;
+
+        for (Map.Entry<String, Entry> resident : residents.entrySet())
+        {
+            String key = resident.getKey();
+            Entry entry = resident.getValue();
+
+            Slab slab = entry.referenced ? slabs.slabWithRoomFor(entry.media.size()) : null;
+
+            if (slab != null)
+            {
+                entries.put(key, copyInto(slab, entry.media));
+                ++kept;
+            }
+            else
+            {
+                demoted.put(key, entry.media);
+            }
+        }
+
+        LOG.debug("Retired a slab of {} entries; kept {}, demoted {}", residents.size(), kept, residents.size() - kept);
+    }
+
+    private static Entry copyInto(Slab slab, CachedMedia media)
+    {
+        ByteBuffer copy = slab.append(media.data());
+        return new Entry(slab, new CachedMedia(copy, media.dimension(), media.imageType()));
+    }
+
+    private static final class Entry
+    {
+
+        private final Slab slab;
+        private final CachedMedia media;
+        private boolean referenced;
+
+        private Entry(Slab slab, CachedMedia media)
+        {
+            this.slab = slab;
+            this.media = media;
+        }
+    }
+
+}
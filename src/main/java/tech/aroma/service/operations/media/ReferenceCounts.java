@@ -0,0 +1,285 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.media;
+
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThanOrEqualTo;
+
+/**
+ * The number of references to each image stored under its {@linkplain ContentIds Content ID}, kept in a log
+ * on local disk.
+ * <p>
+ * A count only changes through {@link #compareAndSet(String, int, int) }, which appends the new count to the log
+ * before it takes effect. Replaying the log at startup restores the counts, and the log is then rewritten with
+ * only the counts that are above zero. Records are checksummed, so a record torn by a crash ends the replay
+ * instead of corrupting it. Writes are not forced to disk, so the counts survive the process stopping, but
+ * not the machine.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class ReferenceCounts implements Closeable
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(ReferenceCounts.class);
+
+    static final String FILE_NAME = "references.log";
+
+    static final int MAGIC = 0x52454643;
+    private static final int HEADER_BYTES = 12;
+    private static final int MAX_KEY_BYTES = 256;
+
+    /**
+     * The log is rewritten once it holds this many more records than there are counts.
+     */
+    static final int COMPACTION_SLACK = 10_000;
+
+    private final File file;
+    private final Map<String, Integer> counts = new HashMap<>();
+    private int records;
+
+    private FileChannel channel;
+
+    ReferenceCounts(File directory) throws IOException
+    {
+        checkThat(directory).is(notNull());
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Could not create directory: " + directory);
+        }
+
+        this.file = new File(directory, FILE_NAME);
+
+        replay();
+        rewrite();
+
+        LOG.info("Loaded reference counts for {} images from {}", counts.size(), file);
+    }
+
+    /**
+     * @return The number of references to the content, or 0 if none are counted.
+     */
+    synchronized int get(String contentId)
+    {
+        return counts.getOrDefault(contentId, 0);
+    }
+
+    /**
+     * Sets the count of references to the content, if it is still what the caller last saw.
+     *
+     * @param expected The count the caller read.
+     * @param update   The new count; 0 forgets the content.
+     * @return False if the count has changed since it was read, in which case nothing is written.
+     * @throws IOException If the new count could not be written, in which case the count is unchanged.
+     */
+    synchronized boolean compareAndSet(String contentId, int expected, int update) throws IOException
+    {
+        checkThat(contentId).is(notNull());
+
+        checkThat(update)
+                .usingMessage("count must be >= 0")
+                .is(greaterThanOrEqualTo(0));
+
+        if (get(contentId) != expected)
+        {
+            return false;
+        }
+
+        writeTo(channel, contentId, update);
+        ++records;
+
+        if (update == 0)
+        {
+            counts.remove(contentId);
+        }
+        else
+        {
+            counts.put(contentId, update);
+        }
+
+        if (records > counts.size() + COMPACTION_SLACK)
+        {
+            rewrite();
+        }
+
+        return true;
+    }
+
+    synchronized int size()
+    {
+        return counts.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (channel != null)
+        {
+            channel.close();
+        }
+    }
+
+    private void replay() throws IOException
+    {
+        if (!file.exists())
+        {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            while (true)
+            {
+                byte[] body = readRecord(in);
+
+                if (body == null)
+                {
+                    break;
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(body);
+                int count = record.getInt();
+                String contentId = new String(body, 4, body.length - 4, UTF_8);
+
+                if (count > 0)
+                {
+                    counts.put(contentId, count);
+                }
+                else
+                {
+                    counts.remove(contentId);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The body of the next record, or {@code null} if there are no more complete records.
+     */
+    private byte[] readRecord(DataInputStream in) throws IOException
+    {
+        try
+        {
+            if (in.readInt() != MAGIC)
+            {
+                LOG.warn("Found an unexpected record in {}. Ignoring the rest of the log", file);
+                return null;
+            }
+
+            int checksum = in.readInt();
+            int bodyLength = in.readInt();
+
+            if (bodyLength <= 4 || bodyLength > 4 + MAX_KEY_BYTES)
+            {
+                LOG.warn("Found a record of {} bytes in {}. Ignoring the rest of the log", bodyLength, file);
+                return null;
+            }
+
+            byte[] body = new byte[bodyLength];
+            in.readFully(body);
+
+            if (checksumOf(body) != checksum)
+            {
+                LOG.warn("Found a torn record in {}. Ignoring the rest of the log", file);
+                return null;
+            }
+
+            return body;
+        }
+        catch (EOFException ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the log with one that holds a single record for each count.
+     */
+    private void rewrite() throws IOException
+    {
+        close();
+
+        File rewritten = new File(file.getParentFile(), FILE_NAME + ".tmp");
+
+        try (FileChannel out = FileChannel.open(rewritten.toPath(), CREATE, WRITE, TRUNCATE_EXISTING))
+        {
+            for (Map.Entry<String, Integer> entry : counts.entrySet())
+            {
+                writeTo(out, entry.getKey(), entry.getValue());
+            }
+        }
+
+        Files.move(rewritten.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+
+        channel = FileChannel.open(file.toPath(), CREATE, WRITE, APPEND);
+        records = counts.size();
+    }
+
+    private static void writeTo(FileChannel out, String contentId, int count) throws IOException
+    {
+        byte[] key = contentId.getBytes(UTF_8);
+
+        if (key.length > MAX_KEY_BYTES)
+        {
+            throw new IOException("Content ID of " + key.length + " bytes is too long to count");
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(4 + key.length);
+        body.putInt(count);
+        body.put(key);
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + body.capacity());
+        record.putInt(MAGIC);
+        record.putInt(checksumOf(body.array()));
+        record.putInt(body.capacity());
+        record.put(body.array());
+        record.flip();
+
+        while (record.hasRemaining())
+        {
+            out.write(record);
+        }
+    }
+
+    private static int checksumOf(byte[] body)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return (int) crc.getValue();
+    }
+
+}
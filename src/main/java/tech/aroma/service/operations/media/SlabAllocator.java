@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.media;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThanOrEqualTo;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.lessThanOrEqualTo;
+
+/**
+ * Hands out off-heap memory from large, fixed-size slabs, within a total byte budget.
+ * <p>
+ * Allocation bumps a pointer in the newest slab. Memory is never reused in place: space is reclaimed
+ * by retiring the oldest slab as a whole, after its owner has moved the entries it wants to keep.
+ * A retired slab is only released once the last view into it is collected, so a response that is still
+ * being written from a retired slab cannot see its bytes change underneath it.
+ * <p>
+ * This class is not thread-safe; its owner is expected to guard it.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class SlabAllocator
+{
+
+    static final int DEFAULT_SLAB_SIZE = 8 * 1024 * 1024;
+
+    private final int slabSize;
+    private final int maxSlabs;
+
+    private final Deque<Slab> slabs = new ArrayDeque<>();
+
+    SlabAllocator(long budgetBytes, int slabSize)
+    {
+        checkThat(slabSize)
+                .usingMessage("slabSize must be > 0")
+                .is(greaterThan(0));
+
+        checkThat(budgetBytes / slabSize)
+                .usingMessage("budget must hold at least 2 slabs")
+                .is(greaterThanOrEqualTo(2L));
+
+        this.slabSize = slabSize;
+        this.maxSlabs = (int) Math.min(Integer.MAX_VALUE, budgetBytes / slabSize);
+    }
+
+    /**
+     * Finds room for {@code size} bytes in the newest slab, opening a new one if it is full and the budget allows.
+     *
+     * @return The slab to {@linkplain Slab#append(ByteBuffer) append} to, or {@code null} if the budget is
+     *         exhausted, in which case the {@linkplain #oldest() oldest slab} should be retired.
+     */
+    Slab slabWithRoomFor(int size)
+    {
+        checkThat(size)
+                .usingMessage("size must fit in a slab")
+                .is(lessThanOrEqualTo(slabSize));
+
+        Slab newest = slabs.peekLast();
+
+        if (newest != null && newest.free() >= size)
+        {
+            return newest;
+        }
+
+        if (slabs.size() >= maxSlabs)
+        {
+            return null;
+        }
+
+        newest = new Slab(ByteBuffer.allocateDirect(slabSize));
+        slabs.addLast(newest);
+
+        return newest;
+    }
+
+    Slab oldest()
+    {
+        return slabs.peekFirst();
+    }
+
+    /**
+     * Gives back the budget held by the oldest slab.
+     */
+    void retireOldest()
+    {
+        slabs.pollFirst();
+    }
+
+    int slabSize()
+    {
+        return slabSize;
+    }
+
+    int slabCount()
+    {
+        return slabs.size();
+    }
+
+    long allocatedBytes()
+    {
+        return (long) slabs.size() * slabSize;
+    }
+
+    static final class Slab
+    {
+
+        private final ByteBuffer memory;
+        private int used;
+
+        private Slab(ByteBuffer memory)
+        {
+            this.memory = memory;
+        }
+
+        private int free()
+        {
+            return memory.capacity() - used;
+        }
+
+        /**
+         * Copies the remaining bytes of {@code source} into this slab.
+         *
+         * @return A read-only view of the copied bytes.
+         */
+        ByteBuffer append(ByteBuffer source)
+        {
+            int size = source.remaining();
+
+            checkThat(size)
+                    .usingMessage("slab is full")
+                    .is(lessThanOrEqualTo(free()));
+
+            ByteBuffer region = memory.duplicate();
+            region.position(used);
+            region.limit(used + size);
+            region = region.slice();
+
+            region.put(source.duplicate());
+            region.flip();
+            used += size;
+
+            return region.asReadOnlyBuffer();
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.media;
+
+
+import java.io.File;
+import java.io.IOException;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.service.AromaAnnotations.DataDirectory;
+import tech.aroma.service.PrivateDirectories;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.Image;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+/**
+ * Caches media in two tiers, neither of which is on the heap.
+ * <p>
+ * The first is an {@linkplain OffHeapMediaCache off-heap slab cache} with a fixed byte budget. Media evicted
+ * from it is demoted to the second, a {@linkplain MappedSegmentStore memory-mapped segment log} on local disk,
+ * which survives restarts. It lives in a private directory under the {@linkplain DataDirectory data directory}.
+ * A hit on disk is served straight from the mapping and promoted back to memory.
+ * If the disk tier cannot be opened, the cache runs with memory alone.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+final class TieredMediaCache implements MediaCache
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(TieredMediaCache.class);
+
+    static final long DEFAULT_MEMORY_BYTES = 256L * 1024 * 1024;
+    static final String DIRECTORY_NAME = "media-cache";
+
+    private static final String SEPARATOR = "|";
+
+    private final OffHeapMediaCache memory;
+    private final MappedSegmentStore disk;
+
+    /**
+     * Held while media is demoted or evicted, so that a demotion cannot write back media evicted as it ran.
+     */
+    private final Object evictions = new Object();
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter demotions;
+
+    @Inject
+    TieredMediaCache(MetricRegistry metrics, @DataDirectory File dataDirectory)
+    {
+        this(metrics,
+             new SlabAllocator(DEFAULT_MEMORY_BYTES, SlabAllocator.DEFAULT_SLAB_SIZE),
+             openDisk(new File(dataDirectory, DIRECTORY_NAME)));
+    }
+
+    /**
+     * @param disk The disk tier, or {@code null} to run with memory alone.
+     */
+    TieredMediaCache(MetricRegistry metrics, SlabAllocator slabs, MappedSegmentStore disk)
+    {
+        checkThat(metrics, slabs)
+                .are(notNull());
+
+        this.disk = disk;
+        this.memory = new OffHeapMediaCache(slabs, this::demote);
+
+        this.memoryHits = metrics.counter(name(MediaCache.class, "memory-hits"));
+        this.diskHits = metrics.counter(name(MediaCache.class, "disk-hits"));
+        this.misses = metrics.counter(name(MediaCache.class, "misses"));
+        this.demotions = metrics.counter(name(MediaCache.class, "demotions"));
+    }
+
+    private static MappedSegmentStore openDisk(File directory)
+    {
+        try
+        {
+            PrivateDirectories.create(directory);
+
+            return new MappedSegmentStore(directory,
+                                          MappedSegmentStore.DEFAULT_SEGMENT_SIZE,
+                                          MappedSegmentStore.DEFAULT_MAX_BYTES);
+        }
+        catch (IOException ex)
+        {
+            LOG.warn("Could not open the disk cache at {}. Caching media in memory only.", directory, ex);
+            return null;
+        }
+    }
+
+    @Override
+    public Image get(String mediaId, Dimension size)
+    {
+        checkThat(mediaId).is(notNull());
+
+        String key = keyFor(mediaId, size);
+        CachedMedia media = memory.get(key);
+
+        if (media != null)
+        {
+            memoryHits.inc();
+            return media.toImage();
+        }
+
+        media = disk != null ? disk.get(key) : null;
+
+        if (media == null)
+        {
+            misses.inc();
+            return null;
+        }
+
+        diskHits.inc();
+        memory.put(key, media);
+
+        return media.toImage();
+    }
+
+    @Override
+    public void put(String mediaId, Dimension size, Image image)
+    {
+        checkThat(mediaId, image)
+                .are(notNull());
+
+        if (!image.isSetData())
+        {
+            return;
+        }
+
+        String key = keyFor(mediaId, size);
+        CachedMedia media = CachedMedia.of(image);
+
+        if (!memory.put(key, media) && disk != null)
+        {
+            disk.put(key, media);
+        }
+    }
+
+    @Override
+    public void evict(String mediaId)
+    {
+        checkThat(mediaId).is(notNull());
+
+        String prefix = mediaId + SEPARATOR;
+
+        synchronized (evictions)
+        {
+            memory.removeAll(prefix);
+
+            if (disk != null)
+            {
+                disk.removeAll(prefix);
+            }
+        }
+    }
+
+    private void demote(String key, CachedMedia media)
+    {
+        if (disk == null)
+        {
+            return;
+        }
+
+        synchronized (evictions)
+        {
+            if (memory.isDemoting(key, media) && !disk.contains(key) && disk.put(key, media))
+            {
+                demotions.inc();
+            }
+        }
+    }
+
+    static String keyFor(String mediaId, Dimension size)
+    {
+        String sizeKey = size == null ? "full" : size.width + "x" + size.height;
+        return mediaId + SEPARATOR + sizeKey;
+    }
+
+}
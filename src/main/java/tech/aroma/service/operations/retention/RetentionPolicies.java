@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.retention;
+
+
+import java.time.Duration;
+
+import tech.aroma.service.operations.inbox.InboxCache;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+/**
+ * Whether messages are swept at all, and the retention policy of each Application and Inbox. They are bound in
+ * the {@linkplain tech.aroma.service.operations.ModuleAromaServiceOperations operations module}, so that each
+ * deployment can tune them, and sweeping is off unless it is turned on there.
+ * <p>
+ * Policies are not stored anywhere, so every Application and every Inbox keeps to the same policy.
+ * A policy set for one of them in memory would quietly be lost on the next restart.
+ *
+ * @author SirWellington
+ */
+public final class RetentionPolicies
+{
+
+    public static final RetentionPolicy DEFAULT_APPLICATION_POLICY = RetentionPolicy.of(Duration.ofDays(90), 10_000);
+
+    /**
+     * Matches the number of messages {@code GetInbox} returns when no limit is requested.
+     */
+    public static final RetentionPolicy DEFAULT_INBOX_POLICY = RetentionPolicy.of(Duration.ofDays(30), InboxCache.DEFAULT_LIMIT);
+
+    private final boolean enabled;
+    private final RetentionPolicy applicationPolicy;
+    private final RetentionPolicy inboxPolicy;
+
+    public RetentionPolicies(boolean enabled, RetentionPolicy applicationPolicy, RetentionPolicy inboxPolicy)
+    {
+        checkThat(applicationPolicy, inboxPolicy)
+                .are(notNull());
+
+        this.enabled = enabled;
+        this.applicationPolicy = applicationPolicy;
+        this.inboxPolicy = inboxPolicy;
+    }
+
+    /**
+     * @return The default policies, with sweeping turned off.
+     */
+    public static RetentionPolicies defaults()
+    {
+        return new RetentionPolicies(false, DEFAULT_APPLICATION_POLICY, DEFAULT_INBOX_POLICY);
+    }
+
+    /**
+     * @return False if nothing should be swept, whatever its policy.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public RetentionPolicy getApplicationPolicy()
+    {
+        return applicationPolicy;
+    }
+
+    public RetentionPolicy getInboxPolicy()
+    {
+        return inboxPolicy;
+    }
+
+    RetentionPolicy forApplication(String applicationId)
+    {
+        return applicationPolicy;
+    }
+
+    RetentionPolicy forInbox(String userId)
+    {
+        return inboxPolicy;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RetentionPolicies{" + "enabled=" + enabled + ", applicationPolicy=" + applicationPolicy + ", inboxPolicy=" + inboxPolicy + '}';
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.retention;
+
+
+import java.time.Duration;
+import java.util.*;
+
+import tech.aroma.thrift.Message;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static java.util.stream.Collectors.toList;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.BooleanAssertions.trueStatement;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+
+/**
+ * How long messages are kept, and how many of them.
+ * <p>
+ * A message is expired once it is older than {@linkplain #getMaxAge() max age}, or once there are
+ * {@linkplain #getMaxCount() max count} messages newer than it. Age is measured from the time the
+ * message was received.
+ *
+ * @author SirWellington
+ */
+@Internal
+public final class RetentionPolicy
+{
+
+    private final Duration maxAge;
+    private final int maxCount;
+
+    private RetentionPolicy(Duration maxAge, int maxCount)
+    {
+        this.maxAge = maxAge;
+        this.maxCount = maxCount;
+    }
+
+    public static RetentionPolicy of(Duration maxAge, int maxCount)
+    {
+        checkThat(maxAge).is(notNull());
+
+        checkThat(!maxAge.isNegative() && !maxAge.isZero())
+                .usingMessage("maxAge must be > 0")
+                .is(trueStatement());
+
+        checkThat(maxCount)
+                .usingMessage("maxCount must be > 0")
+                .is(greaterThan(0));
+
+        return new RetentionPolicy(maxAge, maxCount);
+    }
+
+    public Duration getMaxAge()
+    {
+        return maxAge;
+    }
+
+    public int getMaxCount()
+    {
+        return maxCount;
+    }
+
+    /**
+     * @param messages The messages kept for an Application or an Inbox.
+     * @param now      The current time, in epoch millis.
+     * @return The messages this policy no longer keeps, oldest first.
+     */
+    List<Message> expiredAmong(Collection<Message> messages, long now)
+    {
+        long oldestKept = now - maxAge.toMillis();
+
+        List<Message> newestFirst = messages.stream()
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingLong(Message::getTimeMessageReceived).reversed())
+                .collect(toList());
+
+        LinkedList<Message> expired = new LinkedList<>();
+
+        for (int i = 0; i < newestFirst.size(); ++i)
+        {
+            Message message = newestFirst.get(i);
+            boolean tooOld = message.isSetTimeMessageReceived() && message.timeMessageReceived < oldestKept;
+
+            if (i >= maxCount || tooOld)
+            {
+                expired.addFirst(message);
+            }
+        }
+
+        return expired;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(maxAge, maxCount);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+
+        if (obj == null || getClass() != obj.getClass())
+        {
+            return false;
+        }
+
+        final RetentionPolicy other = (RetentionPolicy) obj;
+        return this.maxCount == other.maxCount && Objects.equals(this.maxAge, other.maxAge);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RetentionPolicy{" + "maxAge=" + maxAge + ", maxCount=" + maxCount + '}';
+    }
+
+}
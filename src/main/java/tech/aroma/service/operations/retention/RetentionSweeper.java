@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.retention;
+
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.ImplementedBy;
+import tech.aroma.data.InboxRepository;
+import tech.aroma.data.MessageRepository;
+import tech.aroma.service.operations.inbox.InboxCache;
+import tech.sirwellington.alchemy.annotations.arguments.NonEmpty;
+import tech.sirwellington.alchemy.annotations.arguments.Required;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+/**
+ * Keeps the messages of Applications and Inboxes within their {@linkplain RetentionPolicy retention policies}.
+ * <p>
+ * Applications and Inboxes are swept some time after they are scheduled, in the background, and at a limited
+ * rate, so that sweeping never competes with requests for the same data. Scheduling is cheap, and can be done
+ * each time messages are read.
+ *
+ * @author SirWellington
+ */
+@ImplementedBy(RetentionSweeperImpl.class)
+public interface RetentionSweeper
+{
+
+    /**
+     * Schedules the messages of an Application to be swept, if they are not already.
+     */
+    void scheduleApplication(@NonEmpty String applicationId);
+
+    /**
+     * Schedules the Inbox of a User to be swept, if it is not already.
+     */
+    void scheduleInbox(@NonEmpty String userId);
+
+    RetentionPolicy policyForApplication(@NonEmpty String applicationId);
+
+    RetentionPolicy policyForInbox(@NonEmpty String userId);
+
+    /**
+     * Runs a pass right away, sweeping everything that has come due.
+     *
+     * @return What the pass accomplished.
+     */
+    SweepReport sweep();
+
+    /**
+     * @return The report of the most recent pass, or {@code null} if none has run yet.
+     */
+    SweepReport lastSweep();
+
+    public static RetentionSweeper newInstance(@Required InboxRepository inboxRepo,
+                                               @Required InboxCache inboxCache,
+                                               @Required MessageRepository messageRepo,
+                                               @Required MetricRegistry metrics,
+                                               @Required RetentionPolicies policies)
+    {
+        checkThat(inboxRepo, inboxCache, messageRepo, metrics, policies)
+                .are(notNull());
+
+        return new RetentionSweeperImpl(inboxRepo, inboxCache, messageRepo, metrics, policies);
+    }
+}
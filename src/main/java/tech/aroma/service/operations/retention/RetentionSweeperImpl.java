@@ -0,0 +1,413 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.retention;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.*;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.data.InboxRepository;
+import tech.aroma.data.MessageRepository;
+import tech.aroma.service.operations.inbox.InboxCache;
+import tech.aroma.service.operations.retention.SweepSchedule.Target;
+import tech.aroma.thrift.Message;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.BooleanAssertions.trueStatement;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.nonEmptyString;
+
+/**
+ * Sweeps on a single background thread, once every pass interval.
+ * <p>
+ * Each pass sweeps only what has come due, and removes at most a fixed number of messages. Whatever is left
+ * over is finished in the passes that follow, as is anything whose messages could not be listed or removed. Every repository call made by the sweeper draws from a single
+ * rate limit, which bounds the load it adds no matter how much has expired. Messages removed from an Inbox are
+ * also dropped from the {@link InboxCache}.
+ * <p>
+ * While sweeping is {@linkplain RetentionPolicies#isEnabled() turned off}, nothing is scheduled and no passes
+ * run.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+final class RetentionSweeperImpl implements RetentionSweeper
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(RetentionSweeperImpl.class);
+
+    /**
+     * Gives the request that scheduled a sweep time to finish before the sweep begins.
+     */
+    static final long DEFAULT_SWEEP_DELAY_MILLIS = MINUTES.toMillis(10);
+    static final long DEFAULT_BUCKET_WIDTH_MILLIS = MINUTES.toMillis(1);
+    static final long DEFAULT_PASS_INTERVAL_MILLIS = MINUTES.toMillis(1);
+    static final double DEFAULT_CALLS_PER_SECOND = 50;
+    static final int DEFAULT_MAX_DELETES_PER_PASS = 1_000;
+
+    private final InboxRepository inboxRepo;
+    private final InboxCache inboxCache;
+    private final MessageRepository messageRepo;
+
+    private final RetentionPolicies policies;
+    private final SweepSchedule schedule;
+    private final long sweepDelayMillis;
+    private final int maxDeletesPerPass;
+    private final RateLimiter rateLimit;
+    private final ScheduledExecutorService passes;
+
+    private final AtomicReference<SweepReport> lastReport = new AtomicReference<>();
+
+    private final Counter messagesRemoved;
+    private final Counter failures;
+    private final Timer passTime;
+
+    @Inject
+    RetentionSweeperImpl(InboxRepository inboxRepo,
+                         InboxCache inboxCache,
+                         MessageRepository messageRepo,
+                         MetricRegistry metrics,
+                         RetentionPolicies policies)
+    {
+        this(inboxRepo,
+             inboxCache,
+             messageRepo,
+             metrics,
+             policies,
+             DEFAULT_SWEEP_DELAY_MILLIS,
+             DEFAULT_BUCKET_WIDTH_MILLIS,
+             DEFAULT_PASS_INTERVAL_MILLIS,
+             DEFAULT_CALLS_PER_SECOND,
+             DEFAULT_MAX_DELETES_PER_PASS);
+    }
+
+    RetentionSweeperImpl(InboxRepository inboxRepo,
+                         InboxCache inboxCache,
+                         MessageRepository messageRepo,
+                         MetricRegistry metrics,
+                         RetentionPolicies policies,
+                         long sweepDelayMillis,
+                         long bucketWidthMillis,
+                         long passIntervalMillis,
+                         double callsPerSecond,
+                         int maxDeletesPerPass)
+    {
+        checkThat(inboxRepo, inboxCache, messageRepo, metrics, policies)
+                .are(notNull());
+
+        checkThat(sweepDelayMillis >= 0)
+                .usingMessage("sweepDelayMillis must be >= 0")
+                .is(trueStatement());
+
+        checkThat(bucketWidthMillis, passIntervalMillis)
+                .usingMessage("intervals must be > 0")
+                .are(greaterThan(0L));
+
+        checkThat(callsPerSecond > 0)
+                .usingMessage("callsPerSecond must be > 0")
+                .is(trueStatement());
+
+        checkThat(maxDeletesPerPass)
+                .usingMessage("maxDeletesPerPass must be > 0")
+                .is(greaterThan(0));
+
+        this.inboxRepo = inboxRepo;
+        this.inboxCache = inboxCache;
+        this.messageRepo = messageRepo;
+        this.policies = policies;
+        this.schedule = new SweepSchedule(bucketWidthMillis);
+        this.sweepDelayMillis = sweepDelayMillis;
+        this.maxDeletesPerPass = maxDeletesPerPass;
+        this.rateLimit = RateLimiter.create(callsPerSecond);
+
+        this.messagesRemoved = metrics.counter(name(RetentionSweeper.class, "messages-removed"));
+        this.failures = metrics.counter(name(RetentionSweeper.class, "failures"));
+        this.passTime = metrics.timer(name(RetentionSweeper.class, "pass-time"));
+        metrics.gauge(name(RetentionSweeper.class, "scheduled"), () -> (Gauge<Integer>) schedule::size);
+
+        ThreadFactory threads = new ThreadFactoryBuilder()
+                .setNameFormat("retention-sweeper-%d")
+                .setDaemon(true)
+                .build();
+
+        this.passes = Executors.newSingleThreadScheduledExecutor(threads);
+
+        if (policies.isEnabled())
+        {
+            this.passes.scheduleWithFixedDelay(this::runPass, passIntervalMillis, passIntervalMillis, MILLISECONDS);
+        }
+        else
+        {
+            LOG.info("Retention sweeping is turned off. Messages are kept until they are deleted.");
+        }
+    }
+
+    @Override
+    public void scheduleApplication(String applicationId)
+    {
+        checkThat(applicationId)
+                .usingMessage("missing application ID")
+                .is(nonEmptyString());
+
+        if (policies.isEnabled())
+        {
+            schedule.schedule(Target.application(applicationId), System.currentTimeMillis() + sweepDelayMillis);
+        }
+    }
+
+    @Override
+    public void scheduleInbox(String userId)
+    {
+        checkThat(userId)
+                .usingMessage("missing user ID")
+                .is(nonEmptyString());
+
+        if (policies.isEnabled())
+        {
+            schedule.schedule(Target.inbox(userId), System.currentTimeMillis() + sweepDelayMillis);
+        }
+    }
+
+    @Override
+    public RetentionPolicy policyForApplication(String applicationId)
+    {
+        checkThat(applicationId)
+                .usingMessage("missing application ID")
+                .is(nonEmptyString());
+
+        return policies.forApplication(applicationId);
+    }
+
+    @Override
+    public RetentionPolicy policyForInbox(String userId)
+    {
+        checkThat(userId)
+                .usingMessage("missing user ID")
+                .is(nonEmptyString());
+
+        return policies.forInbox(userId);
+    }
+
+    @Override
+    public synchronized SweepReport sweep()
+    {
+        long startedAt = System.currentTimeMillis();
+        int budget = maxDeletesPerPass;
+
+        int applicationsSwept = 0;
+        int inboxesSwept = 0;
+        int removed = 0;
+        int failed = 0;
+
+        try (Timer.Context ignored = passTime.time())
+        {
+            for (Target target : schedule.takeDue(startedAt))
+            {
+                if (budget <= 0)
+                {
+                    schedule.reschedule(target, startedAt);
+                    continue;
+                }
+
+                Sweep sweep = sweep(target, budget, startedAt);
+
+                budget -= sweep.attempted;
+                removed += sweep.removed;
+                failed += sweep.failed;
+
+                if (target.kind() == Target.Kind.APPLICATION)
+                {
+                    ++applicationsSwept;
+                }
+                else
+                {
+                    ++inboxesSwept;
+                }
+
+                if (sweep.finished)
+                {
+                    schedule.done(target);
+                }
+                else
+                {
+                    schedule.reschedule(target, startedAt);
+                }
+            }
+        }
+
+        long duration = System.currentTimeMillis() - startedAt;
+        SweepReport report = new SweepReport(startedAt,
+                                             duration,
+                                             applicationsSwept,
+                                             inboxesSwept,
+                                             removed,
+                                             failed,
+                                             schedule.size());
+
+        messagesRemoved.inc(removed);
+        failures.inc(failed);
+        lastReport.set(report);
+
+        if (removed > 0 || failed > 0)
+        {
+            LOG.info("Retention sweep removed {} messages from {} Applications and {} Inboxes in {}ms. {} could not be removed.",
+                     removed, applicationsSwept, inboxesSwept, duration, failed);
+        }
+        else
+        {
+            LOG.debug("Retention sweep found nothing to remove: {}", report);
+        }
+
+        return report;
+    }
+
+    @Override
+    public SweepReport lastSweep()
+    {
+        return lastReport.get();
+    }
+
+    private void runPass()
+    {
+        try
+        {
+            sweep();
+        }
+        catch (RuntimeException ex)
+        {
+            //Thrown out of a scheduled task, it would cancel every pass that follows
+            LOG.error("Retention sweep failed", ex);
+        }
+    }
+
+    private Sweep sweep(Target target, int budget, long now)
+    {
+        List<Message> messages;
+
+        rateLimit.acquire();
+        try
+        {
+            messages = messagesOf(target);
+        }
+        catch (TException ex)
+        {
+            LOG.warn("Could not list the messages of {} to sweep them. Trying again in the next pass.", target, ex);
+            return new Sweep(0, 0, 0, false);
+        }
+
+        List<Message> expired = policyFor(target).expiredAmong(messages, now);
+        int attempts = Math.min(budget, expired.size());
+        List<String> removed = new ArrayList<>();
+        int failed = 0;
+
+        for (Message message : expired.subList(0, attempts))
+        {
+            rateLimit.acquire();
+
+            try
+            {
+                delete(target, message.messageId);
+                removed.add(message.messageId);
+            }
+            catch (TException ex)
+            {
+                LOG.warn("Could not remove expired message [{}] from {}", message.messageId, target, ex);
+                ++failed;
+            }
+        }
+
+        if (target.kind() == Target.Kind.INBOX && !removed.isEmpty())
+        {
+            inboxCache.dismissed(target.id(), removed);
+        }
+
+        return new Sweep(attempts, removed.size(), failed, attempts == expired.size() && failed == 0);
+    }
+
+    private List<Message> messagesOf(Target target) throws TException
+    {
+        switch (target.kind())
+        {
+            case APPLICATION:
+                return messageRepo.getByApplication(target.id());
+            default:
+                return inboxRepo.getMessagesForUser(target.id());
+        }
+    }
+
+    private RetentionPolicy policyFor(Target target)
+    {
+        switch (target.kind())
+        {
+            case APPLICATION:
+                return policies.forApplication(target.id());
+            default:
+                return policies.forInbox(target.id());
+        }
+    }
+
+    private void delete(Target target, String messageId) throws TException
+    {
+        switch (target.kind())
+        {
+            case APPLICATION:
+                messageRepo.deleteMessage(target.id(), messageId);
+                break;
+            default:
+                inboxRepo.deleteMessageForUser(target.id(), messageId);
+        }
+    }
+
+    void shutdown()
+    {
+        passes.shutdownNow();
+    }
+
+    private static final class Sweep
+    {
+
+        private final int attempted;
+        private final int removed;
+        private final int failed;
+        private final boolean finished;
+
+        Sweep(int attempted, int removed, int failed, boolean finished)
+        {
+            this.attempted = attempted;
+            this.removed = removed;
+            this.failed = failed;
+            this.finished = finished;
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.retention;
+
+
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+/**
+ * What a single pass of the {@link RetentionSweeper} accomplished.
+ *
+ * @author SirWellington
+ */
+@Internal
+public final class SweepReport
+{
+
+    private final long startedAt;
+    private final long durationMillis;
+    private final int applicationsSwept;
+    private final int inboxesSwept;
+    private final int messagesRemoved;
+    private final int failures;
+    private final int stillScheduled;
+
+    SweepReport(long startedAt,
+                long durationMillis,
+                int applicationsSwept,
+                int inboxesSwept,
+                int messagesRemoved,
+                int failures,
+                int stillScheduled)
+    {
+        this.startedAt = startedAt;
+        this.durationMillis = durationMillis;
+        this.applicationsSwept = applicationsSwept;
+        this.inboxesSwept = inboxesSwept;
+        this.messagesRemoved = messagesRemoved;
+        this.failures = failures;
+        this.stillScheduled = stillScheduled;
+    }
+
+    /**
+     * @return When the pass started, in epoch millis.
+     */
+    public long getStartedAt()
+    {
+        return startedAt;
+    }
+
+    public long getDurationMillis()
+    {
+        return durationMillis;
+    }
+
+    public int getApplicationsSwept()
+    {
+        return applicationsSwept;
+    }
+
+    public int getInboxesSwept()
+    {
+        return inboxesSwept;
+    }
+
+    public int getMessagesRemoved()
+    {
+        return messagesRemoved;
+    }
+
+    /**
+     * @return How many expired messages could not be removed. They are retried the next time their
+     *         Application or Inbox is swept.
+     */
+    public int getFailures()
+    {
+        return failures;
+    }
+
+    /**
+     * @return How many Applications and Inboxes were left waiting to be swept when the pass ended.
+     */
+    public int getStillScheduled()
+    {
+        return stillScheduled;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SweepReport{" + "startedAt=" + startedAt + ", durationMillis=" + durationMillis + ", applicationsSwept=" + applicationsSwept + ", inboxesSwept=" + inboxesSwept + ", messagesRemoved=" + messagesRemoved + ", failures=" + failures + ", stillScheduled=" + stillScheduled + '}';
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.retention;
+
+
+import java.util.*;
+
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+
+/**
+ * The Applications and Inboxes waiting to be swept, grouped into buckets by the time they become due.
+ * <p>
+ * Everything due within the same bucket is swept in the same pass, so a pass never has to scan the work
+ * that is not yet due. A target appears at most once, no matter how many times it is scheduled, until it
+ * is {@linkplain #done(Target) done}.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class SweepSchedule
+{
+
+    private final long bucketWidthMillis;
+
+    private final NavigableMap<Long, Set<Target>> buckets = new TreeMap<>();
+    private final Set<Target> scheduled = new HashSet<>();
+
+    SweepSchedule(long bucketWidthMillis)
+    {
+        checkThat(bucketWidthMillis)
+                .usingMessage("bucket width must be > 0")
+                .is(greaterThan(0L));
+
+        this.bucketWidthMillis = bucketWidthMillis;
+    }
+
+    /**
+     * @return True if the target was scheduled, false if it already was.
+     */
+    synchronized boolean schedule(Target target, long dueAt)
+    {
+        if (!scheduled.add(target))
+        {
+            return false;
+        }
+
+        bucketFor(dueAt).add(target);
+        return true;
+    }
+
+    /**
+     * Puts a target that was {@linkplain #takeDue(long) taken} back into the schedule, to be finished later.
+     */
+    synchronized void reschedule(Target target, long dueAt)
+    {
+        scheduled.add(target);
+        bucketFor(dueAt).add(target);
+    }
+
+    /**
+     * Removes every target in the buckets that have come due. They remain scheduled, and cannot be scheduled again,
+     * until they are either {@linkplain #done(Target) done} or {@linkplain #reschedule(Target, long) rescheduled}.
+     */
+    synchronized List<Target> takeDue(long now)
+    {
+        List<Target> due = new ArrayList<>();
+
+        while (!buckets.isEmpty() && buckets.firstKey() <= now)
+        {
+            due.addAll(buckets.pollFirstEntry().getValue());
+        }
+
+        return due;
+    }
+
+    synchronized void done(Target target)
+    {
+        scheduled.remove(target);
+    }
+
+    synchronized int size()
+    {
+        return scheduled.size();
+    }
+
+    private Set<Target> bucketFor(long dueAt)
+    {
+        //Keyed by the end of the bucket, so nothing is taken before it is due
+        long bucketEnd = Math.floorDiv(dueAt + bucketWidthMillis - 1, bucketWidthMillis) * bucketWidthMillis;
+
+        return buckets.computeIfAbsent(bucketEnd, key -> new LinkedHashSet<>());
+    }
+
+    /**
+     * Something whose messages are kept under a retention policy.
+     */
+    static final class Target
+    {
+
+        enum Kind
+        {
+            APPLICATION,
+            INBOX
+        }
+
+        private final Kind kind;
+        private final String id;
+
+        private Target(Kind kind, String id)
+        {
+            this.kind = kind;
+            this.id = id;
+        }
+
+        static Target application(String applicationId)
+        {
+            return new Target(Kind.APPLICATION, applicationId);
+        }
+
+        static Target inbox(String userId)
+        {
+            return new Target(Kind.INBOX, userId);
+        }
+
+        Kind kind()
+        {
+            return kind;
+        }
+
+        String id()
+        {
+            return id;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(kind, id);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+            {
+                return true;
+            }
+
+            if (obj == null || getClass() != obj.getClass())
+            {
+                return false;
+            }
+
+            final Target other = (Target) obj;
+            return this.kind == other.kind && Objects.equals(this.id, other.id);
+        }
+
+        @Override
+        public String toString()
+        {
+            return kind + "[" + id + "]";
+        }
+    }
+
+}
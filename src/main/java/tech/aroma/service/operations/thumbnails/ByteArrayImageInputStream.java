@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.thumbnails;
+
+
+import java.io.IOException;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+/**
+ * An {@link ImageInputStream} that reads straight from an array.
+ * <p>
+ * The stock {@code MemoryCacheImageInputStream} copies everything it reads into a cache of its own,
+ * which is wasted work when the whole image is already in memory.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class ByteArrayImageInputStream extends ImageInputStreamImpl
+{
+
+    private final byte[] data;
+
+    ByteArrayImageInputStream(byte[] data)
+    {
+        this.data = data;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        checkClosed();
+        bitOffset = 0;
+
+        if (streamPos >= data.length)
+        {
+            return -1;
+        }
+
+        return data[(int) streamPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException
+    {
+        checkClosed();
+
+        if (offset < 0 || length < 0 || length > bytes.length - offset)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+
+        bitOffset = 0;
+
+        if (length == 0)
+        {
+            return 0;
+        }
+
+        if (streamPos >= data.length)
+        {
+            return -1;
+        }
+
+        int read = (int) Math.min(length, data.length - streamPos);
+        System.arraycopy(data, (int) streamPos, bytes, offset, read);
+        streamPos += read;
+
+        return read;
+    }
+
+    @Override
+    public long length()
+    {
+        return data.length;
+    }
+
+}
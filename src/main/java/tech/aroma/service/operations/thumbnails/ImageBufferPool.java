@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.thumbnails;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThanOrEqualTo;
+
+/**
+ * Recycles the byte arrays used while encoding images.
+ * <p>
+ * Arrays come in power-of-two size classes, from {@link #MIN_CLASS_SIZE} to {@link #MAX_CLASS_SIZE}.
+ * Released arrays are kept for reuse up to a total of {@code maxRetainedBytes}; past that, or outside the
+ * size classes, they are left to the garbage collector. Reused arrays are long-lived, so large ones stop
+ * showing up as fresh humongous allocations on every image.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+final class ImageBufferPool
+{
+
+    static final int MIN_CLASS_SIZE = 16 * 1024;
+    static final int MAX_CLASS_SIZE = 16 * 1024 * 1024;
+    static final long DEFAULT_MAX_RETAINED_BYTES = 64L * 1024 * 1024;
+
+    private final List<Queue<byte[]>> classes = new ArrayList<>();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final long maxRetainedBytes;
+
+    private final Counter reused;
+    private final Counter allocated;
+
+    @Inject
+    ImageBufferPool(MetricRegistry metrics)
+    {
+        this(metrics, DEFAULT_MAX_RETAINED_BYTES);
+    }
+
+    ImageBufferPool(MetricRegistry metrics, long maxRetainedBytes)
+    {
+        checkThat(metrics).is(notNull());
+
+        checkThat(maxRetainedBytes)
+                .usingMessage("maxRetainedBytes must be >= 0")
+                .is(greaterThanOrEqualTo(0L));
+
+        this.maxRetainedBytes = maxRetainedBytes;
+
+        for (int size = MIN_CLASS_SIZE; size <= MAX_CLASS_SIZE; size *= 2)
+        {
+            classes.add(new ConcurrentLinkedQueue<>());
+        }
+
+        this.reused = metrics.counter(name(ImageBufferPool.class, "reused"));
+        this.allocated = metrics.counter(name(ImageBufferPool.class, "allocated"));
+        metrics.gauge(name(ImageBufferPool.class, "retained-bytes"), () -> (Gauge<Long>) retainedBytes::get);
+    }
+
+    /**
+     * @return An array of at least {@code minimumSize} bytes. Its contents are undefined.
+     */
+    byte[] acquire(int minimumSize)
+    {
+        checkThat(minimumSize)
+                .usingMessage("size must be >= 0")
+                .is(greaterThanOrEqualTo(0));
+
+        if (minimumSize > MAX_CLASS_SIZE)
+        {
+            allocated.inc();
+            return new byte[minimumSize];
+        }
+
+        int index = classIndexFor(minimumSize);
+        byte[] buffer = classes.get(index).poll();
+
+        if (buffer != null)
+        {
+            retainedBytes.addAndGet(-buffer.length);
+            reused.inc();
+            return buffer;
+        }
+
+        allocated.inc();
+        return new byte[MIN_CLASS_SIZE << index];
+    }
+
+    /**
+     * Offers an array back for reuse. The caller must not touch it afterwards.
+     */
+    void release(byte[] buffer)
+    {
+        if (buffer == null || !isClassSize(buffer.length))
+        {
+            return;
+        }
+
+        if (retainedBytes.addAndGet(buffer.length) > maxRetainedBytes)
+        {
+            retainedBytes.addAndGet(-buffer.length);
+            return;
+        }
+
+        classes.get(classIndexFor(buffer.length)).offer(buffer);
+    }
+
+    long retainedBytes()
+    {
+        return retainedBytes.get();
+    }
+
+    static int classSizeFor(int minimumSize)
+    {
+        return MIN_CLASS_SIZE << classIndexFor(minimumSize);
+    }
+
+    private static int classIndexFor(int minimumSize)
+    {
+        int index = 0;
+
+        while ((MIN_CLASS_SIZE << index) < minimumSize)
+        {
+            ++index;
+        }
+
+        return index;
+    }
+
+    private static boolean isClassSize(int length)
+    {
+        return length >= MIN_CLASS_SIZE && length <= MAX_CLASS_SIZE && Integer.bitCount(length) == 1;
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.thumbnails;
+
+
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import net.coobird.thumbnailator.util.exif.ExifUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+/**
+ * The details of an encoded image that can be learned from its header, without decoding any pixels.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class ImageHeader
+{
+    private final static Logger LOG = LoggerFactory.getLogger(ImageHeader.class);
+
+    private final Dimension dimension;
+    private final String formatName;
+    private final boolean upright;
+
+    private ImageHeader(Dimension dimension, String formatName, boolean upright)
+    {
+        this.dimension = dimension;
+        this.formatName = formatName;
+        this.upright = upright;
+    }
+
+    static ImageHeader readFrom(byte[] data) throws OperationFailedException
+    {
+        try (ImageInputStream stream = new ByteArrayImageInputStream(data))
+        {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+
+            if (!readers.hasNext())
+            {
+                throw new OperationFailedException("Image format is not recognized");
+            }
+
+            ImageReader reader = readers.next();
+
+            try
+            {
+                reader.setInput(stream, true, false);
+
+                Dimension dimension = new Dimension()
+                        .setWidth(reader.getWidth(0))
+                        .setHeight(reader.getHeight(0));
+
+                return new ImageHeader(dimension, reader.getFormatName(), isUpright(reader));
+            }
+            finally
+            {
+                reader.dispose();
+            }
+        }
+        catch (IOException ex)
+        {
+            LOG.warn("Failed to read image header", ex);
+            throw new OperationFailedException("Could not read image header: " + ex.getMessage());
+        }
+    }
+
+    private static boolean isUpright(ImageReader reader)
+    {
+        try
+        {
+            Orientation orientation = ExifUtils.getExifOrientation(reader, 0);
+            return orientation == null || orientation == Orientation.TOP_LEFT;
+        }
+        catch (Exception ex)
+        {
+            LOG.debug("Could not read EXIF orientation. Assuming image is rotated.", ex);
+            return false;
+        }
+    }
+
+    Dimension getDimension()
+    {
+        return dimension;
+    }
+
+    String getFormatName()
+    {
+        return formatName;
+    }
+
+    /**
+     * @return True if the image needs no EXIF rotation before it can be displayed.
+     */
+    boolean isUpright()
+    {
+        return upright;
+    }
+
+    static long pixelsIn(Dimension dimension)
+    {
+        return (long) dimension.width * dimension.height;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ImageHeader{" + "dimension=" + dimension + ", formatName=" + formatName + ", upright=" + upright + '}';
+    }
+
+}
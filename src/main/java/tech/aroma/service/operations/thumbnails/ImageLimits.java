@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.thumbnails;
+
+
+import tech.aroma.thrift.Dimension;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.BooleanAssertions.trueStatement;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+
+/**
+ * The limits the {@link ImageNormalizer} applies to uploaded images. They are bound in the
+ * {@linkplain tech.aroma.service.operations.ModuleAromaServiceOperations operations module},
+ * so that each deployment can tune them.
+ *
+ * @author SirWellington
+ */
+public final class ImageLimits
+{
+
+    public static final int DEFAULT_MAX_WIDTH = 512;
+    public static final int DEFAULT_MAX_HEIGHT = 512;
+    public static final double DEFAULT_QUALITY = 0.85;
+
+    /**
+     * Images within the maximum resolution, but larger than this on disk, are re-encoded anyway.
+     */
+    public static final int DEFAULT_MAX_UNTOUCHED_BYTES = 128 * 1024;
+
+    /**
+     * Uploads with a side longer than this are refused, rather than decoded.
+     */
+    public static final int DEFAULT_MAX_SOURCE_SIDE = 8_000;
+
+    private final Dimension maxSize;
+    private final double quality;
+    private final int maxUntouchedBytes;
+    private final int maxSourceSide;
+
+    public ImageLimits(Dimension maxSize, double quality, int maxUntouchedBytes, int maxSourceSide)
+    {
+        checkThat(maxSize).is(notNull());
+
+        checkThat(maxSize.width, maxSize.height, maxUntouchedBytes, maxSourceSide)
+                .usingMessage("limits must be > 0")
+                .are(greaterThan(0));
+
+        checkThat(quality > 0 && quality <= 1)
+                .usingMessage("quality must be in (0, 1]")
+                .is(trueStatement());
+
+        this.maxSize = new Dimension(maxSize);
+        this.quality = quality;
+        this.maxUntouchedBytes = maxUntouchedBytes;
+        this.maxSourceSide = maxSourceSide;
+    }
+
+    public static ImageLimits defaults()
+    {
+        Dimension maxSize = new Dimension().setWidth(DEFAULT_MAX_WIDTH).setHeight(DEFAULT_MAX_HEIGHT);
+
+        return new ImageLimits(maxSize, DEFAULT_QUALITY, DEFAULT_MAX_UNTOUCHED_BYTES, DEFAULT_MAX_SOURCE_SIDE);
+    }
+
+    /**
+     * @return The largest resolution stored. Larger images are scaled down to fit.
+     */
+    public Dimension getMaxSize()
+    {
+        return new Dimension(maxSize);
+    }
+
+    public double getQuality()
+    {
+        return quality;
+    }
+
+    public int getMaxUntouchedBytes()
+    {
+        return maxUntouchedBytes;
+    }
+
+    public int getMaxSourceSide()
+    {
+        return maxSourceSide;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ImageLimits{" + "maxSize=" + maxSize + ", quality=" + quality + ", maxUntouchedBytes=" + maxUntouchedBytes + ", maxSourceSide=" + maxSourceSide + '}';
+    }
+
+}
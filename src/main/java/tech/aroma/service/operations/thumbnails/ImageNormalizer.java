@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.thumbnails;
+
+import com.google.inject.ImplementedBy;
+import org.apache.thrift.TException;
+import tech.aroma.thrift.Image;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.sirwellington.alchemy.annotations.arguments.Required;
+
+
+/**
+ * Prepares uploaded images, such as Application Icons and Profile Images, for storage.
+ * <p>
+ * Clients often upload originals that are far larger than they will ever be displayed.
+ * Normalizing them once, at ingest, means every later read moves fewer bytes.
+ *
+ * @author SirWellington
+ */
+@ImplementedBy(ImageNormalizerImpl.class)
+public interface ImageNormalizer
+{
+
+    /**
+     * Checks the format and dimensions of an uploaded image, and re-encodes it
+     * if it is larger than it needs to be.
+     *
+     * @param image The image as uploaded.
+     * @return The image to store. This may be the same instance if it was already small enough.
+     * @throws InvalidArgumentException If the image is missing, unreadable, of an unsupported format, or too large.
+     * @throws TException
+     */
+    Image normalize(@Required Image image) throws TException;
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.thumbnails;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import javax.inject.Inject;
+
+import com.codahale.metrics.*;
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sir.wellington.alchemy.collections.sets.Sets;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.Image;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.BooleanAssertions.trueStatement;
+import static tech.sirwellington.alchemy.arguments.assertions.CollectionAssertions.elementInCollection;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.lessThanOrEqualTo;
+
+/**
+ * Re-encodes uploaded images on the {@link ImageProcessingPool}, so that nothing larger than
+ * the maximum resolution of the {@linkplain ImageLimits limits} is stored.
+ * <p>
+ * Images that already fit, and are small on disk, are stored untouched. A re-encoded image is only
+ * kept if it is actually smaller than the original. If the pool is saturated, the original is stored
+ * instead of failing the upload.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class ImageNormalizerImpl implements ImageNormalizer
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(ImageNormalizerImpl.class);
+
+    static final Set<String> SUPPORTED_FORMATS = Sets.createFrom("jpeg", "png", "gif");
+
+    private final ImageProcessingPool pool;
+    private final ImageBufferPool buffers;
+    private final Dimension maxSize;
+    private final double quality;
+    private final int maxUntouchedBytes;
+    private final int maxSourceSide;
+
+    private final Histogram originalSizes;
+    private final Histogram storedSizes;
+    private final Counter bytesSaved;
+
+    @Inject
+    ImageNormalizerImpl(ImageProcessingPool pool, ImageBufferPool buffers, MetricRegistry metrics, ImageLimits limits)
+    {
+        checkThat(pool, buffers, metrics, limits)
+                .are(notNull());
+
+        this.pool = pool;
+        this.buffers = buffers;
+        this.maxSize = limits.getMaxSize();
+        this.quality = limits.getQuality();
+        this.maxUntouchedBytes = limits.getMaxUntouchedBytes();
+        this.maxSourceSide = limits.getMaxSourceSide();
+
+        this.originalSizes = metrics.histogram(name(ImageNormalizer.class, "original-bytes"));
+        this.storedSizes = metrics.histogram(name(ImageNormalizer.class, "stored-bytes"));
+        this.bytesSaved = metrics.counter(name(ImageNormalizer.class, "bytes-saved"));
+    }
+
+    @Override
+    public Image normalize(Image image) throws TException
+    {
+        checkThat(image)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("image is missing")
+                .is(notNull());
+
+        checkThat(image.isSetData())
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("image is missing its data")
+                .is(trueStatement());
+
+        byte[] original = image.getData();
+        ImageHeader header = readHeaderOf(original);
+        checkIsAcceptable(header);
+
+        originalSizes.update(original.length);
+
+        byte[] stored = original;
+
+        if (needsReEncoding(header, original))
+        {
+            byte[] reEncoded = tryToReEncode(original, header);
+
+            if (reEncoded != null && reEncoded.length < original.length)
+            {
+                stored = reEncoded;
+            }
+        }
+
+        storedSizes.update(stored.length);
+
+        if (stored == original)
+        {
+            return image;
+        }
+
+        bytesSaved.inc(original.length - stored.length);
+
+        LOG.debug("Normalized {} image of size {} from {} to {} bytes. {} bytes saved in total.",
+                  header.getFormatName(), header.getDimension(), original.length, stored.length, bytesSaved.getCount());
+
+        Image normalized = new Image()
+                .setImageType(image.getImageType())
+                .setDimension(ImageHeader.readFrom(stored).getDimension());
+
+        //Assigned directly, since the generated setter copies the array
+        normalized.data = ByteBuffer.wrap(stored);
+
+        return normalized;
+    }
+
+    private ImageHeader readHeaderOf(byte[] data) throws InvalidArgumentException
+    {
+        try
+        {
+            return ImageHeader.readFrom(data);
+        }
+        catch (OperationFailedException ex)
+        {
+            throw new InvalidArgumentException("image could not be read: " + ex.getMessage());
+        }
+    }
+
+    private void checkIsAcceptable(ImageHeader header) throws InvalidArgumentException
+    {
+        checkThat(header.getFormatName().toLowerCase())
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("image format is not supported: " + header.getFormatName())
+                .is(elementInCollection(SUPPORTED_FORMATS));
+
+        Dimension size = header.getDimension();
+
+        checkThat(size.width, size.height)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("image dimensions must be > 0")
+                .are(greaterThan(0));
+
+        checkThat(size.width, size.height)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("image is too large. Sides may be at most " + maxSourceSide)
+                .are(lessThanOrEqualTo(maxSourceSide));
+    }
+
+    private boolean needsReEncoding(ImageHeader header, byte[] data)
+    {
+        Dimension size = header.getDimension();
+
+        return size.width > maxSize.width ||
+               size.height > maxSize.height ||
+               data.length > maxUntouchedBytes;
+    }
+
+    private byte[] tryToReEncode(byte[] original, ImageHeader header) throws TException
+    {
+        Dimension size = header.getDimension();
+
+        //Never scale up; an image that already fits keeps its resolution
+        Dimension boundingBox = new Dimension()
+                .setWidth(Math.min(size.width, maxSize.width))
+                .setHeight(Math.min(size.height, maxSize.height));
+
+        //Rotated images take the full path, which applies the EXIF orientation
+        int subsampling = header.isUpright() ? SubsampledImageDecoder.subsamplingFor(size, boundingBox) : 1;
+        Dimension decodedSize = SubsampledImageDecoder.decodedSizeOf(size, subsampling);
+
+        try
+        {
+            return pool.process(decodedSize, () -> reEncode(original, header, subsampling, boundingBox));
+        }
+        catch (OperationFailedException ex)
+        {
+            LOG.warn("Could not normalize image of size {}. Storing the original instead.", size, ex);
+            return null;
+        }
+    }
+
+    private byte[] reEncode(byte[] original, ImageHeader header, int subsampling, Dimension boundingBox) throws TException
+    {
+        try
+        {
+            return ImageResizer.resize(original, header, subsampling, boundingBox, quality, buffers);
+        }
+        catch (IOException ex)
+        {
+            throw new OperationFailedException("Could not re-encode image: " + ex.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.thumbnails;
+
+
+import java.util.concurrent.*;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.*;
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.service.operations.BoundedPool;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
+
+/**
+ * A dedicated, bounded pool for decoding and encoding images.
+ * <p>
+ * A decoded image costs about {@code width * height * 4} bytes of heap, regardless of how small
+ * its encoded form is. To keep a burst of large images from exhausting the heap, each task is
+ * admitted against a budget of decoded pixels, computed from the image header before decoding.
+ * When either the budget or the queue is exhausted, the task is rejected immediately so that callers
+ * can fall back to the original image instead of waiting.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+final class ImageProcessingPool
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(ImageProcessingPool.class);
+
+    static final int DEFAULT_MAX_CONCURRENCY = Math.max(2, Runtime.getRuntime().availableProcessors());
+    static final int DEFAULT_MAX_QUEUED = DEFAULT_MAX_CONCURRENCY * 2;
+
+    /**
+     * 64 Megapixels, or roughly 256MB of decoded ARGB data.
+     */
+    static final int DEFAULT_PIXEL_BUDGET = 64_000_000;
+    static final long DEFAULT_TIMEOUT_MILLIS = 15_000;
+
+    private static final String SATURATED = "Image processing is saturated";
+
+    private final BoundedPool pool;
+    private final Semaphore pixelBudget;
+    private final int maxPixels;
+
+    private final Counter rejections;
+
+    @Inject
+    ImageProcessingPool(MetricRegistry metrics)
+    {
+        this(metrics, DEFAULT_MAX_CONCURRENCY, DEFAULT_MAX_QUEUED, DEFAULT_PIXEL_BUDGET, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    ImageProcessingPool(MetricRegistry metrics, int maxConcurrency, int maxQueued, int maxPixels, long timeoutMillis)
+    {
+        checkThat(metrics).is(notNull());
+
+        checkThat(maxPixels)
+                .usingMessage("pixel budget must be > 0")
+                .is(greaterThan(0));
+
+        this.maxPixels = maxPixels;
+        this.pixelBudget = new Semaphore(maxPixels);
+        this.rejections = metrics.counter(name(ImageProcessingPool.class, "rejections"));
+
+        this.pool = new BoundedPool("Image processing",
+                                    maxConcurrency,
+                                    maxQueued,
+                                    timeoutMillis,
+                                    SATURATED,
+                                    metrics.timer(name(ImageProcessingPool.class, "queue-time")),
+                                    metrics.timer(name(ImageProcessingPool.class, "processing-time")),
+                                    rejections);
+    }
+
+    /**
+     * Runs an image task on the pool, blocking until it completes.
+     *
+     * @param decodedSize The dimensions the image will have once decoded, as planned from its header.
+     * @param task        The work to perform.
+     * @return The result of the task.
+     * @throws OperationFailedException If the pool is saturated, the image is too large, or the task times out.
+     * @throws TException               If the task itself fails.
+     */
+    <T> T process(Dimension decodedSize, Callable<T> task) throws TException
+    {
+        checkThat(decodedSize, task)
+                .throwing(OperationFailedException.class)
+                .are(notNull());
+
+        long pixels = ImageHeader.pixelsIn(decodedSize);
+
+        if (pixels <= 0 || pixels > maxPixels)
+        {
+            rejections.inc();
+            throw new OperationFailedException("Image of size " + decodedSize + " is too large to process");
+        }
+
+        int cost = (int) pixels;
+
+        if (!pixelBudget.tryAcquire(cost))
+        {
+            rejections.inc();
+            LOG.debug("Image processing budget exhausted. Rejecting image of size {}", decodedSize);
+            throw new OperationFailedException(SATURATED);
+        }
+
+        return pool.execute("image of size " + decodedSize, task, () -> pixelBudget.release(cost));
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.thumbnails;
+
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+
+import net.coobird.thumbnailator.Thumbnails;
+import net.coobird.thumbnailator.resizers.configurations.Antialiasing;
+import tech.aroma.thrift.Dimension;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+import tech.sirwellington.alchemy.annotations.access.NonInstantiable;
+
+/**
+ * Scales an encoded image to fit inside a bounding box, keeping its aspect ratio and its format.
+ * <p>
+ * This is the resize shared by thumbnails and ingest-time normalization. Callers decide the
+ * subsampling; this class only carries it out. The output is encoded into a buffer borrowed from an
+ * {@link ImageBufferPool}, sized up front for the bounding box, so the only array left behind is the result.
+ *
+ * @author SirWellington
+ */
+@Internal
+@NonInstantiable
+final class ImageResizer
+{
+
+    private ImageResizer() throws IllegalAccessException
+    {
+        throw new IllegalAccessException("cannot instantiate");
+    }
+
+    /**
+     * @param data        The encoded original.
+     * @param header      The header read from {@code data}.
+     * @param subsampling The power-of-two reduction to decode at. {@code 1} decodes fully and applies EXIF orientation.
+     * @param boundingBox The size the output must fit in.
+     * @param quality     The output quality, between 0 and 1. Ignored by lossless formats.
+     * @param buffers     Where to borrow the encoding buffer from.
+     * @return The encoded, resized image.
+     */
+    static byte[] resize(byte[] data,
+                         ImageHeader header,
+                         int subsampling,
+                         Dimension boundingBox,
+                         double quality,
+                         ImageBufferPool buffers) throws IOException
+    {
+        try (PooledOutputStream ostream = new PooledOutputStream(buffers, expectedSizeOf(boundingBox)))
+        {
+            Thumbnails.Builder<?> builder;
+
+            if (subsampling > 1)
+            {
+                BufferedImage decoded = SubsampledImageDecoder.decode(data, subsampling);
+
+                builder = Thumbnails.of(decoded)
+                                    .outputFormat(header.getFormatName());
+            }
+            else
+            {
+                builder = Thumbnails.of(new ByteArrayInputStream(data))
+                                    .useExifOrientation(true);
+            }
+
+            builder.antialiasing(Antialiasing.ON)
+                   .outputQuality(quality)
+                   .height(boundingBox.height)
+                   .width(boundingBox.width)
+                   .toOutputStream(ostream);
+
+            return ostream.toByteArray();
+        }
+    }
+
+    /**
+     * About one byte per output pixel, which holds most JPEGs; anything larger grows a size class at a time.
+     */
+    static int expectedSizeOf(Dimension boundingBox)
+    {
+        return (int) Math.min(ImageBufferPool.MAX_CLASS_SIZE, ImageHeader.pixelsIn(boundingBox));
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.thumbnails;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+/**
+ * An {@link OutputStream} that writes into arrays borrowed from an {@link ImageBufferPool}.
+ * <p>
+ * It starts at a size class large enough for the expected output, and moves up one class at a time
+ * if the output turns out larger. Closing the stream returns its array to the pool, so the result must
+ * be taken with {@link #toByteArray() } first.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class PooledOutputStream extends OutputStream
+{
+
+    private final ImageBufferPool pool;
+    private byte[] buffer;
+    private int count;
+
+    PooledOutputStream(ImageBufferPool pool, int expectedSize)
+    {
+        this.pool = pool;
+        this.buffer = pool.acquire(expectedSize);
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        ensureCapacity(count + 1);
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException
+    {
+        if (offset < 0 || length < 0 || length > bytes.length - offset)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+
+        ensureCapacity(count + length);
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+    }
+
+    int size()
+    {
+        return count;
+    }
+
+    /**
+     * @return An exactly sized copy of what was written, which the caller owns.
+     */
+    byte[] toByteArray() throws IOException
+    {
+        ensureOpen();
+        return Arrays.copyOf(buffer, count);
+    }
+
+    @Override
+    public void close()
+    {
+        if (buffer != null)
+        {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private void ensureCapacity(int needed) throws IOException
+    {
+        ensureOpen();
+
+        if (needed < 0)
+        {
+            throw new IOException("Output is too large");
+        }
+
+        if (needed <= buffer.length)
+        {
+            return;
+        }
+
+        byte[] larger = pool.acquire(Math.max(needed, buffer.length * 2));
+        System.arraycopy(buffer, 0, larger, 0, count);
+        pool.release(buffer);
+        buffer = larger;
+    }
+
+    private void ensureOpen() throws IOException
+    {
+        if (buffer == null)
+        {
+            throw new IOException("Stream is closed");
+        }
+    }
+
+}
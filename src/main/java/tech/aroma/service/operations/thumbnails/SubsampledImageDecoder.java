@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.thumbnails;
+
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
+
+import tech.aroma.thrift.Dimension;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+import tech.sirwellington.alchemy.annotations.access.NonInstantiable;
+
+/**
+ * Decodes only every n-th pixel of an image, where n is a power of two.
+ * <p>
+ * When a thumbnail is much smaller than its source, most of the decoded pixels are thrown away by
+ * the resize. Subsampling at decode time avoids allocating them in the first place. The decoded image
+ * is always kept at least {@link #QUALITY_MARGIN} times larger than the final thumbnail, so that
+ * the high-quality resize which follows still has enough pixels to smooth out aliasing.
+ *
+ * @author SirWellington
+ */
+@Internal
+@NonInstantiable
+final class SubsampledImageDecoder
+{
+
+    static final int QUALITY_MARGIN = 2;
+
+    private SubsampledImageDecoder() throws IllegalAccessException
+    {
+        throw new IllegalAccessException("cannot instantiate");
+    }
+
+    /**
+     * Determines the largest power-of-two reduction that can be applied to an image of {@code sourceSize},
+     * while still leaving enough pixels to produce a thumbnail that fits in {@code desiredSize}.
+     *
+     * @return The subsampling factor. {@code 1} means the image must be fully decoded.
+     */
+    static int subsamplingFor(Dimension sourceSize, Dimension desiredSize)
+    {
+        double scale = Math.min((double) desiredSize.width / sourceSize.width,
+                                (double) desiredSize.height / sourceSize.height);
+
+        int factor = 1;
+
+        while (scale * (factor * 2) * QUALITY_MARGIN <= 1.0)
+        {
+            factor *= 2;
+        }
+
+        return factor;
+    }
+
+    static Dimension decodedSizeOf(Dimension sourceSize, int subsampling)
+    {
+        return new Dimension()
+                .setWidth((sourceSize.width + subsampling - 1) / subsampling)
+                .setHeight((sourceSize.height + subsampling - 1) / subsampling);
+    }
+
+    static BufferedImage decode(byte[] data, int subsampling) throws IOException
+    {
+        try (ImageInputStream stream = new ByteArrayImageInputStream(data))
+        {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+
+            if (!readers.hasNext())
+            {
+                throw new IOException("Image format is not recognized");
+            }
+
+            ImageReader reader = readers.next();
+
+            try
+            {
+                reader.setInput(stream, true, true);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+                return reader.read(0, param);
+            }
+            finally
+            {
+                reader.dispose();
+            }
+        }
+    }
+
+}
@@ -18,10 +18,10 @@
 package tech.aroma.service.operations.thumbnails;
 
 
-import java.io.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.inject.Inject;
 
-import net.coobird.thumbnailator.Thumbnails;
-import net.coobird.thumbnailator.resizers.configurations.Antialiasing;
 import org.apache.thrift.TException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,12 +35,40 @@ import static tech.sirwellington.alchemy.arguments.assertions.BooleanAssertions.
 import static tech.sirwellington.alchemy.arguments.assertions.NumberAssertions.greaterThan;
 
 /**
+ * Creates Thumbnails on the dedicated {@link ImageProcessingPool}, so that decoding
+ * never happens on the Thrift worker thread that received the request.
+ * <p>
+ * When the thumbnail is much smaller than the original, the original is decoded at a
+ * power-of-two reduction first, using {@link SubsampledImageDecoder}. The thumbnail is encoded
+ * into a buffer borrowed from the {@link ImageBufferPool}.
+ *
  * @author SirWellington
  */
 final class ThumbnailCreatorImpl implements ThumbnailCreator
 {
     private final static Logger LOG = LoggerFactory.getLogger(ThumbnailCreatorImpl.class);
 
+    private static final double QUALITY = 0.9;
+
+    private final ImageProcessingPool pool;
+    private final ImageBufferPool buffers;
+    private final boolean subsamplingEnabled;
+
+    @Inject
+    ThumbnailCreatorImpl(ImageProcessingPool pool, ImageBufferPool buffers)
+    {
+        this(pool, buffers, true);
+    }
+
+    ThumbnailCreatorImpl(ImageProcessingPool pool, ImageBufferPool buffers, boolean subsamplingEnabled)
+    {
+        checkThat(pool, buffers).are(notNull());
+
+        this.pool = pool;
+        this.buffers = buffers;
+        this.subsamplingEnabled = subsamplingEnabled;
+    }
+
     @Override
     public Image createThumbnail(Image originalImage, Dimension desiredSize) throws TException
     {
@@ -60,23 +88,43 @@ final class ThumbnailCreatorImpl implements ThumbnailCreator
                 .usingMessage("original image must its data set")
                 .is(trueStatement());
 
-        try (ByteArrayInputStream istream = new ByteArrayInputStream(originalImage.getData());
-             ByteArrayOutputStream ostream = new ByteArrayOutputStream();)
+        byte[] original = originalImage.getData();
+        ImageHeader header = ImageHeader.readFrom(original);
+        int subsampling = determineSubsamplingFor(header, desiredSize);
+        Dimension decodedSize = SubsampledImageDecoder.decodedSizeOf(header.getDimension(), subsampling);
+
+        return pool.process(decodedSize, () -> resize(originalImage, original, header, subsampling, desiredSize));
+    }
+
+    private int determineSubsamplingFor(ImageHeader header, Dimension desiredSize)
+    {
+        //Rotated images take the full path, which applies the EXIF orientation
+        if (!subsamplingEnabled || !header.isUpright())
+        {
+            return 1;
+        }
+
+        return SubsampledImageDecoder.subsamplingFor(header.getDimension(), desiredSize);
+    }
+
+    private Image resize(Image originalImage,
+                         byte[] original,
+                         ImageHeader header,
+                         int subsampling,
+                         Dimension desiredSize) throws TException
+    {
+        try
         {
-            Thumbnails.of(istream)
-                      .antialiasing(Antialiasing.ON)
-                      .outputQuality(0.9)
-                      .height(desiredSize.height)
-                      .width(desiredSize.width)
-                      .useExifOrientation(true)
-                      .toOutputStream(ostream);
+            byte[] data = ImageResizer.resize(original, header, subsampling, desiredSize, QUALITY, buffers);
 
             Image thumbnail = new Image()
-                    .setData(ostream.toByteArray())
                     .setDimension(desiredSize)
                     .setImageType(ImageType.JPEG);
 
-            LOG.info("Successfully created thumbnail of Size {}", desiredSize);
+            //Assigned directly, since the generated setter copies the array
+            thumbnail.data = ByteBuffer.wrap(data);
+
+            LOG.info("Successfully created thumbnail of Size {} from {} with subsampling {}", desiredSize, header, subsampling);
 
             return thumbnail;
         }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.users;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.ImplementedBy;
+import org.apache.thrift.TException;
+import tech.aroma.data.UserRepository;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.exceptions.UserDoesNotExistException;
+import tech.sirwellington.alchemy.annotations.arguments.NonEmpty;
+import tech.sirwellington.alchemy.annotations.arguments.Required;
+
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+
+/**
+ * Finds Users by their email address, remembering which User each address belongs to.
+ * <p>
+ * Looking a User up by email costs the repository an index lookup before it can load the User.
+ * Once an address is known, the User is served from memory, with no call to the repository at all.
+ * Users returned this way carry the link to their profile image, but never the image itself.
+ *
+ * @author SirWellington
+ */
+@ImplementedBy(UserDirectoryImpl.class)
+public interface UserDirectory
+{
+
+    /**
+     * @param email The User's email address.
+     * @return The User who owns the address, without their profile image.
+     * @throws UserDoesNotExistException If no User has this address.
+     * @throws TException                If the lookup fails.
+     */
+    User getUserByEmail(@NonEmpty String email) throws TException;
+
+    /**
+     * Records which User an email address belongs to, such as when the User is first created.
+     */
+    void remember(@Required User user);
+
+    /**
+     * Drops whatever is known about an email address. It must be called wherever a User's address
+     * changes, or the User is deleted.
+     */
+    void forget(@NonEmpty String email);
+
+    public static UserDirectory newInstance(@Required UserRepository userRepo, @Required MetricRegistry metrics)
+    {
+        checkThat(userRepo, metrics).are(notNull());
+
+        return new UserDirectoryImpl(userRepo, metrics);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.users;
+
+import java.util.Locale;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.thrift.TException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.aroma.data.UserRepository;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.exceptions.*;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.nonEmptyString;
+
+/**
+ * Keeps a bounded map of email addresses to the Users who own them, so a hit costs no repository call.
+ * <p>
+ * An entry is dropped through {@link #forget(String) } wherever this service changes a User's address or
+ * deletes the User. Entries also expire after {@link #DEFAULT_EXPIRATION_MINUTES}, which bounds how long
+ * a change made outside this service can go unseen.
+ *
+ * @author SirWellington
+ */
+@Internal
+@Singleton
+final class UserDirectoryImpl implements UserDirectory
+{
+
+    private final static Logger LOG = LoggerFactory.getLogger(UserDirectoryImpl.class);
+
+    static final long DEFAULT_MAX_ENTRIES = 100_000;
+    static final long DEFAULT_EXPIRATION_MINUTES = 10;
+
+    private final UserRepository userRepo;
+    private final Cache<String, User> usersByEmail;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    @Inject
+    UserDirectoryImpl(UserRepository userRepo, MetricRegistry metrics)
+    {
+        this(userRepo, metrics, DEFAULT_MAX_ENTRIES);
+    }
+
+    UserDirectoryImpl(UserRepository userRepo, MetricRegistry metrics, long maxEntries)
+    {
+        checkThat(userRepo, metrics).are(notNull());
+
+        this.userRepo = userRepo;
+        this.usersByEmail = CacheBuilder.newBuilder()
+                                        .maximumSize(maxEntries)
+                                        .expireAfterWrite(DEFAULT_EXPIRATION_MINUTES, MINUTES)
+                                        .build();
+
+        this.hits = metrics.counter(name(UserDirectory.class, "hits"));
+        this.misses = metrics.counter(name(UserDirectory.class, "misses"));
+    }
+
+    @Override
+    public User getUserByEmail(String email) throws TException
+    {
+        checkThat(email)
+                .throwing(InvalidArgumentException.class)
+                .usingMessage("email is missing")
+                .is(nonEmptyString());
+
+        String key = keyFor(email);
+        User cached = usersByEmail.getIfPresent(key);
+
+        if (cached != null)
+        {
+            hits.inc();
+            return cached.deepCopy();
+        }
+
+        misses.inc();
+
+        User user = userRepo.getUserByEmail(email);
+
+        checkThat(user)
+                .throwing(UserDoesNotExistException.class)
+                .usingMessage("No User with email " + email)
+                .is(notNull());
+
+        User entry = entryFor(user);
+        usersByEmail.put(key, entry);
+        return entry.deepCopy();
+    }
+
+    @Override
+    public void remember(User user)
+    {
+        checkThat(user).is(notNull());
+
+        if (user.email == null || user.userId == null)
+        {
+            return;
+        }
+
+        usersByEmail.put(keyFor(user.email), entryFor(user));
+    }
+
+    @Override
+    public void forget(String email)
+    {
+        checkThat(email).is(nonEmptyString());
+
+        usersByEmail.invalidate(keyFor(email));
+    }
+
+    long size()
+    {
+        return usersByEmail.size();
+    }
+
+    /**
+     * Only the link to the profile image is worth keeping, so the image itself is left out, whichever
+     * way the User arrived.
+     */
+    private static User entryFor(User user)
+    {
+        User copy = user.deepCopy();
+        copy.unsetProfileImage();
+        return copy;
+    }
+
+    private static String keyFor(String email)
+    {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.server;
+
+
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.TProcessorFactory;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import tech.aroma.service.ClientAddress;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+/**
+ * Records the address of each connection's client in {@link ClientAddress} for the duration of every
+ * call made over it.
+ *
+ * @author SirWellington
+ */
+@Internal
+final class ClientAddressProcessorFactory extends TProcessorFactory
+{
+
+    ClientAddressProcessorFactory(TProcessor processor)
+    {
+        super(processor);
+    }
+
+    @Override
+    public TProcessor getProcessor(TTransport transport)
+    {
+        TProcessor processor = super.getProcessor(transport);
+        String address = addressOf(transport);
+
+        return (in, out) ->
+        {
+            ClientAddress.set(address);
+
+            try
+            {
+                return processor.process(in, out);
+            }
+            finally
+            {
+                ClientAddress.clear();
+            }
+        };
+    }
+
+    static String addressOf(TTransport transport)
+    {
+        if (!(transport instanceof TSocket))
+        {
+            return null;
+        }
+
+        Socket socket = ((TSocket) transport).getSocket();
+        InetAddress address = socket != null ? socket.getInetAddress() : null;
+
+        return address != null ? address.getHostAddress() : null;
+    }
+
+}
@@ -16,12 +16,17 @@
 
 package tech.aroma.service.server;
 
-import java.net.SocketException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.Set;
 import javax.inject.Singleton;
 
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.*;
-import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.TProcessor;
 import org.apache.thrift.server.TThreadPoolServer;
 import org.apache.thrift.transport.TServerSocket;
 import org.apache.thrift.transport.TTransportException;
@@ -31,6 +36,7 @@ import sir.wellington.alchemy.collections.sets.Sets;
 import tech.aroma.data.cassandra.ModuleCassandraDataRepositories;
 import tech.aroma.data.cassandra.ModuleCassandraDevCluster;
 import tech.aroma.service.AromaAnnotations;
+import tech.aroma.service.BatchProcessor;
 import tech.aroma.service.ModuleAromaService;
 import tech.aroma.service.operations.encryption.ModuleEncryptionMaterialsDev;
 import tech.aroma.thrift.authentication.service.AuthenticationService;
@@ -55,7 +61,12 @@ public final class TcpServer
     private final static Logger LOG = LoggerFactory.getLogger(TcpServer.class);
     private static final int PORT = AromaServiceConstants.SERVICE_PORT;
 
-    public static void main(String[] args) throws TTransportException, SocketException
+    /**
+     * The {@linkplain BatchProcessor Batch Service} listens on the port after the Aroma Service.
+     */
+    private static final int BATCH_PORT = PORT + 1;
+
+    public static void main(String[] args) throws TTransportException, IOException
     {
         Injector injector = Guice.createInjector(new ModuleAromaService(),
                                                  new ModuleCassandraDataRepositories(),
@@ -63,25 +74,51 @@ public final class TcpServer
                                                  new ModuleEncryptionMaterialsDev(),
                                                  new RestOfDependencies());
 
+        MetricRegistry metrics = injector.getInstance(MetricRegistry.class);
+        JmxReporter.forRegistry(metrics)
+                   .inDomain("tech.aroma.service")
+                   .build()
+                   .start();
+
         AromaService.Iface aromaService = injector.getInstance(AromaService.Iface.class);
         AromaService.Processor processor = new AromaService.Processor<>(aromaService);
 
-        TServerSocket socket = new TServerSocket(PORT);
-        socket.getServerSocket().setSoTimeout((int) SECONDS.toMillis(30));
+        BatchProcessor batchProcessor = injector.getInstance(BatchProcessor.class);
+        TThreadPoolServer batchServer = newServer(batchProcessor, BATCH_PORT);
+
+        Thread batchThread = new Thread(batchServer::serve, "batch-server");
+        batchThread.setDaemon(true);
+
+        LOG.info("Starting Aroma Batch Service at port {}", BATCH_PORT);
+        batchThread.start();
+
+        LOG.info("Starting Aroma Service at port {}", PORT);
+
+        TThreadPoolServer server = newServer(processor, PORT);
+        server.serve();
+        server.stop();
+        batchServer.stop();
+    }
+
+    private static TThreadPoolServer newServer(TProcessor processor, int port) throws IOException, TTransportException
+    {
+        //Opened from a channel, so that accepted sockets can send off-heap media without copying it
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port));
+        serverSocket.setSoTimeout((int) SECONDS.toMillis(30));
+
+        TServerSocket socket = new TServerSocket(serverSocket);
 
         TThreadPoolServer.Args serverArgs = new TThreadPoolServer.Args(socket)
-                .protocolFactory(new TBinaryProtocol.Factory())
-                .processor(processor)
+                .protocolFactory(new ZeroCopyBinaryProtocol.Factory())
+                .processorFactory(new ClientAddressProcessorFactory(processor))
                 .requestTimeout(60)
                 .requestTimeoutUnit(SECONDS)
                 .minWorkerThreads(5)
                 .maxWorkerThreads(100);
 
-        LOG.info("Starting Aroma Service at port {}", PORT);
-
-        TThreadPoolServer server = new TThreadPoolServer(serverArgs);
-        server.serve();
-        server.stop();
+        return new TThreadPoolServer(serverArgs);
     }
 
     private static class RestOfDependencies extends AbstractModule
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.server;
+
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.*;
+import tech.sirwellington.alchemy.annotations.access.Internal;
+
+/**
+ * A {@link TBinaryProtocol} that writes binary fields held in off-heap buffers without copying them
+ * onto the heap.
+ * <p>
+ * The stock protocol calls {@link ByteBuffer#array() }, which direct buffers do not have. Here, when
+ * the transport is a socket opened from a channel, the pending output is flushed and the buffer is handed
+ * to the channel as-is. Any other transport receives the bytes through a small scratch array that is
+ * reused for the lifetime of the connection. Heap buffers are written exactly as before.
+ *
+ * @author SirWellington
+ */
+@Internal
+public final class ZeroCopyBinaryProtocol extends TBinaryProtocol
+{
+
+    static final int SCRATCH_SIZE = 8 * 1024;
+
+    private byte[] scratch;
+
+    public ZeroCopyBinaryProtocol(TTransport transport)
+    {
+        //Same defaults as TBinaryProtocol.Factory
+        super(transport, false, true);
+    }
+
+    @Override
+    public void writeBinary(ByteBuffer bin) throws TException
+    {
+        if (bin.hasArray())
+        {
+            super.writeBinary(bin);
+            return;
+        }
+
+        ByteBuffer remaining = bin.duplicate();
+        writeI32(remaining.remaining());
+
+        WritableByteChannel channel = channelOf(trans_);
+
+        if (channel != null)
+        {
+            trans_.flush();
+            writeFully(channel, remaining);
+        }
+        else
+        {
+            copyThroughScratch(remaining);
+        }
+    }
+
+    private static WritableByteChannel channelOf(TTransport transport)
+    {
+        if (!(transport instanceof TSocket))
+        {
+            return null;
+        }
+
+        Socket socket = ((TSocket) transport).getSocket();
+        return socket != null ? socket.getChannel() : null;
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws TTransportException
+    {
+        try
+        {
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new TTransportException(TTransportException.UNKNOWN, ex);
+        }
+    }
+
+    private void copyThroughScratch(ByteBuffer buffer) throws TTransportException
+    {
+        if (scratch == null)
+        {
+            scratch = new byte[SCRATCH_SIZE];
+        }
+
+        while (buffer.hasRemaining())
+        {
+            int length = Math.min(scratch.length, buffer.remaining());
+            buffer.get(scratch, 0, length);
+            trans_.write(scratch, 0, length);
+        }
+    }
+
+    public static class Factory implements TProtocolFactory
+    {
+
+        @Override
+        public TProtocol getProtocol(TTransport transport)
+        {
+            return new ZeroCopyBinaryProtocol(transport);
+        }
+    }
+
+}
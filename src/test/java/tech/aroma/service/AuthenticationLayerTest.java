@@ -88,6 +88,9 @@ public class AuthenticationLayerTest
 
         assertThrows(() -> new AuthenticationLayer(delegate, null))
                 .isInstanceOf(IllegalArgumentException.class);
+
+        assertThrows(() -> new AuthenticationLayer(delegate, authenticationService, null))
+                .isInstanceOf(IllegalArgumentException.class);
     }
 
     @Test
@@ -1216,6 +1219,41 @@ public class AuthenticationLayerTest
                 .isInstanceOf(InvalidTokenException.class);
     }
 
+    @Test
+    public void testTokenIsCheckedOncePerBatch() throws Exception
+    {
+        instance = new AuthenticationLayer(delegate, authenticationService, TokenVerifications.oncePerBatch());
+
+        GetInboxRequest first = new GetInboxRequest().setToken(new UserToken(userToken));
+        GetInboxRequest second = new GetInboxRequest().setToken(new UserToken(userToken));
+
+        instance.getInbox(first);
+        instance.getInbox(second);
+
+        verify(authenticationService, times(1)).verifyToken(expectedVerifyTokenRequest);
+        verify(authenticationService, times(1)).getTokenInfo(expectedGetTokenInfoRequest);
+        verify(delegate, times(2)).getInbox(any(GetInboxRequest.class));
+    }
+
+    @Test
+    public void testBadTokenIsCheckedOncePerBatch() throws Exception
+    {
+        setupWithBadToken();
+        instance = new AuthenticationLayer(delegate, authenticationService, TokenVerifications.oncePerBatch());
+
+        GetInboxRequest first = new GetInboxRequest().setToken(new UserToken(userToken));
+        GetInboxRequest second = new GetInboxRequest().setToken(new UserToken(userToken));
+
+        assertThrows(() -> instance.getInbox(first))
+                .isInstanceOf(InvalidTokenException.class);
+
+        assertThrows(() -> instance.getInbox(second))
+                .isInstanceOf(InvalidTokenException.class);
+
+        verify(authenticationService, times(1)).verifyToken(expectedVerifyTokenRequest);
+        verifyZeroInteractions(delegate);
+    }
+
     private void setupWithBadToken() throws TException
     {
         when(authenticationService.verifyToken(expectedVerifyTokenRequest))
@@ -0,0 +1,1055 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.*;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import tech.aroma.service.operations.MessageProjection;
+import tech.aroma.service.operations.deletion.ApplicationDeleter;
+import tech.aroma.service.operations.deletion.DeletionProgress;
+import tech.aroma.service.operations.deletion.DeletionProgress.Stage;
+import tech.aroma.service.operations.lookup.BulkLookup;
+import tech.aroma.service.operations.media.MediaValidators;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.Message;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.authentication.UserToken;
+import tech.aroma.thrift.authentication.service.AuthenticationService;
+import tech.aroma.thrift.authentication.service.VerifyTokenResponse;
+import tech.aroma.thrift.exceptions.*;
+import tech.aroma.thrift.service.*;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+import static tech.aroma.thrift.generators.ApplicationGenerators.applications;
+import static tech.aroma.thrift.generators.ImageGenerators.appIcons;
+import static tech.aroma.thrift.generators.UserGenerators.users;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.CollectionGenerators.listOf;
+import static tech.sirwellington.alchemy.generator.StringGenerators.uuids;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.HEXADECIMAL;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class BatchProcessorTest
+{
+
+    private static final int MAX_CALLS = 5;
+
+    @Mock
+    private AromaService.Iface service;
+
+    @Mock
+    private AuthenticationService.Iface authenticationService;
+
+    @Mock
+    private BulkLookup bulkLookup;
+
+    @Mock
+    private MediaValidators mediaValidators;
+
+    @Mock
+    private ApplicationDeleter appDeleter;
+
+    private ExecutorService executor;
+
+    private MetricRegistry metrics;
+
+    @GeneratePojo
+    private UserToken token;
+
+    @GeneratePojo
+    private GetInboxResponse inbox;
+
+    @GeneratePojo
+    private GetActivityResponse activity;
+
+    @GeneratePojo
+    private GetApplicationMessagesResponse appMessages;
+
+    @GenerateString(UUID)
+    private String mediaId;
+
+    @GenerateString(HEXADECIMAL)
+    private String validator;
+
+    @GenerateString(UUID)
+    private String appId;
+
+    private GetMediaResponse media;
+
+    private BatchProcessor instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        executor = Executors.newFixedThreadPool(4);
+        metrics = new MetricRegistry();
+
+        when(authenticationService.verifyToken(any()))
+                .thenReturn(new VerifyTokenResponse());
+
+        when(service.getInbox(any())).thenReturn(inbox);
+        when(service.getActivity(any())).thenReturn(activity);
+        when(service.getApplicationMessages(any())).thenReturn(appMessages);
+
+        media = new GetMediaResponse(one(appIcons()));
+        when(service.getMedia(any())).thenReturn(media);
+
+        instance = new BatchProcessor(service,
+                                      authenticationService,
+                                      bulkLookup,
+                                      mediaValidators,
+                                      appDeleter,
+                                      executor,
+                                      metrics,
+                                      new TBinaryProtocol.Factory(),
+                                      MAX_CALLS);
+    }
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        TProtocolFactory protocols = new TBinaryProtocol.Factory();
+
+        assertThrows(() -> new BatchProcessor(null, authenticationService, bulkLookup, mediaValidators, appDeleter, executor, metrics, protocols, 1));
+        assertThrows(() -> new BatchProcessor(service, null, bulkLookup, mediaValidators, appDeleter, executor, metrics, protocols, 1));
+        assertThrows(() -> new BatchProcessor(service, authenticationService, null, mediaValidators, appDeleter, executor, metrics, protocols, 1));
+        assertThrows(() -> new BatchProcessor(service, authenticationService, bulkLookup, null, appDeleter, executor, metrics, protocols, 1));
+        assertThrows(() -> new BatchProcessor(service, authenticationService, bulkLookup, mediaValidators, null, executor, metrics, protocols, 1));
+        assertThrows(() -> new BatchProcessor(service, authenticationService, bulkLookup, mediaValidators, appDeleter, null, metrics, protocols, 1));
+        assertThrows(() -> new BatchProcessor(service, authenticationService, bulkLookup, mediaValidators, appDeleter, executor, null, protocols, 1));
+        assertThrows(() -> new BatchProcessor(service, authenticationService, bulkLookup, mediaValidators, appDeleter, executor, metrics, null, 1));
+        assertThrows(() -> new BatchProcessor(service, authenticationService, bulkLookup, mediaValidators, appDeleter, executor, metrics, protocols, 0));
+    }
+
+    @Test
+    public void testProcess() throws Exception
+    {
+        Call getInbox = new Call();
+        getInbox.client.send_getInbox(new GetInboxRequest().setToken(new UserToken(token)));
+
+        Call getActivity = new Call();
+        getActivity.client.send_getActivity(new GetActivityRequest().setToken(new UserToken(token)));
+
+        Call getApiVersion = new Call();
+        getApiVersion.client.send_getApiVersion();
+
+        when(service.getApiVersion()).thenReturn(2.0);
+
+        List<Call> calls = Arrays.asList(getInbox, getActivity, getApiVersion);
+        List<byte[]> replies = batch(calls);
+
+        assertThat(replies.size(), is(calls.size()));
+        assertThat(getInbox.receive(replies.get(0)).recv_getInbox(), is(inbox));
+        assertThat(getActivity.receive(replies.get(1)).recv_getActivity(), is(activity));
+        assertThat(getApiVersion.receive(replies.get(2)).recv_getApiVersion(), is(2.0));
+
+        verify(authenticationService, times(1)).verifyToken(any());
+    }
+
+    @Test
+    public void testProcessWhenCallFails() throws Exception
+    {
+        when(service.getInbox(any()))
+                .thenThrow(new OperationFailedException());
+
+        Call getInbox = new Call();
+        getInbox.client.send_getInbox(new GetInboxRequest().setToken(new UserToken(token)));
+
+        Call getActivity = new Call();
+        getActivity.client.send_getActivity(new GetActivityRequest().setToken(new UserToken(token)));
+
+        List<byte[]> replies = batch(Arrays.asList(getInbox, getActivity));
+
+        assertThrows(() -> getInbox.receive(replies.get(0)).recv_getInbox())
+                .isInstanceOf(OperationFailedException.class);
+
+        assertThat(getActivity.receive(replies.get(1)).recv_getActivity(), is(activity));
+    }
+
+    @Test
+    public void testProcessWithBadToken() throws Exception
+    {
+        when(authenticationService.verifyToken(any()))
+                .thenThrow(new InvalidTokenException());
+
+        List<Call> calls = new ArrayList<>();
+
+        for (int i = 0; i < MAX_CALLS; ++i)
+        {
+            Call call = new Call();
+            call.client.send_getInbox(new GetInboxRequest().setToken(new UserToken(token)));
+            calls.add(call);
+        }
+
+        List<byte[]> replies = batch(calls);
+
+        for (int i = 0; i < calls.size(); ++i)
+        {
+            AromaService.Client client = calls.get(i).receive(replies.get(i));
+
+            assertThrows(client::recv_getInbox)
+                    .isInstanceOf(InvalidTokenException.class);
+        }
+
+        verify(authenticationService, times(1)).verifyToken(any());
+        verify(service, never()).getInbox(any());
+    }
+
+    @Test
+    public void testProcessWithTooManyCalls() throws Exception
+    {
+        List<Call> calls = new ArrayList<>();
+
+        for (int i = 0; i <= MAX_CALLS; ++i)
+        {
+            Call call = new Call();
+            call.client.send_getApiVersion();
+            calls.add(call);
+        }
+
+        assertThrows(() -> batch(calls))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        verifyZeroInteractions(service, authenticationService);
+    }
+
+    @Test
+    public void testBatchAfterOneWithTooManyCalls() throws Exception
+    {
+        List<Call> calls = new ArrayList<>();
+
+        for (int i = 0; i <= MAX_CALLS; ++i)
+        {
+            Call call = new Call();
+            call.client.send_getApiVersion();
+            calls.add(call);
+        }
+
+        Call call = new Call();
+        call.client.send_getApiVersion();
+
+        //Both batches arrive on the same connection
+        TMemoryBuffer request = new TMemoryBuffer(256);
+        writeBatch(new TBinaryProtocol(request), calls);
+        writeBatch(new TBinaryProtocol(request), Collections.singletonList(call));
+
+        TMemoryBuffer first = new TMemoryBuffer(256);
+        instance.process(new TBinaryProtocol(request), new TBinaryProtocol(first));
+
+        assertThrows(() -> readReplies(first))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        TMemoryBuffer second = new TMemoryBuffer(256);
+        instance.process(new TBinaryProtocol(request), new TBinaryProtocol(second));
+
+        assertThat(readReplies(second), hasSize(1));
+        verify(service).getApiVersion();
+    }
+
+    @DontRepeat
+    @Test
+    public void testProcessWithNoCalls() throws Exception
+    {
+        List<byte[]> replies = batch(Collections.emptyList());
+
+        assertThat(replies, is(empty()));
+    }
+
+    @Test
+    public void testProcessWithMalformedCall() throws Exception
+    {
+        Call malformed = new Call();
+        malformed.output.write(new byte[] { 1, 2, 3 });
+
+        List<byte[]> replies = batch(Collections.singletonList(malformed));
+
+        TProtocol in = new TBinaryProtocol(new TMemoryInputTransport(replies.get(0)));
+        TMessage message = in.readMessageBegin();
+
+        assertThat(message.type, is(TMessageType.EXCEPTION));
+    }
+
+    @Test
+    public void testGetManyApplications() throws Exception
+    {
+        Map<String, Application> apps = new HashMap<>();
+        listOf(applications(), 10).forEach(app -> apps.put(app.applicationId, app));
+
+        List<String> appIds = new ArrayList<>(apps.keySet());
+
+        when(bulkLookup.getApplications(token.userId, appIds, true))
+                .thenReturn(apps);
+
+        Map<String, Application> result = lookUp(BatchProcessor.GET_MANY_APPLICATIONS, appIds, true, Application::new);
+
+        assertThat(result, is(apps));
+        verify(authenticationService).verifyToken(any());
+    }
+
+    @Test
+    public void testGetManyUsers() throws Exception
+    {
+        Map<String, User> users = new HashMap<>();
+        listOf(users(), 10).forEach(user -> users.put(user.userId, user));
+
+        List<String> userIds = new ArrayList<>(users.keySet());
+
+        when(bulkLookup.getUsers(userIds))
+                .thenReturn(users);
+
+        Map<String, User> result = lookUp(BatchProcessor.GET_MANY_USERS, userIds, false, User::new);
+
+        assertThat(result, is(users));
+        verify(authenticationService).verifyToken(any());
+    }
+
+    @Test
+    public void testGetManyApplicationsWithTooManyIds() throws Exception
+    {
+        List<String> appIds = listOf(uuids, BulkLookup.MAX_IDS + 1);
+
+        assertThrows(() -> lookUp(BatchProcessor.GET_MANY_APPLICATIONS, appIds, true, Application::new))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        verify(bulkLookup, never()).getApplications(anyString(), any(), anyBoolean());
+        verifyZeroInteractions(authenticationService);
+    }
+
+    @Test
+    public void testGetManyUsersWhenLookupFails() throws Exception
+    {
+        when(bulkLookup.getUsers(any()))
+                .thenThrow(new InvalidArgumentException());
+
+        assertThrows(() -> lookUp(BatchProcessor.GET_MANY_USERS, Collections.emptyList(), false, User::new))
+                .isInstanceOf(InvalidArgumentException.class);
+    }
+
+    @Test
+    public void testGetManyApplicationsWithBadToken() throws Exception
+    {
+        when(authenticationService.verifyToken(any()))
+                .thenThrow(new InvalidTokenException());
+
+        assertThrows(() -> lookUp(BatchProcessor.GET_MANY_APPLICATIONS, Collections.emptyList(), true, Application::new))
+                .isInstanceOf(InvalidTokenException.class);
+
+        verify(bulkLookup, never()).getApplications(anyString(), any(), anyBoolean());
+    }
+
+    @Test
+    public void testGetMediaIfModifiedWhenNotModified() throws Exception
+    {
+        when(mediaValidators.getValidator(mediaId, null))
+                .thenReturn(validator);
+
+        ConditionalMedia result = getMediaIfModified(validator);
+
+        assertThat(result.notModified, is(true));
+        assertThat(result.response, nullValue());
+        assertThat(result.validator, is(validator));
+
+        verify(service, never()).getMedia(any());
+        verify(authenticationService, times(1)).verifyToken(any());
+    }
+
+    @Test
+    public void testGetMediaIfModifiedWhenModified() throws Exception
+    {
+        String newValidator = validator + "0";
+
+        when(mediaValidators.getValidator(mediaId, null))
+                .thenReturn(newValidator);
+
+        ConditionalMedia result = getMediaIfModified(validator);
+
+        assertThat(result.notModified, is(false));
+        assertThat(result.response, is(media));
+        assertThat(result.validator, is(newValidator));
+
+        verify(authenticationService, times(1)).verifyToken(any());
+    }
+
+    @Test
+    public void testGetMediaIfModifiedWhenValidatorIsUnknown() throws Exception
+    {
+        ConditionalMedia result = getMediaIfModified(validator);
+
+        assertThat(result.notModified, is(false));
+        assertThat(result.response, is(media));
+        assertThat(result.validator, nullValue());
+    }
+
+    @Test
+    public void testGetMediaIfModifiedWhenMissing() throws Exception
+    {
+        when(service.getMedia(any()))
+                .thenThrow(new DoesNotExistException());
+
+        assertThrows(() -> getMediaIfModified(validator))
+                .isInstanceOf(DoesNotExistException.class);
+    }
+
+    @Test
+    public void testGetMediaIfModifiedWithBadToken() throws Exception
+    {
+        when(authenticationService.verifyToken(any()))
+                .thenThrow(new InvalidTokenException());
+
+        assertThrows(() -> getMediaIfModified(validator))
+                .isInstanceOf(InvalidTokenException.class);
+
+        verifyZeroInteractions(mediaValidators);
+    }
+
+    @Test
+    public void testGetDeletionProgress() throws Exception
+    {
+        DeletionProgress progress = new DeletionProgress(appId, Arrays.asList(token.userId), Stage.REMOVING_FOLLOWERS, 3, 10, 3, 11);
+
+        when(appDeleter.progressOf(appId))
+                .thenReturn(progress);
+
+        Progress result = getDeletionProgress(appId);
+
+        assertThat(result.applicationId, is(appId));
+        assertThat(result.stage, is(Stage.REMOVING_FOLLOWERS.name()));
+        assertThat(result.done, is(false));
+        assertThat(result.followersRemoved, is(3));
+        assertThat(result.followers, is(10));
+        assertThat(result.usersNotified, is(3));
+        assertThat(result.usersToNotify, is(11));
+
+        verify(authenticationService).verifyToken(any());
+    }
+
+    @Test
+    public void testGetDeletionProgressWhenDone() throws Exception
+    {
+        when(appDeleter.progressOf(appId))
+                .thenReturn(new DeletionProgress(appId, Arrays.asList(token.userId), Stage.DONE, 10, 10, 11, 11));
+
+        Progress result = getDeletionProgress(appId);
+
+        assertThat(result.done, is(true));
+        assertThat(result.stage, is(Stage.DONE.name()));
+    }
+
+    @Test
+    public void testGetDeletionProgressWhenNotAnOwner() throws Exception
+    {
+        when(appDeleter.progressOf(appId))
+                .thenReturn(new DeletionProgress(appId, Arrays.asList(one(uuids)), Stage.DONE, 0, 0, 1, 1));
+
+        assertThrows(() -> getDeletionProgress(appId))
+                .isInstanceOf(DoesNotExistException.class);
+    }
+
+    @Test
+    public void testGetDeletionProgressWhenUnknown() throws Exception
+    {
+        assertThrows(() -> getDeletionProgress(appId))
+                .isInstanceOf(DoesNotExistException.class);
+    }
+
+    @Test
+    public void testGetDeletionProgressWithBadToken() throws Exception
+    {
+        when(authenticationService.verifyToken(any()))
+                .thenThrow(new InvalidTokenException());
+
+        assertThrows(() -> getDeletionProgress(appId))
+                .isInstanceOf(InvalidTokenException.class);
+
+        verifyZeroInteractions(appDeleter);
+    }
+
+    @DontRepeat
+    @Test
+    public void testGetDeletionProgressWithoutApplicationId() throws Exception
+    {
+        assertThrows(() -> getDeletionProgress(null))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        verifyZeroInteractions(appDeleter, authenticationService);
+    }
+
+    @Test
+    public void testGetInboxSummaries() throws Exception
+    {
+        GetInboxRequest request = new GetInboxRequest().setToken(new UserToken(token));
+
+        GetInboxResponse result = summaries(BatchProcessor.GET_INBOX_SUMMARIES, request, 5, GetInboxResponse::new);
+
+        List<Message> expected = MessageProjection.summaries(5).applyTo(inbox.messages);
+        assertThat(result.messages, is(expected));
+
+        verify(service).getInbox(request);
+        verify(authenticationService).verifyToken(any());
+    }
+
+    @Test
+    public void testGetApplicationMessageSummaries() throws Exception
+    {
+        GetApplicationMessagesRequest request = new GetApplicationMessagesRequest().setToken(new UserToken(token));
+
+        GetApplicationMessagesResponse result = summaries(BatchProcessor.GET_APPLICATION_MESSAGE_SUMMARIES,
+                                                          request,
+                                                          0,
+                                                          GetApplicationMessagesResponse::new);
+
+        List<Message> expected = MessageProjection.summaries(0).applyTo(appMessages.messages);
+        assertThat(result.messages, is(expected));
+
+        verify(service).getApplicationMessages(request);
+    }
+
+    @Test
+    public void testGetApplicationMessageSummariesWhenUnauthorized() throws Exception
+    {
+        when(service.getApplicationMessages(any()))
+                .thenThrow(new UnauthorizedException());
+
+        GetApplicationMessagesRequest request = new GetApplicationMessagesRequest().setToken(new UserToken(token));
+
+        assertThrows(() -> summaries(BatchProcessor.GET_APPLICATION_MESSAGE_SUMMARIES, request, 5, GetApplicationMessagesResponse::new))
+                .isInstanceOf(UnauthorizedException.class);
+    }
+
+    @Test
+    public void testGetInboxSummariesWithBadToken() throws Exception
+    {
+        when(authenticationService.verifyToken(any()))
+                .thenThrow(new InvalidTokenException());
+
+        GetInboxRequest request = new GetInboxRequest().setToken(new UserToken(token));
+
+        assertThrows(() -> summaries(BatchProcessor.GET_INBOX_SUMMARIES, request, 5, GetInboxResponse::new))
+                .isInstanceOf(InvalidTokenException.class);
+
+        verify(service, never()).getInbox(any());
+    }
+
+    @DontRepeat
+    @Test
+    public void testGetInboxSummariesWithBadPreviewLength() throws Exception
+    {
+        GetInboxRequest request = new GetInboxRequest().setToken(new UserToken(token));
+
+        assertThrows(() -> summaries(BatchProcessor.GET_INBOX_SUMMARIES, request, -1, GetInboxResponse::new))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        verifyZeroInteractions(service, authenticationService);
+    }
+
+    @DontRepeat
+    @Test
+    public void testProcessWithUnknownMethod() throws Exception
+    {
+        TMemoryBuffer request = new TMemoryBuffer(64);
+        TProtocol out = new TBinaryProtocol(request);
+        out.writeMessageBegin(new TMessage("unknown", TMessageType.CALL, 1));
+        out.writeStructBegin(new TStruct("unknown_args"));
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeMessageEnd();
+
+        TMemoryBuffer response = new TMemoryBuffer(64);
+        instance.process(new TBinaryProtocol(request), new TBinaryProtocol(response));
+
+        TProtocol in = new TBinaryProtocol(response);
+        TMessage message = in.readMessageBegin();
+        assertThat(message.type, is(TMessageType.EXCEPTION));
+
+        TApplicationException ex = TApplicationException.read(in);
+        assertThat(ex.getType(), is(TApplicationException.UNKNOWN_METHOD));
+    }
+
+    private List<byte[]> batch(List<Call> calls) throws TException
+    {
+        TMemoryBuffer request = new TMemoryBuffer(256);
+        writeBatch(new TBinaryProtocol(request), calls);
+
+        TMemoryBuffer response = new TMemoryBuffer(256);
+        assertThat(instance.process(new TBinaryProtocol(request), new TBinaryProtocol(response)), is(true));
+
+        return readReplies(response);
+    }
+
+    private static void writeBatch(TProtocol out, List<Call> calls) throws TException
+    {
+        out.writeMessageBegin(new TMessage(BatchProcessor.BATCH, TMessageType.CALL, 1));
+        out.writeStructBegin(new TStruct("batch_args"));
+        out.writeFieldBegin(new TField("calls", TType.LIST, (short) 1));
+        out.writeListBegin(new TList(TType.STRING, calls.size()));
+
+        for (Call call : calls)
+        {
+            out.writeBinary(ByteBuffer.wrap(call.bytes()));
+        }
+
+        out.writeListEnd();
+        out.writeFieldEnd();
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeMessageEnd();
+    }
+
+    private static List<byte[]> readReplies(TMemoryBuffer response) throws TException
+    {
+        TProtocol in = new TBinaryProtocol(response);
+        TMessage message = in.readMessageBegin();
+        assertThat(message.type, is(TMessageType.REPLY));
+        assertThat(message.seqid, is(1));
+
+        List<byte[]> replies = null;
+
+        in.readStructBegin();
+
+        for (TField field = in.readFieldBegin(); field.type != TType.STOP; field = in.readFieldBegin())
+        {
+            if (field.id == 0)
+            {
+                TList list = in.readListBegin();
+                replies = new ArrayList<>();
+
+                for (int i = 0; i < list.size; ++i)
+                {
+                    ByteBuffer reply = in.readBinary();
+                    byte[] bytes = new byte[reply.remaining()];
+                    reply.get(bytes);
+                    replies.add(bytes);
+                }
+
+                in.readListEnd();
+            }
+            else
+            {
+                InvalidArgumentException ex = new InvalidArgumentException();
+                ex.read(in);
+                throw ex;
+            }
+
+            in.readFieldEnd();
+        }
+
+        in.readStructEnd();
+        in.readMessageEnd();
+
+        return replies;
+    }
+
+    private <T extends TBase<?, ?>> Map<String, T> lookUp(String method,
+                                                          List<String> ids,
+                                                          boolean includeFollowingInfo,
+                                                          Supplier<T> values) throws TException
+    {
+        TMemoryBuffer request = new TMemoryBuffer(256);
+        TProtocol out = new TBinaryProtocol(request);
+
+        out.writeMessageBegin(new TMessage(method, TMessageType.CALL, 1));
+        out.writeStructBegin(new TStruct(method + "_args"));
+
+        out.writeFieldBegin(new TField("token", TType.STRUCT, (short) 1));
+        new UserToken(token).write(out);
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("ids", TType.LIST, (short) 2));
+        out.writeListBegin(new TList(TType.STRING, ids.size()));
+
+        for (String id : ids)
+        {
+            out.writeString(id);
+        }
+
+        out.writeListEnd();
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("includeFollowingInfo", TType.BOOL, (short) 3));
+        out.writeBool(includeFollowingInfo);
+        out.writeFieldEnd();
+
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeMessageEnd();
+
+        TMemoryBuffer response = new TMemoryBuffer(256);
+        instance.process(new TBinaryProtocol(request), new TBinaryProtocol(response));
+
+        TProtocol in = new TBinaryProtocol(response);
+        TMessage message = in.readMessageBegin();
+        assertThat(message.type, is(TMessageType.REPLY));
+
+        Map<String, T> results = null;
+
+        in.readStructBegin();
+
+        for (TField field = in.readFieldBegin(); field.type != TType.STOP; field = in.readFieldBegin())
+        {
+            switch (field.id)
+            {
+                case 0:
+                    TMap map = in.readMapBegin();
+                    results = new HashMap<>();
+
+                    for (int i = 0; i < map.size; ++i)
+                    {
+                        String key = in.readString();
+                        T value = values.get();
+                        value.read(in);
+                        results.put(key, value);
+                    }
+
+                    in.readMapEnd();
+                    break;
+                case 1:
+                    throw read(new OperationFailedException(), in);
+                case 2:
+                    throw read(new InvalidArgumentException(), in);
+                default:
+                    throw read(new InvalidTokenException(), in);
+            }
+
+            in.readFieldEnd();
+        }
+
+        return results;
+    }
+
+    private static <E extends TBase<?, ?>> E read(E error, TProtocol in) throws TException
+    {
+        error.read(in);
+        return error;
+    }
+
+    private ConditionalMedia getMediaIfModified(String knownValidator) throws TException
+    {
+        TMemoryBuffer request = new TMemoryBuffer(256);
+        TProtocol out = new TBinaryProtocol(request);
+
+        out.writeMessageBegin(new TMessage(BatchProcessor.GET_MEDIA_IF_MODIFIED, TMessageType.CALL, 1));
+        out.writeStructBegin(new TStruct("getMediaIfModified_args"));
+
+        out.writeFieldBegin(new TField("request", TType.STRUCT, (short) 1));
+        new GetMediaRequest().setToken(new UserToken(token)).setMediaId(mediaId).write(out);
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("knownValidator", TType.STRING, (short) 2));
+        out.writeString(knownValidator);
+        out.writeFieldEnd();
+
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeMessageEnd();
+
+        TMemoryBuffer response = new TMemoryBuffer(256);
+        instance.process(new TBinaryProtocol(request), new TBinaryProtocol(response));
+
+        TProtocol in = new TBinaryProtocol(response);
+        TMessage message = in.readMessageBegin();
+        assertThat(message.type, is(TMessageType.REPLY));
+
+        ConditionalMedia result = null;
+
+        in.readStructBegin();
+
+        for (TField field = in.readFieldBegin(); field.type != TType.STOP; field = in.readFieldBegin())
+        {
+            switch (field.id)
+            {
+                case 0:
+                    result = ConditionalMedia.readFrom(in);
+                    break;
+                case 1:
+                    throw read(new OperationFailedException(), in);
+                case 2:
+                    throw read(new InvalidArgumentException(), in);
+                case 3:
+                    throw read(new InvalidTokenException(), in);
+                default:
+                    throw read(new DoesNotExistException(), in);
+            }
+
+            in.readFieldEnd();
+        }
+
+        return result;
+    }
+
+    private <T extends TBase<?, ?>> T summaries(String method,
+                                                TBase<?, ?> listRequest,
+                                                int previewLength,
+                                                Supplier<T> responses) throws TException
+    {
+        TMemoryBuffer request = new TMemoryBuffer(256);
+        TProtocol out = new TBinaryProtocol(request);
+
+        out.writeMessageBegin(new TMessage(method, TMessageType.CALL, 1));
+        out.writeStructBegin(new TStruct(method + "_args"));
+
+        out.writeFieldBegin(new TField("request", TType.STRUCT, (short) 1));
+        listRequest.write(out);
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("previewLength", TType.I32, (short) 2));
+        out.writeI32(previewLength);
+        out.writeFieldEnd();
+
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeMessageEnd();
+
+        TMemoryBuffer response = new TMemoryBuffer(256);
+        instance.process(new TBinaryProtocol(request), new TBinaryProtocol(response));
+
+        TProtocol in = new TBinaryProtocol(response);
+        TMessage message = in.readMessageBegin();
+        assertThat(message.type, is(TMessageType.REPLY));
+
+        T result = null;
+
+        in.readStructBegin();
+
+        for (TField field = in.readFieldBegin(); field.type != TType.STOP; field = in.readFieldBegin())
+        {
+            switch (field.id)
+            {
+                case 0:
+                    result = responses.get();
+                    result.read(in);
+                    break;
+                case 1:
+                    throw read(new OperationFailedException(), in);
+                case 2:
+                    throw read(new InvalidArgumentException(), in);
+                case 3:
+                    throw read(new InvalidTokenException(), in);
+                default:
+                    throw read(new UnauthorizedException(), in);
+            }
+
+            in.readFieldEnd();
+        }
+
+        return result;
+    }
+
+    private Progress getDeletionProgress(String applicationId) throws TException
+    {
+        TMemoryBuffer request = new TMemoryBuffer(256);
+        TProtocol out = new TBinaryProtocol(request);
+
+        out.writeMessageBegin(new TMessage(BatchProcessor.GET_DELETION_PROGRESS, TMessageType.CALL, 1));
+        out.writeStructBegin(new TStruct("getDeletionProgress_args"));
+
+        out.writeFieldBegin(new TField("token", TType.STRUCT, (short) 1));
+        new UserToken(token).write(out);
+        out.writeFieldEnd();
+
+        if (applicationId != null)
+        {
+            out.writeFieldBegin(new TField("applicationId", TType.STRING, (short) 2));
+            out.writeString(applicationId);
+            out.writeFieldEnd();
+        }
+
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeMessageEnd();
+
+        TMemoryBuffer response = new TMemoryBuffer(256);
+        instance.process(new TBinaryProtocol(request), new TBinaryProtocol(response));
+
+        TProtocol in = new TBinaryProtocol(response);
+        TMessage message = in.readMessageBegin();
+        assertThat(message.type, is(TMessageType.REPLY));
+
+        Progress result = null;
+
+        in.readStructBegin();
+
+        for (TField field = in.readFieldBegin(); field.type != TType.STOP; field = in.readFieldBegin())
+        {
+            switch (field.id)
+            {
+                case 0:
+                    result = Progress.readFrom(in);
+                    break;
+                case 1:
+                    throw read(new OperationFailedException(), in);
+                case 2:
+                    throw read(new InvalidArgumentException(), in);
+                case 3:
+                    throw read(new InvalidTokenException(), in);
+                default:
+                    throw read(new DoesNotExistException(), in);
+            }
+
+            in.readFieldEnd();
+        }
+
+        return result;
+    }
+
+    private static class Progress
+    {
+
+        private String applicationId;
+        private String stage;
+        private boolean done;
+        private int followersRemoved;
+        private int followers;
+        private int usersNotified;
+        private int usersToNotify;
+
+        static Progress readFrom(TProtocol in) throws TException
+        {
+            Progress progress = new Progress();
+
+            in.readStructBegin();
+
+            for (TField field = in.readFieldBegin(); field.type != TType.STOP; field = in.readFieldBegin())
+            {
+                switch (field.id)
+                {
+                    case 1:
+                        progress.applicationId = in.readString();
+                        break;
+                    case 2:
+                        progress.stage = in.readString();
+                        break;
+                    case 3:
+                        progress.done = in.readBool();
+                        break;
+                    case 4:
+                        progress.followersRemoved = in.readI32();
+                        break;
+                    case 5:
+                        progress.followers = in.readI32();
+                        break;
+                    case 6:
+                        progress.usersNotified = in.readI32();
+                        break;
+                    default:
+                        progress.usersToNotify = in.readI32();
+                }
+
+                in.readFieldEnd();
+            }
+
+            in.readStructEnd();
+
+            return progress;
+        }
+    }
+
+    private static class ConditionalMedia
+    {
+
+        private boolean notModified;
+        private GetMediaResponse response;
+        private String validator;
+
+        static ConditionalMedia readFrom(TProtocol in) throws TException
+        {
+            ConditionalMedia media = new ConditionalMedia();
+
+            in.readStructBegin();
+
+            for (TField field = in.readFieldBegin(); field.type != TType.STOP; field = in.readFieldBegin())
+            {
+                switch (field.id)
+                {
+                    case 1:
+                        media.notModified = in.readBool();
+                        break;
+                    case 2:
+                        media.response = new GetMediaResponse();
+                        media.response.read(in);
+                        break;
+                    default:
+                        media.validator = in.readString();
+                }
+
+                in.readFieldEnd();
+            }
+
+            in.readStructEnd();
+
+            return media;
+        }
+    }
+
+    /**
+     * A generated client can only receive the reply to the last call it sent, so each call gets its own.
+     */
+    private static class Call
+    {
+
+        private final TMemoryBuffer output = new TMemoryBuffer(64);
+        private final TMemoryInputTransport input = new TMemoryInputTransport(new byte[0]);
+        private final AromaService.Client client = new AromaService.Client(new TBinaryProtocol(input),
+                                                                           new TBinaryProtocol(output));
+
+        byte[] bytes()
+        {
+            return Arrays.copyOf(output.getArray(), output.length());
+        }
+
+        AromaService.Client receive(byte[] reply)
+        {
+            input.reset(reply);
+            return client;
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.aroma.service;
+
+import java.util.concurrent.*;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class ClientAddressTest
+{
+
+    @GenerateString(ALPHABETIC)
+    private String address;
+
+    @After
+    public void tearDown()
+    {
+        ClientAddress.clear();
+    }
+
+    @Test
+    public void testSetAndClear() throws Exception
+    {
+        assertThat(ClientAddress.current(), nullValue());
+
+        ClientAddress.set(address);
+        assertThat(ClientAddress.current(), is(address));
+
+        ClientAddress.clear();
+        assertThat(ClientAddress.current(), nullValue());
+    }
+
+    @Test
+    public void testSetNull() throws Exception
+    {
+        ClientAddress.set(address);
+        ClientAddress.set(null);
+
+        assertThat(ClientAddress.current(), nullValue());
+    }
+
+    @Test
+    public void testIsPerThread() throws Exception
+    {
+        ClientAddress.set(address);
+
+        ExecutorService async = Executors.newSingleThreadExecutor();
+
+        try
+        {
+            String seenByOtherThread = async.submit(ClientAddress::current).get(5, TimeUnit.SECONDS);
+            assertThat(seenByOtherThread, nullValue());
+        }
+        finally
+        {
+            async.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static java.nio.file.attribute.PosixFilePermissions.fromString;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class PrivateDirectoriesTest
+{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @GenerateString(ALPHABETIC)
+    private String name;
+
+    @Test
+    public void testCreate() throws Exception
+    {
+        File directory = new File(new File(folder.getRoot(), name), "nested");
+
+        File result = PrivateDirectories.create(directory);
+
+        assertThat(result, is(directory));
+        assertThat(directory.isDirectory(), is(true));
+        assertThat(permissionsOf(directory), is(fromString("rwx------")));
+    }
+
+    @Test
+    public void testCreateRestrictsExistingDirectory() throws Exception
+    {
+        File directory = folder.newFolder(name);
+        Files.setPosixFilePermissions(directory.toPath(), fromString("rwxrwxrwx"));
+
+        PrivateDirectories.create(directory);
+
+        assertThat(permissionsOf(directory), is(fromString("rwx------")));
+    }
+
+    @Test
+    public void testCreateWhenFileExists() throws Exception
+    {
+        File file = folder.newFile(name);
+
+        assertThrows(() -> PrivateDirectories.create(file));
+    }
+
+    @DontRepeat
+    @Test
+    public void testCreateWithBadArgs() throws Exception
+    {
+        assertThrows(() -> PrivateDirectories.create(null));
+    }
+
+    private static Set<PosixFilePermission> permissionsOf(File directory) throws Exception
+    {
+        return Files.getPosixFilePermissions(directory.toPath());
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.CollectionGenerators.listOf;
+import static tech.sirwellington.alchemy.generator.NumberGenerators.integers;
+import static tech.sirwellington.alchemy.generator.StringGenerators.uuids;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class BatchDeletionTest
+{
+
+    private static final int CHUNK_SIZE = 10;
+    private static final int PARALLELISM = 3;
+
+    private ExecutorService executor;
+
+    private List<String> ids;
+
+    private Set<String> deleted;
+    private Queue<List<String>> chunksReceived;
+
+    private BatchDeletion instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        executor = Executors.newFixedThreadPool(8);
+
+        ids = listOf(uuids, one(integers(CHUNK_SIZE + 1, CHUNK_SIZE * 10)));
+        deleted = ConcurrentHashMap.newKeySet();
+        chunksReceived = new ConcurrentLinkedQueue<>();
+
+        instance = new BatchDeletion(executor, CHUNK_SIZE, PARALLELISM);
+    }
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor()
+    {
+        assertThrows(() -> new BatchDeletion(null));
+        assertThrows(() -> new BatchDeletion(executor, 0, PARALLELISM));
+        assertThrows(() -> new BatchDeletion(executor, CHUNK_SIZE, 0));
+    }
+
+    @Test
+    public void testDeleteAll()
+    {
+        BatchDeletion.Result result = instance.deleteAll(ids, this::deleteChunk);
+
+        assertThat(result.getDeletedCount(), is(ids.size()));
+        assertThat(result.getFailedCount(), is(0));
+        assertThat(result.hasFailures(), is(false));
+        assertThat(deleted, is(new HashSet<>(ids)));
+
+        int expectedChunks = (ids.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        assertThat(chunksReceived.size(), is(expectedChunks));
+
+        for (List<String> chunk : chunksReceived)
+        {
+            assertThat(chunk.size(), lessThanOrEqualTo(CHUNK_SIZE));
+        }
+    }
+
+    @Test
+    public void testDeleteAllWithDuplicates()
+    {
+        List<String> withDuplicates = new ArrayList<>(ids);
+        withDuplicates.addAll(ids);
+
+        BatchDeletion.Result result = instance.deleteAll(withDuplicates, this::deleteChunk);
+
+        assertThat(result.getDeletedCount(), is(ids.size()));
+        assertThat(chunksReceived.stream().mapToInt(List::size).sum(), is(ids.size()));
+    }
+
+    @Test
+    public void testDeleteAllWhenChunkFails()
+    {
+        BatchDeletion.Result result = instance.deleteAll(ids, chunk ->
+        {
+            if (chunk.contains(ids.get(0)))
+            {
+                throw new OperationFailedException();
+            }
+
+            return deleteChunk(chunk);
+        });
+
+        assertThat(result.getFailedCount(), is(CHUNK_SIZE));
+        assertThat(result.getFailed(), hasItem(ids.get(0)));
+        assertThat(result.getDeletedCount(), is(ids.size() - CHUNK_SIZE));
+        assertThat(result.getDeleted(), is(deleted));
+    }
+
+    @Test
+    public void testDeleteAllWhenSomeIdsFail()
+    {
+        String failingId = ids.get(ids.size() - 1);
+
+        BatchDeletion.Result result = instance.deleteAll(ids, BatchDeletion.eachOf(id ->
+        {
+            if (id.equals(failingId))
+            {
+                throw new OperationFailedException();
+            }
+
+            deleted.add(id);
+        }));
+
+        assertThat(result.getFailed(), contains(failingId));
+        assertThat(result.getDeletedCount(), is(ids.size() - 1));
+        assertThat(result.getDeleted(), is(deleted));
+    }
+
+    @Test
+    public void testParallelismIsBounded()
+    {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger mostInFlight = new AtomicInteger();
+
+        instance.deleteAll(ids, chunk ->
+        {
+            mostInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+            try
+            {
+                Thread.sleep(1);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            inFlight.decrementAndGet();
+            return deleteChunk(chunk);
+        });
+
+        assertThat(mostInFlight.get(), lessThanOrEqualTo(PARALLELISM));
+        assertThat(deleted.size(), is(ids.size()));
+    }
+
+    @Test
+    public void testDeleteAllWhenExecutorRejects()
+    {
+        instance = new BatchDeletion(task -> { throw new RejectedExecutionException(); }, CHUNK_SIZE, PARALLELISM);
+
+        BatchDeletion.Result result = instance.deleteAll(ids, this::deleteChunk);
+
+        assertThat(result.getDeletedCount(), is(ids.size()));
+    }
+
+    @DontRepeat
+    @Test
+    public void testDeleteAllWithNoIds()
+    {
+        BatchDeletion.Result result = instance.deleteAll(Collections.emptyList(), this::deleteChunk);
+
+        assertThat(result.getDeletedCount(), is(0));
+        assertThat(chunksReceived, is(empty()));
+    }
+
+    private Collection<String> deleteChunk(List<String> chunk)
+    {
+        chunksReceived.add(chunk);
+        deleted.addAll(chunk);
+
+        return Collections.emptyList();
+    }
+
+}
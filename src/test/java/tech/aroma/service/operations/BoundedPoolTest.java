@@ -0,0 +1,188 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class BoundedPoolTest
+{
+
+    private Timer queueTime;
+    private Timer runTime;
+    private Counter rejections;
+
+    private ExecutorService async;
+
+    private CountDownLatch taskStarted;
+    private CountDownLatch releaseTask;
+
+    private AtomicInteger releases;
+
+    @GenerateString(ALPHABETIC)
+    private String name;
+
+    @GenerateString(ALPHABETIC)
+    private String busyMessage;
+
+    @GenerateString(ALPHABETIC)
+    private String result;
+
+    private BoundedPool instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        queueTime = new Timer();
+        runTime = new Timer();
+        rejections = new Counter();
+
+        async = Executors.newSingleThreadExecutor();
+
+        taskStarted = new CountDownLatch(1);
+        releaseTask = new CountDownLatch(1);
+
+        releases = new AtomicInteger();
+
+        instance = new BoundedPool(name, 1, 1, 5_000, busyMessage, queueTime, runTime, rejections);
+    }
+
+    @After
+    public void tearDown()
+    {
+        releaseTask.countDown();
+        async.shutdownNow();
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new BoundedPool("", 1, 1, 1, busyMessage, queueTime, runTime, rejections));
+        assertThrows(() -> new BoundedPool(name, 0, 1, 1, busyMessage, queueTime, runTime, rejections));
+        assertThrows(() -> new BoundedPool(name, 1, 0, 1, busyMessage, queueTime, runTime, rejections));
+        assertThrows(() -> new BoundedPool(name, 1, 1, 0, busyMessage, queueTime, runTime, rejections));
+        assertThrows(() -> new BoundedPool(name, 1, 1, 1, "", queueTime, runTime, rejections));
+        assertThrows(() -> new BoundedPool(name, 1, 1, 1, busyMessage, null, runTime, rejections));
+        assertThrows(() -> new BoundedPool(name, 1, 1, 1, busyMessage, queueTime, null, rejections));
+        assertThrows(() -> new BoundedPool(name, 1, 1, 1, busyMessage, queueTime, runTime, null));
+    }
+
+    @Test
+    public void testExecute() throws Exception
+    {
+        String output = instance.execute(name, () -> result, releases::incrementAndGet);
+
+        assertThat(output, is(result));
+        assertThat(releases.get(), is(1));
+        assertThat(runTime.getCount(), is(1L));
+        assertThat(queueTime.getCount(), is(1L));
+    }
+
+    @Test
+    public void testExecuteWhenTaskFails() throws Exception
+    {
+        assertThrows(() -> instance.execute(name, () -> { throw new InvalidArgumentException(); }, releases::incrementAndGet))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThat(releases.get(), is(1));
+    }
+
+    @Test
+    public void testExecuteWhenTaskFailsUnexpectedly() throws Exception
+    {
+        assertThrows(() -> instance.execute(name, () -> { throw new IllegalStateException(); }, releases::incrementAndGet))
+                .isInstanceOf(OperationFailedException.class);
+
+        assertThat(releases.get(), is(1));
+    }
+
+    @Test
+    public void testExecuteWhenQueueIsFull() throws Exception
+    {
+        async.submit(() -> instance.execute(name, this::blockingTask, releases::incrementAndGet));
+        taskStarted.await(5, TimeUnit.SECONDS);
+
+        //Fills the only place in the queue
+        ExecutorService queued = Executors.newSingleThreadExecutor();
+
+        try
+        {
+            CountDownLatch queuedTask = new CountDownLatch(1);
+            queued.submit(() -> { queuedTask.countDown(); return instance.execute(name, () -> result, releases::incrementAndGet); });
+            queuedTask.await(5, TimeUnit.SECONDS);
+            Thread.sleep(100);
+
+            assertThrows(() -> instance.execute(name, () -> result, releases::incrementAndGet))
+                    .isInstanceOf(OperationFailedException.class);
+
+            assertThat(rejections.getCount(), is(1L));
+            assertThat(releases.get(), is(1));
+        }
+        finally
+        {
+            releaseTask.countDown();
+            queued.shutdown();
+            queued.awaitTermination(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(releases.get(), is(3));
+    }
+
+    @DontRepeat
+    @Test
+    public void testExecuteWhenTaskTimesOut() throws Exception
+    {
+        instance = new BoundedPool(name, 1, 1, 50, busyMessage, queueTime, runTime, rejections);
+
+        assertThrows(() -> instance.execute(name, this::blockingTask, releases::incrementAndGet))
+                .isInstanceOf(OperationFailedException.class);
+
+        releaseTask.countDown();
+        Thread.sleep(50);
+
+        //Released once, whether by the caller or the task
+        assertThat(releases.get(), is(1));
+    }
+
+    private String blockingTask() throws InterruptedException
+    {
+        taskStarted.countDown();
+        releaseTask.await(5, TimeUnit.SECONDS);
+        return result;
+    }
+
+}
@@ -16,7 +16,6 @@
 
 package tech.aroma.service.operations;
 
-import java.util.List;
 import java.util.Set;
 import java.util.function.Function;
 
@@ -24,32 +23,23 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.*;
-import sir.wellington.alchemy.collections.lists.Lists;
 import sir.wellington.alchemy.collections.sets.Sets;
 import tech.aroma.data.*;
+import tech.aroma.service.operations.deletion.ApplicationDeleter;
 import tech.aroma.thrift.Application;
 import tech.aroma.thrift.User;
 import tech.aroma.thrift.authentication.AuthenticationToken;
 import tech.aroma.thrift.authentication.UserToken;
 import tech.aroma.thrift.authentication.service.*;
-import tech.aroma.thrift.events.Event;
 import tech.aroma.thrift.exceptions.*;
 import tech.aroma.thrift.service.DeleteApplicationRequest;
 import tech.aroma.thrift.service.DeleteApplicationResponse;
-import tech.sirwellington.alchemy.annotations.testing.TimeSensitive;
 import tech.sirwellington.alchemy.test.junit.runners.*;
 
-import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
-import static org.mockito.Matchers.anyString;
-import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
-import static tech.sirwellington.alchemy.arguments.Arguments.*;
-import static tech.sirwellington.alchemy.arguments.assertions.Assertions.equalTo;
-import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
-import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.*;
-import static tech.sirwellington.alchemy.arguments.assertions.TimeAssertions.epochNowWithinDelta;
 import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
 import static tech.sirwellington.alchemy.generator.StringGenerators.uuids;
 import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
@@ -60,15 +50,11 @@ import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.
 /**
  * @author SirWellington
  */
-@TimeSensitive
 @Repeat(50)
 @RunWith(AlchemyTestRunner.class)
 public class DeleteApplicationOperationTest
 {
 
-    @Mock
-    private ActivityRepository activityRepo;
-
     @Mock
     private ApplicationRepository appRepo;
 
@@ -79,16 +65,10 @@ public class DeleteApplicationOperationTest
     private Function<UserToken, AuthenticationToken> tokenMapper;
 
     @Mock
-    private FollowerRepository followerRepo;
-
-    @Mock
-    private MediaRepository mediaRepo;
-
-    @Mock
-    private MessageRepository messageRepo;
+    private UserRepository userRepo;
 
     @Mock
-    private UserRepository userRepo;
+    private ApplicationDeleter appDeleter;
 
     @GenerateString(UUID)
     private String appId;
@@ -117,16 +97,10 @@ public class DeleteApplicationOperationTest
     @GeneratePojo
     private DeleteApplicationRequest request;
 
-    @GenerateList(User.class)
-    private List<User> followers;
-
     private Set<String> superUsers;
 
     private DeleteApplicationOperation instance;
 
-    @Captor
-    private ArgumentCaptor<Event> captor;
-
     @Before
     public void setUp() throws Exception
     {
@@ -134,24 +108,18 @@ public class DeleteApplicationOperationTest
         setupData();
         setupMocks();
 
-        instance = new DeleteApplicationOperation(activityRepo,
-                                                  appRepo,
-                                                  followerRepo,
-                                                  mediaRepo,
-                                                  messageRepo,
+        instance = new DeleteApplicationOperation(appRepo,
                                                   userRepo,
                                                   authenticationService,
                                                   tokenMapper,
-                                                  superUsers);
+                                                  superUsers,
+                                                  appDeleter);
 
-        verifyZeroInteractions(activityRepo,
-                               appRepo,
-                               followerRepo,
-                               mediaRepo,
-                               messageRepo,
+        verifyZeroInteractions(appRepo,
                                userRepo,
                                authenticationService,
-                               tokenMapper);
+                               tokenMapper,
+                               appDeleter);
     }
 
     private void setupData() throws Exception
@@ -176,7 +144,6 @@ public class DeleteApplicationOperationTest
     private void setupMocks() throws Exception
     {
         when(appRepo.getById(appId)).thenReturn(app);
-        when(followerRepo.getApplicationFollowers(appId)).thenReturn(followers);
         when(userRepo.getUser(userId)).thenReturn(user);
 
         when(authenticationService.invalidateToken(Mockito.any()))
@@ -189,18 +156,14 @@ public class DeleteApplicationOperationTest
     @Test
     public void testConstructor()
     {
-        assertThrows(() -> new DeleteApplicationOperation(null, appRepo, followerRepo, mediaRepo, messageRepo, userRepo, authenticationService, tokenMapper, superUsers));
-        assertThrows(() -> new DeleteApplicationOperation(activityRepo, null, followerRepo, mediaRepo, messageRepo, userRepo, authenticationService, tokenMapper, superUsers));
-        assertThrows(() -> new DeleteApplicationOperation(activityRepo, appRepo, null, mediaRepo, messageRepo, userRepo, authenticationService, tokenMapper, superUsers));
-        assertThrows(() -> new DeleteApplicationOperation(activityRepo, appRepo, followerRepo, null, messageRepo, userRepo, authenticationService, tokenMapper, superUsers));
-        assertThrows(() -> new DeleteApplicationOperation(activityRepo, appRepo, followerRepo, mediaRepo, null, userRepo, authenticationService, tokenMapper, superUsers));
-        assertThrows(() -> new DeleteApplicationOperation(activityRepo, appRepo, followerRepo, mediaRepo, messageRepo, null, authenticationService, tokenMapper, superUsers));
-        assertThrows(() -> new DeleteApplicationOperation(activityRepo, appRepo, followerRepo, mediaRepo, messageRepo, userRepo, null, tokenMapper, superUsers));
-        assertThrows(() -> new DeleteApplicationOperation(activityRepo, appRepo, followerRepo, mediaRepo, messageRepo, userRepo, authenticationService, null, superUsers));
-        assertThrows(() -> new DeleteApplicationOperation(activityRepo, appRepo, followerRepo, mediaRepo, messageRepo, userRepo, authenticationService, tokenMapper, null));
+        assertThrows(() -> new DeleteApplicationOperation(null, userRepo, authenticationService, tokenMapper, superUsers, appDeleter));
+        assertThrows(() -> new DeleteApplicationOperation(appRepo, null, authenticationService, tokenMapper, superUsers, appDeleter));
+        assertThrows(() -> new DeleteApplicationOperation(appRepo, userRepo, null, tokenMapper, superUsers, appDeleter));
+        assertThrows(() -> new DeleteApplicationOperation(appRepo, userRepo, authenticationService, null, superUsers, appDeleter));
+        assertThrows(() -> new DeleteApplicationOperation(appRepo, userRepo, authenticationService, tokenMapper, null, appDeleter));
+        assertThrows(() -> new DeleteApplicationOperation(appRepo, userRepo, authenticationService, tokenMapper, superUsers, null));
     }
 
-    @TimeSensitive
     @Test
     public void testProcess() throws Exception
     {
@@ -208,7 +171,7 @@ public class DeleteApplicationOperationTest
         DeleteApplicationResponse response = instance.process(request);
         assertThat(response, notNullValue());
 
-        verifyThingWereCleanedUp();
+        verifyAppWasDeleted();
     }
 
     @Test
@@ -219,18 +182,7 @@ public class DeleteApplicationOperationTest
         assertThrows(() -> instance.process(request))
                 .isInstanceOf(UnauthorizedException.class);
 
-        verify(appRepo, never()).deleteApplication(appId);
-        verifyZeroInteractions(followerRepo, mediaRepo, messageRepo);
-    }
-
-    @Test
-    public void testWhenNoFollowers() throws Exception
-    {
-        when(followerRepo.getApplicationFollowers(appId)).thenReturn(Lists.emptyList());
-
-        instance.process(request);
-
-        verify(followerRepo, never()).deleteFollowing(anyString(), anyString());
+        verifyZeroInteractions(appDeleter);
     }
 
     @Test
@@ -242,9 +194,7 @@ public class DeleteApplicationOperationTest
         assertThrows(() -> instance.process(request))
                 .isInstanceOf(UserDoesNotExistException.class);
 
-        verifyZeroInteractions(activityRepo, messageRepo, mediaRepo);
-
-        verify(appRepo, never()).deleteApplication(appId);
+        verifyZeroInteractions(appDeleter);
     }
 
     @Test
@@ -257,10 +207,18 @@ public class DeleteApplicationOperationTest
         assertThrows(() -> instance.process(request))
                 .isInstanceOf(OperationFailedException.class);
 
-        verifyZeroInteractions(activityRepo, mediaRepo, messageRepo);
+        verifyZeroInteractions(appDeleter);
+    }
+
+    @Test
+    public void testWhenDeletionFails() throws Exception
+    {
+        doThrow(new OperationFailedException())
+                .when(appDeleter)
+                .delete(any(Application.class), any(User.class));
 
-        verify(appRepo, never()).deleteApplication(appId);
-        verify(followerRepo, never()).deleteFollowing(anyString(), eq(appId));
+        assertThrows(() -> instance.process(request))
+                .isInstanceOf(OperationFailedException.class);
     }
 
     @DontRepeat
@@ -302,56 +260,12 @@ public class DeleteApplicationOperationTest
         DeleteApplicationResponse response = instance.process(request);
         assertThat(response, notNullValue());
 
-        verifyThingWereCleanedUp();
+        verifyAppWasDeleted();
     }
 
-    private void checkEvent(Event event)
+    private void verifyAppWasDeleted() throws Exception
     {
-        checkThat(event).is(notNull());
-        checkThat(event.eventId).is(validUUID());
-        assertThat(event.applicationId, is(appId));
-        assertThat(event.application, is(app));
-        checkThat(event.timestamp).is(epochNowWithinDelta(8_000));
-        checkThat(event.userIdOfActor).is(equalTo(userId));
-        checkThat(event.actor).is(equalTo(user));
-    }
-
-    private void verifyThingWereCleanedUp() throws Exception
-    {
-        verify(appRepo).deleteApplication(appId);
-
-        verify(mediaRepo).deleteMedia(app.applicationIconMediaId);
-        verify(mediaRepo).deleteAllThumbnails(app.applicationIconMediaId);
-
-        verify(mediaRepo).deleteMedia(appId);
-        verify(mediaRepo).deleteAllThumbnails(appId);
-
-        verify(messageRepo).deleteAllMessages(appId);
-
-        for (User follower : followers)
-        {
-            String followerId = follower.userId;
-
-            verify(followerRepo).deleteFollowing(followerId, appId);
-        }
-
-
-        for (User follower : followers)
-        {
-            verify(activityRepo).saveEvent(captor.capture(), eq(follower));
-
-            Event event = captor.getValue();
-            checkEvent(event);
-        }
-
-        for (String ownerId : app.owners)
-        {
-            User owner = new User().setUserId(ownerId);
-
-            verify(activityRepo).saveEvent(captor.capture(), eq(owner));
-            Event event = captor.getValue();
-            checkEvent(event);
-        }
+        verify(appDeleter).delete(app, user);
 
         InvalidateTokenRequest expectedRequest = new InvalidateTokenRequest()
                 .setToken(authToken)
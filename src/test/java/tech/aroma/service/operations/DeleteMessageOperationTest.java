@@ -19,6 +19,8 @@ package tech.aroma.service.operations;
 import java.util.List;
 import java.util.Set;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.apache.thrift.TException;
 import org.junit.Before;
 import org.junit.Test;
@@ -26,6 +28,7 @@ import org.junit.runner.RunWith;
 import org.mockito.*;
 import sir.wellington.alchemy.collections.lists.Lists;
 import tech.aroma.data.*;
+import tech.aroma.service.operations.activity.ActivityFeeds;
 import tech.aroma.thrift.Application;
 import tech.aroma.thrift.User;
 import tech.aroma.thrift.events.Event;
@@ -44,6 +47,7 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
+import static tech.aroma.service.operations.activity.EventReferences.referenceTo;
 import static tech.sirwellington.alchemy.arguments.Arguments.*;
 import static tech.sirwellington.alchemy.arguments.assertions.TimeAssertions.epochNowWithinDelta;
 import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
@@ -116,10 +120,16 @@ public class DeleteMessageOperationTest
     @GenerateInteger
     private int totalMessageStored;
 
+    private BatchDeletion batchDeletion;
+
+    private ActivityFeeds activityFeeds;
+
     @Before
     public void setUp() throws TException
     {
-        instance = new DeleteMessageOperation(activityRepo, appRepo, followerRepo, messageRepo, userRepo);
+        activityFeeds = ActivityFeeds.newInstance(activityRepo, followerRepo, new MetricRegistry());
+        batchDeletion = new BatchDeletion(MoreExecutors.directExecutor(), 3, 2);
+        instance = new DeleteMessageOperation(activityFeeds, appRepo, followerRepo, messageRepo, userRepo, batchDeletion);
         setupData();
         setupMocks();
     }
@@ -128,19 +138,22 @@ public class DeleteMessageOperationTest
     @Test
     public void testConstructor()
     {
-        assertThrows(() -> new DeleteMessageOperation(null, appRepo, followerRepo, messageRepo, userRepo))
+        assertThrows(() -> new DeleteMessageOperation(null, appRepo, followerRepo, messageRepo, userRepo, batchDeletion))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThrows(() -> new DeleteMessageOperation(activityRepo, null, followerRepo, messageRepo, userRepo, batchDeletion))
                 .isInstanceOf(IllegalArgumentException.class);
 
-        assertThrows(() -> new DeleteMessageOperation(activityRepo, null, followerRepo, messageRepo, userRepo))
+        assertThrows(() -> new DeleteMessageOperation(activityFeeds, appRepo, null, messageRepo, userRepo, batchDeletion))
                 .isInstanceOf(IllegalArgumentException.class);
 
-        assertThrows(() -> new DeleteMessageOperation(activityRepo, appRepo, null, messageRepo, userRepo))
+        assertThrows(() -> new DeleteMessageOperation(activityFeeds, appRepo, followerRepo, null, userRepo, batchDeletion))
                 .isInstanceOf(IllegalArgumentException.class);
 
-        assertThrows(() -> new DeleteMessageOperation(activityRepo, appRepo, followerRepo, null, userRepo))
+        assertThrows(() -> new DeleteMessageOperation(activityFeeds, appRepo, followerRepo, messageRepo, null, batchDeletion))
                 .isInstanceOf(IllegalArgumentException.class);
 
-        assertThrows(() -> new DeleteMessageOperation(activityRepo, appRepo, followerRepo, messageRepo, null))
+        assertThrows(() -> new DeleteMessageOperation(activityFeeds, appRepo, followerRepo, messageRepo, userRepo, null))
                 .isInstanceOf(IllegalArgumentException.class);
 
     }
@@ -186,6 +199,36 @@ public class DeleteMessageOperationTest
         verifyZeroInteractions(activityRepo, followerRepo, userRepo);
     }
 
+    @Test
+    public void testProcessWhenSomeDeletesFail() throws Exception
+    {
+        request.unsetMessageId();
+
+        String failingId = messageIds.iterator().next();
+        doThrow(new OperationFailedException())
+                .when(messageRepo)
+                .deleteMessage(appId, failingId);
+
+        DeleteMessageResponse response = instance.process(request);
+        assertThat(response.messagesDeleted, is(messageIds.size() - 1));
+
+        for (String id : messageIds)
+        {
+            verify(messageRepo).deleteMessage(appId, id);
+        }
+    }
+
+    @Test
+    public void testProcessWhenAllDeletesFail() throws Exception
+    {
+        doThrow(new OperationFailedException())
+                .when(messageRepo)
+                .deleteMessage(eq(appId), any());
+
+        assertThrows(() -> instance.process(request))
+                .isInstanceOf(OperationFailedException.class);
+    }
+
     @Test
     public void testProcessWhenNotAuthorized() throws Exception
     {
@@ -301,8 +344,8 @@ public class DeleteMessageOperationTest
         assertThat(event, notNullValue());
         checkThat(event.timestamp).is(epochNowWithinDelta(10_000));
         assertThat(event.applicationId, is(appId));
-        assertThat(event.application, is(app));
-        assertThat(event.actor, is(user));
+        assertThat(event.application, is(referenceTo(app)));
+        assertThat(event.actor, is(referenceTo(user)));
         assertThat(event.userIdOfActor, is(userId));
 
     }
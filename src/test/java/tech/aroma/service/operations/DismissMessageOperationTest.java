@@ -19,20 +19,26 @@ package tech.aroma.service.operations;
 import java.util.List;
 import java.util.Set;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import sir.wellington.alchemy.collections.sets.Sets;
 import tech.aroma.data.InboxRepository;
+import tech.aroma.service.operations.inbox.InboxCache;
 import tech.aroma.thrift.authentication.UserToken;
 import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
 import tech.aroma.thrift.service.DismissMessageRequest;
 import tech.aroma.thrift.service.DismissMessageResponse;
 import tech.sirwellington.alchemy.test.junit.runners.*;
 
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
 import static tech.sirwellington.alchemy.generator.CollectionGenerators.listOf;
@@ -52,6 +58,9 @@ public class DismissMessageOperationTest
     @Mock
     private InboxRepository inboxRepo;
 
+    @Mock
+    private InboxCache inboxCache;
+
     @GeneratePojo
     private UserToken token;
 
@@ -64,12 +73,15 @@ public class DismissMessageOperationTest
     @GeneratePojo
     private DismissMessageRequest request;
 
+    private BatchDeletion batchDeletion;
+
     private DismissMessageOperation instance;
 
     @Before
     public void setUp() throws Exception
     {
-        instance = new DismissMessageOperation(inboxRepo);
+        batchDeletion = new BatchDeletion(MoreExecutors.directExecutor(), 3, 2);
+        instance = new DismissMessageOperation(inboxRepo, inboxCache, batchDeletion);
         verifyZeroInteractions(inboxRepo);
 
         setupData();
@@ -81,7 +93,13 @@ public class DismissMessageOperationTest
     @Test
     public void testConstructor()
     {
-        assertThrows(() -> new DismissMessageOperation(null))
+        assertThrows(() -> new DismissMessageOperation(null, inboxCache, batchDeletion))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThrows(() -> new DismissMessageOperation(inboxRepo, null, batchDeletion))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThrows(() -> new DismissMessageOperation(inboxRepo, inboxCache, null))
                 .isInstanceOf(IllegalArgumentException.class);
     }
 
@@ -92,6 +110,7 @@ public class DismissMessageOperationTest
         assertThat(response, notNullValue());
 
         verify(inboxRepo).deleteMessageForUser(userId, messageId);
+        verify(inboxCache).dismissed(userId, Sets.createFrom(messageId));
     }
 
     @Test
@@ -103,7 +122,10 @@ public class DismissMessageOperationTest
 
         Set<String> expected = Sets.copyOf(messageIds);
 
-        instance.process(request);
+        request.unsetMessageId();
+
+        DismissMessageResponse response = instance.process(request);
+        assertThat(response.messagesDismissed, is(expected.size()));
 
         for (String id : expected)
         {
@@ -111,6 +133,42 @@ public class DismissMessageOperationTest
         }
     }
 
+    @Test
+    public void testProcessWhenSomeDeletesFail() throws Exception
+    {
+        List<String> messageIds = listOf(uuids, 10);
+        request.setMessageIds(messageIds);
+        request.unsetMessageId();
+
+        String failingId = messageIds.get(0);
+        doThrow(new OperationFailedException())
+                .when(inboxRepo)
+                .deleteMessageForUser(userId, failingId);
+
+        DismissMessageResponse response = instance.process(request);
+        assertThat(response.messagesDismissed, is(messageIds.size() - 1));
+
+        for (String id : messageIds)
+        {
+            verify(inboxRepo).deleteMessageForUser(userId, id);
+        }
+
+        Set<String> dismissed = Sets.copyOf(messageIds);
+        dismissed.remove(failingId);
+        verify(inboxCache).dismissed(userId, dismissed);
+    }
+
+    @Test
+    public void testProcessWhenAllDeletesFail() throws Exception
+    {
+        doThrow(new OperationFailedException())
+                .when(inboxRepo)
+                .deleteMessageForUser(eq(userId), any());
+
+        assertThrows(() -> instance.process(request))
+                .isInstanceOf(OperationFailedException.class);
+    }
+
     @Test
     public void testProcessWithDismissAll() throws Exception
     {
@@ -120,6 +178,7 @@ public class DismissMessageOperationTest
         assertThat(response, notNullValue());
 
         verify(inboxRepo).deleteAllMessagesForUser(userId);
+        verify(inboxCache).cleared(userId);
     }
 
     @Test
@@ -34,6 +34,7 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
+import static tech.aroma.service.operations.activity.EventReferences.referenceTo;
 import static tech.sirwellington.alchemy.arguments.Arguments.*;
 import static tech.sirwellington.alchemy.arguments.assertions.Assertions.equalTo;
 import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.*;
@@ -201,9 +202,9 @@ public class FollowApplicationOperationTest
     {
         assertThat(event, notNullValue());
         checkThat(event.eventId).is(validUUID());
-        checkThat(event.actor).is(equalTo(user));
+        checkThat(event.actor).is(equalTo(referenceTo(user)));
         checkThat(event.userIdOfActor).is(equalTo(userId));
-        checkThat(event.application).is(equalTo(app));
+        checkThat(event.application).is(equalTo(referenceTo(app)));
         checkThat(event.applicationId).is(equalTo(appId));
     }
 
@@ -23,8 +23,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
-import tech.aroma.data.ActivityRepository;
 import tech.aroma.data.UserRepository;
+import tech.aroma.service.operations.activity.ActivityFeeds;
+import tech.aroma.service.operations.activity.EventHydrator;
 import tech.aroma.thrift.User;
 import tech.aroma.thrift.events.Event;
 import tech.aroma.thrift.exceptions.InvalidArgumentException;
@@ -52,15 +53,19 @@ public class GetActivityOperationTest
 {
 
     @Mock
-    private ActivityRepository activityRepo;
+    private ActivityFeeds activityFeeds;
 
     @Mock
     private UserRepository userRepo;
 
+    @Mock
+    private EventHydrator eventHydrator;
+
     @GeneratePojo
     private GetActivityRequest request;
 
     private List<Event> events;
+    private List<Event> hydratedEvents;
 
     @GenerateString(UUID)
     private String userId;
@@ -76,7 +81,7 @@ public class GetActivityOperationTest
     @Before
     public void setUp() throws Exception
     {
-        instance = new GetActivityOperation(activityRepo, userRepo);
+        instance = new GetActivityOperation(activityFeeds, userRepo, eventHydrator);
 
         setupData();
         setupMocks();
@@ -85,6 +90,7 @@ public class GetActivityOperationTest
     private void setupData()
     {
         events = listOf(events());
+        hydratedEvents = listOf(events());
         user.userId = userId;
 
         request.token.userId = userId;
@@ -93,8 +99,11 @@ public class GetActivityOperationTest
     private void setupMocks() throws Exception
     {
         User expected = new User().setUserId(userId);
-        when(activityRepo.getAllEventsFor(expected))
+        when(activityFeeds.getActivityFor(expected))
                 .thenReturn(events);
+
+        when(eventHydrator.hydrate(events))
+                .thenReturn(hydratedEvents);
     }
 
 
@@ -102,8 +111,9 @@ public class GetActivityOperationTest
     @Test
     public void testConstructor()
     {
-        assertThrows(() -> new GetActivityOperation(null, userRepo));
-        assertThrows(() -> new GetActivityOperation(activityRepo, null));
+        assertThrows(() -> new GetActivityOperation(null, userRepo, eventHydrator));
+        assertThrows(() -> new GetActivityOperation(activityFeeds, null, eventHydrator));
+        assertThrows(() -> new GetActivityOperation(activityFeeds, userRepo, null));
     }
 
     @Test
@@ -112,14 +122,14 @@ public class GetActivityOperationTest
         GetActivityResponse response = instance.process(request);
 
         assertThat(response, notNullValue());
-        assertThat(response.events, is(events));
+        assertThat(response.events, is(hydratedEvents));
 
     }
 
     @Test
     public void testWhenActivityRepoFails() throws Exception
     {
-        when(activityRepo.getAllEventsFor(Mockito.any(User.class)))
+        when(activityFeeds.getActivityFor(Mockito.any(User.class)))
                 .thenThrow(new OperationFailedException());
 
         assertThrows(() -> instance.process(request))
@@ -25,6 +25,7 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import sir.wellington.alchemy.collections.lists.Lists;
 import tech.aroma.data.*;
+import tech.aroma.service.operations.retention.RetentionSweeper;
 import tech.aroma.thrift.Application;
 import tech.aroma.thrift.Message;
 import tech.aroma.thrift.exceptions.*;
@@ -59,6 +60,9 @@ public class GetApplicationMessagesOperationTest
     @Mock
     private MessageRepository messageRepo;
 
+    @Mock
+    private RetentionSweeper retentionSweeper;
+
     private GetApplicationMessagesOperation instance;
 
     @GeneratePojo
@@ -85,7 +89,7 @@ public class GetApplicationMessagesOperationTest
         setupData();
         setupMocks();
 
-        instance = new GetApplicationMessagesOperation(appRepo, followerRepo, messageRepo);
+        instance = new GetApplicationMessagesOperation(appRepo, followerRepo, messageRepo, retentionSweeper, MessageProjection.FULL);
     }
 
     private void setupData() throws Exception
@@ -114,9 +118,13 @@ public class GetApplicationMessagesOperationTest
     @Test
     public void testConstructor() throws Exception
     {
-        assertThrows(() -> new GetApplicationMessagesOperation(null, followerRepo, messageRepo));
-        assertThrows(() -> new GetApplicationMessagesOperation(appRepo, null, messageRepo));
-        assertThrows(() -> new GetApplicationMessagesOperation(appRepo, followerRepo, null));
+        MessageProjection projection = MessageProjection.FULL;
+
+        assertThrows(() -> new GetApplicationMessagesOperation(null, followerRepo, messageRepo, retentionSweeper, projection));
+        assertThrows(() -> new GetApplicationMessagesOperation(appRepo, null, messageRepo, retentionSweeper, projection));
+        assertThrows(() -> new GetApplicationMessagesOperation(appRepo, followerRepo, null, retentionSweeper, projection));
+        assertThrows(() -> new GetApplicationMessagesOperation(appRepo, followerRepo, messageRepo, null, projection));
+        assertThrows(() -> new GetApplicationMessagesOperation(appRepo, followerRepo, messageRepo, retentionSweeper, null));
     }
 
     @Test
@@ -126,6 +134,24 @@ public class GetApplicationMessagesOperationTest
         assertThat(response, notNullValue());
 
         assertThat(response.messages, is(sortedMessages));
+
+        verify(retentionSweeper).scheduleApplication(appId);
+    }
+
+    @Test
+    public void testProcessWithSummaries() throws Exception
+    {
+        MessageProjection summaries = MessageProjection.summaries(0);
+        instance = new GetApplicationMessagesOperation(appRepo, followerRepo, messageRepo, retentionSweeper, summaries);
+
+        GetApplicationMessagesResponse response = instance.process(request);
+
+        List<Message> expected = sortedMessages.stream()
+                                               .map(summaries::summaryOf)
+                                               .collect(toList());
+
+        assertThat(response.messages, is(expected));
+        response.messages.forEach(message -> assertThat(message.isSetBody(), is(false)));
     }
 
     @DontRepeat
@@ -149,6 +175,8 @@ public class GetApplicationMessagesOperationTest
 
         assertThrows(() -> instance.process(request))
                 .isInstanceOf(OperationFailedException.class);
+
+        verifyZeroInteractions(retentionSweeper);
     }
 
     @Test
@@ -18,11 +18,13 @@ package tech.aroma.service.operations;
 
 import java.util.List;
 
+import com.codahale.metrics.MetricRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import tech.aroma.data.*;
+import tech.aroma.service.operations.buzz.BuzzCache;
 import tech.aroma.thrift.Application;
 import tech.aroma.thrift.User;
 import tech.aroma.thrift.service.GetBuzzRequest;
@@ -55,6 +57,8 @@ public class GetBuzzOperationTest
     @GeneratePojo
     private GetBuzzRequest request;
 
+    private BuzzCache buzzCache;
+
     private GetBuzzOperation instance;
 
     @GenerateList(Application.class)
@@ -66,7 +70,9 @@ public class GetBuzzOperationTest
     @Before
     public void setUp() throws Exception
     {
-        instance = new GetBuzzOperation(appRepo, orgRepo, userRepo);
+        buzzCache = BuzzCache.newInstance(appRepo, userRepo, new MetricRegistry());
+
+        instance = new GetBuzzOperation(buzzCache, orgRepo);
         verifyZeroInteractions(appRepo, orgRepo, userRepo);
 
         setupMocks();
@@ -84,13 +90,10 @@ public class GetBuzzOperationTest
     @Test
     public void testConstructor() throws Exception
     {
-        assertThrows(() -> new GetBuzzOperation(null, orgRepo, userRepo))
-                .isInstanceOf(IllegalArgumentException.class);
-
-        assertThrows(() -> new GetBuzzOperation(appRepo, null, userRepo))
+        assertThrows(() -> new GetBuzzOperation(null, orgRepo))
                 .isInstanceOf(IllegalArgumentException.class);
 
-        assertThrows(() -> new GetBuzzOperation(appRepo, orgRepo, null))
+        assertThrows(() -> new GetBuzzOperation(buzzCache, null))
                 .isInstanceOf(IllegalArgumentException.class);
     }
 
@@ -106,4 +109,17 @@ public class GetBuzzOperationTest
         verify(userRepo).getRecentlyCreatedUsers();
     }
 
+    @Test
+    public void testProcessDoesNotReadRepositoriesEachTime() throws Exception
+    {
+        instance.process(request);
+
+        GetBuzzResponse result = instance.process(request);
+        assertThat(result.freshApplications, is(recentApps));
+        assertThat(result.freshUsers, is(recentUsers));
+
+        verify(appRepo, times(1)).getRecentlyCreated();
+        verify(userRepo, times(1)).getRecentlyCreatedUsers();
+    }
+
 }
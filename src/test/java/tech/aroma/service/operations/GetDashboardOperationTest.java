@@ -23,7 +23,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
-import tech.aroma.data.InboxRepository;
+import tech.aroma.service.operations.inbox.InboxCache;
+import tech.aroma.service.operations.retention.RetentionSweeper;
 import tech.aroma.thrift.Message;
 import tech.aroma.thrift.exceptions.InvalidArgumentException;
 import tech.aroma.thrift.service.GetDashboardRequest;
@@ -33,6 +34,8 @@ import tech.sirwellington.alchemy.test.junit.runners.*;
 import static org.hamcrest.Matchers.isIn;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
 import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
@@ -45,7 +48,10 @@ import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.
 public class GetDashboardOperationTest
 {
     @Mock
-    private InboxRepository inboxRepo;
+    private InboxCache inboxCache;
+
+    @Mock
+    private RetentionSweeper retentionSweeper;
 
     @GenerateList(Message.class)
     private List<Message> messages;
@@ -61,7 +67,7 @@ public class GetDashboardOperationTest
     @Before
     public void setUp() throws Exception
     {
-        instance = new GetDashboardOperation(inboxRepo);
+        instance = new GetDashboardOperation(inboxCache, retentionSweeper);
 
         setupData();
         setupMocks();
@@ -74,6 +80,9 @@ public class GetDashboardOperationTest
         assertThat(response, notNullValue());
 
         response.recentMessages.forEach(m -> assertThat(m, isIn(messages)));
+        verify(inboxCache).getRecentMessages(userId, 3);
+
+        verify(retentionSweeper).scheduleInbox(userId);
     }
 
     @Test
@@ -85,7 +94,7 @@ public class GetDashboardOperationTest
 
     private void setupMocks() throws TException
     {
-        when(inboxRepo.getMessagesForUser(userId))
+        when(inboxCache.getRecentMessages(eq(userId), anyInt()))
                 .thenReturn(messages);
     }
 
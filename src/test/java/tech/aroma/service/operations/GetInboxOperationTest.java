@@ -16,7 +16,6 @@
 
 package tech.aroma.service.operations;
 
-import java.util.Comparator;
 import java.util.List;
 
 import org.junit.Before;
@@ -24,8 +23,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import sir.wellington.alchemy.collections.lists.Lists;
-import tech.aroma.data.InboxRepository;
 import tech.aroma.data.UserRepository;
+import tech.aroma.service.operations.inbox.InboxCache;
+import tech.aroma.service.operations.retention.RetentionSweeper;
 import tech.aroma.thrift.Message;
 import tech.aroma.thrift.exceptions.InvalidArgumentException;
 import tech.aroma.thrift.service.GetInboxRequest;
@@ -35,6 +35,8 @@ import tech.sirwellington.alchemy.test.junit.runners.*;
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
 import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
@@ -47,11 +49,14 @@ import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.
 public class GetInboxOperationTest
 {
     @Mock
-    private InboxRepository inboxRepo;
+    private InboxCache inboxCache;
 
     @Mock
     private UserRepository userRepo;
 
+    @Mock
+    private RetentionSweeper retentionSweeper;
+
     @GeneratePojo
     private GetInboxRequest request;
 
@@ -66,8 +71,8 @@ public class GetInboxOperationTest
     @Before
     public void setUp() throws Exception
     {
-        instance = new GetInboxOperation(inboxRepo, userRepo);
-        verifyZeroInteractions(inboxRepo, userRepo);
+        instance = new GetInboxOperation(inboxCache, userRepo, retentionSweeper, MessageProjection.FULL);
+        verifyZeroInteractions(inboxCache, userRepo);
 
         setupData();
         setupMocks();
@@ -78,21 +83,44 @@ public class GetInboxOperationTest
     {
         GetInboxResponse response = instance.process(request);
         assertThat(response, notNullValue());
+        assertThat(response.messages, is(messages));
+
+        verify(inboxCache).getRecentMessages(userId, request.limit);
+        verify(retentionSweeper).scheduleInbox(userId);
+    }
+
+    @Test
+    public void testProcessWithSummaries() throws Exception
+    {
+        MessageProjection summaries = MessageProjection.summaries(10);
+        instance = new GetInboxOperation(inboxCache, userRepo, retentionSweeper, summaries);
+
+        GetInboxResponse response = instance.process(request);
 
-        List<Message> sortedMessages = messages.stream()
-                                               .sorted(Comparator.comparingLong(Message::getTimeMessageReceived)
-                                                                 .reversed())
-                                               .limit(request.limit)
-                                               .collect(toList());
+        List<Message> expected = messages.stream()
+                                         .map(summaries::summaryOf)
+                                         .collect(toList());
 
-        assertThat(response.messages, is(sortedMessages));
+        assertThat(response.messages, is(expected));
+    }
+
+    @DontRepeat
+    @Test
+    public void testProcessWithoutLimit() throws Exception
+    {
+        request.limit = 0;
+
+        GetInboxResponse response = instance.process(request);
+        assertThat(response.messages, is(messages));
+
+        verify(inboxCache).getRecentMessages(userId, 2000);
     }
 
     @DontRepeat
     @Test
     public void testWhenNoMessages() throws Exception
     {
-        when(inboxRepo.getMessagesForUser(userId))
+        when(inboxCache.getRecentMessages(eq(userId), anyInt()))
                 .thenReturn(Lists.emptyList());
 
         GetInboxResponse response = instance.process(request);
@@ -106,6 +134,8 @@ public class GetInboxOperationTest
     {
         assertThrows(() -> instance.process(null))
                 .isInstanceOf(InvalidArgumentException.class);
+
+        verifyZeroInteractions(retentionSweeper);
     }
 
     private void setupData()
@@ -115,7 +145,7 @@ public class GetInboxOperationTest
 
     private void setupMocks() throws Exception
     {
-        when(inboxRepo.getMessagesForUser(userId))
+        when(inboxCache.getRecentMessages(eq(userId), anyInt()))
                 .thenReturn(messages);
     }
 
@@ -21,6 +21,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import tech.aroma.data.MediaRepository;
+import tech.aroma.service.operations.media.MediaCache;
+import tech.aroma.service.operations.media.MediaValidators;
 import tech.aroma.service.operations.thumbnails.ThumbnailCreator;
 import tech.aroma.thrift.Dimension;
 import tech.aroma.thrift.Image;
@@ -53,6 +55,12 @@ public class GetMediaOperationTest
     @Mock
     private ThumbnailCreator thumbnailCreator;
 
+    @Mock
+    private MediaValidators validators;
+
+    @Mock
+    private MediaCache mediaCache;
+
     @GenerateString(UUID)
     private String mediaId;
 
@@ -80,7 +88,7 @@ public class GetMediaOperationTest
         setupData();
         setupMocks();
 
-        instance = new GetMediaOperation(mediaRepo, thumbnailCreator);
+        instance = new GetMediaOperation(mediaRepo, thumbnailCreator, validators, mediaCache);
         verifyZeroInteractions(mediaRepo);
     }
 
@@ -108,8 +116,10 @@ public class GetMediaOperationTest
     @Test
     public void testConstructor() throws Exception
     {
-        assertThrows(() -> new GetMediaOperation(null, thumbnailCreator));
-        assertThrows(() -> new GetMediaOperation(mediaRepo, null));
+        assertThrows(() -> new GetMediaOperation(null, thumbnailCreator, validators, mediaCache));
+        assertThrows(() -> new GetMediaOperation(mediaRepo, null, validators, mediaCache));
+        assertThrows(() -> new GetMediaOperation(mediaRepo, thumbnailCreator, null, mediaCache));
+        assertThrows(() -> new GetMediaOperation(mediaRepo, thumbnailCreator, validators, null));
     }
 
     @Test
@@ -121,6 +131,34 @@ public class GetMediaOperationTest
         assertThat(response.image, is(image));
 
         verify(mediaRepo).getMedia(mediaId);
+        verify(validators).record(mediaId, null, image);
+        verify(mediaCache).put(mediaId, null, image);
+    }
+
+    @Test
+    public void testProcessWhenCached() throws Exception
+    {
+        when(mediaCache.get(mediaId, null))
+                .thenReturn(image);
+
+        GetMediaResponse response = instance.process(request);
+        assertThat(response.image, is(image));
+
+        verifyZeroInteractions(mediaRepo, thumbnailCreator);
+    }
+
+    @Test
+    public void testProcessWhenThumbnailIsCached() throws Exception
+    {
+        request.setDesiredThumbnailSize(thumbnailSize);
+
+        when(mediaCache.get(mediaId, thumbnailSize))
+                .thenReturn(thumbnail);
+
+        GetMediaResponse response = instance.process(request);
+        assertThat(response.image, is(thumbnail));
+
+        verifyZeroInteractions(mediaRepo, thumbnailCreator);
     }
 
     @DontRepeat
@@ -175,6 +213,8 @@ public class GetMediaOperationTest
         assertThat(response.image, is(thumbnail));
 
         verify(mediaRepo).getThumbnail(mediaId, thumbnailSize);
+        verify(validators).record(mediaId, thumbnailSize, thumbnail);
+        verify(mediaCache).put(mediaId, thumbnailSize, thumbnail);
     }
 
     @Test
@@ -202,6 +242,8 @@ public class GetMediaOperationTest
 
         GetMediaResponse response = instance.process(request);
         assertThat(response.image, is(image));
+
+        verify(validators, never()).record(eq(mediaId), eq(thumbnailSize), any(Image.class));
     }
 
     @Test
@@ -16,12 +16,14 @@
 
 package tech.aroma.service.operations;
 
+import com.codahale.metrics.MetricRegistry;
 import org.apache.thrift.TException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import tech.aroma.data.UserRepository;
+import tech.aroma.service.operations.users.UserDirectory;
 import tech.aroma.thrift.User;
 import tech.aroma.thrift.exceptions.UserDoesNotExistException;
 import tech.aroma.thrift.service.GetUserInfoRequest;
@@ -48,6 +50,8 @@ public class GetUserInfoOperationTest
     @Mock
     private UserRepository userRepo;
 
+    private UserDirectory userDirectory;
+
     @GeneratePojo
     private GetUserInfoRequest request;
 
@@ -64,7 +68,9 @@ public class GetUserInfoOperationTest
     @Before
     public void setUp() throws TException
     {
-        instance = new GetUserInfoOperation(userRepo);
+        userDirectory = UserDirectory.newInstance(userRepo, new MetricRegistry());
+
+        instance = new GetUserInfoOperation(userRepo, userDirectory);
         verifyZeroInteractions(userRepo);
 
         setupData();
@@ -75,7 +81,10 @@ public class GetUserInfoOperationTest
     @Test
     public void testConstructor()
     {
-        assertThrows(() -> new GetUserInfoOperation(null))
+        assertThrows(() -> new GetUserInfoOperation(null, userDirectory))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThrows(() -> new GetUserInfoOperation(userRepo, null))
                 .isInstanceOf(IllegalArgumentException.class);
     }
 
@@ -100,12 +109,26 @@ public class GetUserInfoOperationTest
 
         GetUserInfoResponse response = instance.process(request);
         assertThat(response, notNullValue());
-        assertThat(response.userInfo, is(user));
+        assertThat(response.userInfo, is(withoutImage(user)));
 
         verify(userRepo).getUserByEmail(email);
         verify(userRepo, never()).getUser(userId);
     }
 
+    @Test
+    public void testProcessWithSameEmailTwice() throws Exception
+    {
+        request.unsetUserId();
+
+        instance.process(request);
+        GetUserInfoResponse response = instance.process(request);
+        assertThat(response.userInfo, is(withoutImage(user)));
+
+        //The second lookup is served from the directory
+        verify(userRepo, times(1)).getUserByEmail(email);
+        verify(userRepo, never()).getUser(userId);
+    }
+
     @Test
     public void testWhenBothAreSet() throws Exception
     {
@@ -114,7 +137,7 @@ public class GetUserInfoOperationTest
 
         GetUserInfoResponse response = instance.process(request);
         assertThat(response, notNullValue());
-        assertThat(response.userInfo, is(user));
+        assertThat(response.userInfo, is(withoutImage(user)));
     }
 
     @Test
@@ -141,6 +164,13 @@ public class GetUserInfoOperationTest
                 .isInstanceOf(UserDoesNotExistException.class);
     }
 
+    private static User withoutImage(User user)
+    {
+        User copy = user.deepCopy();
+        copy.unsetProfileImage();
+        return copy;
+    }
+
     private void setupData() throws TException
     {
         request.userId = userId;
@@ -149,6 +179,7 @@ public class GetUserInfoOperationTest
 
         email = one(emails());
         request.email = email;
+        user.email = email;
     }
 
     private void setupMocks() throws TException
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tech.aroma.thrift.Message;
+import tech.aroma.thrift.service.GetInboxResponse;
+
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.one;
+import static tech.sirwellington.alchemy.generator.CollectionGenerators.listOf;
+import static tech.sirwellington.alchemy.generator.ObjectGenerators.pojos;
+import static tech.sirwellington.alchemy.generator.StringGenerators.alphabeticStrings;
+
+/**
+ * Measures the time to project and serialize a full page of {@link GetInboxResponse}, with full messages versus
+ * summaries.
+ * <p>
+ * The size of each response is printed when a trial begins. Run with {@code mvn test-compile exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=tech.aroma.service.operations.MessageProjectionBenchmark}.
+ *
+ * @author SirWellington
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MessageProjectionBenchmark
+{
+
+    private static final int MESSAGES_PER_PAGE = 2000;
+
+    @Param({ "full", "summary" })
+    private String projectionType;
+
+    @Param({ "200", "4000" })
+    private int bodyLength;
+
+    private List<Message> messages;
+    private MessageProjection projection;
+    private TSerializer serializer;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        messages = listOf(pojos(Message.class), MESSAGES_PER_PAGE);
+        messages.forEach(message -> message.setBody(one(alphabeticStrings(bodyLength))));
+
+        projection = "full".equals(projectionType)
+                     ? MessageProjection.FULL
+                     : MessageProjection.summaries(MessageProjection.DEFAULT_PREVIEW_LENGTH);
+
+        serializer = new TSerializer(new TBinaryProtocol.Factory());
+
+        System.out.printf("%n%s projection, %d character bodies: %,d bytes per response%n",
+                          projectionType, bodyLength, serializeResponse().length);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() throws Exception
+    {
+        return serializer.serialize(new GetInboxResponse().setMessages(projection.applyTo(messages)));
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        new Runner(new OptionsBuilder()
+                           .include(MessageProjectionBenchmark.class.getSimpleName())
+                           .build())
+                .run();
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.Message;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class MessageProjectionTest
+{
+
+    @GeneratePojo
+    private Message message;
+
+    @GenerateList(Message.class)
+    private List<Message> messages;
+
+    @DontRepeat
+    @Test
+    public void testSummaries()
+    {
+        assertThrows(() -> MessageProjection.summaries(-1));
+
+        assertThat(MessageProjection.summaries(0).isFull(), is(false));
+        assertThat(MessageProjection.FULL.isFull(), is(true));
+    }
+
+    @Test
+    public void testFull()
+    {
+        assertThat(MessageProjection.FULL.applyTo(messages), sameInstance(messages));
+    }
+
+    @Test
+    public void testSummaryOf()
+    {
+        message.setBody("Hello there, Aroma");
+
+        Message summary = MessageProjection.summaries(5).summaryOf(message);
+
+        assertThat(summary.messageId, is(message.messageId));
+        assertThat(summary.title, is(message.title));
+        assertThat(summary.urgency, is(message.urgency));
+        assertThat(summary.applicationId, is(message.applicationId));
+        assertThat(summary.applicationName, is(message.applicationName));
+        assertThat(summary.timeOfCreation, is(message.timeOfCreation));
+        assertThat(summary.timeMessageReceived, is(message.timeMessageReceived));
+        assertThat(summary.body, is("Hello" + MessageProjection.TRUNCATED_MARKER));
+
+        assertThat(summary.hostname, nullValue());
+        assertThat(summary.macAddress, nullValue());
+    }
+
+    @Test
+    public void testSummaryOfShortBody()
+    {
+        message.setBody("Hello");
+
+        Message summary = MessageProjection.summaries(5).summaryOf(message);
+        assertThat(summary.body, is("Hello"));
+    }
+
+    @Test
+    public void testSummaryWithoutBody()
+    {
+        Message summary = MessageProjection.summaries(0).summaryOf(message);
+        assertThat(summary.isSetBody(), is(false));
+    }
+
+    @DontRepeat
+    @Test
+    public void testPreviewDoesNotSplitCharacters()
+    {
+        //Each emoji is two chars
+        message.setBody("😀😀😀");
+
+        Message summary = MessageProjection.summaries(2).summaryOf(message);
+        assertThat(summary.body, is("😀😀" + MessageProjection.TRUNCATED_MARKER));
+    }
+
+    @Test
+    public void testApplyTo()
+    {
+        List<Message> result = MessageProjection.summaries(3).applyTo(messages);
+
+        assertThat(result.size(), is(messages.size()));
+
+        for (int i = 0; i < messages.size(); ++i)
+        {
+            assertThat(result.get(i).messageId, is(messages.get(i).messageId));
+            assertThat(result.get(i).body.length(), lessThanOrEqualTo(3 + MessageProjection.TRUNCATED_MARKER.length()));
+        }
+    }
+
+}
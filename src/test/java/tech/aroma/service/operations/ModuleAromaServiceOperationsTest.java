@@ -16,9 +16,13 @@
 
 package tech.aroma.service.operations;
 
+import java.io.File;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.*;
 import org.junit.Before;
 import org.junit.Test;
@@ -27,13 +31,15 @@ import sir.wellington.alchemy.collections.sets.Sets;
 import tech.aroma.data.memory.ModuleMemoryDataRepositories;
 import tech.aroma.service.AromaAnnotations;
 import tech.aroma.service.operations.encryption.ModuleEncryptionMaterialsDev;
+import tech.aroma.service.operations.retention.RetentionPolicies;
+import tech.aroma.service.operations.thumbnails.ImageLimits;
 import tech.aroma.thrift.authentication.*;
 import tech.aroma.thrift.authentication.service.AuthenticationService;
 import tech.aroma.thrift.email.service.EmailService;
 import tech.sirwellington.alchemy.test.junit.runners.AlchemyTestRunner;
 import tech.sirwellington.alchemy.test.junit.runners.Repeat;
 
-import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.*;
 
@@ -58,6 +64,9 @@ public class ModuleAromaServiceOperationsTest
 
             bind(EmailService.Iface.class)
                     .toInstance(mock(EmailService.Iface.class));
+
+            bind(ExecutorService.class)
+                    .toInstance(Executors.newSingleThreadExecutor());
         }
 
         @Provides
@@ -85,6 +94,87 @@ public class ModuleAromaServiceOperationsTest
 
     }
 
+    @Test
+    public void testProvideMetricRegistry()
+    {
+        MetricRegistry result = instance.provideMetricRegistry();
+        assertThat(result, notNullValue());
+    }
+
+    @Test
+    public void testProvideDataDirectory()
+    {
+        File result = instance.provideDataDirectory();
+        assertThat(result, notNullValue());
+        assertThat(result.getPath(), not(isEmptyString()));
+    }
+
+    @Test
+    public void testProvideMessageListProjection()
+    {
+        MessageProjection result = instance.provideMessageListProjection();
+        assertThat(result, notNullValue());
+        assertThat(result.isFull(), is(true));
+    }
+
+    @Test
+    public void testProvideMessageListProjectionWithSummaries()
+    {
+        System.setProperty("aroma.messages.summaries", "true");
+
+        try
+        {
+            MessageProjection result = instance.provideMessageListProjection();
+            assertThat(result.isFull(), is(false));
+        }
+        finally
+        {
+            System.clearProperty("aroma.messages.summaries");
+        }
+    }
+
+    @Test
+    public void testProvideImageLimits()
+    {
+        ImageLimits result = instance.provideImageLimits();
+        assertThat(result, notNullValue());
+        assertThat(result.getMaxSize(), is(ImageLimits.defaults().getMaxSize()));
+        assertThat(result.getMaxSourceSide(), is(ImageLimits.DEFAULT_MAX_SOURCE_SIDE));
+    }
+
+    @Test
+    public void testProvideRetentionPolicies()
+    {
+        RetentionPolicies result = instance.provideRetentionPolicies();
+        assertThat(result, notNullValue());
+        assertThat(result.isEnabled(), is(false));
+        assertThat(result.getApplicationPolicy(), is(RetentionPolicies.DEFAULT_APPLICATION_POLICY));
+        assertThat(result.getInboxPolicy(), is(RetentionPolicies.DEFAULT_INBOX_POLICY));
+    }
+
+    @Test
+    public void testProvideRetentionPoliciesWhenConfigured()
+    {
+        System.setProperty("aroma.retention.enabled", "true");
+        System.setProperty("aroma.retention.inboxes.maxAgeDays", "7");
+        System.setProperty("aroma.retention.inboxes.maxCount", "500");
+
+        try
+        {
+            RetentionPolicies result = instance.provideRetentionPolicies();
+            assertThat(result.isEnabled(), is(true));
+            assertThat(result.getInboxPolicy().getMaxAge().toDays(), is(7L));
+            assertThat(result.getInboxPolicy().getMaxCount(), is(500));
+            assertThat(result.getApplicationPolicy(), is(RetentionPolicies.DEFAULT_APPLICATION_POLICY));
+        }
+        finally
+        {
+            System.clearProperty("aroma.retention.enabled");
+            System.clearProperty("aroma.retention.inboxes.maxAgeDays");
+            System.clearProperty("aroma.retention.inboxes.maxCount");
+        }
+    }
+
     @Test
     public void testProvideAuthToUserTokenMapper()
     {
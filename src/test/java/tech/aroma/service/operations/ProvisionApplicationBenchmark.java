@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations;
+
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tech.aroma.data.*;
+import tech.aroma.service.operations.email.EmailDispatcher;
+import tech.aroma.service.operations.media.MediaStore;
+import tech.aroma.thrift.*;
+import tech.aroma.thrift.authentication.*;
+import tech.aroma.thrift.authentication.service.*;
+import tech.aroma.thrift.email.service.EmailService;
+import tech.aroma.thrift.service.ProvisionApplicationRequest;
+import tech.aroma.thrift.service.ProvisionApplicationResponse;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.ObjectGenerators.pojos;
+
+/**
+ * Measures the end-to-end latency of {@link ProvisionApplicationOperation} when every remote call takes
+ * {@code latencyMillis} to respond.
+ * <p>
+ * The {@code sequential} executor runs each step on the calling thread, one after another, and sends the email
+ * inline, as provisioning did before it was pipelined. The {@code pipelined} executor lets independent steps overlap,
+ * leaves the follower writes to run after the response, and queues the email with the {@link EmailDispatcher}.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=tech.aroma.service.operations.ProvisionApplicationBenchmark}.
+ *
+ * @author SirWellington
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProvisionApplicationBenchmark
+{
+
+    private static final int ADDITIONAL_OWNERS = 3;
+
+    @Param({ "pipelined", "sequential" })
+    private String executorType;
+
+    @Param({ "5", "20" })
+    private long latencyMillis;
+
+    private ExecutorService executor;
+
+    private ProvisionApplicationRequest request;
+
+    private ProvisionApplicationOperation instance;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        executor = "pipelined".equals(executorType)
+                   ? Executors.newFixedThreadPool(16)
+                   : MoreExecutors.newDirectExecutorService();
+
+        AuthenticationToken authToken = one(pojos(AuthenticationToken.class));
+        ApplicationToken appToken = one(pojos(ApplicationToken.class));
+        User user = one(pojos(User.class)).setUserId(authToken.ownerId);
+
+        request = one(pojos(ProvisionApplicationRequest.class));
+        request.applicationName = "Benchmark";
+        request.owners.clear();
+
+        for (int i = 0; i < ADDITIONAL_OWNERS; ++i)
+        {
+            request.owners.add("owner-" + i);
+        }
+
+        ApplicationRepository appRepo = mock(ApplicationRepository.class);
+        FollowerRepository followerRepo = mock(FollowerRepository.class);
+        MediaStore mediaStore = mock(MediaStore.class);
+        UserRepository userRepo = mock(UserRepository.class);
+        AuthenticationService.Iface authenticationService = mock(AuthenticationService.Iface.class);
+        EmailService.Iface emailService = mock(EmailService.Iface.class);
+
+        when(authenticationService.getTokenInfo(any()))
+                .thenAnswer(remotely(new GetTokenInfoResponse(authToken)));
+
+        when(authenticationService.createToken(any()))
+                .thenAnswer(remotely(new CreateTokenResponse(authToken)));
+
+        when(userRepo.getUser(anyString()))
+                .thenAnswer(remotely(user));
+
+        when(mediaStore.store(any(Image.class)))
+                .thenAnswer(remotely("icon"));
+
+        doAnswer(remotely(null)).when(appRepo).saveApplication(any());
+        doAnswer(remotely(null)).when(followerRepo).saveFollowing(any(), any());
+        doAnswer(remotely(null)).when(emailService).sendEmail(any());
+
+        Function<AuthenticationToken, ApplicationToken> appTokenMapper = token -> appToken;
+
+        EmailDispatcher emailDispatcher = "pipelined".equals(executorType)
+                                          ? EmailDispatcher.newInstance(emailService,
+                                                                        new MetricRegistry(),
+                                                                        Files.createTempDirectory("aroma").toFile())
+                                          : emailService::sendEmail;
+
+        instance = new ProvisionApplicationOperation(appRepo,
+                                                     followerRepo,
+                                                     mediaStore,
+                                                     userRepo,
+                                                     authenticationService,
+                                                     emailDispatcher,
+                                                     appTokenMapper,
+                                                     executor);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public ProvisionApplicationResponse provision() throws Exception
+    {
+        return instance.process(request);
+    }
+
+    private <T> Answer<T> remotely(T result)
+    {
+        return invocation ->
+        {
+            Thread.sleep(latencyMillis);
+            return result;
+        };
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        new Runner(new OptionsBuilder()
+                           .include(ProvisionApplicationBenchmark.class.getSimpleName())
+                           .build())
+                .run();
+    }
+
+}
@@ -17,21 +17,26 @@
 package tech.aroma.service.operations;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 
 import org.apache.thrift.TException;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.*;
+import org.mockito.stubbing.Answer;
 import sir.wellington.alchemy.collections.sets.Sets;
 import tech.aroma.data.*;
+import tech.aroma.service.operations.email.EmailDispatcher;
+import tech.aroma.service.operations.media.MediaStore;
 import tech.aroma.thrift.Application;
 import tech.aroma.thrift.User;
 import tech.aroma.thrift.authentication.*;
 import tech.aroma.thrift.authentication.service.*;
 import tech.aroma.thrift.email.EmailNewApplication;
-import tech.aroma.thrift.email.service.EmailService;
 import tech.aroma.thrift.email.service.SendEmailRequest;
 import tech.aroma.thrift.exceptions.*;
 import tech.aroma.thrift.service.*;
@@ -39,8 +44,7 @@ import tech.sirwellington.alchemy.test.junit.runners.*;
 
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
-import static org.hamcrest.Matchers.is;
-import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.*;
 import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
@@ -58,6 +62,7 @@ import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
 public class ProvisionApplicationOperationTest
 {
 
+
     @Mock
     private ApplicationRepository appRepo;
 
@@ -65,7 +70,7 @@ public class ProvisionApplicationOperationTest
     private FollowerRepository followerRepo;
 
     @Mock
-    private MediaRepository mediaRepo;
+    private MediaStore mediaStore;
 
     @Mock
     private UserRepository userRepo;
@@ -74,7 +79,7 @@ public class ProvisionApplicationOperationTest
     private AuthenticationService.Iface authenticationService;
 
     @Mock
-    private EmailService.Iface emailService;
+    private EmailDispatcher emailDispatcher;
 
     @Mock
     private Function<AuthenticationToken, ApplicationToken> appTokenMapper;
@@ -102,43 +107,58 @@ public class ProvisionApplicationOperationTest
     @GenerateString
     private String userId;
 
+    @GenerateString
+    private String iconId;
+
     @Captor
     private ArgumentCaptor<SendEmailRequest> emailCaptor;
 
+    private ExecutorService executor;
+
     @Before
     public void setUp() throws TException
     {
+        executor = Executors.newFixedThreadPool(4);
+
         instance = new ProvisionApplicationOperation(appRepo,
                                                      followerRepo,
-                                                     mediaRepo,
+                                                     mediaStore,
                                                      userRepo,
                                                      authenticationService,
-                                                     emailService,
-                                                     appTokenMapper);
+                                                     emailDispatcher,
+                                                     appTokenMapper,
+                                                     executor);
 
         verifyZeroInteractions(appRepo,
                                followerRepo,
-                               mediaRepo,
+                               mediaStore,
                                userRepo,
                                authenticationService,
-                               emailService,
+                               emailDispatcher,
                                appTokenMapper);
 
         setupData();
         setupMocks();
     }
 
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
     @DontRepeat
     @Test
     public void testConstructor()
     {
-        assertThrows(() -> new ProvisionApplicationOperation(null, followerRepo, mediaRepo, userRepo, authenticationService, emailService, appTokenMapper));
-        assertThrows(() -> new ProvisionApplicationOperation(appRepo, null, mediaRepo, userRepo, authenticationService, emailService, appTokenMapper));
-        assertThrows(() -> new ProvisionApplicationOperation(appRepo, followerRepo, null, userRepo, authenticationService, emailService, appTokenMapper));
-        assertThrows(() -> new ProvisionApplicationOperation(appRepo, followerRepo, mediaRepo, null, authenticationService, emailService, appTokenMapper));
-        assertThrows(() -> new ProvisionApplicationOperation(appRepo, followerRepo, mediaRepo, userRepo, null, emailService, appTokenMapper));
-        assertThrows(() -> new ProvisionApplicationOperation(appRepo, followerRepo, mediaRepo, userRepo, authenticationService, null, appTokenMapper));
-        assertThrows(() -> new ProvisionApplicationOperation(appRepo, followerRepo, mediaRepo, userRepo, authenticationService, emailService, null));
+        assertThrows(() -> new ProvisionApplicationOperation(null, followerRepo, mediaStore, userRepo, authenticationService, emailDispatcher, appTokenMapper, executor));
+        assertThrows(() -> new ProvisionApplicationOperation(appRepo, null, mediaStore, userRepo, authenticationService, emailDispatcher, appTokenMapper, executor));
+        assertThrows(() -> new ProvisionApplicationOperation(appRepo, followerRepo, null, userRepo, authenticationService, emailDispatcher, appTokenMapper, executor));
+        assertThrows(() -> new ProvisionApplicationOperation(appRepo, followerRepo, mediaStore, null, authenticationService, emailDispatcher, appTokenMapper, executor));
+        assertThrows(() -> new ProvisionApplicationOperation(appRepo, followerRepo, mediaStore, userRepo, null, emailDispatcher, appTokenMapper, executor));
+        assertThrows(() -> new ProvisionApplicationOperation(appRepo, followerRepo, mediaStore, userRepo, authenticationService, null, appTokenMapper, executor));
+        assertThrows(() -> new ProvisionApplicationOperation(appRepo, followerRepo, mediaStore, userRepo, authenticationService, emailDispatcher, null, executor));
+        assertThrows(() -> new ProvisionApplicationOperation(appRepo, followerRepo, mediaStore, userRepo, authenticationService, emailDispatcher, appTokenMapper, null));
     }
 
     @Test
@@ -171,11 +191,12 @@ public class ProvisionApplicationOperationTest
         assertThat(authRequestMade.desiredTokenType, is(TokenType.APPLICATION));
         assertThat(authRequestMade.ownerName, is(savedApp.name));
 
-        verify(mediaRepo).saveMedia(savedApp.applicationIconMediaId, request.icon);
+        verify(mediaStore).store(request.icon);
+        assertThat(savedApp.applicationIconMediaId, is(iconId));
 
         verify(followerRepo).saveFollowing(user, savedApp);
 
-        verify(emailService).sendEmail(emailCaptor.capture());
+        verify(emailDispatcher).dispatch(emailCaptor.capture());
         SendEmailRequest emailRequest = emailCaptor.getValue();
         verifyEmailRequest(emailRequest, savedApp);
     }
@@ -201,7 +222,20 @@ public class ProvisionApplicationOperationTest
         assertThat(savedApp.timeOfTokenExpiration, is(appToken.timeOfExpiration));
         assertThat(savedApp.isSetApplicationIconMediaId(), is(false));
 
-        verifyZeroInteractions(mediaRepo);
+        verifyZeroInteractions(mediaStore);
+    }
+
+    @Test
+    public void testWhenAppIconIsRejected() throws Exception
+    {
+        when(mediaStore.store(request.icon))
+                .thenThrow(new InvalidArgumentException());
+
+        assertThrows(() -> instance.process(request))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        verify(appRepo, never()).saveApplication(any(Application.class));
+        verify(authenticationService).invalidateToken(new InvalidateTokenRequest().setToken(authToken));
     }
 
     @Test
@@ -212,6 +246,10 @@ public class ProvisionApplicationOperationTest
 
         assertThrows(() -> instance.process(request))
                 .isInstanceOf(UserDoesNotExistException.class);
+
+        verify(appRepo, never()).saveApplication(any(Application.class));
+        verify(mediaStore).release(iconId);
+        verify(authenticationService).invalidateToken(new InvalidateTokenRequest().setToken(authToken));
     }
 
     @Test
@@ -223,6 +261,100 @@ public class ProvisionApplicationOperationTest
 
         assertThrows(() -> instance.process(request))
                 .isInstanceOf(OperationFailedException.class);
+
+        verify(mediaStore).release(iconId);
+        verify(authenticationService).invalidateToken(new InvalidateTokenRequest().setToken(authToken));
+        verifyZeroInteractions(followerRepo, emailDispatcher);
+    }
+
+    @Test
+    public void testWhenEmailCannotBeDispatched() throws Exception
+    {
+        doThrow(new OperationFailedException())
+                .when(emailDispatcher)
+                .dispatch(Mockito.any());
+
+        ProvisionApplicationResponse response = instance.process(request);
+        assertThat(response.applicationToken, is(appToken));
+
+        verify(appRepo).saveApplication(response.applicationInfo);
+    }
+
+    @Test
+    public void testWhenTokenCreationFails() throws Exception
+    {
+        when(authenticationService.createToken(Mockito.any()))
+                .thenThrow(new OperationFailedException());
+
+        assertThrows(() -> instance.process(request))
+                .isInstanceOf(OperationFailedException.class);
+
+        verify(appRepo, never()).saveApplication(any(Application.class));
+        verify(mediaStore).release(iconId);
+        verify(authenticationService, never()).invalidateToken(Mockito.any());
+    }
+
+    @Test
+    public void testWhenOwnerCannotBeFound() throws Exception
+    {
+        String missingOwner = one(uuids);
+        request.owners.add(missingOwner);
+
+        when(userRepo.getUser(missingOwner))
+                .thenThrow(UserDoesNotExistException.class);
+
+        ProvisionApplicationResponse response = instance.process(request);
+        assertThat(response.applicationInfo.owners, hasItem(missingOwner));
+
+        verify(followerRepo).saveFollowing(user, response.applicationInfo);
+    }
+
+    @Test
+    public void testWhenOwnerCannotBeSavedAsFollower() throws Exception
+    {
+        User otherOwner = one(pojos(User.class)).setUserId(one(uuids));
+        when(userRepo.getUser(otherOwner.userId)).thenReturn(otherOwner);
+        request.setOwners(Sets.createFrom(otherOwner.userId));
+
+        doThrow(new OperationFailedException())
+                .when(followerRepo)
+                .saveFollowing(eq(user), Mockito.any());
+
+        ProvisionApplicationResponse response = instance.process(request);
+        assertThat(response.applicationToken, is(appToken));
+
+        //The other Owner is still saved, before the response
+        verify(followerRepo).saveFollowing(otherOwner, response.applicationInfo);
+        verify(emailDispatcher).dispatch(Mockito.any());
+    }
+
+    @DontRepeat
+    @Test
+    public void testProcessRunsStepsConcurrently() throws Exception
+    {
+        long delay = 300;
+
+        when(mediaStore.store(request.icon))
+                .thenAnswer(delayed(delay, iconId));
+
+        when(authenticationService.createToken(Mockito.any()))
+                .thenAnswer(delayed(delay, new CreateTokenResponse(authToken)));
+
+        when(userRepo.getUser(userId))
+                .thenAnswer(delayed(delay, user));
+
+        doAnswer(delayed(delay, null))
+                .when(followerRepo)
+                .saveFollowing(Mockito.any(), Mockito.any());
+
+        long start = System.currentTimeMillis();
+        ProvisionApplicationResponse response = instance.process(request);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertThat(response.applicationToken, is(appToken));
+
+        //The slowest step, then the followers all at once, rather than the sum of them
+        assertThat(elapsed, lessThan(3 * delay));
     }
 
     @DontRepeat
@@ -272,6 +404,15 @@ public class ProvisionApplicationOperationTest
         }
     }
 
+    private static <T> Answer<T> delayed(long millis, T result)
+    {
+        return invocation ->
+        {
+            Thread.sleep(millis);
+            return result;
+        };
+    }
+
     private void setupData()
     {
         request.token.unsetUserId();
@@ -291,6 +432,9 @@ public class ProvisionApplicationOperationTest
 
         when(userRepo.getUser(userId)).thenReturn(user);
 
+        when(mediaStore.store(request.icon))
+                .thenReturn(iconId);
+
         when(appTokenMapper.apply(authToken))
                 .thenReturn(appToken);
 
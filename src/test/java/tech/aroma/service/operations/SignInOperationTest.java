@@ -18,6 +18,7 @@ package tech.aroma.service.operations;
 
 import java.util.function.Function;
 
+import com.codahale.metrics.MetricRegistry;
 import org.apache.thrift.TException;
 import org.junit.Before;
 import org.junit.Test;
@@ -27,6 +28,8 @@ import tech.aroma.data.CredentialRepository;
 import tech.aroma.data.UserRepository;
 import tech.aroma.service.operations.encryption.AromaPasswordEncryptor;
 import tech.aroma.service.operations.encryption.OverTheWireDecryptor;
+import tech.aroma.service.operations.encryption.PasswordHashingExecutor;
+import tech.aroma.service.operations.users.UserDirectory;
 import tech.aroma.thrift.User;
 import tech.aroma.thrift.authentication.*;
 import tech.aroma.thrift.authentication.service.*;
@@ -38,11 +41,14 @@ import tech.sirwellington.alchemy.test.junit.runners.*;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
 import static tech.sirwellington.alchemy.generator.PeopleGenerators.emails;
 import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.HEXADECIMAL;
 import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
 
 /**
@@ -71,6 +77,10 @@ public class SignInOperationTest
     @Mock
     private UserRepository userRepo;
 
+    private PasswordHashingExecutor hashingExecutor;
+
+    private UserDirectory userDirectory;
+
     @GeneratePojo
     private User user;
 
@@ -89,6 +99,9 @@ public class SignInOperationTest
     @GenerateString(UUID)
     private String orgId;
 
+    @GenerateString(HEXADECIMAL)
+    private String newDigest;
+
     @Captor
     private ArgumentCaptor<CreateTokenRequest> captor;
 
@@ -103,7 +116,10 @@ public class SignInOperationTest
     @Before
     public void setUp() throws TException
     {
-        instance = new SignInOperation(authenticationService, tokenMapper, credentialsRepo, decryptor, encryptor, userRepo);
+        hashingExecutor = PasswordHashingExecutor.newInstance(new MetricRegistry());
+        userDirectory = UserDirectory.newInstance(userRepo, new MetricRegistry());
+
+        instance = new SignInOperation(authenticationService, tokenMapper, credentialsRepo, decryptor, encryptor, hashingExecutor, userDirectory);
         verifyZeroInteractions(authenticationService, tokenMapper, credentialsRepo, decryptor, encryptor, userRepo);
 
         setupData();
@@ -114,22 +130,25 @@ public class SignInOperationTest
     @Test
     public void testConstructor()
     {
-        assertThrows(() -> new SignInOperation(null, tokenMapper, credentialsRepo, decryptor, encryptor, userRepo))
+        assertThrows(() -> new SignInOperation(null, tokenMapper, credentialsRepo, decryptor, encryptor, hashingExecutor, userDirectory))
                 .isInstanceOf(IllegalArgumentException.class);
 
-        assertThrows(() -> new SignInOperation(authenticationService, null, credentialsRepo, decryptor, encryptor, userRepo))
+        assertThrows(() -> new SignInOperation(authenticationService, null, credentialsRepo, decryptor, encryptor, hashingExecutor, userDirectory))
                 .isInstanceOf(IllegalArgumentException.class);
 
-        assertThrows(() -> new SignInOperation(authenticationService, tokenMapper, null, decryptor, encryptor, userRepo))
+        assertThrows(() -> new SignInOperation(authenticationService, tokenMapper, null, decryptor, encryptor, hashingExecutor, userDirectory))
                 .isInstanceOf(IllegalArgumentException.class);
 
-        assertThrows(() -> new SignInOperation(authenticationService, tokenMapper, credentialsRepo, null, encryptor, userRepo))
+        assertThrows(() -> new SignInOperation(authenticationService, tokenMapper, credentialsRepo, null, encryptor, hashingExecutor, userDirectory))
                 .isInstanceOf(IllegalArgumentException.class);
 
-        assertThrows(() -> new SignInOperation(authenticationService, tokenMapper, credentialsRepo, decryptor, null, userRepo))
+        assertThrows(() -> new SignInOperation(authenticationService, tokenMapper, credentialsRepo, decryptor, null, hashingExecutor, userDirectory))
                 .isInstanceOf(IllegalArgumentException.class);
 
-        assertThrows(() -> new SignInOperation(authenticationService, tokenMapper, credentialsRepo, decryptor, encryptor, null))
+        assertThrows(() -> new SignInOperation(authenticationService, tokenMapper, credentialsRepo, decryptor, encryptor, null, userDirectory))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThrows(() -> new SignInOperation(authenticationService, tokenMapper, credentialsRepo, decryptor, encryptor, hashingExecutor, null))
                 .isInstanceOf(IllegalArgumentException.class);
     }
 
@@ -200,6 +219,108 @@ public class SignInOperationTest
                 .isInstanceOf(OperationFailedException.class);
     }
 
+    @Test
+    public void testProcessUpgradesOutdatedDigest() throws Exception
+    {
+        when(encryptor.needsRehash(password.encryptedPassword))
+                .thenReturn(true);
+
+        when(encryptor.encryptPassword(password.encryptedPassword))
+                .thenReturn(newDigest);
+
+        SignInResponse response = instance.process(request);
+        assertThat(response.userToken, is(userToken));
+
+        verify(credentialsRepo, timeout(1_000)).saveEncryptedPassword(userId, newDigest);
+    }
+
+    @Test
+    public void testProcessDoesNotWaitForDigestUpgrade() throws Exception
+    {
+        PasswordHashingExecutor executor = mock(PasswordHashingExecutor.class);
+
+        when(executor.execute(anyString(), any()))
+                .thenReturn(true);
+
+        when(encryptor.needsRehash(password.encryptedPassword))
+                .thenReturn(true);
+
+        instance = new SignInOperation(authenticationService, tokenMapper, credentialsRepo, decryptor, encryptor, executor, userDirectory);
+
+        SignInResponse response = instance.process(request);
+        assertThat(response.userToken, is(userToken));
+
+        verify(executor, times(1)).execute(anyString(), any());
+        verify(executor).executeLater(eq(request.emailAddress), any());
+        verify(encryptor, never()).encryptPassword(anyString());
+    }
+
+    @Test
+    public void testProcessWhenDigestUpgradeIsRejected() throws Exception
+    {
+        PasswordHashingExecutor executor = mock(PasswordHashingExecutor.class);
+
+        when(executor.execute(anyString(), any()))
+                .thenReturn(true);
+
+        doThrow(new OperationFailedException())
+                .when(executor)
+                .executeLater(anyString(), any());
+
+        when(encryptor.needsRehash(password.encryptedPassword))
+                .thenReturn(true);
+
+        instance = new SignInOperation(authenticationService, tokenMapper, credentialsRepo, decryptor, encryptor, executor, userDirectory);
+
+        SignInResponse response = instance.process(request);
+        assertThat(response.userToken, is(userToken));
+
+        verify(credentialsRepo, never()).saveEncryptedPassword(anyString(), anyString());
+    }
+
+    @Test
+    public void testProcessWhenDigestIsCurrent() throws Exception
+    {
+        instance.process(request);
+
+        verify(encryptor, never()).encryptPassword(anyString());
+        verify(credentialsRepo, never()).saveEncryptedPassword(anyString(), anyString());
+    }
+
+    @Test
+    public void testProcessWhenDigestUpgradeFails() throws Exception
+    {
+        when(encryptor.needsRehash(password.encryptedPassword))
+                .thenReturn(true);
+
+        when(encryptor.encryptPassword(password.encryptedPassword))
+                .thenReturn(newDigest);
+
+        doThrow(new OperationFailedException())
+                .when(credentialsRepo)
+                .saveEncryptedPassword(userId, newDigest);
+
+        SignInResponse response = instance.process(request);
+        assertThat(response.userToken, is(userToken));
+    }
+
+    @Test
+    public void testWhenHashingIsSaturated() throws Exception
+    {
+        PasswordHashingExecutor saturated = mock(PasswordHashingExecutor.class);
+
+        when(saturated.execute(anyString(), any()))
+                .thenThrow(new OperationFailedException());
+
+        instance = new SignInOperation(authenticationService, tokenMapper, credentialsRepo, decryptor, encryptor, saturated, userDirectory);
+
+        assertThrows(() -> instance.process(request))
+                .isInstanceOf(OperationFailedException.class);
+
+        verify(encryptor, never()).match(anyString(), anyString());
+        verifyZeroInteractions(authenticationService);
+    }
+
     @DontRepeat
     @Test
     public void testProcessWithBadArgs()
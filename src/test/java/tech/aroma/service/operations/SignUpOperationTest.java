@@ -16,16 +16,26 @@
 
 package tech.aroma.service.operations;
 
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
+import com.codahale.metrics.MetricRegistry;
 import org.apache.thrift.TException;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.*;
+import org.mockito.stubbing.Answer;
 import tech.aroma.data.*;
+import tech.aroma.service.ClientAddress;
 import tech.aroma.service.operations.encryption.AromaPasswordEncryptor;
 import tech.aroma.service.operations.encryption.OverTheWireDecryptor;
+import tech.aroma.service.operations.encryption.PasswordHashingExecutor;
+import tech.aroma.service.operations.encryption.PasswordHashingExecutor.PasswordTask;
+import tech.aroma.service.operations.media.MediaStore;
+import tech.aroma.service.operations.users.UserDirectory;
 import tech.aroma.thrift.Image;
 import tech.aroma.thrift.User;
 import tech.aroma.thrift.authentication.*;
@@ -39,6 +49,7 @@ import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
 import static tech.sirwellington.alchemy.generator.PeopleGenerators.emails;
@@ -57,7 +68,7 @@ public class SignUpOperationTest
     private CredentialRepository credentialRepo;
 
     @Mock
-    private MediaRepository mediaRepo;
+    private MediaStore mediaStore;
 
     @Mock
     private UserRepository userRepo;
@@ -95,6 +106,12 @@ public class SignUpOperationTest
     @GeneratePojo
     private UserToken userToken;
 
+    private PasswordHashingExecutor hashingExecutor;
+
+    private UserDirectory userDirectory;
+
+    private ExecutorService executor;
+
     private SignUpOperation instance;
 
     @Captor
@@ -107,10 +124,17 @@ public class SignUpOperationTest
 
     private String fullName;
 
+    @GenerateString(UUID)
+    private String profileImageId;
+
     @Before
     public void setUp() throws TException
     {
-        instance = new SignUpOperation(authenticationService, credentialRepo, mediaRepo, userRepo, tokenMapper, decryptor, encryptor);
+        hashingExecutor = PasswordHashingExecutor.newInstance(new MetricRegistry());
+        userDirectory = UserDirectory.newInstance(userRepo, new MetricRegistry());
+        executor = Executors.newFixedThreadPool(4);
+
+        instance = new SignUpOperation(authenticationService, credentialRepo, mediaStore, userRepo, tokenMapper, decryptor, encryptor, hashingExecutor, userDirectory, executor);
 
         verifyZeroInteractions(authenticationService, credentialRepo, userRepo, tokenMapper, decryptor, encryptor);
 
@@ -118,17 +142,27 @@ public class SignUpOperationTest
         setupMock();
     }
 
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+        ClientAddress.clear();
+    }
+
     @DontRepeat
     @Test
     public void testConstrutor() throws Exception
     {
-        assertThrows(() -> new SignUpOperation(null, credentialRepo, mediaRepo, userRepo, tokenMapper, decryptor, encryptor));
-        assertThrows(() -> new SignUpOperation(authenticationService, null, mediaRepo, userRepo, tokenMapper, decryptor, encryptor));
-        assertThrows(() -> new SignUpOperation(authenticationService, credentialRepo, null, userRepo, tokenMapper, decryptor, encryptor));
-        assertThrows(() -> new SignUpOperation(authenticationService, credentialRepo, mediaRepo, null, tokenMapper, decryptor, encryptor));
-        assertThrows(() -> new SignUpOperation(authenticationService, credentialRepo, mediaRepo, userRepo, null, decryptor, encryptor));
-        assertThrows(() -> new SignUpOperation(authenticationService, credentialRepo, mediaRepo, userRepo, tokenMapper, null, encryptor));
-        assertThrows(() -> new SignUpOperation(authenticationService, credentialRepo, mediaRepo, userRepo, tokenMapper, decryptor, null));
+        assertThrows(() -> new SignUpOperation(null, credentialRepo, mediaStore, userRepo, tokenMapper, decryptor, encryptor, hashingExecutor, userDirectory, executor));
+        assertThrows(() -> new SignUpOperation(authenticationService, null, mediaStore, userRepo, tokenMapper, decryptor, encryptor, hashingExecutor, userDirectory, executor));
+        assertThrows(() -> new SignUpOperation(authenticationService, credentialRepo, null, userRepo, tokenMapper, decryptor, encryptor, hashingExecutor, userDirectory, executor));
+        assertThrows(() -> new SignUpOperation(authenticationService, credentialRepo, mediaStore, null, tokenMapper, decryptor, encryptor, hashingExecutor, userDirectory, executor));
+        assertThrows(() -> new SignUpOperation(authenticationService, credentialRepo, mediaStore, userRepo, null, decryptor, encryptor, hashingExecutor, userDirectory, executor));
+        assertThrows(() -> new SignUpOperation(authenticationService, credentialRepo, mediaStore, userRepo, tokenMapper, null, encryptor, hashingExecutor, userDirectory, executor));
+        assertThrows(() -> new SignUpOperation(authenticationService, credentialRepo, mediaStore, userRepo, tokenMapper, decryptor, null, hashingExecutor, userDirectory, executor));
+        assertThrows(() -> new SignUpOperation(authenticationService, credentialRepo, mediaStore, userRepo, tokenMapper, decryptor, encryptor, null, userDirectory, executor));
+        assertThrows(() -> new SignUpOperation(authenticationService, credentialRepo, mediaStore, userRepo, tokenMapper, decryptor, encryptor, hashingExecutor, null, executor));
+        assertThrows(() -> new SignUpOperation(authenticationService, credentialRepo, mediaStore, userRepo, tokenMapper, decryptor, encryptor, hashingExecutor, userDirectory, null));
     }
 
     @Test
@@ -157,15 +191,15 @@ public class SignUpOperationTest
         assertThat(requestMade.ownerId, is(savedUser.userId));
         assertThat(requestMade.desiredTokenType, is(TokenType.USER));
 
-        verify(mediaRepo).saveMedia(savedUser.userId, request.profileImage);
+        verify(mediaStore).store(request.profileImage);
+        assertThat(savedUser.profileImageLink, is(profileImageId));
     }
 
     @Test
-    public void testWhenMediaRepoFails() throws Exception
+    public void testWhenMediaStoreFails() throws Exception
     {
-        doThrow(new OperationFailedException())
-                .when(mediaRepo)
-                .saveMedia(anyString(), any(Image.class));
+        when(mediaStore.store(any(Image.class)))
+                .thenThrow(new OperationFailedException());
 
         SignUpResponse response = instance.process(request);
 
@@ -243,7 +277,7 @@ public class SignUpOperationTest
         assertThrows(() -> instance.process(request))
                 .isInstanceOf(OperationFailedException.class);
 
-        verify(userRepo, never()).saveUser(any(User.class));
+        verifyCompletedStepsWereUndone();
     }
 
     @Test
@@ -255,7 +289,7 @@ public class SignUpOperationTest
         assertThrows(() -> instance.process(request))
                 .isInstanceOf(OperationFailedException.class);
 
-        verify(userRepo, never()).saveUser(any(User.class));
+        verifyCompletedStepsWereUndone();
     }
 
     @Test
@@ -267,11 +301,145 @@ public class SignUpOperationTest
         assertThrows(() -> instance.process(request))
                 .isInstanceOf(OperationFailedException.class);
 
-        verify(userRepo, never()).saveUser(any(User.class));
+        verifyCompletedStepsWereUndone();
+    }
+
+    @DontRepeat
+    @Test
+    public void testProcessRunsStepsConcurrently() throws Exception
+    {
+        long delay = 300;
+
+        when(decryptor.decrypt(overTheWirePassword))
+                .thenAnswer(delayed(delay, password));
+
+        when(mediaStore.store(any(Image.class)))
+                .thenAnswer(delayed(delay, profileImageId));
+
+        when(authenticationService.createToken(any(CreateTokenRequest.class)))
+                .thenAnswer(delayed(delay, authResponse));
+
+        long start = System.currentTimeMillis();
+        SignUpResponse response = instance.process(request);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertThat(response.userToken, is(userToken));
+
+        //Close to the slowest step, rather than the sum of them
+        assertThat(elapsed, lessThan(2 * delay));
+    }
+
+    @Test
+    public void testWhenSavingUserFails() throws Exception
+    {
+        doThrow(new OperationFailedException())
+                .when(userRepo)
+                .saveUser(any(User.class));
+
+        assertThrows(() -> instance.process(request))
+                .isInstanceOf(OperationFailedException.class);
+
+        verify(credentialRepo).deleteEncryptedPassword(anyString());
+        verify(mediaStore).release(profileImageId);
+        verify(authenticationService).invalidateToken(any(InvalidateTokenRequest.class));
+        verify(userRepo, never()).deleteUser(anyString());
+    }
+
+    @Test
+    public void testWhenTokenCreationFails() throws Exception
+    {
+        when(authenticationService.createToken(any(CreateTokenRequest.class)))
+                .thenThrow(new OperationFailedException());
+
+        userDirectory = spy(userDirectory);
+        instance = new SignUpOperation(authenticationService, credentialRepo, mediaStore, userRepo, tokenMapper, decryptor, encryptor, hashingExecutor, userDirectory, executor);
+
+        assertThrows(() -> instance.process(request))
+                .isInstanceOf(OperationFailedException.class);
+
+        verify(userRepo).saveUser(userCaptor.capture());
+        String userId = userCaptor.getValue().userId;
+
+        verify(userRepo).deleteUser(userId);
+        verify(userDirectory).forget(request.email);
+        verify(credentialRepo).deleteEncryptedPassword(userId);
+        verify(authenticationService, never()).invalidateToken(any(InvalidateTokenRequest.class));
+    }
+
+    @Test
+    public void testPasswordIsHashedAsTheClient() throws Exception
+    {
+        String address = one(alphabeticStrings());
+        ClientAddress.set(address);
+
+        AtomicReference<String> addressWhileHashing = new AtomicReference<>();
+        PasswordHashingExecutor recordingExecutor = mock(PasswordHashingExecutor.class);
+
+        when(recordingExecutor.execute(anyString(), any()))
+                .then(invocation ->
+                {
+                    addressWhileHashing.set(ClientAddress.current());
+                    PasswordTask<?> task = (PasswordTask<?>) invocation.getArguments()[1];
+                    return task.call();
+                });
+
+        instance = new SignUpOperation(authenticationService, credentialRepo, mediaStore, userRepo, tokenMapper, decryptor, encryptor, recordingExecutor, userDirectory, executor);
+
+        instance.process(request);
+
+        //The per-address limit only applies if the hashing step knows the address
+        assertThat(addressWhileHashing.get(), is(address));
+        verify(recordingExecutor).execute(eq(request.email), any());
+    }
+
+    @Test
+    public void testWhenUndoingFails() throws Exception
+    {
+        when(authenticationService.createToken(any(CreateTokenRequest.class)))
+                .thenThrow(new InvalidArgumentException());
+
+        doThrow(new OperationFailedException())
+                .when(userRepo)
+                .deleteUser(anyString());
+
+        //The original failure is reported, not the failure to undo
+        assertThrows(() -> instance.process(request))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        verify(credentialRepo).deleteEncryptedPassword(anyString());
+    }
+
+    /**
+     * Steps that ran alongside a failed one must have been undone.
+     */
+    private void verifyCompletedStepsWereUndone() throws TException
+    {
+        verify(userRepo, atMost(1)).saveUser(userCaptor.capture());
+
+        for (User savedUser : userCaptor.getAllValues())
+        {
+            verify(userRepo).deleteUser(savedUser.userId);
+        }
+
+        verify(mediaStore).release(profileImageId);
+        verify(authenticationService).invalidateToken(any(InvalidateTokenRequest.class));
+        verify(credentialRepo, never()).deleteEncryptedPassword(anyString());
+    }
+
+    private static <T> Answer<T> delayed(long millis, T result)
+    {
+        return invocation ->
+        {
+            Thread.sleep(millis);
+            return result;
+        };
     }
 
     private void setupMock() throws TException
     {
+        when(mediaStore.store(any(Image.class)))
+                .thenReturn(profileImageId);
+
         when(authenticationService.createToken(any(CreateTokenRequest.class)))
                 .thenReturn(authResponse);
 
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations;
+
+import java.util.concurrent.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.service.ClientAddress;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class StepsTest
+{
+
+    private ExecutorService executor;
+
+    @GenerateString(ALPHABETIC)
+    private String result;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+        ClientAddress.clear();
+    }
+
+    @DontRepeat
+    @Test
+    public void testCannotInstantiate() throws Exception
+    {
+        assertThrows(() -> Steps.class.newInstance());
+    }
+
+    @Test
+    public void testSupply() throws Exception
+    {
+        CompletableFuture<String> step = Steps.supply(() -> result, executor);
+
+        assertThat(step.join(), is(result));
+        assertThat(Steps.succeeded(step), is(true));
+    }
+
+    @Test
+    public void testSupplyWhenStepFails() throws Exception
+    {
+        InvalidArgumentException failure = new InvalidArgumentException(result);
+        CompletableFuture<String> step = Steps.supply(() -> { throw failure; }, executor);
+
+        assertThrows(step::join)
+                .isInstanceOf(CompletionException.class);
+
+        assertThat(Steps.succeeded(step), is(false));
+        assertThat(Steps.firstFailureOf("test", step), sameInstance(failure));
+    }
+
+    @Test
+    public void testAsyncWhenStepFails() throws Exception
+    {
+        InvalidArgumentException failure = new InvalidArgumentException(result);
+        CompletableFuture<Void> step = Steps.async(() -> { throw failure; }, executor);
+
+        assertThrows(step::join)
+                .isInstanceOf(CompletionException.class);
+
+        assertThat(Steps.firstFailureOf("test", step), sameInstance(failure));
+    }
+
+    @Test
+    public void testStepsRunAsTheClient() throws Exception
+    {
+        ClientAddress.set(result);
+
+        assertThat(Steps.supply(ClientAddress::current, executor).join(), is(result));
+
+        CompletableFuture<String> seen = new CompletableFuture<>();
+        Steps.async(() -> seen.complete(ClientAddress.current()), executor).join();
+        assertThat(seen.join(), is(result));
+    }
+
+    @Test
+    public void testStepsRestoreTheAddress() throws Exception
+    {
+        ExecutorService sameThread = Executors.newSingleThreadExecutor();
+
+        try
+        {
+            ClientAddress.set(result);
+            Steps.supply(ClientAddress::current, sameThread).join();
+
+            ClientAddress.clear();
+            assertThat(Steps.supply(ClientAddress::current, sameThread).join(), nullValue());
+        }
+        finally
+        {
+            sameThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSucceededWhenIncomplete() throws Exception
+    {
+        assertThat(Steps.succeeded(new CompletableFuture<>()), is(false));
+    }
+
+    @Test
+    public void testFirstFailureOfIsInOrderGiven() throws Exception
+    {
+        InvalidArgumentException first = new InvalidArgumentException(result);
+        OperationFailedException second = new OperationFailedException(result);
+
+        CompletableFuture<String> succeeded = CompletableFuture.completedFuture(result);
+        CompletableFuture<String> firstFailed = new CompletableFuture<>();
+        firstFailed.completeExceptionally(new CompletionException(first));
+        CompletableFuture<String> secondFailed = new CompletableFuture<>();
+        secondFailed.completeExceptionally(new CompletionException(second));
+
+        assertThat(Steps.firstFailureOf("test", succeeded, firstFailed, secondFailed), sameInstance(first));
+        assertThat(Steps.firstFailureOf("test", secondFailed, firstFailed), sameInstance(second));
+    }
+
+    @Test
+    public void testFirstFailureOfWhenNotATException() throws Exception
+    {
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException(result));
+
+        assertThat(Steps.firstFailureOf("test", failed), instanceOf(OperationFailedException.class));
+    }
+
+}
@@ -24,6 +24,7 @@ import org.junit.runner.RunWith;
 import org.mockito.*;
 import sir.wellington.alchemy.collections.sets.Sets;
 import tech.aroma.data.*;
+import tech.aroma.service.operations.media.MediaStore;
 import tech.aroma.thrift.*;
 import tech.aroma.thrift.events.Event;
 import tech.aroma.thrift.exceptions.*;
@@ -38,6 +39,7 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
+import static tech.aroma.service.operations.activity.EventReferences.referenceTo;
 import static tech.aroma.thrift.generators.ApplicationGenerators.applications;
 import static tech.aroma.thrift.generators.ImageGenerators.appIcons;
 import static tech.aroma.thrift.generators.UserGenerators.users;
@@ -49,6 +51,7 @@ import static tech.sirwellington.alchemy.arguments.assertions.TimeAssertions.epo
 import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
 import static tech.sirwellington.alchemy.generator.EnumGenerators.enumValueOf;
 import static tech.sirwellington.alchemy.generator.StringGenerators.alphabeticStrings;
+import static tech.sirwellington.alchemy.generator.StringGenerators.uuids;
 import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
 import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
 import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
@@ -68,7 +71,7 @@ public class UpdateApplicationOperationTest
     private ApplicationRepository appRepo;
 
     @Mock
-    private MediaRepository mediaRepo;
+    private MediaStore mediaStore;
 
     @Mock
     private UserRepository userRepo;
@@ -101,8 +104,8 @@ public class UpdateApplicationOperationTest
     @Before
     public void setUp() throws Exception
     {
-        instance = new UpdateApplicationOperation(activityRepo, appRepo, mediaRepo, userRepo);
-        verifyZeroInteractions(activityRepo, appRepo, mediaRepo, userRepo);
+        instance = new UpdateApplicationOperation(activityRepo, appRepo, mediaStore, userRepo);
+        verifyZeroInteractions(activityRepo, appRepo, mediaStore, userRepo);
 
         setupData();
         setupMocks();
@@ -118,6 +121,7 @@ public class UpdateApplicationOperationTest
         oldApp.unsetOrganizationId();
         oldApp.owners.add(userId);
         oldApp.unsetIcon();
+        oldApp.setApplicationIconMediaId(one(uuids));
 
         newApp = new Application(oldApp);
 
@@ -137,9 +141,6 @@ public class UpdateApplicationOperationTest
             when(userRepo.containsUser(ownerId)).thenReturn(true);
         }
 
-        when(mediaRepo.containsMedia(oldApp.applicationIconMediaId))
-                .thenReturn(false);
-
         when(userRepo.getUser(userId)).thenReturn(user);
     }
 
@@ -147,10 +148,10 @@ public class UpdateApplicationOperationTest
     @Test
     public void testConstructor()
     {
-        assertThrows(() -> new UpdateApplicationOperation(null, appRepo, mediaRepo, userRepo));
-        assertThrows(() -> new UpdateApplicationOperation(activityRepo, null, mediaRepo, userRepo));
+        assertThrows(() -> new UpdateApplicationOperation(null, appRepo, mediaStore, userRepo));
+        assertThrows(() -> new UpdateApplicationOperation(activityRepo, null, mediaStore, userRepo));
         assertThrows(() -> new UpdateApplicationOperation(activityRepo, appRepo, null, userRepo));
-        assertThrows(() -> new UpdateApplicationOperation(activityRepo, appRepo, mediaRepo, null));
+        assertThrows(() -> new UpdateApplicationOperation(activityRepo, appRepo, mediaStore, null));
     }
 
     @Test
@@ -215,8 +216,12 @@ public class UpdateApplicationOperationTest
     public void testWhenAppIconChanges() throws Exception
     {
         Image newIcon = one(appIcons());
+        String newIconId = one(uuids);
         newApp.setIcon(newIcon);
 
+        when(mediaStore.store(newIcon))
+                .thenReturn(newIconId);
+
         UpdateApplicationResponse response = instance.process(request);
 
         verify(appRepo).saveApplication(captor.capture());
@@ -224,8 +229,27 @@ public class UpdateApplicationOperationTest
         Application savedApp = captor.getValue();
         assertThat(savedApp, is(newApp));
 
-        String newIconId = savedApp.applicationIconMediaId;
-        verify(mediaRepo).saveMedia(newIconId, newIcon);
+        assertThat(savedApp.applicationIconMediaId, is(newIconId));
+
+        InOrder inOrder = inOrder(mediaStore);
+        inOrder.verify(mediaStore).store(newIcon);
+        inOrder.verify(mediaStore).release(oldApp.applicationIconMediaId);
+    }
+
+    @Test
+    public void testWhenAppIconIsRejected() throws Exception
+    {
+        Image newIcon = one(appIcons());
+        newApp.setIcon(newIcon);
+
+        when(mediaStore.store(newIcon))
+                .thenThrow(new InvalidArgumentException());
+
+        assertThrows(() -> instance.process(request))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        verify(mediaStore, never()).release(any());
+        verify(appRepo, never()).saveApplication(any());
     }
 
     @Test
@@ -280,8 +304,8 @@ public class UpdateApplicationOperationTest
         checkThat(event.eventId).is(validUUID());
         checkThat(event.timestamp).is(epochNowWithinDelta(2000L));
         checkThat(event.userIdOfActor).is(equalTo(userId));
-        checkThat(event.actor).is(equalTo(user));
-        checkThat(event.application).is(equalTo(oldApp));
+        checkThat(event.actor).is(equalTo(referenceTo(user)));
+        checkThat(event.application).is(equalTo(referenceTo(oldApp)));
         checkThat(event.applicationId).is(equalTo(appId));
     }
 }
@@ -39,6 +39,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
+import static tech.aroma.service.operations.activity.EventReferences.referenceTo;
 import static tech.aroma.thrift.generators.ReactionGenerators.reactions;
 import static tech.aroma.thrift.generators.UserGenerators.users;
 import static tech.aroma.thrift.service.AromaServiceConstants.MAXIMUM_REACTIONS;
@@ -275,9 +276,9 @@ public class UpdateReactionsOperationTest
     {
         checkThat(event).is(notNull());
         checkThat(event.eventId).is(validUUID());
-        checkThat(event.actor).is(equalTo(user));
+        checkThat(event.actor).is(equalTo(referenceTo(user)));
         checkThat(event.userIdOfActor).is(equalTo(userId));
-        checkThat(event.application).is(equalTo(app));
+        checkThat(event.application).is(equalTo(referenceTo(app)));
         checkThat(event.applicationId).is(equalTo(appId));
         checkThat(event.timestamp).is(epochNowWithinDelta(4000L));
     }
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.activity;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import tech.aroma.data.ActivityRepository;
+import tech.aroma.data.FollowerRepository;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.events.Event;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static tech.aroma.thrift.generators.EventGenerators.events;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.CollectionGenerators.listOf;
+import static tech.sirwellington.alchemy.generator.ObjectGenerators.pojos;
+import static tech.sirwellington.alchemy.generator.StringGenerators.uuids;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class ActivityFeedsImplTest
+{
+
+    private static final int FANOUT_THRESHOLD = 5;
+    private static final long NEVER = 3_600;
+
+    @Mock
+    private ActivityRepository activityRepo;
+
+    @Mock
+    private FollowerRepository followerRepo;
+
+    private MetricRegistry metrics;
+
+    @GeneratePojo
+    private Event event;
+
+    @GeneratePojo
+    private User user;
+
+    @GenerateString(UUID)
+    private String appId;
+
+    private User appFeed;
+    private User feedIndex;
+
+    private List<User> owners;
+    private List<User> fewFollowers;
+    private List<User> manyFollowers;
+
+    private List<Event> ownEvents;
+    private List<Event> appEvents;
+
+    private ActivityFeedsImpl instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        metrics = new MetricRegistry();
+        appFeed = new User().setUserId(appId);
+        feedIndex = new User().setUserId(ActivityFeedsImpl.FEED_INDEX_ID);
+
+        owners = usersWithIds(2);
+        fewFollowers = usersWithIds(FANOUT_THRESHOLD);
+        manyFollowers = usersWithIds(FANOUT_THRESHOLD + 1);
+
+        ownEvents = eventsWithTimes(6);
+        appEvents = eventsWithTimes(4);
+
+        when(activityRepo.getAllEventsFor(user)).thenReturn(ownEvents);
+        when(activityRepo.getAllEventsFor(appFeed)).thenReturn(appEvents);
+        when(activityRepo.getAllEventsFor(feedIndex))
+                .thenReturn(asList(new Event().setEventId(appId).setApplicationId(appId)));
+        when(followerRepo.getApplicationsFollowedBy(user.userId))
+                .thenReturn(asList(new Application().setApplicationId(appId)));
+
+        instance = new ActivityFeedsImpl(activityRepo, followerRepo, metrics, FANOUT_THRESHOLD, NEVER);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new ActivityFeedsImpl(null, followerRepo, metrics));
+        assertThrows(() -> new ActivityFeedsImpl(activityRepo, null, metrics));
+        assertThrows(() -> new ActivityFeedsImpl(activityRepo, followerRepo, null));
+        assertThrows(() -> new ActivityFeedsImpl(activityRepo, followerRepo, metrics, 0, NEVER));
+        assertThrows(() -> new ActivityFeedsImpl(activityRepo, followerRepo, metrics, FANOUT_THRESHOLD, 0));
+    }
+
+    @Test
+    public void testPublishWithFewFollowers() throws Exception
+    {
+        instance.publish(event, appId, owners, fewFollowers);
+
+        for (User recipient : concat(owners, fewFollowers))
+        {
+            verify(activityRepo).saveEvent(event, recipient);
+        }
+
+        verify(activityRepo, never()).saveEvent(event, appFeed);
+        assertThat(counter("events-saved-for-users"), is((long) (owners.size() + fewFollowers.size())));
+    }
+
+    @Test
+    public void testPublishWithManyFollowers() throws Exception
+    {
+        instance.publish(event, appId, owners, manyFollowers);
+
+        verify(activityRepo).saveEvent(event, appFeed);
+        verify(activityRepo).saveEvent(any(), eq(feedIndex));
+
+        for (User owner : owners)
+        {
+            verify(activityRepo).saveEvent(event, owner);
+        }
+
+        for (User follower : manyFollowers)
+        {
+            verify(activityRepo, never()).saveEvent(event, follower);
+        }
+
+        assertThat(counter("events-saved-to-feeds"), is(1L));
+    }
+
+    @Test
+    public void testPublishMarksFeedOnce() throws Exception
+    {
+        instance.publish(event, appId, owners, manyFollowers);
+        instance.publish(event, appId, owners, manyFollowers);
+
+        verify(activityRepo, times(2)).saveEvent(event, appFeed);
+        verify(activityRepo, times(1)).saveEvent(any(), eq(feedIndex));
+    }
+
+    @Test
+    public void testPublishWithFewFollowersDoesNotMarkFeed() throws Exception
+    {
+        instance.publish(event, appId, owners, fewFollowers);
+
+        verify(activityRepo, never()).saveEvent(any(), eq(feedIndex));
+    }
+
+    @Test
+    public void testPublishMarksFeedAgainAfterFailure() throws Exception
+    {
+        doThrow(new OperationFailedException())
+                .doNothing()
+                .when(activityRepo)
+                .saveEvent(any(), eq(feedIndex));
+
+        instance.publish(event, appId, owners, manyFollowers);
+        instance.publish(event, appId, owners, manyFollowers);
+        instance.publish(event, appId, owners, manyFollowers);
+
+        verify(activityRepo, times(2)).saveEvent(any(), eq(feedIndex));
+    }
+
+    @Test
+    public void testPublishToOwnerWhoFollows() throws Exception
+    {
+        List<User> followers = concat(fewFollowers.subList(1, fewFollowers.size()), owners.subList(0, 1));
+
+        instance.publish(event, appId, owners, followers);
+
+        verify(activityRepo, times(1)).saveEvent(event, owners.get(0));
+    }
+
+    @Test
+    public void testPublishWhenRepoFails() throws Exception
+    {
+        doThrow(new OperationFailedException())
+                .when(activityRepo)
+                .saveEvent(any(), any());
+
+        instance.publish(event, appId, owners, manyFollowers);
+        instance.publish(event, appId, owners, fewFollowers);
+    }
+
+    @DontRepeat
+    @Test
+    public void testPublishWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.publish(null, appId, owners, fewFollowers));
+        assertThrows(() -> instance.publish(event, "", owners, fewFollowers));
+        assertThrows(() -> instance.publish(event, appId, null, fewFollowers));
+        assertThrows(() -> instance.publish(event, appId, owners, null));
+    }
+
+    @Test
+    public void testGetActivityFor() throws Exception
+    {
+        List<Event> results = instance.getActivityFor(user);
+
+        assertThat(results, containsInAnyOrder(concat(ownEvents, appEvents).toArray()));
+        assertThat(results, is(newestFirst(results)));
+    }
+
+    @Test
+    public void testGetActivityForLeavesOutDuplicates() throws Exception
+    {
+        ownEvents.add(appEvents.get(0));
+
+        List<Event> results = instance.getActivityFor(user);
+
+        assertThat(results.size(), is(ownEvents.size() + appEvents.size() - 1));
+    }
+
+    @Test
+    public void testGetActivityForRemembersFeeds() throws Exception
+    {
+        instance.getActivityFor(user);
+        instance.getActivityFor(user);
+
+        verify(activityRepo, times(1)).getAllEventsFor(appFeed);
+        verify(activityRepo, times(2)).getAllEventsFor(user);
+    }
+
+    @Test
+    public void testPublishRefreshesFeed() throws Exception
+    {
+        instance.getActivityFor(user);
+        instance.publish(event, appId, owners, manyFollowers);
+        instance.getActivityFor(user);
+
+        verify(activityRepo, times(2)).getAllEventsFor(appFeed);
+    }
+
+    @Test
+    public void testGetActivityForSkipsApplicationsWithoutFeeds() throws Exception
+    {
+        when(activityRepo.getAllEventsFor(feedIndex)).thenReturn(new ArrayList<>());
+
+        List<Event> results = instance.getActivityFor(user);
+
+        assertThat(results, is(newestFirst(ownEvents)));
+        verify(activityRepo, never()).getAllEventsFor(appFeed);
+        assertThat(counter("feed-reads-skipped"), is(1L));
+    }
+
+    @Test
+    public void testGetActivityForReadsFeedsItMarked() throws Exception
+    {
+        when(activityRepo.getAllEventsFor(feedIndex)).thenReturn(new ArrayList<>());
+
+        instance.getActivityFor(user);
+        instance.publish(event, appId, owners, manyFollowers);
+        List<Event> results = instance.getActivityFor(user);
+
+        assertThat(results, containsInAnyOrder(concat(ownEvents, appEvents).toArray()));
+    }
+
+    @Test
+    public void testGetActivityForRemembersFeedIndex() throws Exception
+    {
+        instance.getActivityFor(user);
+        instance.getActivityFor(user);
+
+        verify(activityRepo, times(1)).getAllEventsFor(feedIndex);
+    }
+
+    @Test
+    public void testGetActivityForWhenFeedIndexCannotBeRead() throws Exception
+    {
+        when(activityRepo.getAllEventsFor(feedIndex))
+                .thenThrow(new OperationFailedException());
+
+        List<Event> results = instance.getActivityFor(user);
+
+        assertThat(results, containsInAnyOrder(concat(ownEvents, appEvents).toArray()));
+    }
+
+    @Test
+    public void testGetActivityForWhenFollowingCannotBeRead() throws Exception
+    {
+        when(followerRepo.getApplicationsFollowedBy(user.userId))
+                .thenThrow(new OperationFailedException());
+
+        List<Event> results = instance.getActivityFor(user);
+
+        assertThat(results, is(newestFirst(ownEvents)));
+    }
+
+    @Test
+    public void testGetActivityForWhenFeedCannotBeRead() throws Exception
+    {
+        when(activityRepo.getAllEventsFor(appFeed))
+                .thenThrow(new OperationFailedException());
+
+        List<Event> results = instance.getActivityFor(user);
+
+        assertThat(results, is(newestFirst(ownEvents)));
+    }
+
+    @Test
+    public void testGetActivityForWhenRepoFails() throws Exception
+    {
+        when(activityRepo.getAllEventsFor(user))
+                .thenThrow(new OperationFailedException());
+
+        assertThrows(() -> instance.getActivityFor(user))
+                .isInstanceOf(OperationFailedException.class);
+    }
+
+    @Test
+    public void testDropFeedOf() throws Exception
+    {
+        instance.getActivityFor(user);
+        instance.dropFeedOf(appId);
+
+        verify(activityRepo).deleteAllEventsFor(appFeed);
+
+        instance.getActivityFor(user);
+        verify(activityRepo, times(2)).getAllEventsFor(appFeed);
+    }
+
+    @Test
+    public void testMergeNewestFirst() throws Exception
+    {
+        List<Event> first = newestFirst(eventsWithTimes(10));
+        List<Event> second = newestFirst(eventsWithTimes(3));
+        List<Event> third = new ArrayList<>();
+
+        List<Event> results = ActivityFeedsImpl.mergeNewestFirst(asList(first, second, third));
+
+        assertThat(results, is(newestFirst(concat(first, second))));
+    }
+
+    @DontRepeat
+    @Test
+    public void testMergeNewestFirstWithNoFeeds() throws Exception
+    {
+        assertThat(ActivityFeedsImpl.mergeNewestFirst(new ArrayList<>()), is(empty()));
+    }
+
+    private long counter(String metric)
+    {
+        return metrics.counter(name(ActivityFeeds.class, metric)).getCount();
+    }
+
+    private static List<User> usersWithIds(int count)
+    {
+        List<User> users = listOf(pojos(User.class), count);
+        users.forEach(user -> user.setUserId(one(uuids)));
+        return users;
+    }
+
+    private static List<Event> eventsWithTimes(int count)
+    {
+        List<Event> events = new ArrayList<>(listOf(events(), count));
+        events.forEach(event -> event.setEventId(one(uuids))
+                                     .setTimestamp(ThreadLocalRandom.current().nextLong()));
+        return events;
+    }
+
+    private static List<Event> newestFirst(List<Event> events)
+    {
+        return events.stream()
+                     .sorted(Comparator.comparingLong((Event event) -> event.timestamp).reversed())
+                     .collect(toList());
+    }
+
+    private static <T> List<T> concat(List<T> first, List<T> second)
+    {
+        List<T> result = new ArrayList<>(first);
+        result.addAll(second);
+        return result;
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.activity;
+
+import java.util.List;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import tech.aroma.data.ApplicationRepository;
+import tech.aroma.data.UserRepository;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.events.Event;
+import tech.aroma.thrift.exceptions.ApplicationDoesNotExistException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.Collections.emptyList;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+import static tech.aroma.service.operations.activity.EventReferences.referenceTo;
+import static tech.aroma.thrift.generators.EventGenerators.events;
+import static tech.sirwellington.alchemy.generator.CollectionGenerators.listOf;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class EventHydratorImplTest
+{
+
+    @Mock
+    private ApplicationRepository appRepo;
+
+    @Mock
+    private UserRepository userRepo;
+
+    private MetricRegistry metrics;
+
+    @GeneratePojo
+    private Application app;
+
+    @GeneratePojo
+    private User user;
+
+    @GenerateString(UUID)
+    private String appId;
+
+    @GenerateString(UUID)
+    private String userId;
+
+    private List<Event> events;
+
+    private Application expectedApp;
+    private User expectedUser;
+
+    private EventHydratorImpl instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        metrics = new MetricRegistry();
+
+        app.applicationId = appId;
+        user.userId = userId;
+
+        expectedApp = app.deepCopy();
+        expectedApp.unsetIcon();
+
+        expectedUser = user.deepCopy();
+        expectedUser.unsetProfileImage();
+
+        events = listOf(events(), 5);
+        events.forEach(event -> event.setApplicationId(appId)
+                                     .setApplication(referenceTo(app))
+                                     .setUserIdOfActor(userId)
+                                     .setActor(referenceTo(user)));
+
+        when(appRepo.getById(appId)).thenReturn(app);
+        when(userRepo.getUser(userId)).thenReturn(user);
+
+        instance = new EventHydratorImpl(appRepo, userRepo, metrics);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new EventHydratorImpl(null, userRepo, metrics));
+        assertThrows(() -> new EventHydratorImpl(appRepo, null, metrics));
+        assertThrows(() -> new EventHydratorImpl(appRepo, userRepo, null));
+        assertThrows(() -> new EventHydratorImpl(appRepo, userRepo, metrics, 0));
+    }
+
+    @Test
+    public void testHydrate() throws Exception
+    {
+        List<Event> results = instance.hydrate(events);
+
+        assertThat(results.size(), is(events.size()));
+
+        for (int i = 0; i < results.size(); ++i)
+        {
+            Event result = results.get(i);
+
+            assertThat(result.eventId, is(events.get(i).eventId));
+            assertThat(result.application, is(expectedApp));
+            assertThat(result.actor, is(expectedUser));
+        }
+
+        verify(appRepo, times(1)).getById(appId);
+        verify(userRepo, times(1)).getUser(userId);
+    }
+
+    @Test
+    public void testHydrateDoesNotModifyEvents() throws Exception
+    {
+        instance.hydrate(events);
+
+        for (Event event : events)
+        {
+            assertThat(event.application, is(referenceTo(app)));
+            assertThat(event.actor, is(referenceTo(user)));
+        }
+    }
+
+    @Test
+    public void testHydrateRemembersWhatItLoaded() throws Exception
+    {
+        instance.hydrate(events);
+        instance.hydrate(events);
+
+        verify(appRepo, times(1)).getById(appId);
+        verify(userRepo, times(1)).getUser(userId);
+
+        assertThat(metrics.counter(name(EventHydrator.class, "misses")).getCount(), is(2L));
+        assertThat(metrics.counter(name(EventHydrator.class, "hits")).getCount(), is(2L));
+    }
+
+    @Test
+    public void testHydrateWhenApplicationIsGone() throws Exception
+    {
+        when(appRepo.getById(appId))
+                .thenThrow(new ApplicationDoesNotExistException());
+
+        List<Event> results = instance.hydrate(events);
+
+        for (Event result : results)
+        {
+            assertThat(result.application, is(referenceTo(app)));
+            assertThat(result.actor, is(expectedUser));
+        }
+    }
+
+    @Test
+    public void testHydrateWhenEventsHaveNoReferences() throws Exception
+    {
+        events.forEach(event -> event.setApplicationId(null)
+                                     .setApplication(null)
+                                     .setUserIdOfActor(null)
+                                     .setActor(null));
+
+        List<Event> results = instance.hydrate(events);
+
+        assertThat(results, is(events));
+        verifyZeroInteractions(appRepo, userRepo);
+    }
+
+    @DontRepeat
+    @Test
+    public void testHydrateWithNoEvents() throws Exception
+    {
+        assertThat(instance.hydrate(emptyList()), is(empty()));
+        verifyZeroInteractions(appRepo, userRepo);
+    }
+
+    @DontRepeat
+    @Test
+    public void testHydrateWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.hydrate(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
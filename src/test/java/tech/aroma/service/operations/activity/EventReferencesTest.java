@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.activity;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class EventReferencesTest
+{
+
+    @GeneratePojo
+    private Application app;
+
+    @GeneratePojo
+    private User user;
+
+    @Test
+    public void testReferenceToApplication() throws Exception
+    {
+        Application result = EventReferences.referenceTo(app);
+
+        assertThat(result.applicationId, is(app.applicationId));
+        assertThat(result.name, is(app.name));
+        assertThat(result.isSetOwners(), is(false));
+        assertThat(result.isSetIcon(), is(false));
+    }
+
+    @Test
+    public void testReferenceToUser() throws Exception
+    {
+        User result = EventReferences.referenceTo(user);
+
+        assertThat(result.userId, is(user.userId));
+        assertThat(result.name, is(user.name));
+        assertThat(result.firstName, is(user.firstName));
+        assertThat(result.lastName, is(user.lastName));
+        assertThat(result.isSetEmail(), is(false));
+        assertThat(result.isSetProfileImage(), is(false));
+    }
+
+    @DontRepeat
+    @Test
+    public void testReferenceToNothing() throws Exception
+    {
+        assertThat(EventReferences.referenceTo((Application) null), nullValue());
+        assertThat(EventReferences.referenceTo((User) null), nullValue());
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.buzz;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import tech.aroma.data.ApplicationRepository;
+import tech.aroma.data.UserRepository;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class BuzzCacheImplTest
+{
+
+    @Mock
+    private ApplicationRepository appRepo;
+
+    @Mock
+    private UserRepository userRepo;
+
+    @Mock
+    private ScheduledExecutorService refreshes;
+
+    private final long refreshInterval = MINUTES.toMillis(10);
+
+    private MetricRegistry metrics;
+
+    @GenerateList(Application.class)
+    private List<Application> recentApps;
+
+    @GenerateList(User.class)
+    private List<User> recentUsers;
+
+    private BuzzCacheImpl instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        metrics = new MetricRegistry();
+
+        when(appRepo.getRecentlyCreated()).thenReturn(recentApps);
+        when(userRepo.getRecentlyCreatedUsers()).thenReturn(recentUsers);
+
+        instance = new BuzzCacheImpl(appRepo, userRepo, metrics, refreshes, refreshInterval);
+    }
+
+    @After
+    public void tearDown()
+    {
+        instance.shutdown();
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new BuzzCacheImpl(null, userRepo, metrics));
+        assertThrows(() -> new BuzzCacheImpl(appRepo, null, metrics));
+        assertThrows(() -> new BuzzCacheImpl(appRepo, userRepo, null));
+        assertThrows(() -> new BuzzCacheImpl(appRepo, userRepo, metrics, null, refreshInterval));
+        assertThrows(() -> new BuzzCacheImpl(appRepo, userRepo, metrics, refreshes, 0));
+    }
+
+    @Test
+    public void testCurrent() throws Exception
+    {
+        BuzzSnapshot snapshot = instance.current();
+
+        assertThat(snapshot.getRecentApplications(), is(recentApps));
+        assertThat(snapshot.getRecentUsers(), is(recentUsers));
+
+        assertThat(instance.current(), sameInstance(snapshot));
+
+        verify(appRepo, times(1)).getRecentlyCreated();
+        verify(userRepo, times(1)).getRecentlyCreatedUsers();
+    }
+
+    @Test
+    public void testFirstRefreshIsNotDelayed() throws Exception
+    {
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(refreshes).scheduleWithFixedDelay(task.capture(), eq(0L), eq(refreshInterval), eq(MILLISECONDS));
+
+        task.getValue().run();
+
+        BuzzSnapshot snapshot = instance.current();
+        assertThat(snapshot.getRecentApplications(), is(recentApps));
+        assertThat(snapshot.getRecentUsers(), is(recentUsers));
+
+        verify(appRepo, times(1)).getRecentlyCreated();
+        verify(userRepo, times(1)).getRecentlyCreatedUsers();
+    }
+
+    @Test
+    public void testCurrentWhenFirstSnapshotFails() throws Exception
+    {
+        when(appRepo.getRecentlyCreated())
+                .thenThrow(new OperationFailedException());
+
+        assertThrows(() -> instance.current())
+                .isInstanceOf(OperationFailedException.class);
+    }
+
+    @Test
+    public void testRefresh() throws Exception
+    {
+        BuzzSnapshot first = instance.current();
+
+        List<Application> newApps = recentApps.subList(0, recentApps.size() / 2);
+        when(appRepo.getRecentlyCreated()).thenReturn(newApps);
+
+        BuzzSnapshot second = instance.refresh();
+
+        assertThat(second, not(sameInstance(first)));
+        assertThat(instance.current(), sameInstance(second));
+        assertThat(second.getRecentApplications(), is(newApps));
+    }
+
+    @Test
+    public void testRefreshWhenRepositoryFails() throws Exception
+    {
+        BuzzSnapshot first = instance.current();
+
+        when(userRepo.getRecentlyCreatedUsers())
+                .thenThrow(new OperationFailedException());
+
+        assertThrows(() -> instance.refresh())
+                .isInstanceOf(OperationFailedException.class);
+
+        assertThat(instance.current(), sameInstance(first));
+        assertThat(metrics.counter(name(BuzzCache.class, "refresh-failures")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testStalenessIsReported() throws Exception
+    {
+        instance.current();
+
+        Gauge<?> staleness = metrics.getGauges().get(name(BuzzCache.class, "staleness-millis"));
+
+        assertThat(staleness, notNullValue());
+        assertThat((Long) staleness.getValue(), greaterThanOrEqualTo(0L));
+    }
+
+    @Test
+    public void testSnapshotCannotBeModified() throws Exception
+    {
+        BuzzSnapshot snapshot = instance.current();
+
+        assertThrows(() -> snapshot.getRecentApplications().clear())
+                .isInstanceOf(UnsupportedOperationException.class);
+
+        assertThrows(() -> snapshot.getRecentUsers().clear())
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+}
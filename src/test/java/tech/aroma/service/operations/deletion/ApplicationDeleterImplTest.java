@@ -0,0 +1,439 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.deletion;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.*;
+import sir.wellington.alchemy.collections.lists.Lists;
+import tech.aroma.data.*;
+import tech.aroma.service.operations.activity.ActivityFeeds;
+import tech.aroma.service.operations.deletion.DeletionProgress.Stage;
+import tech.aroma.service.operations.inbox.InboxCache;
+import tech.aroma.service.operations.media.MediaStore;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.events.Event;
+import tech.aroma.thrift.exceptions.*;
+import tech.sirwellington.alchemy.annotations.testing.TimeSensitive;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static tech.aroma.service.operations.activity.EventReferences.referenceTo;
+import static tech.sirwellington.alchemy.arguments.Arguments.*;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.equalTo;
+import static tech.sirwellington.alchemy.arguments.assertions.Assertions.notNull;
+import static tech.sirwellington.alchemy.arguments.assertions.StringAssertions.validUUID;
+import static tech.sirwellington.alchemy.arguments.assertions.TimeAssertions.epochNowWithinDelta;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@TimeSensitive
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class ApplicationDeleterImplTest
+{
+
+    private static final int TIMEOUT = 2_000;
+    private static final int BATCH_SIZE = 2;
+    private static final double CALLS_PER_SECOND = 10_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private ActivityRepository activityRepo;
+
+    @Mock
+    private ActivityFeeds activityFeeds;
+
+    @Mock
+    private ApplicationRepository appRepo;
+
+    @Mock
+    private FollowerRepository followerRepo;
+
+    @Mock
+    private InboxCache inboxCache;
+
+    @Mock
+    private MediaStore mediaStore;
+
+    @Mock
+    private MessageRepository messageRepo;
+
+    private MetricRegistry metrics;
+
+    @GenerateString(UUID)
+    private String appId;
+
+    @GeneratePojo
+    private Application app;
+
+    @GeneratePojo
+    private User user;
+
+    @GenerateList(User.class)
+    private List<User> followers;
+
+    @GenerateString(UUID)
+    private String eventId;
+
+    private List<User> sortedFollowers;
+
+    @Captor
+    private ArgumentCaptor<Event> captor;
+
+    private File directory;
+    private DeletionCheckpoints checkpoints;
+
+    private ApplicationDeleterImpl instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        app.applicationId = appId;
+        metrics = new MetricRegistry();
+
+        directory = folder.newFolder();
+        checkpoints = new DeletionCheckpoints(directory);
+
+        sortedFollowers = followers.stream()
+                .sorted(comparing(follower -> follower.userId))
+                .collect(toList());
+
+        when(followerRepo.getApplicationFollowers(appId)).thenReturn(followers);
+
+        instance = newDeleter();
+    }
+
+    @After
+    public void tearDown()
+    {
+        instance.shutdown();
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new ApplicationDeleterImpl(null, activityFeeds, appRepo, followerRepo, inboxCache, mediaStore, messageRepo, metrics, checkpoints, 1, 1));
+        assertThrows(() -> new ApplicationDeleterImpl(activityRepo, null, appRepo, followerRepo, inboxCache, mediaStore, messageRepo, metrics, checkpoints, 1, 1));
+        assertThrows(() -> new ApplicationDeleterImpl(activityRepo, activityFeeds, null, followerRepo, inboxCache, mediaStore, messageRepo, metrics, checkpoints, 1, 1));
+        assertThrows(() -> new ApplicationDeleterImpl(activityRepo, activityFeeds, appRepo, null, inboxCache, mediaStore, messageRepo, metrics, checkpoints, 1, 1));
+        assertThrows(() -> new ApplicationDeleterImpl(activityRepo, activityFeeds, appRepo, followerRepo, null, mediaStore, messageRepo, metrics, checkpoints, 1, 1));
+        assertThrows(() -> new ApplicationDeleterImpl(activityRepo, activityFeeds, appRepo, followerRepo, inboxCache, null, messageRepo, metrics, checkpoints, 1, 1));
+        assertThrows(() -> new ApplicationDeleterImpl(activityRepo, activityFeeds, appRepo, followerRepo, inboxCache, mediaStore, null, metrics, checkpoints, 1, 1));
+        assertThrows(() -> new ApplicationDeleterImpl(activityRepo, activityFeeds, appRepo, followerRepo, inboxCache, mediaStore, messageRepo, null, checkpoints, 1, 1));
+        assertThrows(() -> new ApplicationDeleterImpl(activityRepo, activityFeeds, appRepo, followerRepo, inboxCache, mediaStore, messageRepo, metrics, checkpoints, 0, 1));
+        assertThrows(() -> new ApplicationDeleterImpl(activityRepo, activityFeeds, appRepo, followerRepo, inboxCache, mediaStore, messageRepo, metrics, checkpoints, 1, 0));
+    }
+
+    @Test
+    public void testDelete() throws Exception
+    {
+        instance.delete(app, user);
+
+        verify(appRepo).deleteApplication(appId);
+
+        awaitDeletion();
+        verifyThingsWereCleanedUp();
+
+        assertThat(checkpoints.loadAll(), is(empty()));
+        assertThat(metrics.counter(name(ApplicationDeleter.class, "completed")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testCheckpointIsSavedBeforeAppIsDeleted() throws Exception
+    {
+        doAnswer(invocation ->
+        {
+            assertThat(checkpoints.loadAll(), hasSize(1));
+            return null;
+        }).when(appRepo).deleteApplication(appId);
+
+        instance.delete(app, user);
+
+        verify(appRepo).deleteApplication(appId);
+        awaitDeletion();
+    }
+
+    @Test
+    public void testEachBatchIsCheckpointed() throws Exception
+    {
+        User lastFollower = sortedFollowers.get(sortedFollowers.size() - 1);
+        int lastBatch = (followers.size() - 1) / BATCH_SIZE * BATCH_SIZE;
+
+        doAnswer(invocation ->
+        {
+            //Notified and checkpointed before being removed
+            DeletionCheckpoint saved = checkpoints.loadAll().get(0);
+            assertThat(saved.stage(), is(Stage.REMOVING_FOLLOWERS));
+            assertThat(saved.lastNotifiedId(), is(lastFollower.userId));
+            assertThat(saved.lastRemovedId(), is(lastBatch == 0 ? "" : sortedFollowers.get(lastBatch - 1).userId));
+            assertThat(saved.progress().getFollowersRemoved(), is(lastBatch));
+            return null;
+        }).when(followerRepo).deleteFollowing(lastFollower.userId, appId);
+
+        instance.delete(app, user);
+        awaitDeletion();
+
+        verify(followerRepo).deleteFollowing(lastFollower.userId, appId);
+        verify(followerRepo).getApplicationFollowers(appId);
+    }
+
+    @Test
+    public void testWhenAppRepoFails() throws Exception
+    {
+        doThrow(new OperationFailedException())
+                .when(appRepo)
+                .deleteApplication(appId);
+
+        assertThrows(() -> instance.delete(app, user))
+                .isInstanceOf(OperationFailedException.class);
+
+        assertThat(checkpoints.loadAll(), is(empty()));
+        assertThat(instance.progressOf(appId), nullValue());
+
+        verifyZeroInteractions(followerRepo, inboxCache, messageRepo, mediaStore, activityRepo);
+    }
+
+    @Test
+    public void testWhenNoFollowers() throws Exception
+    {
+        when(followerRepo.getApplicationFollowers(appId)).thenReturn(Lists.emptyList());
+
+        instance.delete(app, user);
+        awaitDeletion();
+
+        verify(followerRepo, never()).deleteFollowing(anyString(), anyString());
+        verify(messageRepo).deleteAllMessages(appId);
+        assertThat(instance.progressOf(appId).getUsersToNotify(), is(app.owners.size()));
+    }
+
+    @Test
+    public void testWhenRepositoriesFail() throws Exception
+    {
+        doThrow(new OperationFailedException())
+                .when(followerRepo)
+                .deleteFollowing(anyString(), anyString());
+
+        doThrow(new OperationFailedException())
+                .when(messageRepo)
+                .deleteAllMessages(appId);
+
+        instance.delete(app, user);
+        awaitDeletion();
+
+        //The rest of the deletion carries on
+        verify(mediaStore).release(appId);
+        verify(activityRepo, atLeastOnce()).saveEvent(any(Event.class), any(User.class));
+    }
+
+    @Test
+    public void testResumesFromCheckpoint() throws Exception
+    {
+        instance.shutdown();
+
+        Event notice = new Event().setEventId(eventId).setApplicationId(appId);
+
+        //Stopped after the second batch was notified, but before it was removed
+        DeletionCheckpoint checkpoint = new DeletionCheckpoint(app, notice);
+        checkpoint.followersAre(followers);
+        checkpoint.moveTo(Stage.REMOVING_FOLLOWERS);
+        checkpoint.notified(checkpoint.nextFollowers(2 * BATCH_SIZE));
+        checkpoint.removed(checkpoint.nextFollowers(BATCH_SIZE));
+        checkpoints.save(checkpoint);
+
+        instance = newDeleter();
+        awaitDeletion();
+
+        for (int i = 0; i < sortedFollowers.size(); ++i)
+        {
+            User follower = sortedFollowers.get(i);
+            verify(followerRepo, times(i < BATCH_SIZE ? 0 : 1)).deleteFollowing(follower.userId, appId);
+            verify(activityRepo, times(i < 2 * BATCH_SIZE ? 0 : 1)).saveEvent(notice, follower);
+        }
+
+        for (String ownerId : app.owners)
+        {
+            verify(activityRepo).saveEvent(notice, new User().setUserId(ownerId));
+        }
+
+        verify(messageRepo).deleteAllMessages(appId);
+        verify(appRepo, never()).deleteApplication(anyString());
+
+        //The followers that are left are listed again
+        verify(followerRepo).getApplicationFollowers(appId);
+
+        DeletionProgress progress = instance.progressOf(appId);
+        assertThat(progress.getFollowersRemoved(), is(followers.size()));
+        assertThat(progress.getUsersNotified(), is(progress.getUsersToNotify()));
+
+        assertThat(metrics.counter(name(ApplicationDeleter.class, "resumed")).getCount(), is(1L));
+        assertThat(checkpoints.loadAll(), is(empty()));
+    }
+
+    @Test
+    public void testWithoutCheckpoints() throws Exception
+    {
+        instance.shutdown();
+        instance = new ApplicationDeleterImpl(activityRepo, activityFeeds, appRepo, followerRepo, inboxCache, mediaStore, messageRepo, metrics, null, BATCH_SIZE, CALLS_PER_SECOND);
+
+        instance.delete(app, user);
+        awaitDeletion();
+
+        verifyThingsWereCleanedUp();
+    }
+
+    @DontRepeat
+    @Test
+    public void testCheckpointsAreKeptInPrivateDirectory() throws Exception
+    {
+        instance.shutdown();
+
+        File dataDirectory = folder.newFolder();
+        instance = new ApplicationDeleterImpl(activityRepo, activityFeeds, appRepo, followerRepo, inboxCache, mediaStore, messageRepo, metrics, dataDirectory);
+
+        File checkpointDirectory = new File(dataDirectory, ApplicationDeleterImpl.DIRECTORY_NAME);
+        assertThat(checkpointDirectory.isDirectory(), is(true));
+        assertThat(Files.getPosixFilePermissions(checkpointDirectory.toPath()),
+                   is(PosixFilePermissions.fromString("rwx------")));
+    }
+
+    @Test
+    public void testProgressOf() throws Exception
+    {
+        assertThat(instance.progressOf(appId), nullValue());
+
+        instance.delete(app, user);
+        awaitDeletion();
+
+        DeletionProgress progress = instance.progressOf(appId);
+        assertThat(progress.getFollowersRemoved(), is(followers.size()));
+        assertThat(progress.getUsersNotified(), is(progress.getUsersToNotify()));
+    }
+
+    @DontRepeat
+    @Test
+    public void testDeleteWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.delete(null, user))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThrows(() -> instance.delete(app, null))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThrows(() -> instance.delete(new Application(), user))
+                .isInstanceOf(InvalidArgumentException.class);
+    }
+
+    private ApplicationDeleterImpl newDeleter()
+    {
+        return new ApplicationDeleterImpl(activityRepo,
+                                          activityFeeds,
+                                          appRepo,
+                                          followerRepo,
+                                          inboxCache,
+                                          mediaStore,
+                                          messageRepo,
+                                          metrics,
+                                          checkpoints,
+                                          BATCH_SIZE,
+                                          CALLS_PER_SECOND);
+    }
+
+    private void awaitDeletion() throws InterruptedException
+    {
+        await(() ->
+        {
+            DeletionProgress progress = instance.progressOf(appId);
+            return progress != null && progress.isDone();
+        });
+    }
+
+    private void verifyThingsWereCleanedUp() throws Exception
+    {
+        verify(mediaStore).release(app.applicationIconMediaId);
+        verify(mediaStore).release(appId);
+
+        verify(messageRepo).deleteAllMessages(appId);
+        verify(inboxCache).applicationDeleted(appId);
+        verify(activityFeeds).dropFeedOf(appId);
+
+        for (User follower : followers)
+        {
+            verify(followerRepo).deleteFollowing(follower.userId, appId);
+
+            verify(activityRepo).saveEvent(captor.capture(), eq(follower));
+            checkEvent(captor.getValue());
+        }
+
+        for (String ownerId : app.owners)
+        {
+            User owner = new User().setUserId(ownerId);
+
+            verify(activityRepo).saveEvent(captor.capture(), eq(owner));
+            checkEvent(captor.getValue());
+        }
+    }
+
+    private void checkEvent(Event event)
+    {
+        checkThat(event).is(notNull());
+        checkThat(event.eventId).is(validUUID());
+        assertThat(event.applicationId, is(appId));
+        assertThat(event.application, is(referenceTo(app)));
+        checkThat(event.timestamp).is(epochNowWithinDelta(8_000));
+        checkThat(event.userIdOfActor).is(equalTo(user.userId));
+        checkThat(event.actor).is(equalTo(referenceTo(user)));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+
+        while (!condition.getAsBoolean())
+        {
+            assertThat("Timed out waiting for condition", System.currentTimeMillis() < deadline, is(true));
+            Thread.sleep(5);
+        }
+    }
+
+}
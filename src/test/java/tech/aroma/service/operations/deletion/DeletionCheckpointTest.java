@@ -0,0 +1,224 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.deletion;
+
+import java.util.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.service.operations.deletion.DeletionProgress.Stage;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.events.Event;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(25)
+@RunWith(AlchemyTestRunner.class)
+public class DeletionCheckpointTest
+{
+
+    @GeneratePojo
+    private Application app;
+
+    @GenerateList(User.class)
+    private List<User> followers;
+
+    @GenerateString(UUID)
+    private String eventId;
+
+    private Event notice;
+
+    private List<User> sortedFollowers;
+
+    private DeletionCheckpoint instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        notice = new Event()
+                .setEventId(eventId)
+                .setApplicationId(app.applicationId);
+
+        sortedFollowers = followers.stream()
+                .sorted(comparing(follower -> follower.userId))
+                .collect(toList());
+
+        instance = new DeletionCheckpoint(app, notice);
+    }
+
+    @Test
+    public void testStartsByListingFollowers() throws Exception
+    {
+        assertThat(instance.stage(), is(Stage.LISTING_FOLLOWERS));
+        assertThat(instance.hasListedFollowers(), is(false));
+        assertThat(instance.nextFollowers(10), is(empty()));
+
+        DeletionProgress progress = instance.progress();
+        assertThat(progress.getApplicationId(), is(app.applicationId));
+        assertThat(progress.getStage(), is(Stage.LISTING_FOLLOWERS));
+        assertThat(progress.getFollowers(), is(0));
+        assertThat(progress.isDone(), is(false));
+
+        app.owners.forEach(owner -> assertThat(progress.isOwnedBy(owner), is(true)));
+        assertThat(progress.isOwnedBy(eventId), is(false));
+    }
+
+    @Test
+    public void testKeepsOnlyWhatTheDeletionNeeds() throws Exception
+    {
+        Application kept = instance.app();
+
+        assertThat(kept.applicationId, is(app.applicationId));
+        assertThat(kept.name, is(app.name));
+        assertThat(kept.applicationIconMediaId, is(app.applicationIconMediaId));
+        assertThat(kept.owners, is(app.owners));
+        assertThat(kept.isSetOrganizationId(), is(false));
+
+        assertThat(instance.owners(), hasSize(app.owners.size()));
+    }
+
+    @Test
+    public void testFollowersAreWorkedThroughInOrder() throws Exception
+    {
+        instance.followersAre(followers);
+
+        List<User> batch = instance.nextFollowers(2);
+        assertThat(batch, is(sortedFollowers.subList(0, 2)));
+
+        instance.removed(batch);
+
+        assertThat(instance.lastRemovedId(), is(batch.get(1).userId));
+        assertThat(instance.nextFollowers(1), is(sortedFollowers.subList(2, 3)));
+    }
+
+    @Test
+    public void testFollowersAlreadyRemovedAreSkipped() throws Exception
+    {
+        instance.followersAre(followers);
+        instance.removed(instance.nextFollowers(2));
+
+        //Listed again after a restart, including the ones just removed
+        instance.followersAre(followers);
+
+        assertThat(instance.nextFollowers(followers.size()), is(sortedFollowers.subList(2, sortedFollowers.size())));
+        assertThat(instance.progress().getFollowers(), is(followers.size()));
+    }
+
+    @Test
+    public void testNotified() throws Exception
+    {
+        instance.followersAre(followers);
+
+        List<User> batch = instance.nextFollowers(2);
+        assertThat(instance.wasNotified(batch.get(0)), is(false));
+
+        instance.notified(batch);
+        assertThat(instance.wasNotified(batch.get(0)), is(true));
+        assertThat(instance.wasNotified(batch.get(1)), is(true));
+        assertThat(instance.wasNotified(sortedFollowers.get(2)), is(false));
+
+        //Notifying the same followers again is not counted twice
+        instance.notified(batch);
+        instance.moveTo(Stage.REMOVING_FOLLOWERS);
+        assertThat(instance.progress().getUsersNotified(), is(2));
+    }
+
+    @Test
+    public void testProgress() throws Exception
+    {
+        instance.followersAre(followers);
+        instance.moveTo(Stage.REMOVING_FOLLOWERS);
+
+        List<User> batch = instance.nextFollowers(1);
+        instance.notified(batch);
+        instance.removed(batch);
+
+        DeletionProgress progress = instance.progress();
+        assertThat(progress.getFollowersRemoved(), is(1));
+        assertThat(progress.getFollowers(), is(followers.size()));
+        assertThat(progress.getUsersNotified(), is(1));
+        assertThat(progress.getUsersToNotify(), is(app.owners.size() + followers.size()));
+
+        batch = instance.nextFollowers(followers.size());
+        instance.notified(batch);
+        instance.removed(batch);
+        instance.ownersNotified();
+        instance.moveTo(Stage.DONE);
+
+        progress = instance.progress();
+        assertThat(progress.isDone(), is(true));
+        assertThat(progress.getFollowersRemoved(), is(followers.size()));
+        assertThat(progress.getUsersNotified(), is(progress.getUsersToNotify()));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        instance.followersAre(followers);
+        instance.moveTo(Stage.REMOVING_FOLLOWERS);
+
+        List<User> batch = instance.nextFollowers(2);
+        instance.notified(batch);
+        instance.removed(instance.nextFollowers(1));
+
+        DeletionCheckpoint result = DeletionCheckpoint.fromBytes(instance.toBytes());
+
+        assertThat(result.app(), is(instance.app()));
+        assertThat(result.notice(), is(notice));
+        assertThat(result.stage(), is(Stage.REMOVING_FOLLOWERS));
+        assertThat(result.lastRemovedId(), is(instance.lastRemovedId()));
+        assertThat(result.lastNotifiedId(), is(instance.lastNotifiedId()));
+        assertThat(result.hasListedFollowers(), is(false));
+
+        DeletionProgress progress = result.progress();
+        assertThat(progress.getFollowersRemoved(), is(1));
+        assertThat(progress.getFollowers(), is(followers.size()));
+        assertThat(progress.getUsersNotified(), is(2));
+    }
+
+    @Test
+    public void testFollowersAreNotSaved() throws Exception
+    {
+        int sizeWithoutFollowers = instance.toBytes().length;
+
+        instance.followersAre(followers);
+
+        assertThat(instance.toBytes().length, is(sizeWithoutFollowers));
+    }
+
+    @Test
+    public void testFromBytesWhenCorrupted() throws Exception
+    {
+        byte[] bytes = instance.toBytes();
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length / 2);
+
+        assertThrows(() -> DeletionCheckpoint.fromBytes(truncated));
+        assertThrows(() -> DeletionCheckpoint.fromBytes(new byte[0]));
+    }
+
+}
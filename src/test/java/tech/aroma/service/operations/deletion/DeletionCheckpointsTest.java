@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.deletion;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import tech.aroma.service.operations.deletion.DeletionProgress.Stage;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.events.Event;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class DeletionCheckpointsTest
+{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @GeneratePojo
+    private Application app;
+
+    @GenerateString(UUID)
+    private String appId;
+
+    private File directory;
+
+    private DeletionCheckpoint checkpoint;
+
+    private DeletionCheckpoints instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        app.applicationId = appId;
+        checkpoint = new DeletionCheckpoint(app, new Event().setEventId(appId));
+
+        directory = folder.newFolder();
+        instance = new DeletionCheckpoints(directory);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new DeletionCheckpoints(null));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception
+    {
+        instance.save(checkpoint);
+
+        List<DeletionCheckpoint> loaded = new DeletionCheckpoints(directory).loadAll();
+
+        assertThat(loaded, hasSize(1));
+        assertThat(loaded.get(0).app(), is(checkpoint.app()));
+        assertThat(loaded.get(0).stage(), is(Stage.LISTING_FOLLOWERS));
+    }
+
+    @Test
+    public void testSaveReplacesEarlierCheckpoint() throws Exception
+    {
+        instance.save(checkpoint);
+
+        checkpoint.moveTo(Stage.DELETING_MEDIA);
+        instance.save(checkpoint);
+
+        List<DeletionCheckpoint> loaded = instance.loadAll();
+
+        assertThat(loaded, hasSize(1));
+        assertThat(loaded.get(0).stage(), is(Stage.DELETING_MEDIA));
+    }
+
+    @Test
+    public void testRemove() throws Exception
+    {
+        instance.save(checkpoint);
+        instance.remove(appId);
+
+        assertThat(instance.loadAll(), is(empty()));
+
+        //Removing again is harmless
+        instance.remove(appId);
+    }
+
+    @Test
+    public void testUnreadableCheckpointsAreDiscarded() throws Exception
+    {
+        File corrupted = new File(directory, "corrupted" + DeletionCheckpoints.SUFFIX);
+        Files.write(corrupted.toPath(), new byte[] { 1, 2, 3 });
+
+        instance.save(checkpoint);
+
+        List<DeletionCheckpoint> loaded = instance.loadAll();
+
+        assertThat(loaded, hasSize(1));
+        assertThat(corrupted.exists(), is(false));
+    }
+
+}
@@ -0,0 +1,452 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.email;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.stubbing.Answer;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.authentication.ApplicationToken;
+import tech.aroma.thrift.authentication.AuthenticationToken;
+import tech.aroma.thrift.email.EmailMessage;
+import tech.aroma.thrift.email.EmailNewApplication;
+import tech.aroma.thrift.email.service.*;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.aroma.thrift.services.NoOpEmailService;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class EmailDispatcherImplTest
+{
+
+    private static final int TIMEOUT = 2_000;
+    private static final long BACKOFF = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private EmailService.Iface emailService;
+
+    private MetricRegistry metrics;
+
+    private File directory;
+    private EmailJournal journal;
+
+    private CountDownLatch releaseEmails;
+
+    @GenerateString(ALPHABETIC)
+    private String appName;
+
+    @GenerateString(ALPHABETIC)
+    private String otherAppName;
+
+    @GenerateString(UUID)
+    private String tokenId;
+
+    private SendEmailRequest request;
+
+    private EmailDispatcherImpl instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        metrics = new MetricRegistry();
+        directory = folder.newFolder();
+        journal = new EmailJournal(directory, EmailJournal.DEFAULT_COMPACTION_BYTES);
+        releaseEmails = new CountDownLatch(1);
+
+        request = emailFor(appName);
+
+        instance = newDispatcher(emailService, 2, 100, 3);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        releaseEmails.countDown();
+        instance.shutdown();
+        journal.close();
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new EmailDispatcherImpl(null, metrics, directory));
+        assertThrows(() -> new EmailDispatcherImpl(emailService, null, directory));
+        assertThrows(() -> new EmailDispatcherImpl(emailService, metrics, journal, 0, 1, 1, 1, 1, 1));
+        assertThrows(() -> new EmailDispatcherImpl(emailService, metrics, journal, 1, 0, 1, 1, 1, 1));
+        assertThrows(() -> new EmailDispatcherImpl(emailService, metrics, journal, 1, 1, 0, 1, 1, 1));
+        assertThrows(() -> new EmailDispatcherImpl(emailService, metrics, journal, 1, 1, 1, 0, 1, 1));
+        assertThrows(() -> new EmailDispatcherImpl(emailService, metrics, journal, 1, 1, 1, 1, 0, 1));
+        assertThrows(() -> new EmailDispatcherImpl(emailService, metrics, journal, 1, 1, 1, 1, 1, 0));
+    }
+
+    @Test
+    public void testDispatch() throws Exception
+    {
+        instance.dispatch(request);
+
+        verify(emailService, timeout(TIMEOUT)).sendEmail(request);
+        await(() -> journal.pendingCount() == 0);
+        await(() -> metrics.timer(name(EmailDispatcher.class, "send-time")).getCount() == 1);
+    }
+
+    @Test
+    public void testDispatchWithNoOpEmailService() throws Exception
+    {
+        instance.shutdown();
+        instance = newDispatcher(NoOpEmailService.newInstance(), 2, 100, 3);
+
+        instance.dispatch(request);
+        instance.dispatch(emailFor(otherAppName));
+
+        await(() -> metrics.timer(name(EmailDispatcher.class, "send-time")).getCount() == 2);
+        await(() -> journal.pendingCount() == 0);
+    }
+
+    @Test
+    public void testDispatchDoesNotWaitForSlowEmailService() throws Exception
+    {
+        long delay = 100;
+
+        when(emailService.sendEmail(any()))
+                .thenAnswer(delayed(delay));
+
+        long start = System.currentTimeMillis();
+
+        for (int i = 0; i < 10; ++i)
+        {
+            instance.dispatch(emailFor(appName + i));
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        assertThat(elapsed, lessThan(delay));
+
+        verify(emailService, timeout(10 * delay + TIMEOUT).times(10)).sendEmail(any());
+        await(() -> journal.pendingCount() == 0);
+    }
+
+    @Test
+    public void testDuplicatesAreDropped() throws Exception
+    {
+        instance.dispatch(request);
+        instance.dispatch(emailFor(appName));
+
+        verify(emailService, timeout(TIMEOUT)).sendEmail(request);
+        assertThat(metrics.counter(name(EmailDispatcher.class, "duplicates")).getCount(), is(1L));
+
+        Thread.sleep(50);
+        verify(emailService, times(1)).sendEmail(any());
+    }
+
+    @Test
+    public void testRetriesWithBackoff() throws Exception
+    {
+        when(emailService.sendEmail(request))
+                .thenThrow(new OperationFailedException())
+                .thenThrow(new OperationFailedException())
+                .thenReturn(new SendEmailResponse());
+
+        instance.dispatch(request);
+
+        verify(emailService, timeout(TIMEOUT).times(3)).sendEmail(request);
+        await(() -> journal.pendingCount() == 0);
+
+        assertThat(metrics.counter(name(EmailDispatcher.class, "retries")).getCount(), is(2L));
+        assertThat(metrics.counter(name(EmailDispatcher.class, "failures")).getCount(), is(0L));
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() throws Exception
+    {
+        when(emailService.sendEmail(request))
+                .thenThrow(new OperationFailedException());
+
+        instance.dispatch(request);
+
+        verify(emailService, timeout(TIMEOUT).times(3)).sendEmail(request);
+        await(() -> metrics.counter(name(EmailDispatcher.class, "failures")).getCount() == 1);
+        await(() -> journal.pendingCount() == 0);
+
+        //No longer considered a duplicate
+        instance.dispatch(request);
+        verify(emailService, timeout(TIMEOUT).times(4)).sendEmail(request);
+    }
+
+    @Test
+    public void testWhenQueueIsFull() throws Exception
+    {
+        instance.shutdown();
+
+        EmailService.Iface blockedService = mock(EmailService.Iface.class);
+        when(blockedService.sendEmail(any()))
+                .thenAnswer(invocation -> blockUntilReleased());
+
+        instance = newDispatcher(blockedService, 1, 1, 3);
+
+        instance.dispatch(request);
+        verify(blockedService, timeout(TIMEOUT)).sendEmail(request);
+
+        instance.dispatch(emailFor(otherAppName));
+        assertThat(instance.queueDepth(), is(1));
+
+        assertThrows(() -> instance.dispatch(emailFor(appName + otherAppName)))
+                .isInstanceOf(OperationFailedException.class);
+
+        assertThat(metrics.counter(name(EmailDispatcher.class, "rejections")).getCount(), is(1L));
+        assertThat(journal.pendingCount(), is(2));
+    }
+
+    @Test
+    public void testRecoversEmailsFromJournal() throws Exception
+    {
+        instance.shutdown();
+
+        EmailService.Iface blockedService = mock(EmailService.Iface.class);
+        when(blockedService.sendEmail(any()))
+                .thenAnswer(invocation -> blockUntilReleased());
+
+        instance = newDispatcher(blockedService, 1, 100, 3);
+
+        SendEmailRequest other = emailFor(otherAppName);
+        instance.dispatch(request);
+        instance.dispatch(other);
+        verify(blockedService, timeout(TIMEOUT)).sendEmail(request);
+
+        //Stopped before either email could be sent
+        instance.shutdown();
+        journal.close();
+
+        journal = new EmailJournal(directory, EmailJournal.DEFAULT_COMPACTION_BYTES);
+        instance = newDispatcher(emailService, 1, 100, 3);
+
+        verify(emailService, timeout(TIMEOUT)).sendEmail(request);
+        verify(emailService, timeout(TIMEOUT)).sendEmail(other);
+        await(() -> journal.pendingCount() == 0);
+    }
+
+    @Test
+    public void testEmailsWithTokensAreNotJournaled() throws Exception
+    {
+        instance.shutdown();
+
+        EmailService.Iface blockedService = mock(EmailService.Iface.class);
+        when(blockedService.sendEmail(any()))
+                .thenAnswer(invocation -> blockUntilReleased());
+
+        instance = newDispatcher(blockedService, 1, 100, 3);
+
+        SendEmailRequest withTokens = withTokens(emailFor(otherAppName));
+
+        instance.dispatch(request);
+        instance.dispatch(withTokens);
+        verify(blockedService, timeout(TIMEOUT)).sendEmail(request);
+
+        assertThat(journal.pendingCount(), is(1));
+        assertThat(metrics.counter(name(EmailDispatcher.class, "kept-in-memory")).getCount(), is(1L));
+
+        instance.shutdown();
+        journal.close();
+
+        String contents = new String(Files.readAllBytes(new File(directory, EmailJournal.FILE_NAME).toPath()), UTF_8);
+        assertThat(contents, not(containsString(tokenId)));
+
+        journal = new EmailJournal(directory, EmailJournal.DEFAULT_COMPACTION_BYTES);
+        instance = newDispatcher(emailService, 1, 100, 3);
+
+        verify(emailService, timeout(TIMEOUT)).sendEmail(request);
+        await(() -> journal.pendingCount() == 0);
+
+        //Lost with the node, rather than sent without its tokens
+        verify(emailService, times(1)).sendEmail(any());
+    }
+
+    @Test
+    public void testEmailsWithTokensAreSentWithThem() throws Exception
+    {
+        SendEmailRequest withTokens = withTokens(request);
+
+        instance.dispatch(withTokens);
+
+        verify(emailService, timeout(TIMEOUT)).sendEmail(withTokens);
+    }
+
+    @Test
+    public void testDropsEmailsJournaledWithoutTheirTokens() throws Exception
+    {
+        instance.shutdown();
+
+        SendEmailRequest stripped = EmailDispatcherImpl.withoutTokens(withTokens(request));
+        assertThat(stripped.isSetToken(), is(false));
+        assertThat(stripped.getEmailMessage().getNewApp().getAppToken().isSetTokenId(), is(false));
+        assertThat(stripped.getEmailMessage().getNewApp().getAppToken().getTimeOfExpiration(), is(BACKOFF));
+
+        SendEmailRequest other = emailFor(otherAppName);
+        journal.append(new TSerializer(new TBinaryProtocol.Factory()).serialize(stripped));
+        journal.append(new TSerializer(new TBinaryProtocol.Factory()).serialize(other));
+        journal.close();
+
+        journal = new EmailJournal(directory, EmailJournal.DEFAULT_COMPACTION_BYTES);
+        instance = newDispatcher(emailService, 1, 100, 3);
+
+        verify(emailService, timeout(TIMEOUT)).sendEmail(other);
+        await(() -> journal.pendingCount() == 0);
+
+        verify(emailService, never()).sendEmail(stripped);
+        assertThat(metrics.counter(name(EmailDispatcher.class, "dropped-on-recovery")).getCount(), is(1L));
+    }
+
+    @DontRepeat
+    @Test
+    public void testCarriesTokens() throws Exception
+    {
+        assertThat(EmailDispatcherImpl.carriesTokens(request), is(false));
+        assertThat(EmailDispatcherImpl.carriesTokens(withTokens(request)), is(true));
+        assertThat(EmailDispatcherImpl.carriesTokens(EmailDispatcherImpl.withoutTokens(withTokens(request))), is(false));
+    }
+
+    @DontRepeat
+    @Test
+    public void testJournalIsKeptInPrivateDirectory() throws Exception
+    {
+        instance.shutdown();
+
+        File dataDirectory = folder.newFolder();
+        instance = new EmailDispatcherImpl(emailService, metrics, dataDirectory);
+
+        File journalDirectory = new File(dataDirectory, EmailDispatcherImpl.DIRECTORY_NAME);
+        assertThat(journalDirectory.isDirectory(), is(true));
+        assertThat(Files.getPosixFilePermissions(journalDirectory.toPath()),
+                   is(PosixFilePermissions.fromString("rwx------")));
+    }
+
+    @Test
+    public void testWithoutJournal() throws Exception
+    {
+        instance.shutdown();
+        instance = new EmailDispatcherImpl(emailService, metrics, null, 1, 100, 10, 3, BACKOFF, 60_000);
+
+        instance.dispatch(request);
+
+        verify(emailService, timeout(TIMEOUT)).sendEmail(request);
+    }
+
+    @DontRepeat
+    @Test
+    public void testDispatchWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.dispatch(null))
+                .isInstanceOf(InvalidArgumentException.class);
+    }
+
+    @DontRepeat
+    @Test
+    public void testBackoffFor() throws Exception
+    {
+        assertThat(instance.backoffFor(1), is(BACKOFF));
+        assertThat(instance.backoffFor(2), is(2 * BACKOFF));
+        assertThat(instance.backoffFor(3), is(4 * BACKOFF));
+        assertThat(instance.backoffFor(100), is(EmailDispatcherImpl.MAX_BACKOFF_MILLIS));
+    }
+
+    private EmailDispatcherImpl newDispatcher(EmailService.Iface service, int workers, int maxQueued, int maxAttempts)
+    {
+        return new EmailDispatcherImpl(service, metrics, journal, workers, maxQueued, 10, maxAttempts, BACKOFF, 60_000);
+    }
+
+    private SendEmailResponse blockUntilReleased() throws InterruptedException
+    {
+        releaseEmails.await(TIMEOUT * 5, TimeUnit.MILLISECONDS);
+        return new SendEmailResponse();
+    }
+
+    private static Answer<SendEmailResponse> delayed(long millis)
+    {
+        return invocation ->
+        {
+            Thread.sleep(millis);
+            return new SendEmailResponse();
+        };
+    }
+
+    private SendEmailRequest withTokens(SendEmailRequest email)
+    {
+        SendEmailRequest copy = email.deepCopy()
+                .setToken(new AuthenticationToken().setTokenId(tokenId));
+
+        copy.getEmailMessage().getNewApp()
+                .setAppToken(new ApplicationToken().setTokenId(tokenId).setTimeOfExpiration(BACKOFF));
+
+        return copy;
+    }
+
+    private static SendEmailRequest emailFor(String appName)
+    {
+        EmailNewApplication newApp = new EmailNewApplication()
+                .setApp(new Application().setName(appName));
+
+        EmailMessage message = new EmailMessage();
+        message.setNewApp(newApp);
+
+        return new SendEmailRequest()
+                .setEmailAddress(appName + "@aroma.tech")
+                .setEmailMessage(message);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+
+        while (!condition.getAsBoolean())
+        {
+            assertThat("Timed out waiting for condition", System.currentTimeMillis() < deadline, is(true));
+            Thread.sleep(5);
+        }
+    }
+
+}
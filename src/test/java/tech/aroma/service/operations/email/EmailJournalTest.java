@@ -0,0 +1,240 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.email;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class EmailJournalTest
+{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @GenerateString(ALPHABETIC)
+    private String first;
+
+    @GenerateString(ALPHABETIC)
+    private String second;
+
+    @GenerateString(ALPHABETIC)
+    private String third;
+
+    private File directory;
+
+    private EmailJournal instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = folder.newFolder();
+        instance = new EmailJournal(directory, EmailJournal.DEFAULT_COMPACTION_BYTES);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        instance.close();
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new EmailJournal(null, 1));
+        assertThrows(() -> new EmailJournal(directory, 0));
+    }
+
+    @Test
+    public void testRecoversPendingEmails() throws Exception
+    {
+        long firstId = instance.append(bytes(first));
+        long secondId = instance.append(bytes(second));
+        long thirdId = instance.append(bytes(third));
+
+        instance.complete(Collections.singletonList(secondId));
+        assertThat(instance.pendingCount(), is(2));
+
+        Map<Long, byte[]> recovered = reopen().recovered();
+
+        assertThat(recovered.keySet(), contains(firstId, thirdId));
+        assertThat(recovered.get(firstId), is(bytes(first)));
+        assertThat(recovered.get(thirdId), is(bytes(third)));
+        assertThat(instance.pendingCount(), is(2));
+    }
+
+    @Test
+    public void testRecoversNothingWhenNew() throws Exception
+    {
+        assertThat(instance.recovered().isEmpty(), is(true));
+        assertThat(instance.pendingCount(), is(0));
+    }
+
+    @Test
+    public void testTruncatesWhenNothingIsPending() throws Exception
+    {
+        long firstId = instance.append(bytes(first));
+        long secondId = instance.append(bytes(second));
+        assertThat(instance.sizeInBytes(), greaterThan(0L));
+
+        instance.complete(Arrays.asList(firstId, secondId));
+
+        assertThat(instance.sizeInBytes(), is(0L));
+        assertThat(reopen().recovered().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testIdsContinueAfterRestart() throws Exception
+    {
+        long firstId = instance.append(bytes(first));
+
+        long secondId = reopen().append(bytes(second));
+
+        assertThat(secondId, greaterThan(firstId));
+    }
+
+    @Test
+    public void testCompactsWhenMostlyDone() throws Exception
+    {
+        instance.close();
+        instance = new EmailJournal(directory, 256);
+
+        long kept = instance.append(bytes(first));
+        List<Long> done = new ArrayList<>();
+
+        for (int i = 0; i < 20; ++i)
+        {
+            done.add(instance.append(bytes(second)));
+        }
+
+        long sizeBefore = instance.sizeInBytes();
+        instance.complete(done);
+
+        assertThat(instance.sizeInBytes(), lessThan(sizeBefore));
+        assertThat(reopen().recovered().keySet(), contains(kept));
+    }
+
+    @Test
+    public void testIgnoresTornRecordAtTheEnd() throws Exception
+    {
+        long firstId = instance.append(bytes(first));
+        instance.close();
+
+        try (FileOutputStream out = new FileOutputStream(journalFile(), true))
+        {
+            out.write(new byte[] { 0x45, 0x4D, 0x4C });
+        }
+
+        instance = new EmailJournal(directory, EmailJournal.DEFAULT_COMPACTION_BYTES);
+
+        assertThat(instance.recovered().keySet(), contains(firstId));
+    }
+
+    @Test
+    public void testStopsAtCorruptedRecord() throws Exception
+    {
+        long firstId = instance.append(bytes(first));
+        instance.append(bytes(second));
+        instance.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(journalFile(), "rw"))
+        {
+            long lastByte = file.length() - 1;
+            file.seek(lastByte);
+            int value = file.read();
+            file.seek(lastByte);
+            file.write(value ^ 0xFF);
+        }
+
+        instance = new EmailJournal(directory, EmailJournal.DEFAULT_COMPACTION_BYTES);
+
+        assertThat(instance.recovered().keySet(), contains(firstId));
+    }
+
+    @Test
+    public void testIgnoresRecordThatIsTooLarge() throws Exception
+    {
+        long firstId = instance.append(bytes(first));
+        instance.close();
+
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(journalFile(), true)))
+        {
+            out.writeInt(EmailJournal.MAGIC);
+            out.writeInt(0);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+
+        instance = new EmailJournal(directory, EmailJournal.DEFAULT_COMPACTION_BYTES);
+
+        assertThat(instance.recovered().keySet(), contains(firstId));
+    }
+
+    @DontRepeat
+    @Test
+    public void testAppendWhenTooLarge() throws Exception
+    {
+        assertThrows(() -> instance.append(new byte[EmailJournal.MAX_EMAIL_BYTES + 1]))
+                .isInstanceOf(IOException.class);
+
+        assertThat(instance.pendingCount(), is(0));
+    }
+
+    @DontRepeat
+    @Test
+    public void testAppendWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.append(null));
+        assertThrows(() -> instance.complete(null));
+    }
+
+    private EmailJournal reopen() throws Exception
+    {
+        instance.close();
+        instance = new EmailJournal(directory, EmailJournal.DEFAULT_COMPACTION_BYTES);
+        return instance;
+    }
+
+    private File journalFile()
+    {
+        return new File(directory, EmailJournal.FILE_NAME);
+    }
+
+    private static byte[] bytes(String string)
+    {
+        return string.getBytes(UTF_8);
+    }
+
+}
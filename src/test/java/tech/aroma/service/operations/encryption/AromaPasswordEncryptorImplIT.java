@@ -38,7 +38,7 @@ import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.
 public class AromaPasswordEncryptorImplIT
 {
 
-    private PasswordEncryptor encryptor;
+    private PasswordDigestScheme scheme;
 
     private AromaPasswordEncryptorImpl instance;
 
@@ -62,9 +62,9 @@ public class AromaPasswordEncryptorImplIT
 
     private void setupMocks() throws Exception
     {
-        encryptor = TestMaterials.newPasswordEncryptor();
+        scheme = TestMaterials.newDigestScheme();
 
-        instance = new AromaPasswordEncryptorImpl(encryptor);
+        instance = new AromaPasswordEncryptorImpl(scheme);
     }
 
     @Repeat(50)
@@ -115,10 +115,30 @@ public class AromaPasswordEncryptorImplIT
         }
     }
 
+    @Repeat(5)
+    @Test
+    public void testMatchWithUnversionedDigest() throws Exception
+    {
+        //Stored before digests carried their scheme
+        PasswordEncryptor legacy = PasswordDigestScheme.LEGACY.newEncryptor();
+        digestedPassword = legacy.encryptPassword(rawPassword);
+
+        assertThat(instance.match(rawPassword, digestedPassword), is(true));
+        assertThat(instance.needsRehash(digestedPassword), is(false));
+
+        AromaPasswordEncryptorImpl stronger = new AromaPasswordEncryptorImpl(scheme.withIterations(scheme.getIterations() * 2));
+        assertThat(stronger.match(rawPassword, digestedPassword), is(true));
+        assertThat(stronger.needsRehash(digestedPassword), is(true));
+
+        String upgraded = stronger.encryptPassword(rawPassword);
+        assertThat(stronger.needsRehash(upgraded), is(false));
+        assertThat(instance.match(rawPassword, upgraded), is(true));
+    }
+
     private void recreateInstance()
     {
-        this.encryptor = TestMaterials.newPasswordEncryptor();
-        this.instance = new AromaPasswordEncryptorImpl(encryptor);
+        this.scheme = TestMaterials.newDigestScheme();
+        this.instance = new AromaPasswordEncryptorImpl(scheme);
     }
 
 }
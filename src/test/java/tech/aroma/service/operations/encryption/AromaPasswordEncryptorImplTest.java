@@ -23,6 +23,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import tech.aroma.thrift.exceptions.InvalidCredentialsException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
 import tech.sirwellington.alchemy.test.junit.runners.*;
 
 import static org.hamcrest.Matchers.is;
@@ -43,6 +44,11 @@ public class AromaPasswordEncryptorImplTest
     @Mock
     private PasswordEncryptor encryptor;
 
+    @Mock
+    private PasswordEncryptor legacyEncryptor;
+
+    private PasswordDigestScheme scheme;
+
     @GenerateString(ALPHABETIC)
     private String password;
 
@@ -61,6 +67,8 @@ public class AromaPasswordEncryptorImplTest
 
     private void setupData() throws Exception
     {
+        scheme = new PasswordDigestScheme("SHA-512", 200_000, 32);
+
         when(encryptor.encryptPassword(password))
                 .thenReturn(encrypted);
 
@@ -70,7 +78,7 @@ public class AromaPasswordEncryptorImplTest
 
     private void setupMocks() throws Exception
     {
-        instance = new AromaPasswordEncryptorImpl(encryptor);
+        instance = new AromaPasswordEncryptorImpl(scheme, s -> s.equals(scheme) ? encryptor : legacyEncryptor);
     }
 
     @DontRepeat
@@ -79,13 +87,17 @@ public class AromaPasswordEncryptorImplTest
     {
         assertThrows(() -> new AromaPasswordEncryptorImpl(null))
                 .isInstanceOf(IllegalArgumentException.class);
+
+        assertThrows(() -> new AromaPasswordEncryptorImpl(scheme, null))
+                .isInstanceOf(IllegalArgumentException.class);
     }
 
     @Test
     public void testEncryptPassword() throws Exception
     {
         String result = instance.encryptPassword(password);
-        assertThat(result, is(encrypted));
+        assertThat(result, is(scheme.tag(encrypted)));
+        assertThat(PasswordDigestScheme.of(result), is(scheme));
     }
 
     @DontRepeat
@@ -113,8 +125,20 @@ public class AromaPasswordEncryptorImplTest
     @Test
     public void testMatch() throws Exception
     {
+        boolean result = instance.match(password, scheme.tag(encrypted));
+        assertThat(result, is(true));
+    }
+
+    @Test
+    public void testMatchWithLegacyDigest() throws Exception
+    {
+        when(legacyEncryptor.checkPassword(password, encrypted))
+                .thenReturn(true);
+
         boolean result = instance.match(password, encrypted);
         assertThat(result, is(true));
+
+        verifyZeroInteractions(encryptor);
     }
 
     @Test
@@ -123,10 +147,29 @@ public class AromaPasswordEncryptorImplTest
         when(encryptor.checkPassword(password, encrypted))
                 .thenReturn(false);
 
-        boolean result = instance.match(password, encrypted);
+        boolean result = instance.match(password, scheme.tag(encrypted));
         assertThat(result, is(false));
     }
 
+    @Test
+    public void testNeedsRehash() throws Exception
+    {
+        assertThat(instance.needsRehash(scheme.tag(encrypted)), is(false));
+        assertThat(instance.needsRehash(encrypted), is(true));
+        assertThat(instance.needsRehash(scheme.withIterations(1_000).tag(encrypted)), is(true));
+    }
+
+    @DontRepeat
+    @Test
+    public void testNeedsRehashWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.needsRehash(""))
+                .isInstanceOf(InvalidCredentialsException.class);
+
+        assertThrows(() -> instance.needsRehash(PasswordDigestScheme.PREFIX + "SHA-256$abc"))
+                .isInstanceOf(OperationFailedException.class);
+    }
+
     @DontRepeat
     @Test
     public void testMatchWhenFails() throws Exception
@@ -134,7 +177,7 @@ public class AromaPasswordEncryptorImplTest
         when(encryptor.checkPassword(password, encrypted))
                 .thenThrow(new RuntimeException());
 
-        assertThrows(() -> instance.match(password, encrypted))
+        assertThrows(() -> instance.match(password, scheme.tag(encrypted)))
                 .isInstanceOf(TException.class);
     }
 
@@ -16,11 +16,9 @@
 
 package tech.aroma.service.operations.encryption;
 
-import org.jasypt.util.password.PasswordEncryptor;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.Mock;
 import tech.sirwellington.alchemy.test.junit.runners.*;
 
 import static org.hamcrest.Matchers.notNullValue;
@@ -35,8 +33,7 @@ import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
 public class AromaPasswordEncryptorTest
 {
 
-    @Mock
-    private PasswordEncryptor encryptor;
+    private PasswordDigestScheme scheme = PasswordDigestScheme.LEGACY;
 
     @Before
     public void setUp() throws Exception
@@ -58,7 +55,7 @@ public class AromaPasswordEncryptorTest
     @Test
     public void testNewInstance()
     {
-        AromaPasswordEncryptor result = AromaPasswordEncryptor.newInstance(encryptor);
+        AromaPasswordEncryptor result = AromaPasswordEncryptor.newInstance(scheme);
         assertThat(result, notNullValue());
     }
 
@@ -26,7 +26,7 @@ import org.junit.runner.RunWith;
 import tech.sirwellington.alchemy.annotations.testing.IntegrationTest;
 import tech.sirwellington.alchemy.test.junit.runners.AlchemyTestRunner;
 
-import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -68,6 +68,46 @@ public class ModuleEncryptionMaterialsDevTest
         assertThat(decryptor, notNullValue());
     }
 
+    @Test
+    public void testProvideCurrentDigestScheme()
+    {
+        PasswordDigestScheme result = instance.provideCurrentDigestScheme();
+        assertThat(result, is(PasswordDigestScheme.LEGACY));
+    }
+
+    @Test
+    public void testProvideCurrentDigestSchemeWhenPinned()
+    {
+        int iterations = PasswordDigestScheme.LEGACY.getIterations() * 2;
+        System.setProperty(ModuleEncryptionMaterialsDev.DIGEST_ITERATIONS_PROPERTY, String.valueOf(iterations));
+
+        try
+        {
+            PasswordDigestScheme result = instance.provideCurrentDigestScheme();
+            assertThat(result, is(PasswordDigestScheme.LEGACY.withIterations(iterations)));
+        }
+        finally
+        {
+            System.clearProperty(ModuleEncryptionMaterialsDev.DIGEST_ITERATIONS_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testProvideCurrentDigestSchemeWhenPinnedBelowLegacy()
+    {
+        int iterations = PasswordDigestScheme.LEGACY.getIterations() / 2;
+        System.setProperty(ModuleEncryptionMaterialsDev.DIGEST_ITERATIONS_PROPERTY, String.valueOf(iterations));
+
+        try
+        {
+            assertThat(instance.provideCurrentDigestScheme(), is(PasswordDigestScheme.LEGACY));
+        }
+        finally
+        {
+            System.clearProperty(ModuleEncryptionMaterialsDev.DIGEST_ITERATIONS_PROPERTY);
+        }
+    }
+
     @Test
     public void testProvideSaltGenerator()
     {
@@ -82,4 +122,14 @@ public class ModuleEncryptionMaterialsDevTest
         assertThat(result, notNullValue());
     }
 
+    @Test
+    public void testOverTheWireDecryptorIsShared()
+    {
+        Injector injector = Guice.createInjector(instance);
+
+        PBEStringEncryptor first = injector.getInstance(PBEStringEncryptor.class);
+        PBEStringEncryptor second = injector.getInstance(PBEStringEncryptor.class);
+        assertThat(first, sameInstance(second));
+    }
+
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.aroma.service.operations.encryption;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jasypt.encryption.pbe.PBEStringEncryptor;
+import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tech.aroma.thrift.authentication.AuthenticationConstants;
+
+/**
+ * Measures {@link OverTheWireDecryptor#decrypt(String)} throughput under contention, with the striped
+ * decryptor against a single shared {@link StandardPBEStringEncryptor}, as was provided before.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=tech.aroma.service.operations.encryption.OverTheWireDecryptorBenchmark}.
+ *
+ * @author SirWellington
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OverTheWireDecryptorBenchmark
+{
+
+    @Param({ "striped", "single" })
+    private String decryptor;
+
+    private String encryptedPassword;
+
+    private OverTheWireDecryptor instance;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        String key = AuthenticationConstants.OVER_THE_WIRE_PASSWORD_ENCRYPTION_KEY;
+        String algorithm = ModuleEncryptionMaterialsDev.OVER_THE_WIRE_ALGORITHM;
+
+        PBEStringEncryptor encryptor;
+
+        if ("striped".equals(decryptor))
+        {
+            encryptor = new StripedPBEStringEncryptor(key, algorithm, StripedPBEStringEncryptor.DEFAULT_STRIPES);
+        }
+        else
+        {
+            StandardPBEStringEncryptor single = new StandardPBEStringEncryptor();
+            single.setPassword(key);
+            single.setAlgorithm(algorithm);
+            encryptor = single;
+        }
+
+        encryptedPassword = encryptor.encrypt("correct horse battery staple");
+        instance = new OverTheWireDecryptorImpl(encryptor);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String decrypt1Thread() throws Exception
+    {
+        return instance.decrypt(encryptedPassword);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String decrypt8Threads() throws Exception
+    {
+        return instance.decrypt(encryptedPassword);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String decrypt64Threads() throws Exception
+    {
+        return instance.decrypt(encryptedPassword);
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        new Runner(new OptionsBuilder()
+                           .include(OverTheWireDecryptorBenchmark.class.getSimpleName())
+                           .build())
+                .run();
+    }
+
+}
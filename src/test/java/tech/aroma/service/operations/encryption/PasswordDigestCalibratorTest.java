@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.aroma.service.operations.encryption;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.aroma.service.operations.encryption.PasswordDigestCalibrator.*;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.NumberGenerators.integers;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class PasswordDigestCalibratorTest
+{
+
+    private final PasswordDigestScheme baseline = new PasswordDigestScheme("SHA-256", 1_000, 16);
+
+    @DontRepeat
+    @Test
+    public void testCalibrate() throws Exception
+    {
+        PasswordDigestScheme result = calibrate(baseline, 20);
+
+        assertThat(result.getAlgorithm(), is(baseline.getAlgorithm()));
+        assertThat(result.getSaltSizeBytes(), is(baseline.getSaltSizeBytes()));
+        assertThat(result.getIterations(), greaterThanOrEqualTo(baseline.getIterations()));
+        assertThat(result.getIterations(), lessThanOrEqualTo(MAX_ITERATIONS));
+    }
+
+    @DontRepeat
+    @Test
+    public void testCalibrateWithBadArgs() throws Exception
+    {
+        assertThrows(() -> calibrate(null, 20));
+        assertThrows(() -> calibrate(baseline, 0));
+    }
+
+    @Test
+    public void testIterationsFor() throws Exception
+    {
+        int floor = one(integers(1, 100_000));
+        long estimate = one(integers(floor, MAX_ITERATIONS));
+
+        int result = iterationsFor(estimate, floor);
+
+        assertThat(result, greaterThanOrEqualTo(floor));
+        assertThat((long) result, lessThanOrEqualTo(estimate));
+
+        if (result != floor)
+        {
+            assertThat(result % ITERATION_STEP, is(0));
+        }
+    }
+
+    @Test
+    public void testIterationsForIsNeverBelowFloor() throws Exception
+    {
+        int floor = one(integers(ITERATION_STEP, 100_000));
+
+        assertThat(iterationsFor(floor / 2, floor), is(floor));
+    }
+
+    @DontRepeat
+    @Test
+    public void testIterationsForIsCapped() throws Exception
+    {
+        assertThat(iterationsFor(Long.MAX_VALUE / 2, 1), is(MAX_ITERATIONS));
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.aroma.service.operations.encryption;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.NumberGenerators.integers;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.HEXADECIMAL;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class PasswordDigestSchemeTest
+{
+
+    @GenerateString(ALPHABETIC)
+    private String algorithm;
+
+    @GenerateString(HEXADECIMAL)
+    private String digest;
+
+    private int iterations;
+    private int saltSize;
+
+    private PasswordDigestScheme instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        iterations = one(integers(1_000, 1_000_000));
+        saltSize = one(integers(8, 64));
+
+        instance = new PasswordDigestScheme(algorithm, iterations, saltSize);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new PasswordDigestScheme("", iterations, saltSize));
+        assertThrows(() -> new PasswordDigestScheme("SHA$256", iterations, saltSize));
+        assertThrows(() -> new PasswordDigestScheme(algorithm, 0, saltSize));
+        assertThrows(() -> new PasswordDigestScheme(algorithm, iterations, 0));
+    }
+
+    @Test
+    public void testTagAndRead() throws Exception
+    {
+        String stored = instance.tag(digest);
+
+        assertThat(stored, startsWith(PasswordDigestScheme.PREFIX));
+        assertThat(PasswordDigestScheme.of(stored), is(instance));
+        assertThat(PasswordDigestScheme.digestIn(stored), is(digest));
+    }
+
+    @Test
+    public void testReadUnversionedDigest() throws Exception
+    {
+        assertThat(PasswordDigestScheme.of(digest), is(PasswordDigestScheme.LEGACY));
+        assertThat(PasswordDigestScheme.digestIn(digest), is(digest));
+    }
+
+    @DontRepeat
+    @Test
+    public void testReadMalformedDigest() throws Exception
+    {
+        assertThrows(() -> PasswordDigestScheme.of(PasswordDigestScheme.PREFIX + algorithm + "$" + digest))
+                .isInstanceOf(OperationFailedException.class);
+
+        assertThrows(() -> PasswordDigestScheme.of(PasswordDigestScheme.PREFIX + algorithm + "$abc$20$" + digest))
+                .isInstanceOf(OperationFailedException.class);
+    }
+
+    @Test
+    public void testSupersedes() throws Exception
+    {
+        assertThat(instance.supersedes(instance), is(false));
+
+        PasswordDigestScheme slightlyWeaker = instance.withIterations(iterations - 1);
+        assertThat(instance.supersedes(slightlyWeaker), is(true));
+
+        PasswordDigestScheme muchWeaker = instance.withIterations(iterations / 2);
+        assertThat(instance.supersedes(muchWeaker), is(true));
+
+        //Never rehashed downward
+        PasswordDigestScheme stronger = instance.withIterations(iterations + 1);
+        assertThat(instance.supersedes(stronger), is(false));
+
+        PasswordDigestScheme smallerSalt = new PasswordDigestScheme(algorithm, iterations, saltSize - 1);
+        assertThat(instance.supersedes(smallerSalt), is(true));
+
+        PasswordDigestScheme otherAlgorithm = new PasswordDigestScheme(algorithm + "2", iterations, saltSize);
+        assertThat(instance.supersedes(otherAlgorithm), is(true));
+    }
+
+    @Test
+    public void testEquals() throws Exception
+    {
+        PasswordDigestScheme same = new PasswordDigestScheme(algorithm, iterations, saltSize);
+
+        assertThat(same, is(instance));
+        assertThat(same.hashCode(), is(instance.hashCode()));
+        assertThat(instance.withIterations(iterations + 1), not(instance));
+    }
+
+    @DontRepeat
+    @Test
+    public void testNewEncryptor() throws Exception
+    {
+        PasswordDigestScheme cheap = new PasswordDigestScheme("SHA-256", 1_000, 16);
+
+        String stored = cheap.newEncryptor().encryptPassword(digest);
+
+        assertThat(cheap.newEncryptor().checkPassword(digest, stored), is(true));
+        assertThat(cheap.withIterations(2_000).newEncryptor().checkPassword(digest, stored), is(false));
+    }
+
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.aroma.service.operations.encryption;
+
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.service.ClientAddress;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.InvalidCredentialsException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.PeopleGenerators.emails;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class PasswordHashingExecutorImplTest
+{
+
+    private MetricRegistry metrics;
+
+    private ExecutorService async;
+
+    private CountDownLatch tasksStarted;
+    private CountDownLatch releaseTasks;
+
+    @GenerateString(ALPHABETIC)
+    private String result;
+
+    @GenerateString(ALPHABETIC)
+    private String address;
+
+    private String email;
+
+    private PasswordHashingExecutorImpl instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        metrics = new MetricRegistry();
+        async = Executors.newCachedThreadPool();
+
+        releaseTasks = new CountDownLatch(1);
+
+        email = one(emails());
+
+        instance = new PasswordHashingExecutorImpl(metrics, 4, 4, 1, 2, 5_000);
+    }
+
+    @After
+    public void tearDown()
+    {
+        releaseTasks.countDown();
+        async.shutdownNow();
+        ClientAddress.clear();
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new PasswordHashingExecutorImpl(null));
+        assertThrows(() -> new PasswordHashingExecutorImpl(metrics, 0, 1, 1, 1, 1));
+        assertThrows(() -> new PasswordHashingExecutorImpl(metrics, 1, 0, 1, 1, 1));
+        assertThrows(() -> new PasswordHashingExecutorImpl(metrics, 1, 1, 0, 1, 1));
+        assertThrows(() -> new PasswordHashingExecutorImpl(metrics, 1, 1, 1, 0, 1));
+        assertThrows(() -> new PasswordHashingExecutorImpl(metrics, 1, 1, 1, 1, 0));
+    }
+
+    @Test
+    public void testExecute() throws Exception
+    {
+        String output = instance.execute(email, () -> result);
+        assertThat(output, is(result));
+
+        assertThat(metrics.timer(name(PasswordHashingExecutor.class, "hash-time")).getCount(), is(1L));
+        assertThat(metrics.timer(name(PasswordHashingExecutor.class, "queue-time")).getCount(), is(1L));
+        assertThat(instance.pendingFor("email:" + email.toLowerCase()), is(0));
+    }
+
+    @Test
+    public void testExecuteWhenAccountHasTooMuchPending() throws Exception
+    {
+        startBlockingTasks(1, i -> email);
+
+        //The same account, in a different case
+        assertThrows(() -> instance.execute(email.toUpperCase(), () -> result))
+                .isInstanceOf(OperationFailedException.class);
+
+        assertThat(metrics.counter(name(PasswordHashingExecutor.class, "rejections")).getCount(), is(1L));
+
+        //Other accounts are unaffected
+        String output = instance.execute(one(emails()), () -> result);
+        assertThat(output, is(result));
+    }
+
+    @Test
+    public void testExecuteWhenAddressHasTooMuchPending() throws Exception
+    {
+        startBlockingTasks(2, i -> i + email);
+
+        ClientAddress.set(address);
+
+        assertThrows(() -> instance.execute(email, () -> result))
+                .isInstanceOf(OperationFailedException.class);
+
+        //A rejection does not hold on to the account's slot
+        assertThat(instance.pendingFor("email:" + email.toLowerCase()), is(0));
+    }
+
+    @DontRepeat
+    @Test
+    public void testExecuteWhenQueueIsFull() throws Exception
+    {
+        instance = new PasswordHashingExecutorImpl(metrics, 1, 1, 5, 5, 5_000);
+
+        startBlockingTasks(1, i -> "a" + email);
+        async.submit(() -> instance.execute("b" + email, () -> result));
+
+        while (instance.pendingFor("email:b" + email.toLowerCase()) == 0)
+        {
+            Thread.sleep(1);
+        }
+
+        //Admitted, and about to be queued behind the blocked task
+        Thread.sleep(50);
+
+        assertThrows(() -> instance.execute("c" + email, () -> result))
+                .isInstanceOf(OperationFailedException.class);
+    }
+
+    @Test
+    public void testExecuteLater() throws Exception
+    {
+        CountDownLatch ran = new CountDownLatch(1);
+
+        instance.executeLater(email, () ->
+        {
+            ran.countDown();
+            return result;
+        });
+
+        assertThat(ran.await(5, TimeUnit.SECONDS), is(true));
+
+        while (instance.pendingFor("email:" + email.toLowerCase()) != 0)
+        {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testExecuteLaterWhenAccountHasTooMuchPending() throws Exception
+    {
+        startBlockingTasks(1, i -> email);
+
+        assertThrows(() -> instance.executeLater(email, () -> result))
+                .isInstanceOf(OperationFailedException.class);
+
+        assertThat(metrics.counter(name(PasswordHashingExecutor.class, "rejections")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testExecuteLaterWhenTaskFails() throws Exception
+    {
+        instance.executeLater(email, () -> { throw new InvalidCredentialsException(); });
+
+        while (instance.pendingFor("email:" + email.toLowerCase()) != 0)
+        {
+            Thread.sleep(1);
+        }
+
+        String output = instance.execute(email, () -> result);
+        assertThat(output, is(result));
+    }
+
+    @Test
+    public void testSlotsAreReturnedWhenTaskFails() throws Exception
+    {
+        assertThrows(() -> instance.execute(email, () -> { throw new InvalidCredentialsException(); }))
+                .isInstanceOf(InvalidCredentialsException.class);
+
+        String output = instance.execute(email, () -> result);
+        assertThat(output, is(result));
+    }
+
+    @DontRepeat
+    @Test
+    public void testExecuteWhenTaskTimesOut() throws Exception
+    {
+        instance = new PasswordHashingExecutorImpl(metrics, 1, 1, 1, 1, 50);
+        tasksStarted = new CountDownLatch(1);
+
+        assertThrows(() -> instance.execute(email, this::blockingTask))
+                .isInstanceOf(OperationFailedException.class);
+    }
+
+    @DontRepeat
+    @Test
+    public void testExecuteWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.execute("", () -> result))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThrows(() -> instance.execute(null, () -> result))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThrows(() -> instance.execute(email, null))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThrows(() -> instance.executeLater("", () -> result))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThrows(() -> instance.executeLater(email, null))
+                .isInstanceOf(InvalidArgumentException.class);
+    }
+
+    private void startBlockingTasks(int count, IntFunction<String> emailFor) throws Exception
+    {
+        tasksStarted = new CountDownLatch(count);
+
+        for (int i = 0; i < count; ++i)
+        {
+            String requester = emailFor.apply(i);
+
+            async.submit(() ->
+            {
+                ClientAddress.set(address);
+                return instance.execute(requester, this::blockingTask);
+            });
+        }
+
+        assertThat(tasksStarted.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    private String blockingTask() throws OperationFailedException
+    {
+        tasksStarted.countDown();
+
+        try
+        {
+            releaseTasks.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            throw new OperationFailedException("interrupted");
+        }
+
+        return result;
+    }
+
+}
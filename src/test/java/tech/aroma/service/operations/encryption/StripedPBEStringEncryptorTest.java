@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.aroma.service.operations.encryption;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
+import org.jasypt.exceptions.AlreadyInitializedException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class StripedPBEStringEncryptorTest
+{
+
+    private static final String ALGORITHM = ModuleEncryptionMaterialsDev.OVER_THE_WIRE_ALGORITHM;
+
+    @GenerateString(ALPHABETIC)
+    private String password;
+
+    @GenerateString(ALPHABETIC)
+    private String message;
+
+    private StripedPBEStringEncryptor instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        instance = new StripedPBEStringEncryptor(password, ALGORITHM, 4);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new StripedPBEStringEncryptor("", ALGORITHM, 1));
+        assertThrows(() -> new StripedPBEStringEncryptor(password, "", 1));
+        assertThrows(() -> new StripedPBEStringEncryptor(password, ALGORITHM, 0));
+
+        assertThat(instance.stripeCount(), is(4));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        //Encrypted on one stripe, decrypted on the next
+        String encrypted = instance.encrypt(message);
+
+        assertThat(encrypted, not(message));
+        assertThat(instance.decrypt(encrypted), is(message));
+    }
+
+    @Test
+    public void testDecryptFromStandardEncryptor() throws Exception
+    {
+        StandardPBEStringEncryptor client = new StandardPBEStringEncryptor();
+        client.setPassword(password);
+        client.setAlgorithm(ALGORITHM);
+
+        for (int i = 0; i < instance.stripeCount() * 2; ++i)
+        {
+            assertThat(instance.decrypt(client.encrypt(message)), is(message));
+        }
+    }
+
+    @DontRepeat
+    @Test
+    public void testDecryptConcurrently() throws Exception
+    {
+        String encrypted = instance.encrypt(message);
+
+        ExecutorService async = Executors.newFixedThreadPool(16);
+
+        try
+        {
+            List<Future<String>> results = new ArrayList<>();
+
+            for (int i = 0; i < 500; ++i)
+            {
+                results.add(async.submit(() -> instance.decrypt(encrypted)));
+            }
+
+            for (Future<String> result : results)
+            {
+                assertThat(result.get(10, TimeUnit.SECONDS), is(message));
+            }
+        }
+        finally
+        {
+            async.shutdownNow();
+        }
+    }
+
+    @DontRepeat
+    @Test
+    public void testSetPassword() throws Exception
+    {
+        assertThrows(() -> instance.setPassword(password))
+                .isInstanceOf(AlreadyInitializedException.class);
+    }
+
+}
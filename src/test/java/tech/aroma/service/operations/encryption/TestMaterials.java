@@ -21,7 +21,6 @@ package tech.aroma.service.operations.encryption;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.jasypt.encryption.pbe.PBEStringEncryptor;
-import org.jasypt.util.password.PasswordEncryptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,9 +33,12 @@ class TestMaterials
 
     private static final Injector GUICE = Guice.createInjector(new ModuleEncryptionMaterialsDev());
 
-    static PasswordEncryptor newPasswordEncryptor()
+    /**
+     * Uses the legacy cost rather than calibrating, to keep the integration tests quick.
+     */
+    static PasswordDigestScheme newDigestScheme()
     {
-        return GUICE.getInstance(PasswordEncryptor.class);
+        return PasswordDigestScheme.LEGACY;
     }
 
     static PBEStringEncryptor newStringEncryptor()
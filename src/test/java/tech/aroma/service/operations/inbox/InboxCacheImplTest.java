@@ -0,0 +1,308 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.inbox;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import tech.aroma.data.InboxRepository;
+import tech.aroma.thrift.Message;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+import static tech.sirwellington.alchemy.generator.CollectionGenerators.listOf;
+import static tech.sirwellington.alchemy.generator.ObjectGenerators.pojos;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(25)
+@RunWith(AlchemyTestRunner.class)
+public class InboxCacheImplTest
+{
+
+    private static final int MESSAGES_PER_INBOX = 10;
+    private static final long NEVER = 3_600_000;
+
+    @Mock
+    private InboxRepository inboxRepo;
+
+    private final Executor directExecutor = Runnable::run;
+
+    private MetricRegistry metrics;
+
+    @GenerateString(UUID)
+    private String userId;
+
+    private List<Message> messages;
+    private List<Message> newestFirst;
+
+    private InboxCacheImpl instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        metrics = new MetricRegistry();
+
+        messages = listOf(pojos(Message.class), MESSAGES_PER_INBOX * 3);
+        newestFirst = newestFirst(messages);
+
+        when(inboxRepo.getMessagesForUser(userId)).thenReturn(messages);
+
+        instance = new InboxCacheImpl(inboxRepo, directExecutor, metrics, MESSAGES_PER_INBOX, 100, NEVER);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor()
+    {
+        assertThrows(() -> new InboxCacheImpl(null, directExecutor, metrics, 1, 1, 1));
+        assertThrows(() -> new InboxCacheImpl(inboxRepo, null, metrics, 1, 1, 1));
+        assertThrows(() -> new InboxCacheImpl(inboxRepo, directExecutor, null, 1, 1, 1));
+        assertThrows(() -> new InboxCacheImpl(inboxRepo, directExecutor, metrics, 0, 1, 1));
+        assertThrows(() -> new InboxCacheImpl(inboxRepo, directExecutor, metrics, 1, 0, 1));
+        assertThrows(() -> new InboxCacheImpl(inboxRepo, directExecutor, metrics, 1, 1, 0));
+    }
+
+    @Test
+    public void testGetRecentMessages() throws Exception
+    {
+        List<Message> first = instance.getRecentMessages(userId, 3);
+        List<Message> second = instance.getRecentMessages(userId, MESSAGES_PER_INBOX);
+
+        assertThat(first, is(newestFirst.subList(0, 3)));
+        assertThat(second, is(newestFirst.subList(0, MESSAGES_PER_INBOX)));
+
+        verify(inboxRepo, times(1)).getMessagesForUser(userId);
+        assertThat(metrics.counter(name(InboxCache.class, "loads")).getCount(), is(1L));
+        assertThat(metrics.counter(name(InboxCache.class, "hits")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testDeepPagesGoToRepository() throws Exception
+    {
+        instance.getRecentMessages(userId, 1);
+
+        int limit = MESSAGES_PER_INBOX * 2;
+        List<Message> result = instance.getRecentMessages(userId, limit);
+
+        assertThat(result, is(newestFirst.subList(0, limit)));
+        verify(inboxRepo, times(2)).getMessagesForUser(userId);
+        assertThat(metrics.counter(name(InboxCache.class, "deep-reads")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testDeepReadIsCached() throws Exception
+    {
+        instance.getRecentMessages(userId, MESSAGES_PER_INBOX * 2);
+        instance.getRecentMessages(userId, MESSAGES_PER_INBOX);
+
+        verify(inboxRepo, times(1)).getMessagesForUser(userId);
+    }
+
+    @Test
+    public void testDeepReadStartedBeforeDismissalIsNotCached() throws Exception
+    {
+        instance.getRecentMessages(userId, 1);
+
+        Message newest = newestFirst.get(0);
+
+        //The dismissal lands while the deep read is in the repository
+        when(inboxRepo.getMessagesForUser(userId))
+                .thenAnswer(invocation ->
+                {
+                    instance.dismissed(userId, Arrays.asList(newest.messageId));
+                    return messages;
+                });
+
+        instance.getRecentMessages(userId, MESSAGES_PER_INBOX * 2);
+
+        List<Message> result = instance.getRecentMessages(userId, 1);
+        assertThat(result, contains(newestFirst.get(1)));
+        assertThat(metrics.counter(name(InboxCache.class, "stale-reloads")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testDeepPagesOfSmallInboxesStayInMemory() throws Exception
+    {
+        List<Message> fewMessages = messages.subList(0, MESSAGES_PER_INBOX / 2);
+        when(inboxRepo.getMessagesForUser(userId)).thenReturn(fewMessages);
+
+        instance.getRecentMessages(userId, 1);
+        List<Message> result = instance.getRecentMessages(userId, MESSAGES_PER_INBOX * 5);
+
+        assertThat(result, is(newestFirst(fewMessages)));
+        verify(inboxRepo, times(1)).getMessagesForUser(userId);
+    }
+
+    @Test
+    public void testDismissed() throws Exception
+    {
+        instance.getRecentMessages(userId, 1);
+
+        Message newest = newestFirst.get(0);
+        instance.dismissed(userId, Arrays.asList(newest.messageId));
+
+        List<Message> result = instance.getRecentMessages(userId, 1);
+        assertThat(result, contains(newestFirst.get(1)));
+
+        verify(inboxRepo, times(1)).getMessagesForUser(userId);
+    }
+
+    @Test
+    public void testCleared() throws Exception
+    {
+        instance.getRecentMessages(userId, 1);
+        instance.cleared(userId);
+
+        assertThat(instance.getRecentMessages(userId, MESSAGES_PER_INBOX * 5), is(empty()));
+        verify(inboxRepo, times(1)).getMessagesForUser(userId);
+    }
+
+    @Test
+    public void testApplicationDeleted() throws Exception
+    {
+        instance.getRecentMessages(userId, 1);
+
+        String appId = newestFirst.get(0).applicationId;
+        instance.applicationDeleted(appId);
+
+        List<Message> expected = newestFirst.subList(0, MESSAGES_PER_INBOX)
+                .stream()
+                .filter(message -> !message.applicationId.equals(appId))
+                .collect(toList());
+
+        assertThat(instance.getRecentMessages(userId, MESSAGES_PER_INBOX), is(expected));
+        verify(inboxRepo, times(1)).getMessagesForUser(userId);
+    }
+
+    @DontRepeat
+    @Test
+    public void testReloadStartedBeforeDismissalIsDropped() throws Exception
+    {
+        List<Runnable> reloads = new ArrayList<>();
+        instance = new InboxCacheImpl(inboxRepo, reloads::add, metrics, MESSAGES_PER_INBOX, 100, 1);
+        instance.getRecentMessages(userId, 1);
+
+        Thread.sleep(5);
+
+        //Starts a reload, which reads the Inbox from before the dismissal
+        instance.getRecentMessages(userId, 1);
+        assertThat(reloads, hasSize(1));
+
+        instance.dismissed(userId, Arrays.asList(newestFirst.get(0).messageId));
+        reloads.remove(0).run();
+
+        List<Message> result = instance.getRecentMessages(userId, 1);
+        assertThat(result, contains(newestFirst.get(1)));
+        assertThat(metrics.counter(name(InboxCache.class, "stale-reloads")).getCount(), is(1L));
+    }
+
+    @DontRepeat
+    @Test
+    public void testReloadStartedBeforeClearIsDropped() throws Exception
+    {
+        List<Runnable> reloads = new ArrayList<>();
+        instance = new InboxCacheImpl(inboxRepo, reloads::add, metrics, MESSAGES_PER_INBOX, 100, 1);
+        instance.getRecentMessages(userId, 1);
+
+        Thread.sleep(5);
+
+        instance.getRecentMessages(userId, 1);
+        instance.cleared(userId);
+        reloads.remove(0).run();
+
+        assertThat(instance.getRecentMessages(userId, MESSAGES_PER_INBOX), is(empty()));
+    }
+
+    @DontRepeat
+    @Test
+    public void testDismissedWhenInboxIsNotLoaded() throws Exception
+    {
+        instance.dismissed(userId, Arrays.asList(newestFirst.get(0).messageId));
+        instance.cleared(userId);
+        instance.applicationDeleted(newestFirst.get(0).applicationId);
+
+        verifyZeroInteractions(inboxRepo);
+    }
+
+    @DontRepeat
+    @Test
+    public void testInboxIsRefreshed() throws Exception
+    {
+        instance = new InboxCacheImpl(inboxRepo, directExecutor, metrics, MESSAGES_PER_INBOX, 100, 1);
+        instance.getRecentMessages(userId, 1);
+
+        List<Message> newMessages = listOf(pojos(Message.class), MESSAGES_PER_INBOX);
+        when(inboxRepo.getMessagesForUser(userId)).thenReturn(newMessages);
+
+        Thread.sleep(5);
+
+        instance.getRecentMessages(userId, 1);
+        List<Message> result = instance.getRecentMessages(userId, MESSAGES_PER_INBOX);
+
+        assertThat(result, is(newestFirst(newMessages)));
+    }
+
+    @Test
+    public void testWhenRepositoryFails() throws Exception
+    {
+        when(inboxRepo.getMessagesForUser(userId)).thenThrow(new OperationFailedException());
+
+        assertThrows(() -> instance.getRecentMessages(userId, 1))
+                .isInstanceOf(OperationFailedException.class);
+
+        assertThrows(() -> instance.getRecentMessages(userId, MESSAGES_PER_INBOX * 2))
+                .isInstanceOf(OperationFailedException.class);
+    }
+
+    @DontRepeat
+    @Test
+    public void testWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.getRecentMessages("", 1))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThrows(() -> instance.getRecentMessages(userId, 0))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThrows(() -> instance.dismissed(userId, null));
+        assertThrows(() -> instance.cleared(""));
+        assertThrows(() -> instance.applicationDeleted(null));
+    }
+
+    private static List<Message> newestFirst(List<Message> messages)
+    {
+        return messages.stream()
+                .sorted(Comparator.comparingLong(Message::getTimeMessageReceived).reversed())
+                .collect(toList());
+    }
+
+}
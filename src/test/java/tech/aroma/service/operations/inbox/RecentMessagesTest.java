@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.inbox;
+
+import java.util.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.Message;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.CollectionGenerators.listOf;
+import static tech.sirwellington.alchemy.generator.NumberGenerators.integers;
+import static tech.sirwellington.alchemy.generator.ObjectGenerators.pojos;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class RecentMessagesTest
+{
+
+    private static final int CAPACITY = 20;
+
+    private List<Message> messages;
+
+    private List<Message> newestFirst;
+
+    private RecentMessages instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        messages = listOf(pojos(Message.class), 30);
+
+        newestFirst = messages.stream()
+                .sorted(Comparator.comparingLong(Message::getTimeMessageReceived).reversed())
+                .collect(toList());
+
+        instance = RecentMessages.of(messages, CAPACITY);
+    }
+
+    @Test
+    public void testOf() throws Exception
+    {
+        assertThat(instance.size(), is(CAPACITY));
+        assertThat(instance.capacity(), is(CAPACITY));
+        assertThat(instance.isComplete(), is(false));
+    }
+
+    @Test
+    public void testOfWhenInboxFits() throws Exception
+    {
+        instance = RecentMessages.of(messages.subList(0, CAPACITY), CAPACITY);
+
+        assertThat(instance.size(), is(CAPACITY));
+        assertThat(instance.isComplete(), is(true));
+    }
+
+    @Test
+    public void testNewest() throws Exception
+    {
+        int limit = one(integers(1, CAPACITY));
+
+        List<Message> result = instance.newest(limit);
+        assertThat(result, is(newestFirst.subList(0, limit)));
+    }
+
+    @Test
+    public void testNewestBeyondSize() throws Exception
+    {
+        List<Message> result = instance.newest(CAPACITY * 2);
+        assertThat(result, is(newestFirst.subList(0, CAPACITY)));
+    }
+
+    @Test
+    public void testMessagesAreMaterialisedWhole() throws Exception
+    {
+        Message newest = newestFirst.get(0);
+
+        Message result = instance.newest(1).get(0);
+        assertThat(result, is(newest));
+        assertThat(result, not(sameInstance(newest)));
+    }
+
+    @Test
+    public void testMessageWithoutOptionalFields() throws Exception
+    {
+        Message bare = new Message().setTitle(newestFirst.get(0).title);
+
+        instance = RecentMessages.of(Arrays.asList(bare), CAPACITY);
+
+        Message result = instance.newest(1).get(0);
+        assertThat(result, is(bare));
+        assertThat(result.isSetApplicationName(), is(false));
+        assertThat(result.isSetMessageId(), is(false));
+    }
+
+    @Test
+    public void testApplicationNamesAreInterned() throws Exception
+    {
+        Message first = new Message(newestFirst.get(0)).setApplicationName(new String("Aroma"));
+        Message second = new Message(newestFirst.get(1)).setApplicationName(new String("Aroma"));
+
+        instance = RecentMessages.of(Arrays.asList(first, second), CAPACITY);
+
+        List<Message> result = instance.newest(2);
+        assertThat(result.get(0).applicationName, sameInstance(result.get(1).applicationName));
+    }
+
+    @Test
+    public void testWithout() throws Exception
+    {
+        Message first = newestFirst.get(0);
+        Message third = newestFirst.get(2);
+        Set<String> ids = new HashSet<>(Arrays.asList(first.messageId, third.messageId, "not-there"));
+
+        RecentMessages result = instance.without(ids);
+        assertThat(result, not(sameInstance(instance)));
+        assertThat(result.size(), is(CAPACITY - 2));
+        assertThat(result.isComplete(), is(instance.isComplete()));
+
+        List<Message> expected = new ArrayList<>(newestFirst.subList(0, CAPACITY));
+        expected.remove(first);
+        expected.remove(third);
+
+        assertThat(result.newest(CAPACITY), is(expected));
+
+        //The original is left as it was
+        assertThat(instance.size(), is(CAPACITY));
+        assertThat(instance.newest(CAPACITY), is(newestFirst.subList(0, CAPACITY)));
+    }
+
+    @Test
+    public void testWithoutApplication() throws Exception
+    {
+        Message second = newestFirst.get(1);
+
+        RecentMessages result = instance.withoutApplication(second.applicationId);
+
+        List<Message> expected = newestFirst.subList(0, CAPACITY)
+                .stream()
+                .filter(message -> !message.applicationId.equals(second.applicationId))
+                .collect(toList());
+
+        assertThat(result.newest(CAPACITY), is(expected));
+        assertThat(instance.size(), is(CAPACITY));
+    }
+
+    @Test
+    public void testEmpty() throws Exception
+    {
+        instance = RecentMessages.empty(CAPACITY);
+
+        assertThat(instance.size(), is(0));
+        assertThat(instance.capacity(), is(CAPACITY));
+        assertThat(instance.isComplete(), is(true));
+        assertThat(instance.newest(CAPACITY), is(empty()));
+    }
+
+}
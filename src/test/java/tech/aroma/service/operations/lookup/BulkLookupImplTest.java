@@ -0,0 +1,271 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.lookup;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import tech.aroma.data.ApplicationRepository;
+import tech.aroma.data.FollowerRepository;
+import tech.aroma.data.UserRepository;
+import tech.aroma.thrift.Application;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.exceptions.*;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+import static tech.aroma.thrift.generators.ApplicationGenerators.applications;
+import static tech.aroma.thrift.generators.UserGenerators.users;
+import static tech.sirwellington.alchemy.generator.CollectionGenerators.listOf;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class BulkLookupImplTest
+{
+
+    private static final int MAX_IDS = 20;
+
+    @Mock
+    private ApplicationRepository appRepo;
+
+    @Mock
+    private UserRepository userRepo;
+
+    @Mock
+    private FollowerRepository followerRepo;
+
+    private ExecutorService executor;
+
+    private MetricRegistry metrics;
+
+    @GenerateString(UUID)
+    private String userId;
+
+    @GenerateString(ALPHABETIC)
+    private String badId;
+
+    private List<Application> apps;
+    private List<String> appIds;
+
+    private List<User> users;
+    private List<String> userIds;
+
+    private BulkLookupImpl instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        executor = Executors.newFixedThreadPool(4);
+        metrics = new MetricRegistry();
+
+        apps = listOf(applications(), 10);
+        appIds = apps.stream().map(app -> app.applicationId).collect(toList());
+
+        users = listOf(users(), 10);
+        userIds = users.stream().map(user -> user.userId).collect(toList());
+
+        for (Application app : apps)
+        {
+            when(appRepo.getById(app.applicationId)).thenReturn(new Application(app));
+        }
+
+        for (User user : users)
+        {
+            when(userRepo.getUser(user.userId)).thenReturn(user);
+        }
+
+        instance = new BulkLookupImpl(appRepo, userRepo, followerRepo, executor, metrics, MAX_IDS);
+    }
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new BulkLookupImpl(null, userRepo, followerRepo, executor, metrics));
+        assertThrows(() -> new BulkLookupImpl(appRepo, null, followerRepo, executor, metrics));
+        assertThrows(() -> new BulkLookupImpl(appRepo, userRepo, null, executor, metrics));
+        assertThrows(() -> new BulkLookupImpl(appRepo, userRepo, followerRepo, null, metrics));
+        assertThrows(() -> new BulkLookupImpl(appRepo, userRepo, followerRepo, executor, null));
+        assertThrows(() -> new BulkLookupImpl(appRepo, userRepo, followerRepo, executor, metrics, 0));
+    }
+
+    @Test
+    public void testGetApplications() throws Exception
+    {
+        Map<String, Application> result = instance.getApplications(userId, appIds, false);
+
+        assertThat(result.keySet(), contains(appIds.toArray()));
+
+        for (Application app : apps)
+        {
+            assertThat(result.get(app.applicationId), is(app));
+        }
+
+        verifyZeroInteractions(followerRepo);
+    }
+
+    @Test
+    public void testGetApplicationsWithFollowingInfo() throws Exception
+    {
+        List<Application> followed = apps.subList(0, apps.size() / 2);
+        when(followerRepo.getApplicationsFollowedBy(userId)).thenReturn(followed);
+
+        Map<String, Application> result = instance.getApplications(userId, appIds, true);
+
+        for (Application app : apps)
+        {
+            boolean isFollowing = followed.contains(app);
+            assertThat(result.get(app.applicationId).isIsFollowing(), is(isFollowing));
+        }
+
+        verify(followerRepo, times(1)).getApplicationsFollowedBy(userId);
+        verify(followerRepo, never()).followingExists(anyString(), anyString());
+    }
+
+    @Test
+    public void testGetApplicationsWhenFollowsCannotBeLoaded() throws Exception
+    {
+        when(followerRepo.getApplicationsFollowedBy(userId))
+                .thenThrow(new OperationFailedException());
+
+        Map<String, Application> result = instance.getApplications(userId, appIds, true);
+
+        assertThat(result.size(), is(apps.size()));
+        result.values().forEach(app -> assertThat(app.isIsFollowing(), is(false)));
+    }
+
+    @Test
+    public void testGetApplicationsReadsEachIdOnce() throws Exception
+    {
+        List<String> ids = new ArrayList<>(appIds);
+        ids.addAll(appIds);
+
+        Map<String, Application> result = instance.getApplications(userId, ids, false);
+        assertThat(result.size(), is(apps.size()));
+
+        for (String appId : appIds)
+        {
+            verify(appRepo, times(1)).getById(appId);
+        }
+    }
+
+    @Test
+    public void testGetApplicationsLeavesOutMissingApplications() throws Exception
+    {
+        String missingId = appIds.get(0);
+
+        when(appRepo.getById(missingId))
+                .thenThrow(new ApplicationDoesNotExistException());
+
+        Map<String, Application> result = instance.getApplications(userId, appIds, false);
+
+        assertThat(result.size(), is(apps.size() - 1));
+        assertThat(result, not(hasKey(missingId)));
+    }
+
+    @Test
+    public void testGetApplicationsWhenRepositoryFails() throws Exception
+    {
+        when(appRepo.getById(appIds.get(0)))
+                .thenThrow(new OperationFailedException());
+
+        assertThrows(() -> instance.getApplications(userId, appIds, false))
+                .isInstanceOf(OperationFailedException.class);
+    }
+
+    @Test
+    public void testGetApplicationsWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.getApplications(userId, null, false))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThrows(() -> instance.getApplications(userId, Collections.singletonList(badId), false))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        List<String> tooMany = listOf(applications(), MAX_IDS + 1)
+                .stream()
+                .map(app -> app.applicationId)
+                .collect(toList());
+
+        assertThrows(() -> instance.getApplications(userId, tooMany, false))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        verifyZeroInteractions(appRepo);
+    }
+
+    @Test
+    public void testGetUsers() throws Exception
+    {
+        Map<String, User> result = instance.getUsers(userIds);
+
+        assertThat(result.keySet(), contains(userIds.toArray()));
+
+        for (User user : users)
+        {
+            assertThat(result.get(user.userId), is(user));
+        }
+    }
+
+    @Test
+    public void testGetUsersLeavesOutMissingUsers() throws Exception
+    {
+        String missingId = userIds.get(0);
+
+        when(userRepo.getUser(missingId))
+                .thenThrow(new UserDoesNotExistException());
+
+        Map<String, User> result = instance.getUsers(userIds);
+
+        assertThat(result.size(), is(users.size() - 1));
+        assertThat(result, not(hasKey(missingId)));
+    }
+
+    @Test
+    public void testGetUsersWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.getUsers(null))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThrows(() -> instance.getUsers(Collections.singletonList(badId)))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        verifyZeroInteractions(userRepo);
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.media;
+
+import java.util.UUID;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.BinaryGenerators.binary;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(100)
+@RunWith(AlchemyTestRunner.class)
+public class ContentIdsTest
+{
+
+    @GenerateString(ALPHABETIC)
+    private String notAnId;
+
+    @Test
+    public void testContentIdFor() throws Exception
+    {
+        byte[] data = one(binary(1_000));
+
+        String contentId = ContentIds.contentIdFor(data);
+        assertThat(contentId, is(ContentIds.contentIdFor(data.clone())));
+
+        UUID uuid = UUID.fromString(contentId);
+        assertThat(uuid.version(), is(ContentIds.VERSION));
+        assertThat(uuid.variant(), is(2));
+    }
+
+    @Test
+    public void testContentIdForDifferentContent() throws Exception
+    {
+        byte[] first = one(binary(1_000));
+        byte[] second = first.clone();
+        second[0] ^= 1;
+
+        assertThat(ContentIds.contentIdFor(first), not(ContentIds.contentIdFor(second)));
+    }
+
+    @Test
+    public void testIsContentId() throws Exception
+    {
+        String contentId = ContentIds.contentIdFor(one(binary(100)));
+
+        assertThat(ContentIds.isContentId(contentId), is(true));
+        assertThat(ContentIds.isContentId(UUID.randomUUID().toString()), is(false));
+        assertThat(ContentIds.isContentId(notAnId), is(false));
+    }
+
+}
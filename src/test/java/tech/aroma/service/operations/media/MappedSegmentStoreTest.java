@@ -0,0 +1,215 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.media;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.ImageType;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.aroma.service.operations.media.SlabAllocatorTest.bytesOf;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.BinaryGenerators.binary;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class MappedSegmentStoreTest
+{
+
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int MAX_BYTES = 4 * SEGMENT_SIZE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @GenerateString(ALPHABETIC)
+    private String key;
+
+    @GeneratePojo
+    private Dimension dimension;
+
+    private byte[] data;
+
+    private CachedMedia media;
+
+    private File directory;
+
+    private MappedSegmentStore instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        data = one(binary(1000));
+        media = new CachedMedia(ByteBuffer.wrap(data), dimension, ImageType.JPEG);
+
+        directory = folder.newFolder();
+        instance = new MappedSegmentStore(directory, SEGMENT_SIZE, MAX_BYTES);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new MappedSegmentStore(null, SEGMENT_SIZE, MAX_BYTES));
+        assertThrows(() -> new MappedSegmentStore(directory, 0, MAX_BYTES));
+        assertThrows(() -> new MappedSegmentStore(directory, SEGMENT_SIZE, SEGMENT_SIZE));
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception
+    {
+        assertThat(instance.put(key, media), is(true));
+
+        CachedMedia result = instance.get(key);
+        assertThat(result, notNullValue());
+        assertThat(result.data().isDirect(), is(true));
+        assertThat(bytesOf(result.data()), is(data));
+        assertThat(result.dimension(), is(dimension));
+        assertThat(result.imageType(), is(ImageType.JPEG));
+    }
+
+    @Test
+    public void testGetWhenMissing() throws Exception
+    {
+        assertThat(instance.get(key), nullValue());
+        assertThat(instance.contains(key), is(false));
+    }
+
+    @Test
+    public void testPutWhenLargerThanASegment() throws Exception
+    {
+        CachedMedia large = new CachedMedia(ByteBuffer.wrap(one(binary(SEGMENT_SIZE))), null, null);
+
+        assertThat(instance.put(key, large), is(false));
+        assertThat(instance.contains(key), is(false));
+    }
+
+    @Test
+    public void testPutWithoutDetails() throws Exception
+    {
+        instance.put(key, new CachedMedia(ByteBuffer.wrap(data), null, null));
+
+        CachedMedia result = instance.get(key);
+        assertThat(result.dimension(), nullValue());
+        assertThat(result.imageType(), nullValue());
+    }
+
+    @Test
+    public void testIndexIsReloaded() throws Exception
+    {
+        instance.put(key, media);
+        instance.put("removed|full", media);
+        instance.removeAll("removed|");
+        instance.flush();
+
+        MappedSegmentStore reloaded = new MappedSegmentStore(directory, SEGMENT_SIZE, MAX_BYTES);
+
+        assertThat(reloaded.size(), is(1));
+        assertThat(bytesOf(reloaded.get(key).data()), is(data));
+        assertThat(reloaded.get(key).dimension(), is(dimension));
+        assertThat(reloaded.contains("removed|full"), is(false));
+    }
+
+    @Test
+    public void testReloadStopsAtTornRecord() throws Exception
+    {
+        instance.put("first", media);
+        instance.put("second", media);
+        instance.flush();
+
+        File segment = directory.listFiles()[0];
+
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw"))
+        {
+            //Somewhere in the data of the second record
+            file.seek(1500);
+            int original = file.read();
+            file.seek(1500);
+            file.write(~original);
+        }
+
+        MappedSegmentStore reloaded = new MappedSegmentStore(directory, SEGMENT_SIZE, MAX_BYTES);
+        assertThat(reloaded.contains("first"), is(true));
+        assertThat(reloaded.contains("second"), is(false));
+
+        reloaded.put("third", media);
+        assertThat(bytesOf(reloaded.get("third").data()), is(data));
+    }
+
+    @Test
+    public void testOldestSegmentIsDroppedWhenFull() throws Exception
+    {
+        for (int i = 0; i < 20; ++i)
+        {
+            instance.put("key-" + i, media);
+        }
+
+        assertThat(instance.segmentCount(), is(4));
+        assertThat(instance.contains("key-0"), is(false));
+        assertThat(instance.contains("key-19"), is(true));
+        assertThat(directory.listFiles().length, is(4));
+    }
+
+    @Test
+    public void testMostlyDeadSegmentIsCompacted() throws Exception
+    {
+        //Fills the first segment
+        instance.put("keep", media);
+        instance.put("drop-1", media);
+        instance.put("drop-2", media);
+
+        instance.removeAll("drop-");
+
+        //Forces a new segment, which compacts the first
+        instance.put("next-1", media);
+        instance.put("next-2", media);
+
+        assertThat(instance.contains("keep"), is(true));
+        assertThat(bytesOf(instance.get("keep").data()), is(data));
+        assertThat(instance.segmentCount(), is(1));
+
+        instance.flush();
+        MappedSegmentStore reloaded = new MappedSegmentStore(directory, SEGMENT_SIZE, MAX_BYTES);
+        assertThat(reloaded.contains("keep"), is(true));
+        assertThat(reloaded.contains("drop-1"), is(false));
+        assertThat(reloaded.size(), is(3));
+    }
+
+    @DontRepeat
+    @Test
+    public void testWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.put(null, media));
+        assertThrows(() -> instance.put(key, null));
+    }
+
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.media;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import tech.aroma.data.MediaRepository;
+import tech.aroma.service.operations.thumbnails.ImageNormalizer;
+import tech.aroma.thrift.Image;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.nio.file.attribute.PosixFilePermissions.fromString;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+import static tech.aroma.thrift.generators.ImageGenerators.appIcons;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class MediaStoreImplTest
+{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private MediaRepository mediaRepo;
+
+    @Mock
+    private ImageNormalizer imageNormalizer;
+
+    @Mock
+    private MediaValidators validators;
+
+    @Mock
+    private MediaCache mediaCache;
+
+    private MetricRegistry metrics;
+
+    private Image image;
+
+    private Image normalizedImage;
+
+    private String contentId;
+
+    @GenerateString(UUID)
+    private String legacyId;
+
+    private File directory;
+
+    private ReferenceCounts references;
+
+    private MediaStoreImpl instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        setupData();
+        setupMocks();
+
+        instance = new MediaStoreImpl(mediaRepo, imageNormalizer, validators, mediaCache, metrics, references);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        references.close();
+    }
+
+    private void setupData() throws Exception
+    {
+        metrics = new MetricRegistry();
+        directory = folder.newFolder();
+        references = new ReferenceCounts(directory);
+
+        image = one(appIcons());
+        normalizedImage = one(appIcons());
+        contentId = ContentIds.contentIdFor(normalizedImage.getData());
+    }
+
+    private void setupMocks() throws Exception
+    {
+        when(imageNormalizer.normalize(image))
+                .thenReturn(normalizedImage);
+
+        when(mediaRepo.containsMedia(contentId))
+                .thenReturn(false)
+                .thenReturn(true);
+
+        when(mediaRepo.getMedia(contentId))
+                .thenReturn(new Image(normalizedImage));
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new MediaStoreImpl(null, imageNormalizer, validators, mediaCache, metrics, references));
+        assertThrows(() -> new MediaStoreImpl(mediaRepo, null, validators, mediaCache, metrics, references));
+        assertThrows(() -> new MediaStoreImpl(mediaRepo, imageNormalizer, null, mediaCache, metrics, references));
+        assertThrows(() -> new MediaStoreImpl(mediaRepo, imageNormalizer, validators, null, metrics, references));
+        assertThrows(() -> new MediaStoreImpl(mediaRepo, imageNormalizer, validators, mediaCache, null, references));
+    }
+
+    @DontRepeat
+    @Test
+    public void testCountsAreKeptInPrivateDirectory() throws Exception
+    {
+        File dataDirectory = folder.newFolder();
+
+        new MediaStoreImpl(mediaRepo, imageNormalizer, validators, mediaCache, metrics, dataDirectory);
+
+        File countsDirectory = new File(dataDirectory, MediaStoreImpl.DIRECTORY_NAME);
+        assertThat(new File(countsDirectory, ReferenceCounts.FILE_NAME).exists(), is(true));
+        assertThat(Files.getPosixFilePermissions(countsDirectory.toPath()), is(fromString("rwx------")));
+    }
+
+    @Test
+    public void testStore() throws Exception
+    {
+        String result = instance.store(image);
+
+        assertThat(result, is(contentId));
+        verify(mediaRepo).saveMedia(contentId, normalizedImage);
+        assertThat(references.get(contentId), is(1));
+    }
+
+    @Test
+    public void testStoreWhenAlreadyStored() throws Exception
+    {
+        String first = instance.store(image);
+        String second = instance.store(image);
+
+        assertThat(first, is(contentId));
+        assertThat(second, is(contentId));
+
+        verify(mediaRepo, times(1)).saveMedia(contentId, normalizedImage);
+        assertThat(metrics.counter(name(MediaStore.class, "deduplicated")).getCount(), is(1L));
+        assertThat(references.get(contentId), is(2));
+    }
+
+    @Test
+    public void testStoreWhenStoredElsewhere() throws Exception
+    {
+        //Stored by another node, whose references are not counted here
+        when(mediaRepo.containsMedia(contentId))
+                .thenReturn(true);
+
+        String result = instance.store(image);
+
+        assertThat(result, not(contentId));
+        assertThat(ContentIds.isContentId(result), is(false));
+        verify(mediaRepo).saveMedia(result, normalizedImage);
+        verify(mediaRepo, never()).saveMedia(contentId, normalizedImage);
+        assertThat(references.get(contentId), is(0));
+        assertThat(metrics.counter(name(MediaStore.class, "uncounted")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testStoreWithoutReferenceCounts() throws Exception
+    {
+        instance = new MediaStoreImpl(mediaRepo, imageNormalizer, validators, mediaCache, metrics, (ReferenceCounts) null);
+
+        String result = instance.store(image);
+
+        assertThat(ContentIds.isContentId(result), is(false));
+        verify(mediaRepo).saveMedia(result, normalizedImage);
+    }
+
+    @Test
+    public void testStoreWhenHashCollides() throws Exception
+    {
+        references.compareAndSet(contentId, 0, 1);
+
+        when(mediaRepo.containsMedia(contentId))
+                .thenReturn(true);
+
+        when(mediaRepo.getMedia(contentId))
+                .thenReturn(one(appIcons()));
+
+        String result = instance.store(image);
+
+        assertThat(result, not(contentId));
+        assertThat(ContentIds.isContentId(result), is(false));
+        verify(mediaRepo).saveMedia(result, normalizedImage);
+        assertThat(references.get(contentId), is(1));
+    }
+
+    @Test
+    public void testStoreWhenImageIsRejected() throws Exception
+    {
+        when(imageNormalizer.normalize(image))
+                .thenThrow(new InvalidArgumentException());
+
+        assertThrows(() -> instance.store(image))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        verifyZeroInteractions(mediaRepo);
+    }
+
+    @Test
+    public void testRelease() throws Exception
+    {
+        instance.store(image);
+        instance.store(image);
+
+        instance.release(contentId);
+        verify(mediaRepo, never()).deleteMedia(contentId);
+        assertThat(references.get(contentId), is(1));
+
+        instance.release(contentId);
+        verify(mediaRepo).deleteMedia(contentId);
+        verify(mediaRepo).deleteAllThumbnails(contentId);
+        verify(validators).forget(contentId);
+        verify(mediaCache).evict(contentId);
+        assertThat(references.get(contentId), is(0));
+    }
+
+    @Test
+    public void testReleaseAfterRestart() throws Exception
+    {
+        instance.store(image);
+        references.close();
+
+        references = new ReferenceCounts(directory);
+        instance = new MediaStoreImpl(mediaRepo, imageNormalizer, validators, mediaCache, metrics, references);
+
+        instance.release(contentId);
+
+        verify(mediaRepo).deleteMedia(contentId);
+        verify(mediaRepo).deleteAllThumbnails(contentId);
+    }
+
+    @Test
+    public void testReleaseWhenDeleteFails() throws Exception
+    {
+        instance.store(image);
+
+        doThrow(new OperationFailedException())
+                .when(mediaRepo).deleteMedia(contentId);
+
+        assertThrows(() -> instance.release(contentId))
+                .isInstanceOf(OperationFailedException.class);
+
+        assertThat(references.get(contentId), is(1));
+    }
+
+    @Test
+    public void testReleaseWhenNotCounted() throws Exception
+    {
+        //Stored before counts were kept, or by another node
+        when(mediaRepo.containsMedia(contentId))
+                .thenReturn(true);
+
+        instance.release(contentId);
+
+        verify(mediaRepo, never()).deleteMedia(contentId);
+        verify(mediaRepo, never()).deleteAllThumbnails(contentId);
+        assertThat(metrics.counter(name(MediaStore.class, "uncounted")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testReleaseAfterHashCollision() throws Exception
+    {
+        references.compareAndSet(contentId, 0, 1);
+
+        when(mediaRepo.containsMedia(contentId))
+                .thenReturn(true);
+
+        when(mediaRepo.getMedia(contentId))
+                .thenReturn(one(appIcons()));
+
+        String mediaId = instance.store(image);
+
+        when(mediaRepo.containsMedia(mediaId))
+                .thenReturn(true);
+
+        instance.release(mediaId);
+
+        verify(mediaRepo).deleteMedia(mediaId);
+        verify(mediaRepo, never()).deleteMedia(contentId);
+    }
+
+    @Test
+    public void testReleaseLegacyId() throws Exception
+    {
+        when(mediaRepo.containsMedia(legacyId))
+                .thenReturn(true);
+
+        instance.release(legacyId);
+
+        verify(mediaRepo).deleteMedia(legacyId);
+        verify(mediaRepo).deleteAllThumbnails(legacyId);
+        verify(validators).forget(legacyId);
+        verify(mediaCache).evict(legacyId);
+    }
+
+    @DontRepeat
+    @Test
+    public void testWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.store(null))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThrows(() -> instance.release(null))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThrows(() -> instance.release(""))
+                .isInstanceOf(InvalidArgumentException.class);
+    }
+
+}
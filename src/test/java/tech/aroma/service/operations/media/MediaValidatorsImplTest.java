@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.media;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.Image;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.aroma.thrift.generators.ImageGenerators.appIcons;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class MediaValidatorsImplTest
+{
+
+    @GenerateString(UUID)
+    private String mediaId;
+
+    @GeneratePojo
+    private Dimension size;
+
+    private Image image;
+
+    private Image thumbnail;
+
+    private MediaValidatorsImpl instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        image = one(appIcons());
+        thumbnail = one(appIcons());
+
+        instance = new MediaValidatorsImpl();
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new MediaValidatorsImpl(0));
+    }
+
+    @Test
+    public void testRecord() throws Exception
+    {
+        String validator = instance.record(mediaId, null, image);
+
+        assertThat(validator, is(MediaValidatorsImpl.validatorOf(image.getData())));
+        assertThat(instance.getValidator(mediaId, null), is(validator));
+    }
+
+    @Test
+    public void testRecordThumbnail() throws Exception
+    {
+        String fullValidator = instance.record(mediaId, null, image);
+        String thumbnailValidator = instance.record(mediaId, size, thumbnail);
+
+        assertThat(instance.getValidator(mediaId, null), is(fullValidator));
+        assertThat(instance.getValidator(mediaId, size), is(thumbnailValidator));
+        assertThat(instance.getValidator(mediaId, new Dimension(size)), is(thumbnailValidator));
+    }
+
+    @Test
+    public void testGetValidatorWhenUnknown() throws Exception
+    {
+        assertThat(instance.getValidator(mediaId, null), nullValue());
+        assertThat(instance.getValidator(mediaId, size), nullValue());
+    }
+
+    @Test
+    public void testForget() throws Exception
+    {
+        instance.record(mediaId, null, image);
+        instance.record(mediaId, size, thumbnail);
+
+        instance.forget(mediaId);
+
+        assertThat(instance.getValidator(mediaId, null), nullValue());
+        assertThat(instance.getValidator(mediaId, size), nullValue());
+    }
+
+    @Test
+    public void testValidatorOf() throws Exception
+    {
+        byte[] data = image.getData();
+        byte[] changed = data.clone();
+        changed[0] ^= 1;
+
+        assertThat(MediaValidatorsImpl.validatorOf(data), is(MediaValidatorsImpl.validatorOf(data.clone())));
+        assertThat(MediaValidatorsImpl.validatorOf(data), not(MediaValidatorsImpl.validatorOf(changed)));
+    }
+
+    @DontRepeat
+    @Test
+    public void testWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.getValidator(null, size));
+        assertThrows(() -> instance.record(null, size, image));
+        assertThrows(() -> instance.record(mediaId, size, null));
+        assertThrows(() -> instance.forget(null));
+    }
+
+}
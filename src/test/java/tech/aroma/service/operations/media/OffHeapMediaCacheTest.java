@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.media;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.ImageType;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.aroma.service.operations.media.SlabAllocatorTest.bytesOf;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.BinaryGenerators.binary;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class OffHeapMediaCacheTest
+{
+
+    private static final int SLAB_SIZE = 1024;
+
+    @GenerateString(ALPHABETIC)
+    private String key;
+
+    @GeneratePojo
+    private Dimension dimension;
+
+    private CachedMedia media;
+
+    private Map<String, CachedMedia> demoted;
+
+    private OffHeapMediaCache instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        media = mediaOf(one(binary(SLAB_SIZE / 2)));
+        demoted = new HashMap<>();
+
+        instance = new OffHeapMediaCache(new SlabAllocator(2 * SLAB_SIZE, SLAB_SIZE), demoted::put);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new OffHeapMediaCache(null, demoted::put));
+        assertThrows(() -> new OffHeapMediaCache(new SlabAllocator(2 * SLAB_SIZE, SLAB_SIZE), null));
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception
+    {
+        assertThat(instance.put(key, media), is(true));
+
+        CachedMedia result = instance.get(key);
+        assertThat(result, notNullValue());
+        assertThat(result.data().isDirect(), is(true));
+        assertThat(bytesOf(result.data()), is(bytesOf(media.data())));
+        assertThat(result.dimension(), is(dimension));
+        assertThat(result.imageType(), is(ImageType.PNG));
+    }
+
+    @Test
+    public void testGetWhenMissing() throws Exception
+    {
+        assertThat(instance.get(key), nullValue());
+    }
+
+    @Test
+    public void testPutWhenLargerThanASlab() throws Exception
+    {
+        assertThat(instance.put(key, mediaOf(one(binary(SLAB_SIZE + 1)))), is(false));
+        assertThat(instance.contains(key), is(false));
+    }
+
+    @Test
+    public void testOldestSlabIsDemoted() throws Exception
+    {
+        instance.put("first", media);
+        instance.put("second", media);
+        instance.put("third", media);
+        instance.put("fourth", media);
+
+        //The first slab is full; it has to go
+        instance.put("fifth", media);
+
+        assertThat(instance.contains("first"), is(false));
+        assertThat(instance.contains("second"), is(false));
+        assertThat(demoted.keySet(), containsInAnyOrder("first", "second"));
+        assertThat(bytesOf(demoted.get("first").data()), is(bytesOf(media.data())));
+
+        assertThat(instance.contains("fifth"), is(true));
+    }
+
+    @Test
+    public void testDemotesWithoutHoldingTheLock() throws Exception
+    {
+        Map<String, Boolean> heldLock = new HashMap<>();
+        Map<String, Boolean> wasDemoting = new HashMap<>();
+
+        instance = new OffHeapMediaCache(new SlabAllocator(2 * SLAB_SIZE, SLAB_SIZE), (key, demotedMedia) ->
+        {
+            heldLock.put(key, Thread.holdsLock(instance));
+            wasDemoting.put(key, instance.isDemoting(key, demotedMedia));
+        });
+
+        for (String key : new String[] { "first", "second", "third", "fourth", "fifth" })
+        {
+            instance.put(key, media);
+        }
+
+        assertThat(heldLock.keySet(), containsInAnyOrder("first", "second"));
+        assertThat(heldLock.values(), everyItem(is(false)));
+        assertThat(wasDemoting.values(), everyItem(is(true)));
+    }
+
+    @Test
+    public void testRemovedEntriesAreNoLongerDemoting() throws Exception
+    {
+        Map<String, Boolean> wasDemoting = new HashMap<>();
+
+        instance = new OffHeapMediaCache(new SlabAllocator(2 * SLAB_SIZE, SLAB_SIZE), (key, demotedMedia) ->
+        {
+            //Evicted while it was on its way to the next tier
+            instance.removeAll(key);
+            wasDemoting.put(key, instance.isDemoting(key, demotedMedia));
+        });
+
+        for (String key : new String[] { "first", "second", "third", "fourth", "fifth" })
+        {
+            instance.put(key, media);
+        }
+
+        assertThat(wasDemoting.keySet(), containsInAnyOrder("first", "second"));
+        assertThat(wasDemoting.values(), everyItem(is(false)));
+    }
+
+    @Test
+    public void testReadEntriesGetASecondChance() throws Exception
+    {
+        instance.put("first", media);
+        instance.put("second", media);
+        instance.put("third", media);
+        instance.put("fourth", media);
+
+        instance.get("first");
+
+        instance.put("fifth", media);
+
+        assertThat(instance.contains("first"), is(true));
+        assertThat(bytesOf(instance.get("first").data()), is(bytesOf(media.data())));
+        assertThat(demoted.keySet(), contains("second"));
+    }
+
+    @Test
+    public void testRemoveAll() throws Exception
+    {
+        instance.put(key + "|full", media);
+        instance.put(key + "|10x10", media);
+        instance.put("other|full", media);
+
+        instance.removeAll(key + "|");
+
+        assertThat(instance.contains(key + "|full"), is(false));
+        assertThat(instance.contains(key + "|10x10"), is(false));
+        assertThat(instance.contains("other|full"), is(true));
+        assertThat(instance.size(), is(1));
+    }
+
+    @DontRepeat
+    @Test
+    public void testWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.put(null, media));
+        assertThrows(() -> instance.put(key, null));
+    }
+
+    private CachedMedia mediaOf(byte[] data)
+    {
+        return new CachedMedia(ByteBuffer.wrap(data), dimension, ImageType.PNG);
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.media;
+
+import java.io.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class ReferenceCountsTest
+{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @GenerateString(UUID)
+    private String first;
+
+    @GenerateString(UUID)
+    private String second;
+
+    private File directory;
+
+    private ReferenceCounts instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = folder.newFolder();
+        instance = new ReferenceCounts(directory);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        instance.close();
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new ReferenceCounts(null));
+    }
+
+    @Test
+    public void testCompareAndSet() throws Exception
+    {
+        assertThat(instance.get(first), is(0));
+
+        assertThat(instance.compareAndSet(first, 0, 1), is(true));
+        assertThat(instance.compareAndSet(first, 1, 2), is(true));
+        assertThat(instance.get(first), is(2));
+    }
+
+    @Test
+    public void testCompareAndSetWhenChanged() throws Exception
+    {
+        instance.compareAndSet(first, 0, 1);
+
+        assertThat(instance.compareAndSet(first, 0, 5), is(false));
+        assertThat(instance.get(first), is(1));
+    }
+
+    @Test
+    public void testSettingZeroForgets() throws Exception
+    {
+        instance.compareAndSet(first, 0, 1);
+        instance.compareAndSet(first, 1, 0);
+
+        assertThat(instance.get(first), is(0));
+        assertThat(instance.size(), is(0));
+    }
+
+    @Test
+    public void testCountsSurviveRestart() throws Exception
+    {
+        instance.compareAndSet(first, 0, 1);
+        instance.compareAndSet(first, 1, 2);
+        instance.compareAndSet(second, 0, 1);
+        instance.compareAndSet(second, 1, 0);
+
+        reopen();
+
+        assertThat(instance.get(first), is(2));
+        assertThat(instance.get(second), is(0));
+        assertThat(instance.size(), is(1));
+    }
+
+    @Test
+    public void testRewritesOnOpen() throws Exception
+    {
+        instance.compareAndSet(first, 0, 1);
+
+        for (int count = 1; count < 20; ++count)
+        {
+            instance.compareAndSet(first, count, count + 1);
+        }
+
+        long sizeBefore = logFile().length();
+
+        reopen();
+
+        assertThat(logFile().length(), lessThan(sizeBefore));
+        assertThat(instance.get(first), is(20));
+    }
+
+    @Test
+    public void testIgnoresTornRecordAtTheEnd() throws Exception
+    {
+        instance.compareAndSet(first, 0, 3);
+        instance.close();
+
+        try (FileOutputStream out = new FileOutputStream(logFile(), true))
+        {
+            out.write(new byte[] { 0x52, 0x45, 0x46 });
+        }
+
+        instance = new ReferenceCounts(directory);
+
+        assertThat(instance.get(first), is(3));
+    }
+
+    @Test
+    public void testIgnoresRecordThatIsTooLarge() throws Exception
+    {
+        instance.compareAndSet(first, 0, 3);
+        instance.close();
+
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(logFile(), true)))
+        {
+            out.writeInt(ReferenceCounts.MAGIC);
+            out.writeInt(0);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+
+        instance = new ReferenceCounts(directory);
+
+        assertThat(instance.get(first), is(3));
+    }
+
+    @DontRepeat
+    @Test
+    public void testCompareAndSetWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.compareAndSet(null, 0, 1));
+        assertThrows(() -> instance.compareAndSet(first, 0, -1));
+    }
+
+    private void reopen() throws Exception
+    {
+        instance.close();
+        instance = new ReferenceCounts(directory);
+    }
+
+    private File logFile()
+    {
+        return new File(directory, ReferenceCounts.FILE_NAME);
+    }
+
+}
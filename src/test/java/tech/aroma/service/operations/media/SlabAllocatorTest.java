@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.media;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.service.operations.media.SlabAllocator.Slab;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.BinaryGenerators.binary;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class SlabAllocatorTest
+{
+
+    private static final int SLAB_SIZE = 1024;
+
+    private SlabAllocator instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        instance = new SlabAllocator(3 * SLAB_SIZE, SLAB_SIZE);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new SlabAllocator(SLAB_SIZE, 0));
+        assertThrows(() -> new SlabAllocator(SLAB_SIZE, SLAB_SIZE));
+    }
+
+    @Test
+    public void testAppend() throws Exception
+    {
+        byte[] data = one(binary(100));
+
+        Slab slab = instance.slabWithRoomFor(data.length);
+        ByteBuffer copy = slab.append(ByteBuffer.wrap(data));
+
+        assertThat(copy.isDirect(), is(true));
+        assertThat(copy.isReadOnly(), is(true));
+        assertThat(bytesOf(copy), is(data));
+        assertThat(instance.slabCount(), is(1));
+        assertThat(instance.allocatedBytes(), is((long) SLAB_SIZE));
+    }
+
+    @Test
+    public void testAppendsShareASlab() throws Exception
+    {
+        byte[] first = one(binary(400));
+        byte[] second = one(binary(400));
+
+        Slab slab = instance.slabWithRoomFor(first.length);
+        ByteBuffer firstCopy = slab.append(ByteBuffer.wrap(first));
+
+        assertThat(instance.slabWithRoomFor(second.length), sameInstance(slab));
+        ByteBuffer secondCopy = slab.append(ByteBuffer.wrap(second));
+
+        assertThat(bytesOf(firstCopy), is(first));
+        assertThat(bytesOf(secondCopy), is(second));
+        assertThat(instance.slabCount(), is(1));
+    }
+
+    @Test
+    public void testOpensNewSlabWhenFull() throws Exception
+    {
+        Slab first = instance.slabWithRoomFor(SLAB_SIZE);
+        first.append(ByteBuffer.wrap(one(binary(SLAB_SIZE))));
+
+        Slab second = instance.slabWithRoomFor(1);
+        assertThat(second, not(sameInstance(first)));
+        assertThat(instance.oldest(), sameInstance(first));
+    }
+
+    @Test
+    public void testWhenBudgetIsExhausted() throws Exception
+    {
+        for (int i = 0; i < 3; ++i)
+        {
+            instance.slabWithRoomFor(SLAB_SIZE).append(ByteBuffer.wrap(one(binary(SLAB_SIZE))));
+        }
+
+        assertThat(instance.slabWithRoomFor(1), nullValue());
+
+        instance.retireOldest();
+        assertThat(instance.slabWithRoomFor(1), notNullValue());
+    }
+
+    @Test
+    public void testRetiredSlabKeepsItsBytes() throws Exception
+    {
+        byte[] data = one(binary(SLAB_SIZE));
+        ByteBuffer copy = instance.slabWithRoomFor(SLAB_SIZE).append(ByteBuffer.wrap(data));
+
+        instance.retireOldest();
+
+        for (int i = 0; i < 3; ++i)
+        {
+            instance.slabWithRoomFor(SLAB_SIZE).append(ByteBuffer.wrap(one(binary(SLAB_SIZE))));
+        }
+
+        assertThat(bytesOf(copy), is(data));
+    }
+
+    @DontRepeat
+    @Test
+    public void testWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.slabWithRoomFor(SLAB_SIZE + 1));
+
+        Slab slab = instance.slabWithRoomFor(10);
+        assertThrows(() -> slab.append(ByteBuffer.wrap(new byte[SLAB_SIZE + 1])));
+    }
+
+    static byte[] bytesOf(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+}
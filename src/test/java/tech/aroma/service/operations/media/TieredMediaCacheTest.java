@@ -0,0 +1,247 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.media;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.Image;
+import tech.aroma.thrift.ImageType;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static java.nio.file.attribute.PosixFilePermissions.fromString;
+import static tech.aroma.service.operations.media.SlabAllocatorTest.bytesOf;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.BinaryGenerators.binary;
+import static tech.sirwellington.alchemy.generator.StringGenerators.uuids;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class TieredMediaCacheTest
+{
+
+    private static final int SLAB_SIZE = 2048;
+    private static final int SEGMENT_SIZE = 16 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @GenerateString(UUID)
+    private String mediaId;
+
+    @GeneratePojo
+    private Dimension size;
+
+    private Image image;
+
+    private MetricRegistry metrics;
+
+    private MappedSegmentStore disk;
+
+    private TieredMediaCache instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        image = imageOf(one(binary(1000)));
+        metrics = new MetricRegistry();
+        disk = new MappedSegmentStore(folder.newFolder(), SEGMENT_SIZE, 4 * SEGMENT_SIZE);
+
+        instance = new TieredMediaCache(metrics, new SlabAllocator(2 * SLAB_SIZE, SLAB_SIZE), disk);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new TieredMediaCache(null, new SlabAllocator(2 * SLAB_SIZE, SLAB_SIZE), disk));
+        assertThrows(() -> new TieredMediaCache(metrics, null, disk));
+    }
+
+    @DontRepeat
+    @Test
+    public void testDiskIsKeptInPrivateDirectory() throws Exception
+    {
+        File dataDirectory = folder.newFolder();
+
+        instance = new TieredMediaCache(metrics, dataDirectory);
+
+        File directory = new File(dataDirectory, TieredMediaCache.DIRECTORY_NAME);
+        assertThat(directory.isDirectory(), is(true));
+        assertThat(Files.getPosixFilePermissions(directory.toPath()), is(fromString("rwx------")));
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception
+    {
+        instance.put(mediaId, null, image);
+
+        Image result = instance.get(mediaId, null);
+        assertThat(result, notNullValue());
+        assertThat(result.data.isDirect(), is(true));
+        assertThat(result.data.isReadOnly(), is(true));
+        assertThat(bytesOf(result.data), is(image.getData()));
+        assertThat(result.imageType, is(image.imageType));
+        assertThat(result.dimension, is(image.dimension));
+
+        assertThat(metrics.counter(name(MediaCache.class, "memory-hits")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testEachHitHasItsOwnView() throws Exception
+    {
+        instance.put(mediaId, null, image);
+
+        Image first = instance.get(mediaId, null);
+        first.data.position(first.data.limit());
+
+        Image second = instance.get(mediaId, null);
+        assertThat(second.data.position(), is(0));
+        assertThat(bytesOf(second.data), is(image.getData()));
+    }
+
+    @Test
+    public void testImageServedFromDisk() throws Exception
+    {
+        Image large = imageOf(one(binary(SLAB_SIZE + 1)));
+
+        instance.put(mediaId, null, large);
+
+        Image result = instance.get(mediaId, null);
+        assertThat(result.data.isDirect(), is(true));
+        assertThat(result.data.isReadOnly(), is(true));
+        assertThat(bytesOf(result.data), is(large.getData()));
+    }
+
+    @Test
+    public void testThumbnailsAreKeptApart() throws Exception
+    {
+        Image thumbnail = imageOf(one(binary(100)));
+
+        instance.put(mediaId, null, image);
+        instance.put(mediaId, size, thumbnail);
+
+        assertThat(bytesOf(instance.get(mediaId, null).data), is(image.getData()));
+        assertThat(bytesOf(instance.get(mediaId, new Dimension(size)).data), is(thumbnail.getData()));
+    }
+
+    @Test
+    public void testGetWhenMissing() throws Exception
+    {
+        assertThat(instance.get(mediaId, null), nullValue());
+        assertThat(metrics.counter(name(MediaCache.class, "misses")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testEvictedMediaIsServedFromDisk() throws Exception
+    {
+        instance.put(mediaId, null, image);
+
+        //Enough to push the first slab out of memory
+        for (int i = 0; i < 4; ++i)
+        {
+            instance.put(one(uuids), null, image);
+        }
+
+        assertThat(disk.contains(TieredMediaCache.keyFor(mediaId, null)), is(true));
+        assertThat(metrics.counter(name(MediaCache.class, "demotions")).getCount(), greaterThan(0L));
+
+        Image result = instance.get(mediaId, null);
+        assertThat(bytesOf(result.data), is(image.getData()));
+        assertThat(metrics.counter(name(MediaCache.class, "disk-hits")).getCount(), is(1L));
+
+        //Promoted back to memory
+        instance.get(mediaId, null);
+        assertThat(metrics.counter(name(MediaCache.class, "memory-hits")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testMediaTooLargeForMemoryGoesToDisk() throws Exception
+    {
+        Image large = imageOf(one(binary(SLAB_SIZE + 1)));
+
+        instance.put(mediaId, null, large);
+
+        assertThat(bytesOf(instance.get(mediaId, null).data), is(large.getData()));
+        assertThat(metrics.counter(name(MediaCache.class, "disk-hits")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testEvict() throws Exception
+    {
+        String otherId = one(uuids);
+
+        instance.put(mediaId, null, image);
+        instance.put(mediaId, size, image);
+        instance.put(otherId, null, image);
+        disk.put(TieredMediaCache.keyFor(mediaId, null), CachedMedia.of(image));
+
+        instance.evict(mediaId);
+
+        assertThat(instance.get(mediaId, null), nullValue());
+        assertThat(instance.get(mediaId, size), nullValue());
+        assertThat(instance.get(otherId, null), notNullValue());
+        assertThat(disk.contains(TieredMediaCache.keyFor(mediaId, null)), is(false));
+    }
+
+    @Test
+    public void testWithoutDisk() throws Exception
+    {
+        instance = new TieredMediaCache(metrics, new SlabAllocator(2 * SLAB_SIZE, SLAB_SIZE), null);
+
+        instance.put(mediaId, null, image);
+        assertThat(bytesOf(instance.get(mediaId, null).data), is(image.getData()));
+
+        instance.evict(mediaId);
+        assertThat(instance.get(mediaId, null), nullValue());
+    }
+
+    @DontRepeat
+    @Test
+    public void testWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.get(null, size));
+        assertThrows(() -> instance.put(null, size, image));
+        assertThrows(() -> instance.put(mediaId, size, null));
+        assertThrows(() -> instance.evict(null));
+    }
+
+    private Image imageOf(byte[] data)
+    {
+        return new Image()
+                .setData(data)
+                .setImageType(ImageType.PNG)
+                .setDimension(size);
+    }
+
+}
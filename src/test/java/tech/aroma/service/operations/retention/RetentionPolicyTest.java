@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.retention;
+
+import java.time.Duration;
+import java.util.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.Message;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.NumberGenerators.integers;
+import static tech.sirwellington.alchemy.generator.StringGenerators.uuids;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class RetentionPolicyTest
+{
+
+    private long now;
+
+    private int maxCount;
+
+    private RetentionPolicy instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        now = System.currentTimeMillis();
+        maxCount = one(integers(1, 20));
+
+        instance = RetentionPolicy.of(Duration.ofDays(1), maxCount);
+    }
+
+    @DontRepeat
+    @Test
+    public void testOf()
+    {
+        assertThrows(() -> RetentionPolicy.of(null, 1));
+        assertThrows(() -> RetentionPolicy.of(Duration.ZERO, 1));
+        assertThrows(() -> RetentionPolicy.of(Duration.ofDays(-1), 1));
+        assertThrows(() -> RetentionPolicy.of(Duration.ofDays(1), 0));
+
+        assertThat(instance.getMaxAge(), is(Duration.ofDays(1)));
+        assertThat(instance.getMaxCount(), is(maxCount));
+        assertThat(instance, is(RetentionPolicy.of(Duration.ofDays(1), maxCount)));
+    }
+
+    @Test
+    public void testExpiredAmongWhenWithinPolicy()
+    {
+        List<Message> messages = messagesReceivedAt(now, maxCount);
+
+        assertThat(instance.expiredAmong(messages, now), is(empty()));
+    }
+
+    @Test
+    public void testExpiredAmongWhenTooMany()
+    {
+        List<Message> kept = messagesReceivedAt(now, maxCount);
+        List<Message> extra = messagesReceivedAt(now - 1_000, one(integers(1, 10)));
+
+        List<Message> messages = new ArrayList<>(kept);
+        messages.addAll(extra);
+        Collections.shuffle(messages);
+
+        List<Message> expired = instance.expiredAmong(messages, now);
+        assertThat(expired, containsInAnyOrder(extra.toArray()));
+    }
+
+    @Test
+    public void testExpiredAmongWhenTooOld()
+    {
+        Message old = messageReceivedAt(now - DAYS.toMillis(2));
+        Message older = messageReceivedAt(now - DAYS.toMillis(3));
+        Message recent = messageReceivedAt(now);
+
+        List<Message> expired = instance.expiredAmong(Arrays.asList(old, recent, older), now);
+
+        //Oldest first
+        assertThat(expired, contains(older, old));
+    }
+
+    @Test
+    public void testExpiredAmongWhenReceivedTimeIsUnknown()
+    {
+        Message unknown = new Message().setMessageId(one(uuids));
+
+        assertThat(instance.expiredAmong(Arrays.asList(unknown), now), is(empty()));
+    }
+
+    private List<Message> messagesReceivedAt(long time, int count)
+    {
+        List<Message> messages = new ArrayList<>();
+
+        for (int i = 0; i < count; ++i)
+        {
+            messages.add(messageReceivedAt(time - i));
+        }
+
+        return messages;
+    }
+
+    private static Message messageReceivedAt(long time)
+    {
+        return new Message()
+                .setMessageId(one(uuids))
+                .setTimeMessageReceived(time);
+    }
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.retention;
+
+import java.time.Duration;
+import java.util.*;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import tech.aroma.data.InboxRepository;
+import tech.aroma.data.MessageRepository;
+import tech.aroma.service.operations.inbox.InboxCache;
+import tech.aroma.thrift.Message;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.StringGenerators.uuids;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(25)
+@RunWith(AlchemyTestRunner.class)
+public class RetentionSweeperImplTest
+{
+
+    private static final int MAX_COUNT = 3;
+    private static final int MAX_DELETES_PER_PASS = 5;
+    private static final long PASS_INTERVAL = HOURS.toMillis(1);
+
+    @Mock
+    private InboxRepository inboxRepo;
+
+    @Mock
+    private InboxCache inboxCache;
+
+    @Mock
+    private MessageRepository messageRepo;
+
+    private MetricRegistry metrics;
+
+    private RetentionPolicies policies;
+
+    @GenerateString(UUID)
+    private String appId;
+
+    @GenerateString(UUID)
+    private String userId;
+
+    private long now;
+
+    private List<Message> recentMessages;
+    private Message oldMessage;
+    private List<Message> messages;
+
+    private RetentionSweeperImpl instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        metrics = new MetricRegistry();
+
+        RetentionPolicy policy = RetentionPolicy.of(Duration.ofDays(1), MAX_COUNT);
+        policies = new RetentionPolicies(true, policy, policy);
+
+        setupData();
+        setupMocks();
+
+        instance = newSweeperWithDelay(0);
+    }
+
+    @After
+    public void tearDown()
+    {
+        instance.shutdown();
+    }
+
+    private RetentionSweeperImpl newSweeperWithDelay(long sweepDelayMillis)
+    {
+        return new RetentionSweeperImpl(inboxRepo,
+                                        inboxCache,
+                                        messageRepo,
+                                        metrics,
+                                        policies,
+                                        sweepDelayMillis,
+                                        1,
+                                        PASS_INTERVAL,
+                                        1_000,
+                                        MAX_DELETES_PER_PASS);
+    }
+
+    private void setupData()
+    {
+        now = System.currentTimeMillis();
+
+        recentMessages = new ArrayList<>();
+
+        for (int i = 0; i < MAX_COUNT + 1; ++i)
+        {
+            recentMessages.add(messageReceivedAt(now - i * 1_000));
+        }
+
+        oldMessage = messageReceivedAt(now - DAYS.toMillis(2));
+
+        messages = new ArrayList<>(recentMessages);
+        messages.add(oldMessage);
+        Collections.shuffle(messages);
+    }
+
+    private void setupMocks() throws Exception
+    {
+        when(messageRepo.getByApplication(appId)).thenReturn(messages);
+        when(inboxRepo.getMessagesForUser(userId)).thenReturn(messages);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor()
+    {
+        assertThrows(() -> new RetentionSweeperImpl(null, inboxCache, messageRepo, metrics, policies));
+        assertThrows(() -> new RetentionSweeperImpl(inboxRepo, null, messageRepo, metrics, policies));
+        assertThrows(() -> new RetentionSweeperImpl(inboxRepo, inboxCache, null, metrics, policies));
+        assertThrows(() -> new RetentionSweeperImpl(inboxRepo, inboxCache, messageRepo, null, policies));
+        assertThrows(() -> new RetentionSweeperImpl(inboxRepo, inboxCache, messageRepo, metrics, null));
+        assertThrows(() -> new RetentionSweeperImpl(inboxRepo, inboxCache, messageRepo, metrics, null, 0, 1, 1, 1, 1));
+        assertThrows(() -> new RetentionSweeperImpl(inboxRepo, inboxCache, messageRepo, metrics, policies, -1, 1, 1, 1, 1));
+        assertThrows(() -> new RetentionSweeperImpl(inboxRepo, inboxCache, messageRepo, metrics, policies, 0, 0, 1, 1, 1));
+        assertThrows(() -> new RetentionSweeperImpl(inboxRepo, inboxCache, messageRepo, metrics, policies, 0, 1, 0, 1, 1));
+        assertThrows(() -> new RetentionSweeperImpl(inboxRepo, inboxCache, messageRepo, metrics, policies, 0, 1, 1, 0, 1));
+        assertThrows(() -> new RetentionSweeperImpl(inboxRepo, inboxCache, messageRepo, metrics, policies, 0, 1, 1, 1, 0));
+    }
+
+    @Test
+    public void testSweepApplication() throws Exception
+    {
+        instance.scheduleApplication(appId);
+
+        SweepReport report = instance.sweep();
+
+        Message oldestRecent = recentMessages.get(MAX_COUNT);
+        verify(messageRepo).deleteMessage(appId, oldMessage.messageId);
+        verify(messageRepo).deleteMessage(appId, oldestRecent.messageId);
+        verify(messageRepo, times(2)).deleteMessage(eq(appId), any());
+        verifyZeroInteractions(inboxRepo, inboxCache);
+
+        assertThat(report.getMessagesRemoved(), is(2));
+        assertThat(report.getApplicationsSwept(), is(1));
+        assertThat(report.getInboxesSwept(), is(0));
+        assertThat(report.getFailures(), is(0));
+        assertThat(report.getStillScheduled(), is(0));
+        assertThat(instance.lastSweep(), sameInstance(report));
+
+        assertThat(metrics.counter(name(RetentionSweeper.class, "messages-removed")).getCount(), is(2L));
+    }
+
+    @Test
+    public void testSweepInbox() throws Exception
+    {
+        instance.scheduleInbox(userId);
+
+        SweepReport report = instance.sweep();
+
+        verify(inboxRepo).deleteMessageForUser(userId, oldMessage.messageId);
+        verify(inboxRepo).deleteMessageForUser(userId, recentMessages.get(MAX_COUNT).messageId);
+        verify(inboxRepo, times(2)).deleteMessageForUser(eq(userId), any());
+        verifyZeroInteractions(messageRepo);
+
+        verify(inboxCache).dismissed(userId, Arrays.asList(oldMessage.messageId, recentMessages.get(MAX_COUNT).messageId));
+
+        assertThat(report.getMessagesRemoved(), is(2));
+        assertThat(report.getInboxesSwept(), is(1));
+    }
+
+    @Test
+    public void testSweepWhenNothingIsDue() throws Exception
+    {
+        instance.shutdown();
+        instance = newSweeperWithDelay(HOURS.toMillis(1));
+
+        instance.scheduleApplication(appId);
+        SweepReport report = instance.sweep();
+
+        verifyZeroInteractions(messageRepo);
+        assertThat(report.getApplicationsSwept(), is(0));
+        assertThat(report.getStillScheduled(), is(1));
+    }
+
+    @Test
+    public void testSchedulingTwiceSweepsOnce() throws Exception
+    {
+        instance.scheduleApplication(appId);
+        instance.scheduleApplication(appId);
+
+        instance.sweep();
+
+        verify(messageRepo, times(1)).getByApplication(appId);
+    }
+
+    @Test
+    public void testSweepIsSpreadOverPasses() throws Exception
+    {
+        List<Message> manyMessages = new ArrayList<>();
+
+        for (int i = 0; i < MAX_COUNT + MAX_DELETES_PER_PASS + 2; ++i)
+        {
+            manyMessages.add(messageReceivedAt(now - i));
+        }
+
+        when(messageRepo.getByApplication(appId)).thenAnswer(ignored -> new ArrayList<>(manyMessages));
+
+        doAnswer(call -> manyMessages.removeIf(m -> m.messageId.equals(call.getArguments()[1])))
+                .when(messageRepo)
+                .deleteMessage(eq(appId), any());
+
+        instance.scheduleApplication(appId);
+
+        SweepReport first = instance.sweep();
+        assertThat(first.getMessagesRemoved(), is(MAX_DELETES_PER_PASS));
+        assertThat(first.getStillScheduled(), is(1));
+
+        SweepReport second = instance.sweep();
+        assertThat(second.getMessagesRemoved(), is(2));
+        assertThat(second.getStillScheduled(), is(0));
+        assertThat(manyMessages.size(), is(MAX_COUNT));
+    }
+
+    @Test
+    public void testSweepWhenDeleteFails() throws Exception
+    {
+        doThrow(new OperationFailedException())
+                .when(messageRepo)
+                .deleteMessage(appId, oldMessage.messageId);
+
+        instance.scheduleApplication(appId);
+
+        SweepReport report = instance.sweep();
+        assertThat(report.getMessagesRemoved(), is(1));
+        assertThat(report.getFailures(), is(1));
+        assertThat(report.getStillScheduled(), is(1));
+
+        assertThat(metrics.counter(name(RetentionSweeper.class, "failures")).getCount(), is(1L));
+
+        //Tried again in the next pass
+        doNothing()
+                .when(messageRepo)
+                .deleteMessage(appId, oldMessage.messageId);
+
+        report = instance.sweep();
+        assertThat(report.getFailures(), is(0));
+        assertThat(report.getStillScheduled(), is(0));
+        verify(messageRepo, times(2)).deleteMessage(appId, oldMessage.messageId);
+    }
+
+    @Test
+    public void testSweepWhenListingFails() throws Exception
+    {
+        when(messageRepo.getByApplication(appId))
+                .thenThrow(new OperationFailedException())
+                .thenReturn(messages);
+
+        instance.scheduleApplication(appId);
+
+        SweepReport report = instance.sweep();
+        assertThat(report.getMessagesRemoved(), is(0));
+        assertThat(report.getStillScheduled(), is(1));
+
+        verify(messageRepo, never()).deleteMessage(any(), any());
+
+        //Tried again in the next pass
+        report = instance.sweep();
+        assertThat(report.getMessagesRemoved(), is(2));
+        assertThat(report.getStillScheduled(), is(0));
+    }
+
+    @Test
+    public void testWhenTurnedOff() throws Exception
+    {
+        RetentionPolicy policy = RetentionPolicy.of(Duration.ofDays(1), 1);
+
+        instance.shutdown();
+        policies = new RetentionPolicies(false, policy, policy);
+        instance = newSweeperWithDelay(0);
+
+        instance.scheduleApplication(appId);
+        instance.scheduleInbox(userId);
+
+        SweepReport report = instance.sweep();
+        assertThat(report.getApplicationsSwept(), is(0));
+        assertThat(report.getInboxesSwept(), is(0));
+        assertThat(report.getStillScheduled(), is(0));
+
+        verifyZeroInteractions(messageRepo, inboxRepo, inboxCache);
+    }
+
+    @Test
+    public void testPolicies() throws Exception
+    {
+        RetentionPolicy keepOne = RetentionPolicy.of(Duration.ofDays(1), 1);
+        RetentionPolicy keepTwo = RetentionPolicy.of(Duration.ofDays(1), 2);
+
+        instance.shutdown();
+        policies = new RetentionPolicies(true, keepOne, keepTwo);
+        instance = newSweeperWithDelay(0);
+
+        assertThat(instance.policyForApplication(appId), is(keepOne));
+        assertThat(instance.policyForInbox(userId), is(keepTwo));
+
+        instance.scheduleApplication(appId);
+
+        SweepReport report = instance.sweep();
+        assertThat(report.getApplicationsSwept(), is(1));
+        assertThat(report.getMessagesRemoved(), is(messages.size() - 1));
+
+        instance.scheduleInbox(userId);
+
+        report = instance.sweep();
+        assertThat(report.getInboxesSwept(), is(1));
+        assertThat(report.getMessagesRemoved(), is(messages.size() - 2));
+    }
+
+    @DontRepeat
+    @Test
+    public void testLastSweepBeforeAnyPass()
+    {
+        assertThat(instance.lastSweep(), nullValue());
+    }
+
+    @DontRepeat
+    @Test
+    public void testWithBadArgs()
+    {
+        assertThrows(() -> instance.scheduleApplication(""));
+        assertThrows(() -> instance.scheduleInbox(null));
+        assertThrows(() -> instance.policyForApplication(""));
+        assertThrows(() -> instance.policyForInbox(null));
+    }
+
+    private static Message messageReceivedAt(long time)
+    {
+        return new Message()
+                .setMessageId(one(uuids))
+                .setTimeMessageReceived(time);
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.retention;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.service.operations.retention.SweepSchedule.Target;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class SweepScheduleTest
+{
+
+    private static final long BUCKET_WIDTH = 100;
+
+    @GenerateString(UUID)
+    private String appId;
+
+    @GenerateString(UUID)
+    private String userId;
+
+    private Target app;
+    private Target inbox;
+
+    private SweepSchedule instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        app = Target.application(appId);
+        inbox = Target.inbox(userId);
+
+        instance = new SweepSchedule(BUCKET_WIDTH);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor()
+    {
+        assertThrows(() -> new SweepSchedule(0));
+        assertThrows(() -> new SweepSchedule(-1));
+    }
+
+    @Test
+    public void testSchedule()
+    {
+        assertThat(instance.schedule(app, 1_000), is(true));
+        assertThat(instance.schedule(app, 5_000), is(false));
+        assertThat(instance.size(), is(1));
+
+        assertThat(instance.takeDue(1_000), contains(app));
+        assertThat(instance.takeDue(5_000), is(empty()));
+    }
+
+    @Test
+    public void testTakeDueLeavesWhatIsNotDue()
+    {
+        instance.schedule(app, 1_000);
+        instance.schedule(inbox, 1_000 + BUCKET_WIDTH);
+
+        assertThat(instance.takeDue(999), is(empty()));
+        assertThat(instance.takeDue(1_000), contains(app));
+        assertThat(instance.takeDue(1_000 + BUCKET_WIDTH), contains(inbox));
+    }
+
+    @Test
+    public void testNothingIsTakenBeforeItIsDue()
+    {
+        //Shares a bucket with 1_000, but is due after it
+        instance.schedule(app, 1_000 - BUCKET_WIDTH + 1);
+
+        assertThat(instance.takeDue(1_000 - BUCKET_WIDTH + 1), is(empty()));
+        assertThat(instance.takeDue(1_000), contains(app));
+    }
+
+    @Test
+    public void testTakeDueInOrder()
+    {
+        instance.schedule(inbox, 2_000);
+        instance.schedule(app, 1_000);
+
+        List<Target> due = instance.takeDue(2_000);
+        assertThat(due, contains(app, inbox));
+    }
+
+    @Test
+    public void testCannotBeScheduledUntilDone()
+    {
+        instance.schedule(app, 1_000);
+        instance.takeDue(1_000);
+
+        assertThat(instance.schedule(app, 1_000), is(false));
+        assertThat(instance.size(), is(1));
+
+        instance.done(app);
+        assertThat(instance.size(), is(0));
+        assertThat(instance.schedule(app, 1_000), is(true));
+    }
+
+    @Test
+    public void testReschedule()
+    {
+        instance.schedule(app, 1_000);
+        instance.takeDue(1_000);
+
+        instance.reschedule(app, 2_000);
+        assertThat(instance.size(), is(1));
+        assertThat(instance.takeDue(1_500), is(empty()));
+        assertThat(instance.takeDue(2_000), contains(app));
+    }
+
+    @DontRepeat
+    @Test
+    public void testTargets()
+    {
+        assertThat(Target.application(appId), is(app));
+        assertThat(Target.inbox(appId), not(Target.application(appId)));
+        assertThat(app.kind(), is(Target.Kind.APPLICATION));
+        assertThat(inbox.kind(), is(Target.Kind.INBOX));
+        assertThat(inbox.id(), is(userId));
+    }
+
+}
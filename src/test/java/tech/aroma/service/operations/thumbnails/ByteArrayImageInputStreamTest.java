@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.thumbnails;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.BinaryGenerators.binary;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class ByteArrayImageInputStreamTest
+{
+
+    private byte[] data;
+
+    private ByteArrayImageInputStream instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        data = one(binary(100));
+        instance = new ByteArrayImageInputStream(data);
+    }
+
+    @Test
+    public void testRead() throws Exception
+    {
+        assertThat(instance.read(), is(data[0] & 0xFF));
+
+        byte[] rest = new byte[200];
+        int read = instance.read(rest, 0, rest.length);
+
+        assertThat(read, is(data.length - 1));
+        assertThat(Arrays.copyOf(rest, read), is(Arrays.copyOfRange(data, 1, data.length)));
+
+        assertThat(instance.read(), is(-1));
+        assertThat(instance.read(rest, 0, 1), is(-1));
+    }
+
+    @Test
+    public void testSeek() throws Exception
+    {
+        instance.seek(50);
+        assertThat(instance.read(), is(data[50] & 0xFF));
+        assertThat(instance.getStreamPosition(), is(51L));
+
+        instance.seek(10);
+        assertThat(instance.read(), is(data[10] & 0xFF));
+    }
+
+    @Test
+    public void testLength() throws Exception
+    {
+        assertThat(instance.length(), is((long) data.length));
+    }
+
+    @Test
+    public void testReadImage() throws Exception
+    {
+        byte[] png = TestImages.imageOf(64, 48, "png").getData();
+
+        ImageHeader header = ImageHeader.readFrom(png);
+        assertThat(header.getDimension().width, is(64));
+        assertThat(header.getDimension().height, is(48));
+    }
+
+    @DontRepeat
+    @Test
+    public void testReadAfterClose() throws Exception
+    {
+        instance.close();
+
+        assertThrows(() -> instance.read())
+                .isInstanceOf(IOException.class);
+    }
+
+}
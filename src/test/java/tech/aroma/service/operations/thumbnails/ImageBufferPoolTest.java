@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.thumbnails;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.aroma.service.operations.thumbnails.ImageBufferPool.MAX_CLASS_SIZE;
+import static tech.aroma.service.operations.thumbnails.ImageBufferPool.MIN_CLASS_SIZE;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.NumberGenerators.integers;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class ImageBufferPoolTest
+{
+
+    private MetricRegistry metrics;
+
+    private int size;
+
+    private ImageBufferPool instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        metrics = new MetricRegistry();
+        size = one(integers(1, 4 * MIN_CLASS_SIZE));
+
+        instance = new ImageBufferPool(metrics, 8 * MIN_CLASS_SIZE);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new ImageBufferPool(null));
+        assertThrows(() -> new ImageBufferPool(metrics, -1));
+    }
+
+    @Test
+    public void testAcquire() throws Exception
+    {
+        byte[] buffer = instance.acquire(size);
+
+        assertThat(buffer.length, greaterThanOrEqualTo(size));
+        assertThat(buffer.length, is(ImageBufferPool.classSizeFor(size)));
+        assertThat(Integer.bitCount(buffer.length), is(1));
+    }
+
+    @Test
+    public void testReleasedBufferIsReused() throws Exception
+    {
+        byte[] buffer = instance.acquire(size);
+        instance.release(buffer);
+
+        assertThat(instance.retainedBytes(), is((long) buffer.length));
+        assertThat(instance.acquire(size), sameInstance(buffer));
+        assertThat(instance.retainedBytes(), is(0L));
+
+        assertThat(metrics.counter(name(ImageBufferPool.class, "reused")).getCount(), is(1L));
+        assertThat(metrics.counter(name(ImageBufferPool.class, "allocated")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testSizeClassesAreKeptApart() throws Exception
+    {
+        byte[] small = instance.acquire(MIN_CLASS_SIZE);
+        instance.release(small);
+
+        byte[] large = instance.acquire(MIN_CLASS_SIZE + 1);
+        assertThat(large, not(sameInstance(small)));
+        assertThat(large.length, is(2 * MIN_CLASS_SIZE));
+    }
+
+    @Test
+    public void testRetainedBytesAreBounded() throws Exception
+    {
+        byte[] first = instance.acquire(4 * MIN_CLASS_SIZE);
+        byte[] second = instance.acquire(4 * MIN_CLASS_SIZE);
+        byte[] third = instance.acquire(4 * MIN_CLASS_SIZE);
+
+        instance.release(first);
+        instance.release(second);
+        instance.release(third);
+
+        assertThat(instance.retainedBytes(), is(8L * MIN_CLASS_SIZE));
+    }
+
+    @DontRepeat
+    @Test
+    public void testAcquireLargerThanAnyClass() throws Exception
+    {
+        byte[] buffer = instance.acquire(MAX_CLASS_SIZE + 1);
+        assertThat(buffer.length, is(MAX_CLASS_SIZE + 1));
+
+        instance.release(buffer);
+        assertThat(instance.retainedBytes(), is(0L));
+    }
+
+    @Test
+    public void testReleaseIgnoresForeignArrays() throws Exception
+    {
+        instance.release(new byte[MIN_CLASS_SIZE + 1]);
+        instance.release(new byte[10]);
+        instance.release(null);
+
+        assertThat(instance.retainedBytes(), is(0L));
+    }
+
+    @DontRepeat
+    @Test
+    public void testWithoutRetention() throws Exception
+    {
+        instance = new ImageBufferPool(metrics, 0);
+
+        byte[] buffer = instance.acquire(size);
+        instance.release(buffer);
+
+        assertThat(instance.acquire(size), not(sameInstance(buffer)));
+    }
+
+    @DontRepeat
+    @Test
+    public void testWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.acquire(-1));
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.thumbnails;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.Image;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(5)
+@RunWith(AlchemyTestRunner.class)
+public class ImageNormalizerImplTest
+{
+
+    private static final int MAX_SIDE = 256;
+    private static final int MAX_SOURCE_SIDE = 2_000;
+
+    private MetricRegistry metrics;
+
+    private ImageProcessingPool pool;
+
+    private ImageBufferPool buffers;
+
+    private Dimension maxSize;
+
+    private ImageLimits limits;
+
+    private ImageNormalizerImpl instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        metrics = new MetricRegistry();
+        pool = new ImageProcessingPool(metrics);
+        buffers = new ImageBufferPool(metrics);
+        maxSize = new Dimension().setWidth(MAX_SIDE).setHeight(MAX_SIDE);
+        limits = new ImageLimits(maxSize, 0.8, 64 * 1024, MAX_SOURCE_SIDE);
+
+        instance = new ImageNormalizerImpl(pool, buffers, metrics, limits);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new ImageNormalizerImpl(null, buffers, metrics, limits));
+        assertThrows(() -> new ImageNormalizerImpl(pool, null, metrics, limits));
+        assertThrows(() -> new ImageNormalizerImpl(pool, buffers, null, limits));
+        assertThrows(() -> new ImageNormalizerImpl(pool, buffers, metrics, null));
+    }
+
+    @DontRepeat
+    @Test
+    public void testLimits() throws Exception
+    {
+        assertThrows(() -> new ImageLimits(null, 0.8, 1, 1));
+        assertThrows(() -> new ImageLimits(new Dimension(), 0.8, 1, 1));
+        assertThrows(() -> new ImageLimits(maxSize, 0, 1, 1));
+        assertThrows(() -> new ImageLimits(maxSize, 1.5, 1, 1));
+        assertThrows(() -> new ImageLimits(maxSize, 0.8, 0, 1));
+        assertThrows(() -> new ImageLimits(maxSize, 0.8, 1, 0));
+    }
+
+    @Test
+    public void testNormalizeLargeImage() throws Exception
+    {
+        Image original = TestImages.imageOf(2000, 1500, "jpg");
+
+        Image result = instance.normalize(original);
+
+        assertThat(result, not(sameInstance(original)));
+        assertThat(result.getData().length, lessThan(original.getData().length));
+        assertThat(result.imageType, is(original.imageType));
+
+        Dimension size = ImageHeader.readFrom(result.getData()).getDimension();
+        assertThat(result.dimension, is(size));
+        assertThat(size.width, is(MAX_SIDE));
+        assertThat(size.height, is(MAX_SIDE * 3 / 4));
+
+        long expectedSavings = original.getData().length - result.getData().length;
+        assertThat(metrics.counter(name(ImageNormalizer.class, "bytes-saved")).getCount(), is(expectedSavings));
+        assertThat(metrics.histogram(name(ImageNormalizer.class, "original-bytes")).getCount(), is(1L));
+        assertThat(metrics.histogram(name(ImageNormalizer.class, "stored-bytes")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testNormalizeKeepsFormat() throws Exception
+    {
+        Image original = TestImages.imageOf(1000, 1000, "png");
+
+        Image result = instance.normalize(original);
+
+        assertThat(ImageHeader.readFrom(result.getData()).getFormatName(), equalToIgnoringCase("png"));
+    }
+
+    @Test
+    public void testNormalizeSmallImage() throws Exception
+    {
+        Image original = TestImages.imageOf(64, 64, "png");
+
+        Image result = instance.normalize(original);
+
+        assertThat(result, sameInstance(original));
+        assertThat(metrics.counter(name(ImageNormalizer.class, "bytes-saved")).getCount(), is(0L));
+        assertThat(metrics.histogram(name(ImageNormalizer.class, "stored-bytes")).getCount(), is(1L));
+    }
+
+    @DontRepeat
+    @Test
+    public void testNormalizeWhenPoolIsSaturated() throws Exception
+    {
+        pool = new ImageProcessingPool(metrics, 1, 1, 1, 1_000);
+        instance = new ImageNormalizerImpl(pool, buffers, metrics, limits);
+
+        Image original = TestImages.imageOf(2000, 1500, "jpg");
+
+        Image result = instance.normalize(original);
+        assertThat(result, sameInstance(original));
+    }
+
+    @Test
+    public void testNormalizeWithUnsupportedFormat() throws Exception
+    {
+        Image original = TestImages.imageOf(100, 100, "bmp");
+
+        assertThrows(() -> instance.normalize(original))
+                .isInstanceOf(InvalidArgumentException.class);
+    }
+
+    @DontRepeat
+    @Test
+    public void testNormalizeWhenTooLarge() throws Exception
+    {
+        Image original = TestImages.imageOf(MAX_SOURCE_SIDE + 1, 10, "png");
+
+        assertThrows(() -> instance.normalize(original))
+                .isInstanceOf(InvalidArgumentException.class);
+    }
+
+    @Test
+    public void testNormalizeWhenNotAnImage() throws Exception
+    {
+        Image original = new Image().setData(new byte[] { 1, 2, 3, 4 });
+
+        assertThrows(() -> instance.normalize(original))
+                .isInstanceOf(InvalidArgumentException.class);
+    }
+
+    @DontRepeat
+    @Test
+    public void testNormalizeWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.normalize(null))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThrows(() -> instance.normalize(new Image()))
+                .isInstanceOf(InvalidArgumentException.class);
+    }
+
+}
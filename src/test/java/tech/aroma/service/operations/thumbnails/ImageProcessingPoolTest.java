@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.thumbnails;
+
+import java.util.concurrent.*;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.ALPHABETIC;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class ImageProcessingPoolTest
+{
+
+    private static final int PIXEL_BUDGET = 100;
+
+    private MetricRegistry metrics;
+
+    private ExecutorService async;
+
+    private CountDownLatch taskStarted;
+    private CountDownLatch releaseTask;
+
+    @GenerateString(ALPHABETIC)
+    private String result;
+
+    private ImageProcessingPool instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        metrics = new MetricRegistry();
+        async = Executors.newSingleThreadExecutor();
+
+        taskStarted = new CountDownLatch(1);
+        releaseTask = new CountDownLatch(1);
+
+        instance = new ImageProcessingPool(metrics, 2, 2, PIXEL_BUDGET, 5_000);
+    }
+
+    @After
+    public void tearDown()
+    {
+        releaseTask.countDown();
+        async.shutdownNow();
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new ImageProcessingPool(null));
+        assertThrows(() -> new ImageProcessingPool(metrics, 0, 1, 1, 1));
+        assertThrows(() -> new ImageProcessingPool(metrics, 1, 0, 1, 1));
+        assertThrows(() -> new ImageProcessingPool(metrics, 1, 1, 0, 1));
+        assertThrows(() -> new ImageProcessingPool(metrics, 1, 1, 1, 0));
+    }
+
+    @Test
+    public void testProcess() throws Exception
+    {
+        String output = instance.process(sizeOf(5, 5), () -> result);
+        assertThat(output, is(result));
+
+        assertThat(metrics.timer(name(ImageProcessingPool.class, "processing-time")).getCount(), is(1L));
+        assertThat(metrics.timer(name(ImageProcessingPool.class, "queue-time")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testProcessWhenImageExceedsBudget() throws Exception
+    {
+        assertThrows(() -> instance.process(sizeOf(PIXEL_BUDGET, 2), () -> result))
+                .isInstanceOf(OperationFailedException.class);
+
+        assertThat(metrics.counter(name(ImageProcessingPool.class, "rejections")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testProcessWhenSaturated() throws Exception
+    {
+        async.submit(() -> instance.process(sizeOf(8, 10), this::blockingTask));
+        taskStarted.await(5, TimeUnit.SECONDS);
+
+        //Only 20 pixels remain in the budget
+        assertThrows(() -> instance.process(sizeOf(5, 5), () -> result))
+                .isInstanceOf(OperationFailedException.class);
+
+        String output = instance.process(sizeOf(4, 5), () -> result);
+        assertThat(output, is(result));
+    }
+
+    @Test
+    public void testBudgetIsReturnedAfterTask() throws Exception
+    {
+        for (int i = 0; i < 5; ++i)
+        {
+            instance.process(sizeOf(10, 10), () -> result);
+        }
+    }
+
+    @Test
+    public void testBudgetIsReturnedWhenTaskFails() throws Exception
+    {
+        assertThrows(() -> instance.process(sizeOf(10, 10), () -> { throw new InvalidArgumentException(); }))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        String output = instance.process(sizeOf(10, 10), () -> result);
+        assertThat(output, is(result));
+    }
+
+    @DontRepeat
+    @Test
+    public void testProcessWhenTaskTimesOut() throws Exception
+    {
+        instance = new ImageProcessingPool(metrics, 1, 1, PIXEL_BUDGET, 50);
+
+        assertThrows(() -> instance.process(sizeOf(10, 10), this::blockingTask))
+                .isInstanceOf(OperationFailedException.class);
+    }
+
+    @DontRepeat
+    @Test
+    public void testProcessWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.process(null, () -> result))
+                .isInstanceOf(OperationFailedException.class);
+
+        assertThrows(() -> instance.process(sizeOf(1, 1), null))
+                .isInstanceOf(OperationFailedException.class);
+    }
+
+    private String blockingTask() throws InterruptedException
+    {
+        taskStarted.countDown();
+        releaseTask.await(5, TimeUnit.SECONDS);
+        return result;
+    }
+
+    private static Dimension sizeOf(int width, int height)
+    {
+        return new Dimension().setWidth(width).setHeight(height);
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.thumbnails;
+
+import java.io.IOException;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.aroma.service.operations.thumbnails.ImageBufferPool.MIN_CLASS_SIZE;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.BinaryGenerators.binary;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(50)
+@RunWith(AlchemyTestRunner.class)
+public class PooledOutputStreamTest
+{
+
+    private ImageBufferPool pool;
+
+    private byte[] data;
+
+    private PooledOutputStream instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        pool = new ImageBufferPool(new MetricRegistry());
+        data = one(binary(3 * MIN_CLASS_SIZE + 7));
+
+        instance = new PooledOutputStream(pool, MIN_CLASS_SIZE);
+    }
+
+    @Test
+    public void testWrite() throws Exception
+    {
+        instance.write(data);
+
+        assertThat(instance.size(), is(data.length));
+        assertThat(instance.toByteArray(), is(data));
+    }
+
+    @Test
+    public void testWriteOneByteAtATime() throws Exception
+    {
+        for (byte b : data)
+        {
+            instance.write(b);
+        }
+
+        assertThat(instance.toByteArray(), is(data));
+    }
+
+    @Test
+    public void testGrowingReturnsSmallerBuffers() throws Exception
+    {
+        instance.write(data);
+
+        //The first buffer was outgrown and given back
+        assertThat(pool.retainedBytes(), is((long) MIN_CLASS_SIZE));
+    }
+
+    @Test
+    public void testCloseReturnsBuffer() throws Exception
+    {
+        instance.write(data, 0, 10);
+        instance.close();
+
+        assertThat(pool.retainedBytes(), is((long) MIN_CLASS_SIZE));
+
+        //Closing twice does not release twice
+        instance.close();
+        assertThat(pool.retainedBytes(), is((long) MIN_CLASS_SIZE));
+    }
+
+    @Test
+    public void testWriteAfterClose() throws Exception
+    {
+        instance.close();
+
+        assertThrows(() -> instance.write(1))
+                .isInstanceOf(IOException.class);
+
+        assertThrows(() -> instance.toByteArray())
+                .isInstanceOf(IOException.class);
+    }
+
+    @DontRepeat
+    @Test
+    public void testWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.write(data, -1, 1))
+                .isInstanceOf(IndexOutOfBoundsException.class);
+
+        assertThrows(() -> instance.write(data, 0, data.length + 1))
+                .isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.thumbnails;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.Image;
+import tech.sirwellington.alchemy.test.junit.runners.AlchemyTestRunner;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author SirWellington
+ */
+@RunWith(AlchemyTestRunner.class)
+public class SubsampledImageDecoderTest
+{
+
+    @Test
+    public void testSubsamplingFor()
+    {
+        Dimension photo = sizeOf(4000, 3000);
+
+        assertThat(SubsampledImageDecoder.subsamplingFor(photo, sizeOf(48, 48)), is(32));
+        assertThat(SubsampledImageDecoder.subsamplingFor(photo, sizeOf(256, 256)), is(4));
+        assertThat(SubsampledImageDecoder.subsamplingFor(photo, sizeOf(1024, 768)), is(1));
+        assertThat(SubsampledImageDecoder.subsamplingFor(photo, sizeOf(8000, 6000)), is(1));
+    }
+
+    @Test
+    public void testSubsamplingKeepsQualityMargin()
+    {
+        Dimension photo = sizeOf(4000, 3000);
+        Dimension desired = sizeOf(100, 100);
+
+        int factor = SubsampledImageDecoder.subsamplingFor(photo, desired);
+        Dimension decoded = SubsampledImageDecoder.decodedSizeOf(photo, factor);
+
+        //Aspect ratio is kept, so the thumbnail will be 100x75
+        assertThat(decoded.width >= 100 * SubsampledImageDecoder.QUALITY_MARGIN, is(true));
+        assertThat(decoded.height >= 75 * SubsampledImageDecoder.QUALITY_MARGIN, is(true));
+    }
+
+    @Test
+    public void testDecodedSizeOf()
+    {
+        Dimension result = SubsampledImageDecoder.decodedSizeOf(sizeOf(1001, 999), 4);
+        assertThat(result, is(sizeOf(251, 250)));
+    }
+
+    @Test
+    public void testDecode() throws Exception
+    {
+        Image image = TestImages.imageOf(400, 300, "jpg");
+
+        BufferedImage result = SubsampledImageDecoder.decode(image.getData(), 4);
+        assertThat(result.getWidth(), is(100));
+        assertThat(result.getHeight(), is(75));
+    }
+
+    private static Dimension sizeOf(int width, int height)
+    {
+        return new Dimension().setWidth(width).setHeight(height);
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package tech.aroma.service.operations.thumbnails;
+
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+import tech.aroma.thrift.Image;
+import tech.aroma.thrift.ImageType;
+
+/**
+ * Produces photo-like images of arbitrary sizes, for tests and benchmarks.
+ *
+ * @author SirWellington
+ */
+class TestImages
+{
+
+    static Image imageOf(int width, int height, String format) throws IOException
+    {
+        BufferedImage picture = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = picture.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        graphics.setPaint(new GradientPaint(0, 0, new Color(30, 90, 200), width, height, new Color(240, 200, 60)));
+        graphics.fillRect(0, 0, width, height);
+
+        //Fixed seed, so every run produces the same picture
+        Random random = new Random(42);
+
+        for (int i = 0; i < 40; ++i)
+        {
+            graphics.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256), 180));
+            int diameter = (int) (Math.min(width, height) * (0.05 + random.nextDouble() * 0.3));
+            graphics.fillOval(random.nextInt(width), random.nextInt(height), diameter, diameter);
+        }
+
+        graphics.dispose();
+
+        ByteArrayOutputStream ostream = new ByteArrayOutputStream();
+        ImageIO.write(picture, format, ostream);
+
+        Image image = new Image().setData(ostream.toByteArray());
+
+        if ("jpg".equals(format))
+        {
+            image.setImageType(ImageType.JPEG);
+        }
+
+        return image;
+    }
+
+    static BufferedImage decode(Image image) throws IOException
+    {
+        return ImageIO.read(new ByteArrayInputStream(image.getData()));
+    }
+
+    /**
+     * Computes the Peak Signal-to-Noise ratio between two images of the same size, in decibels.
+     * Higher is closer; above 30dB the differences are hard to see.
+     */
+    static double psnr(BufferedImage expected, BufferedImage actual)
+    {
+        double squaredError = 0;
+        long samples = 0;
+
+        for (int y = 0; y < expected.getHeight(); ++y)
+        {
+            for (int x = 0; x < expected.getWidth(); ++x)
+            {
+                int first = expected.getRGB(x, y);
+                int second = actual.getRGB(x, y);
+
+                for (int shift = 0; shift < 24; shift += 8)
+                {
+                    int difference = ((first >> shift) & 0xFF) - ((second >> shift) & 0xFF);
+                    squaredError += difference * difference;
+                    ++samples;
+                }
+            }
+        }
+
+        double meanSquaredError = squaredError / samples;
+
+        if (meanSquaredError == 0)
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return 10 * Math.log10(255 * 255 / meanSquaredError);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.thumbnails;
+
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.MetricRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.Image;
+
+/**
+ * Measures the bytes allocated per thumbnail with encoding buffers recycled through the
+ * {@link ImageBufferPool}, against a pool that retains nothing and so allocates a fresh buffer every time.
+ * <p>
+ * Runs with the GC profiler; compare {@code gc.alloc.rate.norm} between the two.
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=tech.aroma.service.operations.thumbnails.ThumbnailAllocationBenchmark}.
+ *
+ * @author SirWellington
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ThumbnailAllocationBenchmark
+{
+
+    @Param({ "jpg", "png" })
+    private String format;
+
+    @Param({ "1920x1080", "4000x3000" })
+    private String sourceSize;
+
+    @Param({ "256x256", "1024x1024" })
+    private String thumbnailSize;
+
+    private Image original;
+    private Dimension desiredSize;
+
+    private ThumbnailCreatorImpl pooled;
+    private ThumbnailCreatorImpl unpooled;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        String[] source = sourceSize.split("x");
+        original = TestImages.imageOf(Integer.parseInt(source[0]), Integer.parseInt(source[1]), format);
+
+        String[] thumbnail = thumbnailSize.split("x");
+        desiredSize = new Dimension()
+                .setWidth(Integer.parseInt(thumbnail[0]))
+                .setHeight(Integer.parseInt(thumbnail[1]));
+
+        MetricRegistry metrics = new MetricRegistry();
+        ImageProcessingPool pool = new ImageProcessingPool(metrics);
+
+        pooled = new ThumbnailCreatorImpl(pool, new ImageBufferPool(metrics));
+        unpooled = new ThumbnailCreatorImpl(pool, new ImageBufferPool(new MetricRegistry(), 0));
+    }
+
+    @Benchmark
+    public Image pooledBuffers() throws Exception
+    {
+        return pooled.createThumbnail(original, desiredSize);
+    }
+
+    @Benchmark
+    public Image freshBuffers() throws Exception
+    {
+        return unpooled.createThumbnail(original, desiredSize);
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        new Runner(new OptionsBuilder()
+                           .include(ThumbnailAllocationBenchmark.class.getSimpleName())
+                           .addProfiler(GCProfiler.class)
+                           .build())
+                .run();
+    }
+
+}
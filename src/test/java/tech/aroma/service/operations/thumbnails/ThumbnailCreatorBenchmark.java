@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.operations.thumbnails;
+
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.MetricRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tech.aroma.thrift.Dimension;
+import tech.aroma.thrift.Image;
+
+/**
+ * Compares the full-decode thumbnail path against the subsampled one, over
+ * representative JPEG and PNG sizes.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=tech.aroma.service.operations.thumbnails.ThumbnailCreatorBenchmark}.
+ *
+ * @author SirWellington
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ThumbnailCreatorBenchmark
+{
+
+    @Param({ "jpg", "png" })
+    private String format;
+
+    @Param({ "640x480", "1920x1080", "4000x3000" })
+    private String sourceSize;
+
+    @Param({ "48x48", "256x256" })
+    private String thumbnailSize;
+
+    private Image original;
+    private Dimension desiredSize;
+
+    private ThumbnailCreatorImpl fullDecode;
+    private ThumbnailCreatorImpl subsampled;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        Dimension source = parse(sourceSize);
+        original = TestImages.imageOf(source.width, source.height, format);
+        desiredSize = parse(thumbnailSize);
+
+        MetricRegistry metrics = new MetricRegistry();
+        ImageProcessingPool pool = new ImageProcessingPool(metrics);
+        ImageBufferPool buffers = new ImageBufferPool(metrics);
+        fullDecode = new ThumbnailCreatorImpl(pool, buffers, false);
+        subsampled = new ThumbnailCreatorImpl(pool, buffers, true);
+    }
+
+    @Benchmark
+    public Image fullDecode() throws Exception
+    {
+        return fullDecode.createThumbnail(original, desiredSize);
+    }
+
+    @Benchmark
+    public Image subsampledDecode() throws Exception
+    {
+        return subsampled.createThumbnail(original, desiredSize);
+    }
+
+    private static Dimension parse(String size)
+    {
+        String[] parts = size.split("x");
+
+        return new Dimension()
+                .setWidth(Integer.parseInt(parts[0]))
+                .setHeight(Integer.parseInt(parts[1]));
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        new Runner(new OptionsBuilder()
+                           .include(ThumbnailCreatorBenchmark.class.getSimpleName())
+                           .build())
+                .run();
+    }
+
+}
@@ -16,13 +16,19 @@
 
 package tech.aroma.service.operations.thumbnails;
 
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import com.codahale.metrics.MetricRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import tech.aroma.thrift.*;
 import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.OperationFailedException;
 import tech.sirwellington.alchemy.test.junit.runners.*;
 
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
@@ -45,6 +51,10 @@ public class ThumbnailCreatorImplTest
     @GeneratePojo
     private Dimension thumbnailSize;
 
+    private ImageProcessingPool pool;
+
+    private ImageBufferPool buffers;
+
     private ThumbnailCreatorImpl instance;
 
     @Before
@@ -53,7 +63,7 @@ public class ThumbnailCreatorImplTest
         setupData();
         setupMocks();
 
-        instance = new ThumbnailCreatorImpl();
+        instance = new ThumbnailCreatorImpl(pool, buffers);
     }
 
     private void setupData() throws Exception
@@ -65,7 +75,17 @@ public class ThumbnailCreatorImplTest
 
     private void setupMocks() throws Exception
     {
+        MetricRegistry metrics = new MetricRegistry();
+        pool = new ImageProcessingPool(metrics);
+        buffers = new ImageBufferPool(metrics);
+    }
 
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new ThumbnailCreatorImpl(null, buffers));
+        assertThrows(() -> new ThumbnailCreatorImpl(pool, null));
     }
 
     @Test
@@ -77,6 +97,36 @@ public class ThumbnailCreatorImplTest
         assertThat(thumbnail.dimension, is(thumbnailSize));
     }
 
+    @DontRepeat
+    @Test
+    public void testSubsampledThumbnailMatchesFullDecode() throws Exception
+    {
+        ThumbnailCreatorImpl fullDecode = new ThumbnailCreatorImpl(pool, buffers, false);
+        Dimension iconSize = new Dimension().setWidth(64).setHeight(64);
+
+        for (String format : Arrays.asList("jpg", "png"))
+        {
+            Image original = TestImages.imageOf(2000, 1500, format);
+
+            BufferedImage expected = TestImages.decode(fullDecode.createThumbnail(original, iconSize));
+            BufferedImage result = TestImages.decode(instance.createThumbnail(original, iconSize));
+
+            assertThat(result.getWidth(), is(expected.getWidth()));
+            assertThat(result.getHeight(), is(expected.getHeight()));
+            assertThat(TestImages.psnr(expected, result), greaterThan(30.0));
+        }
+    }
+
+    @DontRepeat
+    @Test
+    public void testWhenImageIsNotAnImage() throws Exception
+    {
+        Image badImage = new Image(image).setData(new byte[] { 1, 2, 3, 4 });
+
+        assertThrows(() -> instance.createThumbnail(badImage, thumbnailSize))
+                .isInstanceOf(OperationFailedException.class);
+    }
+
     @DontRepeat
     @Test
     public void testWithBadArgs()
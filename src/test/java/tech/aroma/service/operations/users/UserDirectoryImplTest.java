@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.aroma.service.operations.users;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import tech.aroma.data.UserRepository;
+import tech.aroma.thrift.User;
+import tech.aroma.thrift.exceptions.InvalidArgumentException;
+import tech.aroma.thrift.exceptions.UserDoesNotExistException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.PeopleGenerators.emails;
+import static tech.sirwellington.alchemy.generator.StringGenerators.uuids;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+import static tech.sirwellington.alchemy.test.junit.runners.GenerateString.Type.UUID;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class UserDirectoryImplTest
+{
+
+    @Mock
+    private UserRepository userRepo;
+
+    private MetricRegistry metrics;
+
+    @GeneratePojo
+    private User user;
+
+    @GenerateString(UUID)
+    private String userId;
+
+    private String email;
+
+    private UserDirectoryImpl instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        metrics = new MetricRegistry();
+
+        email = one(emails());
+        user.userId = userId;
+        user.email = email;
+
+        when(userRepo.getUserByEmail(email)).thenReturn(user);
+
+        instance = new UserDirectoryImpl(userRepo, metrics);
+    }
+
+    @DontRepeat
+    @Test
+    public void testConstructor() throws Exception
+    {
+        assertThrows(() -> new UserDirectoryImpl(null, metrics));
+        assertThrows(() -> new UserDirectoryImpl(userRepo, null));
+    }
+
+    @Test
+    public void testGetUserByEmail() throws Exception
+    {
+        User expected = withoutImage(user);
+
+        assertThat(instance.getUserByEmail(email), is(expected));
+        assertThat(instance.getUserByEmail(email.toUpperCase()), is(expected));
+
+        verify(userRepo, times(1)).getUserByEmail(anyString());
+        verify(userRepo, never()).getUser(anyString());
+
+        assertThat(metrics.counter(name(UserDirectory.class, "hits")).getCount(), is(1L));
+        assertThat(metrics.counter(name(UserDirectory.class, "misses")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testGetUserByEmailReturnsCopies() throws Exception
+    {
+        instance.getUserByEmail(email).setName(one(uuids()));
+
+        assertThat(instance.getUserByEmail(email), is(withoutImage(user)));
+    }
+
+    @Test
+    public void testGetUserByEmailWhenUnknown() throws Exception
+    {
+        when(userRepo.getUserByEmail(email))
+                .thenThrow(new UserDoesNotExistException());
+
+        assertThrows(() -> instance.getUserByEmail(email))
+                .isInstanceOf(UserDoesNotExistException.class);
+
+        assertThat(instance.size(), is(0L));
+    }
+
+    @Test
+    public void testGetUserByEmailWhenRepositoryReturnsNull() throws Exception
+    {
+        when(userRepo.getUserByEmail(email))
+                .thenReturn(null);
+
+        assertThrows(() -> instance.getUserByEmail(email))
+                .isInstanceOf(UserDoesNotExistException.class);
+    }
+
+    @Test
+    public void testRemember() throws Exception
+    {
+        instance.remember(user);
+
+        assertThat(instance.getUserByEmail(email), is(withoutImage(user)));
+        verify(userRepo, never()).getUserByEmail(anyString());
+    }
+
+    @Test
+    public void testRememberWithoutEmail() throws Exception
+    {
+        user.unsetEmail();
+        instance.remember(user);
+
+        assertThat(instance.size(), is(0L));
+    }
+
+    @Test
+    public void testForget() throws Exception
+    {
+        instance.remember(user);
+        instance.forget(email);
+
+        instance.getUserByEmail(email);
+        verify(userRepo).getUserByEmail(email);
+    }
+
+    @Test
+    public void testForgetWhenUserWasDeleted() throws Exception
+    {
+        instance.remember(user);
+        instance.forget(email);
+
+        when(userRepo.getUserByEmail(email))
+                .thenThrow(new UserDoesNotExistException());
+
+        assertThrows(() -> instance.getUserByEmail(email))
+                .isInstanceOf(UserDoesNotExistException.class);
+
+        assertThat(instance.size(), is(0L));
+    }
+
+    @Test
+    public void testForgetWhenUserChangedEmail() throws Exception
+    {
+        instance.remember(user);
+        instance.forget(email);
+
+        User other = new User().setUserId(one(uuids())).setEmail(email);
+        when(userRepo.getUserByEmail(email)).thenReturn(other);
+
+        assertThat(instance.getUserByEmail(email), is(other));
+    }
+
+    @DontRepeat
+    @Test
+    public void testWithBadArgs() throws Exception
+    {
+        assertThrows(() -> instance.getUserByEmail(""))
+                .isInstanceOf(InvalidArgumentException.class);
+
+        assertThrows(() -> instance.remember(null))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThrows(() -> instance.forget(""))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testHitsAndMissesReturnTheSameUser() throws Exception
+    {
+        User first = instance.getUserByEmail(email);
+        User second = instance.getUserByEmail(email);
+
+        assertThat(first, is(second));
+        assertThat(first.isSetProfileImage(), is(false));
+        assertThat(first.profileImageLink, is(user.profileImageLink));
+    }
+
+    private static User withoutImage(User user)
+    {
+        User copy = user.deepCopy();
+        copy.unsetProfileImage();
+        return copy;
+    }
+
+}
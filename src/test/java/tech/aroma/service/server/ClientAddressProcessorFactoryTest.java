@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.aroma.service.server;
+
+import java.net.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TSocket;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import tech.aroma.service.ClientAddress;
+import tech.aroma.thrift.exceptions.OperationFailedException;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.test.junit.ThrowableAssertion.*;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class ClientAddressProcessorFactoryTest
+{
+
+    @Mock
+    private TProtocol in;
+
+    @Mock
+    private TProtocol out;
+
+    private AtomicReference<String> addressDuringCall;
+
+    private ServerSocket server;
+    private Socket client;
+
+    private ClientAddressProcessorFactory instance;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        addressDuringCall = new AtomicReference<>();
+
+        TProcessor processor = (in, out) ->
+        {
+            addressDuringCall.set(ClientAddress.current());
+            return true;
+        };
+
+        instance = new ClientAddressProcessorFactory(processor);
+
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        client = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        client.close();
+        server.close();
+        ClientAddress.clear();
+    }
+
+    @Test
+    public void testProcessOverSocket() throws Exception
+    {
+        TProcessor processor = instance.getProcessor(new TSocket(client));
+
+        assertThat(processor.process(in, out), is(true));
+        assertThat(addressDuringCall.get(), is(InetAddress.getLoopbackAddress().getHostAddress()));
+        assertThat(ClientAddress.current(), nullValue());
+    }
+
+    @Test
+    public void testProcessWithoutSocket() throws Exception
+    {
+        TProcessor processor = instance.getProcessor(new TMemoryBuffer(16));
+
+        processor.process(in, out);
+        assertThat(addressDuringCall.get(), nullValue());
+    }
+
+    @Test
+    public void testAddressIsClearedWhenProcessorFails() throws Exception
+    {
+        instance = new ClientAddressProcessorFactory((in, out) ->
+        {
+            throw new OperationFailedException();
+        });
+
+        TProcessor processor = instance.getProcessor(new TSocket(client));
+
+        assertThrows(() -> processor.process(in, out))
+                .isInstanceOf(OperationFailedException.class);
+
+        assertThat(ClientAddress.current(), nullValue());
+    }
+
+}
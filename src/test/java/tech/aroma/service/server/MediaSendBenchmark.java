@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TSocket;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tech.aroma.thrift.Image;
+import tech.aroma.thrift.ImageType;
+import tech.aroma.thrift.service.GetMediaResponse;
+
+/**
+ * Compares the allocations of sending a {@link GetMediaResponse} over a loopback socket, when the image
+ * is loaded onto the heap for every request versus served from an off-heap buffer through the
+ * {@link ZeroCopyBinaryProtocol}.
+ * <p>
+ * Runs with the GC profiler; compare {@code gc.alloc.rate.norm} (bytes allocated per send) between the two.
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=tech.aroma.service.server.MediaSendBenchmark}.
+ *
+ * @author SirWellington
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MediaSendBenchmark
+{
+
+    @Param({ "16384", "262144", "2097152" })
+    private int imageBytes;
+
+    private byte[] stored;
+    private ByteBuffer cached;
+
+    private ServerSocketChannel server;
+    private Thread drain;
+    private SocketChannel client;
+
+    private TSocket transport;
+    private TProtocol heapProtocol;
+    private TProtocol zeroCopyProtocol;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        stored = new byte[imageBytes];
+        ThreadLocalRandom.current().nextBytes(stored);
+
+        cached = ByteBuffer.allocateDirect(imageBytes);
+        cached.put(stored);
+        cached.flip();
+
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("localhost", 0));
+
+        drain = new Thread(this::drainConnection, "media-send-drain");
+        drain.setDaemon(true);
+        drain.start();
+
+        client = SocketChannel.open(server.getLocalAddress());
+        transport = new TSocket(client.socket());
+        heapProtocol = new TBinaryProtocol(transport);
+        zeroCopyProtocol = new ZeroCopyBinaryProtocol(transport);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        transport.close();
+        server.close();
+        drain.interrupt();
+    }
+
+    /**
+     * The path before this change: the image is read into a fresh heap array for each request.
+     */
+    @Benchmark
+    public void heapImage() throws Exception
+    {
+        Image image = new Image().setImageType(ImageType.JPEG);
+        image.data = ByteBuffer.wrap(stored.clone());
+
+        new GetMediaResponse(image).write(heapProtocol);
+        transport.flush();
+    }
+
+    @Benchmark
+    public void offHeapImage() throws Exception
+    {
+        Image image = new Image().setImageType(ImageType.JPEG);
+        image.data = cached.duplicate();
+
+        new GetMediaResponse(image).write(zeroCopyProtocol);
+        transport.flush();
+    }
+
+    private void drainConnection()
+    {
+        ByteBuffer sink = ByteBuffer.allocateDirect(256 * 1024);
+
+        try (SocketChannel accepted = server.accept())
+        {
+            while (accepted.read(sink) >= 0)
+            {
+                sink.clear();
+            }
+        }
+        catch (IOException ex)
+        {
+            //Closed at tear down
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        new Runner(new OptionsBuilder()
+                           .include(MediaSendBenchmark.class.getSimpleName())
+                           .addProfiler(GCProfiler.class)
+                           .build())
+                .run();
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 RedRoma, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.aroma.service.server;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.*;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TSocket;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import tech.aroma.thrift.Image;
+import tech.aroma.thrift.ImageType;
+import tech.aroma.thrift.service.GetMediaResponse;
+import tech.sirwellington.alchemy.test.junit.runners.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static tech.sirwellington.alchemy.generator.AlchemyGenerator.Get.one;
+import static tech.sirwellington.alchemy.generator.BinaryGenerators.binary;
+
+/**
+ * @author SirWellington
+ */
+@Repeat(10)
+@RunWith(AlchemyTestRunner.class)
+public class ZeroCopyBinaryProtocolTest
+{
+
+    private byte[] data;
+
+    private ExecutorService async;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        data = one(binary(3 * ZeroCopyBinaryProtocol.SCRATCH_SIZE + 17));
+        async = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown()
+    {
+        async.shutdownNow();
+    }
+
+    @Test
+    public void testWriteHeapBuffer() throws Exception
+    {
+        GetMediaResponse response = responseWith(ByteBuffer.wrap(data));
+
+        assertThat(serialize(response, ZeroCopyBinaryProtocol::new), is(serialize(response, TBinaryProtocol::new)));
+    }
+
+    @Test
+    public void testWriteDirectBuffer() throws Exception
+    {
+        GetMediaResponse heapResponse = responseWith(ByteBuffer.wrap(data));
+        GetMediaResponse directResponse = responseWith(directCopyOf(data));
+
+        byte[] expected = serialize(heapResponse, TBinaryProtocol::new);
+        assertThat(serialize(directResponse, ZeroCopyBinaryProtocol::new), is(expected));
+    }
+
+    @Test
+    public void testWriteDirectBufferLeavesItUntouched() throws Exception
+    {
+        ByteBuffer buffer = directCopyOf(data);
+
+        serialize(responseWith(buffer), ZeroCopyBinaryProtocol::new);
+
+        assertThat(buffer.position(), is(0));
+        assertThat(buffer.remaining(), is(data.length));
+    }
+
+    @Test
+    public void testWriteDirectBufferToSocketChannel() throws Exception
+    {
+        try (ServerSocketChannel server = ServerSocketChannel.open())
+        {
+            server.bind(new InetSocketAddress("localhost", 0));
+
+            Future<GetMediaResponse> received = async.submit(() ->
+            {
+                try (SocketChannel accepted = server.accept())
+                {
+                    TSocket transport = new TSocket(accepted.socket());
+                    GetMediaResponse response = new GetMediaResponse();
+                    response.read(new TBinaryProtocol(transport));
+                    return response;
+                }
+            });
+
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress()))
+            {
+                TSocket transport = new TSocket(client.socket());
+                responseWith(directCopyOf(data)).write(new ZeroCopyBinaryProtocol(transport));
+                transport.flush();
+
+                GetMediaResponse response = received.get(5, TimeUnit.SECONDS);
+                assertThat(response.image.getData(), is(data));
+                assertThat(response.image.imageType, is(ImageType.JPEG));
+            }
+        }
+    }
+
+    private static GetMediaResponse responseWith(ByteBuffer buffer)
+    {
+        Image image = new Image().setImageType(ImageType.JPEG);
+        image.data = buffer;
+
+        return new GetMediaResponse(image);
+    }
+
+    private static ByteBuffer directCopyOf(byte[] data)
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data);
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private static byte[] serialize(GetMediaResponse response, ProtocolMaker protocol) throws Exception
+    {
+        TMemoryBuffer transport = new TMemoryBuffer(1024);
+        response.write(protocol.over(transport));
+
+        return Arrays.copyOf(transport.getArray(), transport.length());
+    }
+
+    @FunctionalInterface
+    private interface ProtocolMaker
+    {
+        TProtocol over(TMemoryBuffer transport);
+    }
+
+}